@@ -28,6 +28,10 @@ import com.docdoku.core.product.PartIteration;
 import com.docdoku.core.product.PartIterationKey;
 import com.docdoku.core.product.PartRevision;
 
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
 import javax.security.auth.login.LoginException;
 import java.io.*;
 import java.net.HttpURLConnection;
@@ -37,15 +41,17 @@ import java.net.URLEncoder;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
-import java.util.Locale;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.zip.GZIPInputStream;
 
 public class FileHelper {
 
     private static final int CHUNK_SIZE = 1024*8;
     private static final int BUFFER_CAPACITY = 1024*32;
+    private static final int UPLOAD_CHUNK_SIZE = 1024*1024*8;
+    private static final int UPLOAD_THREADS = 4;
+    private static final int UPLOAD_ATTEMPTS = 3;
 
     private String login;
     private String password;
@@ -127,24 +133,217 @@ public class FileHelper {
         }
     }
 
+    /**
+     * Uploads a file in chunks, several of them being sent concurrently.
+     *
+     * The upload session is recorded in the meta directory: if the upload is interrupted, it is
+     * resumed on the next call, as long as the file has the same date, size and digest, sending only
+     * the missing chunks. Servers without chunked uploads receive the file in a single request.
+     */
     private String uploadFile(File pLocalFile, String pURL) throws IOException, LoginException, NoSuchAlgorithmException {
-        InputStream in = null;
-        OutputStream out = null;
-        HttpURLConnection conn = null;
+        URL url = new URL(pURL);
+
+        output.printInfo(
+                LangHelper.getLocalizedMessage("UploadingFile", locale)
+                        + " : "
+                        + pLocalFile.getName() + " "
+                        + LangHelper.getLocalizedMessage("To", locale) + " "
+                        + url.getHost());
+        performHeadHTTPMethod(url);
+
+        MetaDirectoryManager meta = new MetaDirectoryManager(pLocalFile.getParentFile());
+        String filePath = pLocalFile.getAbsolutePath();
+        long length = pLocalFile.length();
+        String digest = getDigest(pLocalFile);
+        String fileVersion = pLocalFile.lastModified() + "/" + length + "/" + digest;
+
+        ChunkedUpload upload = resumeUploadSession(meta.getUploadSession(filePath, fileVersion), pLocalFile);
+        if (upload == null) {
+            upload = createUploadSession(pLocalFile, pURL);
+            if (upload == null) {
+                return uploadFileInOneRequest(pLocalFile, url);
+            }
+            meta.setUploadSession(filePath, upload.location, fileVersion);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(UPLOAD_THREADS);
+        // Bounds the chunks held in memory
+        Semaphore inFlight = new Semaphore(UPLOAD_THREADS);
+        List<Future<Void>> futures = new ArrayList<>();
+
+        try (InputStream in = output.getMonitor(length, new BufferedInputStream(new FileInputStream(pLocalFile), BUFFER_CAPACITY))) {
+            long remaining = length;
+            for (int index = 0; remaining > 0; index++) {
+                // Every chunk is read, received ones are not kept
+                byte[] chunk = readChunk(in, (int) Math.min(upload.chunkSize, remaining));
+                remaining -= chunk.length;
+                if (upload.receivedChunks.contains(index)) {
+                    continue;
+                }
+                inFlight.acquire();
+                final String chunkURL = upload.location + "/" + index;
+                futures.add(executor.submit(() -> {
+                    try {
+                        putChunk(chunkURL, chunk);
+                        return null;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof LoginException) {
+                throw (LoginException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        completeUploadSession(upload.location);
+        meta.removeUploadSession(filePath);
+
+        return digest;
+    }
+
+    private static String getDigest(File pLocalFile) throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        byte[] buffer = new byte[BUFFER_CAPACITY];
+        try (InputStream in = new DigestInputStream(new BufferedInputStream(new FileInputStream(pLocalFile), BUFFER_CAPACITY), md)) {
+            while (in.read(buffer) != -1) {
+                // Digested while read
+            }
+        }
+        return Base64.getEncoder().encodeToString(md.digest());
+    }
+
+    private ChunkedUpload createUploadSession(File pLocalFile, String pURL) throws IOException, LoginException {
+        String uploadsURL = (pURL.endsWith("/") ? pURL : pURL + "/")
+                + "uploads?fileName=" + URLEncoder.encode(pLocalFile.getName(), "UTF-8")
+                + "&size=" + pLocalFile.length()
+                + "&chunkSize=" + UPLOAD_CHUNK_SIZE;
+
+        HttpURLConnection conn = openConnection(new URL(uploadsURL), "POST");
         try {
-            //Hack for NTLM proxy
-            //perform a head method to negociate the NTLM proxy authentication
-            URL url = new URL(pURL);
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(0);
+            conn.getOutputStream().close();
+            manageHTTPCode(conn);
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_BAD_METHOD) {
+                // Chunked uploads are not supported by the server
+                return null;
+            }
+            if (code != HttpURLConnection.HTTP_CREATED) {
+                throw new IOException(conn.getHeaderField("Reason-Phrase"));
+            }
+            try (JsonReader reader = Json.createReader(conn.getInputStream())) {
+                return new ChunkedUpload(conn.getHeaderField("Location"), reader.readObject());
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
 
-            output.printInfo(
-                    LangHelper.getLocalizedMessage("UploadingFile", locale)
-                            + " : "
-                            + pLocalFile.getName() + " "
-                            + LangHelper.getLocalizedMessage("To", locale) + " "
-                            + url.getHost());
-            performHeadHTTPMethod(url);
+    private ChunkedUpload resumeUploadSession(String location, File pLocalFile) throws IOException, LoginException {
+        if (location == null) {
+            return null;
+        }
+        HttpURLConnection conn = openConnection(new URL(location), "GET");
+        try {
+            manageHTTPCode(conn);
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                // Expired or cancelled
+                return null;
+            }
+            try (JsonReader reader = Json.createReader(conn.getInputStream())) {
+                JsonObject session = reader.readObject();
+                return session.getJsonNumber("size").longValue() == pLocalFile.length() ? new ChunkedUpload(location, session) : null;
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private void putChunk(String chunkURL, byte[] chunk) throws IOException, LoginException, NoSuchAlgorithmException {
+        String checksum = Base64.getEncoder().encodeToString(MessageDigest.getInstance("MD5").digest(chunk));
+        for (int attempt = 1; ; attempt++) {
+            HttpURLConnection conn = openConnection(new URL(chunkURL), "PUT");
+            try {
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/octet-stream");
+                conn.setRequestProperty("Content-MD5", checksum);
+                conn.setFixedLengthStreamingMode(chunk.length);
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(chunk);
+                }
+                manageHTTPCode(conn);
+                if (conn.getResponseCode() != HttpURLConnection.HTTP_NO_CONTENT) {
+                    throw new IOException(conn.getHeaderField("Reason-Phrase"));
+                }
+                return;
+            } catch (IOException e) {
+                if (attempt == UPLOAD_ATTEMPTS) {
+                    throw e;
+                }
+            } finally {
+                conn.disconnect();
+            }
+        }
+    }
 
+    private void completeUploadSession(String location) throws IOException, LoginException {
+        HttpURLConnection conn = openConnection(new URL(location), "POST");
+        try {
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(0);
+            conn.getOutputStream().close();
+            manageHTTPCode(conn);
+            if (conn.getResponseCode() == HttpURLConnection.HTTP_CONFLICT) {
+                throw new IOException("Upload incomplete, some chunks are missing");
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
 
+    private static byte[] readChunk(InputStream in, int length) throws IOException {
+        byte[] chunk = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(chunk, offset, length - offset);
+            if (read == -1) {
+                throw new EOFException("File modified during the upload");
+            }
+            offset += read;
+        }
+        return chunk;
+    }
+
+    private HttpURLConnection openConnection(URL url, String method) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setUseCaches(false);
+        conn.setAllowUserInteraction(true);
+        conn.setRequestProperty("Connection", "Keep-Alive");
+        byte[] encoded = Base64.getEncoder().encode((login + ":" + password).getBytes("ISO-8859-1"));
+        conn.setRequestProperty("Authorization", "Basic " + new String(encoded, "US-ASCII"));
+        conn.setRequestMethod(method);
+        return conn;
+    }
+
+    private String uploadFileInOneRequest(File pLocalFile, URL url) throws IOException, LoginException, NoSuchAlgorithmException {
+        InputStream in = null;
+        OutputStream out = null;
+        HttpURLConnection conn = null;
+        try {
             conn = (HttpURLConnection) url.openConnection();
             conn.setDoOutput(true);
             conn.setUseCaches(false);
@@ -353,4 +552,21 @@ public class FileHelper {
         saveMetadata(meta, docIPK, digest, file);
     }
 
+    private static class ChunkedUpload {
+        private final String location;
+        private final int chunkSize;
+        private final Set<Integer> receivedChunks = new HashSet<>();
+
+        ChunkedUpload(String location, JsonObject session) {
+            this.location = location;
+            this.chunkSize = session.getInt("chunkSize");
+            JsonArray chunks = session.getJsonArray("receivedChunks");
+            if (chunks != null) {
+                for (int i = 0; i < chunks.size(); i++) {
+                    receivedChunks.add(chunks.getInt(i));
+                }
+            }
+        }
+    }
+
 }
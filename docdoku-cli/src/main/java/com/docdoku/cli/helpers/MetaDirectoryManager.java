@@ -39,6 +39,8 @@ public class MetaDirectoryManager {
     private static final String ID_PROP = "id";
     private static final String LAST_MODIFIED_DATE_PROP = "lastModifiedDate";
     private static final String DIGEST_PROP = "digest";
+    private static final String UPLOAD_SESSION_PROP = "uploadSession";
+    private static final String UPLOAD_SESSION_FILE_PROP = "uploadSessionFile";
 
     public MetaDirectoryManager(File workingDirectory) throws IOException {
         this.metaDirectory=new File(workingDirectory,META_DIRECTORY_NAME);
@@ -102,6 +104,28 @@ public class MetaDirectoryManager {
         saveIndex();
     }
 
+    public void setUploadSession(String filePath, String uploadSessionURL, String fileVersion) throws IOException {
+        indexProps.setProperty(filePath + "." + UPLOAD_SESSION_PROP, uploadSessionURL);
+        indexProps.setProperty(filePath + "." + UPLOAD_SESSION_FILE_PROP, fileVersion);
+        saveIndex();
+    }
+
+    public void removeUploadSession(String filePath) throws IOException {
+        indexProps.remove(filePath + "." + UPLOAD_SESSION_PROP);
+        indexProps.remove(filePath + "." + UPLOAD_SESSION_FILE_PROP);
+        saveIndex();
+    }
+
+    /**
+     * Returns the url of the upload in progress of a file, if it has not been modified since.
+     *
+     * @param fileVersion the date, size and digest of the file, as recorded with the upload
+     */
+    public String getUploadSession(String filePath, String fileVersion){
+        String uploadedFileVersion = indexProps.getProperty(filePath + "." + UPLOAD_SESSION_FILE_PROP);
+        return fileVersion.equals(uploadedFileVersion) ? indexProps.getProperty(filePath + "." + UPLOAD_SESSION_PROP) : null;
+    }
+
     public long getLastModifiedDate(String filePath){
         return Long.parseLong(indexProps.getProperty(filePath + "." + LAST_MODIFIED_DATE_PROP,"0"));
     }
@@ -130,6 +154,8 @@ public class MetaDirectoryManager {
         indexProps.remove(filePath + "." + LAST_MODIFIED_DATE_PROP);
         indexProps.remove(filePath + "." + DIGEST_PROP);
         indexProps.remove(filePath + "." + WORKSPACE_PROP);
+        indexProps.remove(filePath + "." + UPLOAD_SESSION_PROP);
+        indexProps.remove(filePath + "." + UPLOAD_SESSION_FILE_PROP);
         saveIndex();
     }
 
@@ -43,7 +43,7 @@ import java.util.Date;
 @Table(name="BINARYRESOURCE")
 @Inheritance()
 @NamedQueries ({
-        @NamedQuery(name="BinaryResource.diskUsageInPath", query = "SELECT sum(br.contentLength) FROM BinaryResource br WHERE br.fullName like :path")
+        @NamedQuery(name="BinaryResource.findContentLengthsInPath", query = "SELECT br.fullName, br.contentLength FROM BinaryResource br WHERE br.fullName like :path")
 })
 @Entity
 public class BinaryResource implements Serializable, Comparable<BinaryResource>{
@@ -0,0 +1,142 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.common;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * An export of the files of a product structure, built in the vault to be downloaded later.
+ *
+ * A job interrupted by a restart of the server is started again, its archive being rebuilt.
+ */
+public class ExportJob implements Serializable {
+
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    private String id;
+    private String workspaceId;
+    private String configurationItemId;
+    private String configSpecType;
+    private String login;
+    private boolean exportNativeCADFiles;
+    private boolean exportDocumentLinks;
+    private boolean deduplicate;
+    private Status status = Status.PENDING;
+    private int writtenEntries;
+    private long size;
+    private Date creationDate;
+    private Date completionDate;
+
+    public ExportJob() {
+    }
+
+    public ExportJob(String id, String workspaceId, String configurationItemId, String configSpecType, String login,
+                     boolean exportNativeCADFiles, boolean exportDocumentLinks, boolean deduplicate, Date creationDate) {
+        this.id = id;
+        this.workspaceId = workspaceId;
+        this.configurationItemId = configurationItemId;
+        this.configSpecType = configSpecType;
+        this.login = login;
+        this.exportNativeCADFiles = exportNativeCADFiles;
+        this.exportDocumentLinks = exportDocumentLinks;
+        this.deduplicate = deduplicate;
+        this.creationDate = creationDate;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public String getConfigurationItemId() {
+        return configurationItemId;
+    }
+
+    public String getConfigSpecType() {
+        return configSpecType;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public boolean isExportNativeCADFiles() {
+        return exportNativeCADFiles;
+    }
+
+    public boolean isExportDocumentLinks() {
+        return exportDocumentLinks;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getWrittenEntries() {
+        return writtenEntries;
+    }
+
+    public void setWrittenEntries(int writtenEntries) {
+        this.writtenEntries = writtenEntries;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public Date getCreationDate() {
+        return creationDate;
+    }
+
+    public Date getCompletionDate() {
+        return completionDate;
+    }
+
+    public void setCompletionDate(Date completionDate) {
+        this.completionDate = completionDate;
+    }
+
+    public String getFileName() {
+        return configurationItemId + "-" + configSpecType + "-export.zip";
+    }
+
+    public boolean isDone() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.common;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The progress of the reindexing of a workspace.
+ *
+ * Documents are indexed first, then parts, in the order of their keys. The checkpoint is updated
+ * with each indexed page and removed once the workspace is done. A checkpoint which has not been
+ * updated for a while belongs to an interrupted reindexing, which can be resumed after the last
+ * indexed page. A pending checkpoint, never updated, stands for a reindexing to be started by the
+ * next resume.
+ */
+@Table(name = "INDEXERCHECKPOINT")
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "IndexerCheckpoint.findAll", query = "SELECT c FROM IndexerCheckpoint c ORDER BY c.workspaceId"),
+        @NamedQuery(name = "IndexerCheckpoint.findStale", query = "SELECT c FROM IndexerCheckpoint c WHERE c.updateDate IS NULL OR c.updateDate < :date ORDER BY c.workspaceId"),
+        @NamedQuery(name = "IndexerCheckpoint.claim", query = "UPDATE IndexerCheckpoint c SET c.updateDate = :now WHERE c.workspaceId = :workspaceId AND (c.updateDate IS NULL OR c.updateDate < :date)")
+})
+public class IndexerCheckpoint implements Serializable {
+
+    @Id
+    private String workspaceId;
+
+    @Enumerated(EnumType.STRING)
+    private IndexerQueueEntry.EntityType entityType;
+
+    // Document master id or part number of the last indexed entity, null if none yet
+    private String lastEntityId;
+
+    private long indexedRevisions;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updateDate;
+
+    public IndexerCheckpoint() {
+    }
+
+    public IndexerCheckpoint(String workspaceId) {
+        this(workspaceId, true);
+    }
+
+    public IndexerCheckpoint(String workspaceId, boolean started) {
+        this.workspaceId = workspaceId;
+        this.entityType = IndexerQueueEntry.EntityType.DOCUMENT;
+        this.updateDate = started ? new Date() : null;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public IndexerQueueEntry.EntityType getEntityType() {
+        return entityType;
+    }
+
+    public String getLastEntityId() {
+        return lastEntityId;
+    }
+
+    public long getIndexedRevisions() {
+        return indexedRevisions;
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+
+    /**
+     * Starts the reindexing over, from the first document.
+     */
+    public void reset() {
+        this.entityType = IndexerQueueEntry.EntityType.DOCUMENT;
+        this.lastEntityId = null;
+        this.indexedRevisions = 0;
+        this.updateDate = new Date();
+    }
+
+    /**
+     * Records an indexed page, ending with the given entity.
+     */
+    public void advance(IndexerQueueEntry.EntityType entityType, String lastEntityId, int indexedRevisions) {
+        this.entityType = entityType;
+        this.lastEntityId = lastEntityId;
+        this.indexedRevisions += indexedRevisions;
+        this.updateDate = new Date();
+    }
+}
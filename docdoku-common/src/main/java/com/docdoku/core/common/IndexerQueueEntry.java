@@ -0,0 +1,108 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.common;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A pending update of the search index, for a document or part revision.
+ *
+ * Entries are written in the transaction of the change they reflect and processed afterwards, so
+ * they survive a restart and are never processed before this change is committed. Several entries
+ * may exist for the same revision, they are processed once.
+ */
+@Table(name = "INDEXERQUEUEENTRY")
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "IndexerQueueEntry.findOldest", query = "SELECT e FROM IndexerQueueEntry e ORDER BY e.id"),
+        @NamedQuery(name = "IndexerQueueEntry.count", query = "SELECT COUNT(e) FROM IndexerQueueEntry e"),
+        @NamedQuery(name = "IndexerQueueEntry.findOldestEnqueueDate", query = "SELECT MIN(e.enqueueDate) FROM IndexerQueueEntry e"),
+        @NamedQuery(name = "IndexerQueueEntry.removeProcessed", query = "DELETE FROM IndexerQueueEntry e WHERE e.entityType = :entityType AND e.workspaceId = :workspaceId AND e.entityId = :entityId AND e.version = :version AND e.id <= :id"),
+        @NamedQuery(name = "IndexerQueueEntry.countByWorkspace", query = "SELECT e.workspaceId, COUNT(e) AS entries, MAX(e.id) FROM IndexerQueueEntry e GROUP BY e.workspaceId ORDER BY entries DESC"),
+        @NamedQuery(name = "IndexerQueueEntry.removeByWorkspace", query = "DELETE FROM IndexerQueueEntry e WHERE e.workspaceId = :workspaceId AND e.id <= :id")
+})
+public class IndexerQueueEntry implements Serializable {
+
+    public enum EntityType {
+        DOCUMENT, PART
+    }
+
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    private long id;
+
+    @Enumerated(EnumType.STRING)
+    private EntityType entityType;
+
+    private String workspaceId;
+
+    // Document master id or part number
+    private String entityId;
+
+    private String version;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date enqueueDate;
+
+    public IndexerQueueEntry() {
+    }
+
+    public IndexerQueueEntry(EntityType entityType, String workspaceId, String entityId, String version) {
+        this.entityType = entityType;
+        this.workspaceId = workspaceId;
+        this.entityId = entityId;
+        this.version = version;
+        this.enqueueDate = new Date();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Date getEnqueueDate() {
+        return enqueueDate;
+    }
+
+    /**
+     * Entries having the same coalescing key update the same indexed revision.
+     */
+    public String getCoalescingKey() {
+        return entityType + "/" + workspaceId + "/" + entityId + "/" + version;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.common;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The number of bytes used in the vault by the binary resources of a workspace, for one holder
+ * type (documents, parts, document-templates...).
+ *
+ * The counters are updated in the same transaction as the binary resources they account for, so
+ * that reading the usage of a workspace does not scan the <code>BinaryResource</code> table. They
+ * are rebuilt from the binary resources by the reconcile job, should they drift.
+ *
+ * A counter is created for each of the {@link #HOLDER_TYPES} along with its workspace, so that
+ * concurrent uploads only ever update it.
+ */
+@Table(name = "STORAGEUSAGE")
+@javax.persistence.IdClass(com.docdoku.core.common.StorageUsageKey.class)
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "StorageUsage.findInWorkspace", query = "SELECT u FROM StorageUsage u WHERE u.workspaceId = :workspaceId"),
+        @NamedQuery(name = "StorageUsage.sumInWorkspace", query = "SELECT sum(u.bytes) FROM StorageUsage u WHERE u.workspaceId = :workspaceId"),
+        @NamedQuery(name = "StorageUsage.sumInWorkspaceForHolderType", query = "SELECT sum(u.bytes) FROM StorageUsage u WHERE u.workspaceId = :workspaceId AND u.holderType = :holderType"),
+        @NamedQuery(name = "StorageUsage.add", query = "UPDATE StorageUsage u SET u.bytes = u.bytes + :delta, u.updateDate = :updateDate WHERE u.workspaceId = :workspaceId AND u.holderType = :holderType"),
+        @NamedQuery(name = "StorageUsage.removeInWorkspace", query = "DELETE FROM StorageUsage u WHERE u.workspaceId = :workspaceId")
+})
+public class StorageUsage implements Serializable {
+
+    public static final String[] HOLDER_TYPES = {"documents", "document-templates", "parts", "part-templates", "product-instances"};
+
+    @Id
+    private String workspaceId;
+
+    @Id
+    private String holderType;
+
+    private long bytes;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updateDate;
+
+    public StorageUsage() {
+    }
+
+    public StorageUsage(String workspaceId, String holderType, long bytes) {
+        this.workspaceId = workspaceId;
+        this.holderType = holderType;
+        this.bytes = bytes;
+        this.updateDate = new Date();
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public String getHolderType() {
+        return holderType;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+        this.updateDate = new Date();
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+
+    public StorageUsageKey getKey() {
+        return new StorageUsageKey(workspaceId, holderType);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.common;
+
+import java.io.Serializable;
+
+/**
+ * Identity class of {@link StorageUsage} objects.
+ */
+public class StorageUsageKey implements Serializable {
+
+    private String workspaceId;
+    private String holderType;
+
+    public StorageUsageKey() {
+    }
+
+    public StorageUsageKey(String pWorkspaceId, String pHolderType) {
+        workspaceId = pWorkspaceId;
+        holderType = pHolderType;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        hash = 31 * hash + workspaceId.hashCode();
+        hash = 31 * hash + holderType.hashCode();
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object pObj) {
+        if (this == pObj) {
+            return true;
+        }
+        if (!(pObj instanceof StorageUsageKey)) {
+            return false;
+        }
+        StorageUsageKey key = (StorageUsageKey) pObj;
+        return key.holderType.equals(holderType) && key.workspaceId.equals(workspaceId);
+    }
+
+    @Override
+    public String toString() {
+        return workspaceId + "-" + holderType;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public void setWorkspaceId(String pWorkspaceId) {
+        workspaceId = pWorkspaceId;
+    }
+
+    public String getHolderType() {
+        return holderType;
+    }
+
+    public void setHolderType(String pHolderType) {
+        holderType = pHolderType;
+    }
+}
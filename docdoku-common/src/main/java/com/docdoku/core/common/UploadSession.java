@@ -0,0 +1,108 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.common;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * A chunked upload of a binary resource, in progress.
+ *
+ * The content is split in chunks of <code>chunkSize</code> bytes, the last one being shorter.
+ * Chunks may be sent in any order, concurrently, and sent again after a failure. Once all of them
+ * have been received, the upload can be completed.
+ */
+public class UploadSession implements Serializable {
+
+    private String id;
+    private String binaryResourceFullName;
+    private String login;
+    private long size;
+    private int chunkSize;
+    private Date creationDate;
+    private SortedSet<Integer> receivedChunks = new TreeSet<>();
+
+    public UploadSession() {
+    }
+
+    public UploadSession(String id, String binaryResourceFullName, String login, long size, int chunkSize, Date creationDate) {
+        this.id = id;
+        this.binaryResourceFullName = binaryResourceFullName;
+        this.login = login;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.creationDate = creationDate;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getBinaryResourceFullName() {
+        return binaryResourceFullName;
+    }
+
+    public String getFileName() {
+        return binaryResourceFullName.substring(binaryResourceFullName.lastIndexOf('/') + 1);
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public Date getCreationDate() {
+        return creationDate;
+    }
+
+    public SortedSet<Integer> getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(SortedSet<Integer> receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+
+    public int getChunkCount() {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    public long getChunkOffset(int index) {
+        return (long) index * chunkSize;
+    }
+
+    public long getChunkLength(int index) {
+        return Math.min(chunkSize, size - getChunkOffset(index));
+    }
+
+    public boolean isComplete() {
+        return receivedChunks.size() == getChunkCount();
+    }
+}
@@ -40,4 +40,13 @@ public abstract class PSFilter implements Serializable{
     }
     public abstract List<PartIteration> filter(PartMaster partMaster);
     public abstract List<PartLink> filter(List<PartLink> path);
+
+    /**
+     * Identifies the structures this filter resolves, so they can be shared between calls.
+     *
+     * @return a key unique among filters, or null if the resolved structures must not be cached
+     */
+    public String getCacheKey() {
+        return null;
+    }
 }
\ No newline at end of file
@@ -33,7 +33,8 @@ import java.util.List;
 @Entity
 @NamedQueries({
         @NamedQuery(name="pathDataMaster.findByPathIdAndProductInstanceIteration", query="SELECT p FROM PathDataMaster p JOIN ProductInstanceIteration l WHERE p member of l.pathDataMasterList and p.id = :pathId and l = :productInstanceIteration"),
-        @NamedQuery(name="pathDataMaster.findByPathAndProductInstanceIteration", query="SELECT p FROM PathDataMaster p JOIN ProductInstanceIteration l WHERE p member of l.pathDataMasterList and p.path = :path and l = :productInstanceIteration")
+        @NamedQuery(name="pathDataMaster.findByPathAndProductInstanceIteration", query="SELECT p FROM PathDataMaster p JOIN ProductInstanceIteration l WHERE p member of l.pathDataMasterList and p.path = :path and l = :productInstanceIteration"),
+        @NamedQuery(name="pathDataMaster.findByProductInstanceIterationFetchIterations", query="SELECT DISTINCT p FROM ProductInstanceIteration l JOIN l.pathDataMasterList p LEFT JOIN FETCH p.pathDataIterations WHERE l = :productInstanceIteration")
 })
 public class PathDataMaster implements Serializable{
 
@@ -43,7 +43,8 @@ import java.util.List;
 @IdClass(com.docdoku.core.document.DocumentMasterKey.class)
 @Entity
 @NamedQueries ({
-    @NamedQuery(name="DocumentMaster.findByWorkspace", query="SELECT dm FROM DocumentMaster dm WHERE dm.workspace.id = :workspaceId ORDER BY dm.creationDate DESC")
+    @NamedQuery(name="DocumentMaster.findByWorkspace", query="SELECT dm FROM DocumentMaster dm WHERE dm.workspace.id = :workspaceId ORDER BY dm.creationDate DESC"),
+    @NamedQuery(name="DocumentMaster.findByWorkspaceFrom", query="SELECT dm FROM DocumentMaster dm WHERE dm.workspace.id = :workspaceId AND dm.id > :id ORDER BY dm.id")
 })
 public class DocumentMaster implements Serializable, Comparable<DocumentMaster> {
 
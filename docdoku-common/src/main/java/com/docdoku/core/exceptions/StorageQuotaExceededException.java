@@ -0,0 +1,44 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.exceptions;
+
+/**
+ * Thrown when storing a file would take a workspace over its storage quota.
+ */
+public class StorageQuotaExceededException extends StorageException {
+
+    private final String workspaceId;
+    private final long quota;
+
+    public StorageQuotaExceededException(String workspaceId, long quota) {
+        super("Storage quota of " + quota + " bytes exceeded in workspace " + workspaceId);
+        this.workspaceId = workspaceId;
+        this.quota = quota;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public long getQuota() {
+        return quota;
+    }
+}
@@ -24,14 +24,42 @@ import javax.persistence.*;
 import java.io.Serializable;
 import java.util.Date;
 
+/**
+ * The conversion of the native CAD file of a part iteration to its geometries.
+ *
+ * Conversions are queued jobs: a pending conversion waits in the queue until its start date is set,
+ * the queued ones with the highest priority being started first. A failed conversion is queued
+ * again after a delay, until its maximum number of attempts is reached.
+ */
 @Entity
 @IdClass(PartIterationKey.class)
+@NamedQueries({
+        @NamedQuery(name = "Conversion.findQueued", query = "SELECT c FROM Conversion c WHERE c.pending = true AND c.startDate IS NULL AND (c.nextAttemptDate IS NULL OR c.nextAttemptDate <= :now) ORDER BY c.priority DESC, c.queueDate ASC"),
+        @NamedQuery(name = "Conversion.findQueuedForOtherConverters", query = "SELECT c FROM Conversion c WHERE c.pending = true AND c.startDate IS NULL AND (c.nextAttemptDate IS NULL OR c.nextAttemptDate <= :now) AND (c.converter IS NULL OR c.converter NOT IN :converters) ORDER BY c.priority DESC, c.queueDate ASC"),
+        @NamedQuery(name = "Conversion.start", query = "UPDATE Conversion c SET c.startDate = :now, c.attempts = c.attempts + 1, c.nextAttemptDate = NULL, c.converter = :converter, c.server = :server WHERE c.partIteration = :partIteration AND c.pending = true AND c.startDate IS NULL"),
+        @NamedQuery(name = "Conversion.requeueInterrupted", query = "UPDATE Conversion c SET c.startDate = NULL WHERE c.pending = true AND c.startDate IS NOT NULL AND (c.server = :server OR c.server IS NULL)"),
+        @NamedQuery(name = "Conversion.countQueued", query = "SELECT count(c) FROM Conversion c WHERE c.pending = true AND c.startDate IS NULL"),
+        @NamedQuery(name = "Conversion.findByWorkspace", query = "SELECT c FROM Conversion c WHERE c.partIteration.partRevision.partMasterWorkspaceId = :workspaceId AND (c.pending = true OR c.endDate >= :since) ORDER BY c.queueDate DESC")
+})
 public class Conversion implements Serializable {
 
+    /**
+     * Conversions of files checked in by users, started before the bulk ones.
+     */
+    public static final int PRIORITY_INTERACTIVE = 10;
+
+    /**
+     * Conversions of files imported in bulk, from the command line client for instance.
+     */
+    public static final int PRIORITY_BULK = 0;
+
     @Id
     @OneToOne(optional = false, fetch = FetchType.EAGER)
     private PartIteration partIteration;
 
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date queueDate;
+
     @Temporal(TemporalType.TIMESTAMP)
     private Date startDate;
 
@@ -42,11 +70,34 @@ public class Conversion implements Serializable {
 
     private boolean succeed;
 
+    private boolean canceled;
+
+    private int priority;
+
+    private int attempts;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date nextAttemptDate;
+
+    // Selected once queued, as some converters may run less conversions at once than others
+    private String converter;
+
+    // Server running the conversion
+    private String server;
+
+    @Column(length = 1024)
+    private String errorMessage;
+
     public Conversion() {
     }
 
     public Conversion(PartIteration partIteration) {
-        this(new Date(), null, true, false, partIteration);
+        this(partIteration, PRIORITY_INTERACTIVE);
+    }
+
+    public Conversion(PartIteration partIteration, int priority) {
+        this.partIteration = partIteration;
+        queue(priority);
     }
 
     public Conversion(Date startDate, Date endDate, boolean pending, boolean succeed, PartIteration partIteration) {
@@ -57,6 +108,62 @@ public class Conversion implements Serializable {
         this.partIteration = partIteration;
     }
 
+    /**
+     * Puts the conversion back in the queue as a new one, a running conversion being superseded.
+     */
+    public void queue(int pPriority) {
+        queueDate = new Date();
+        startDate = null;
+        endDate = null;
+        pending = true;
+        succeed = false;
+        canceled = false;
+        priority = pPriority;
+        attempts = 0;
+        nextAttemptDate = null;
+        converter = null;
+        server = null;
+        errorMessage = null;
+    }
+
+    public boolean isQueued() {
+        return pending && startDate == null;
+    }
+
+    public boolean isRunning() {
+        return pending && startDate != null;
+    }
+
+    /**
+     * @return the time spent in the queue in milliseconds, up to now for a queued conversion
+     */
+    public long getWaitingTime() {
+        if (queueDate == null) {
+            return 0;
+        }
+        Date end = startDate != null ? startDate : endDate != null ? endDate : new Date();
+        return Math.max(0, end.getTime() - queueDate.getTime());
+    }
+
+    /**
+     * @return the time spent converting in milliseconds, up to now for a running conversion
+     */
+    public long getRunningTime() {
+        if (startDate == null) {
+            return 0;
+        }
+        Date end = endDate != null ? endDate : new Date();
+        return Math.max(0, end.getTime() - startDate.getTime());
+    }
+
+    public Date getQueueDate() {
+        return queueDate;
+    }
+
+    public void setQueueDate(Date queueDate) {
+        this.queueDate = queueDate;
+    }
+
     public Date getStartDate() {
         return startDate;
     }
@@ -96,4 +203,60 @@ public class Conversion implements Serializable {
     public void setEndDate(Date endDate) {
         this.endDate = endDate;
     }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    public void setCanceled(boolean canceled) {
+        this.canceled = canceled;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public void setNextAttemptDate(Date nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    public String getConverter() {
+        return converter;
+    }
+
+    public void setConverter(String converter) {
+        this.converter = converter;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
 }
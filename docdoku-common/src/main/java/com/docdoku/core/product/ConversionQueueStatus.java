@@ -0,0 +1,71 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.core.product;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * The state of the queue of the CAD conversions: the number of conversions waiting, those running
+ * on each converter with its limit, and the recent conversions of a workspace.
+ */
+public class ConversionQueueStatus implements Serializable {
+
+    private long queued;
+    private Map<String, Integer> running = new TreeMap<>();
+    private Map<String, Integer> limits = new TreeMap<>();
+    private List<Conversion> conversions = new ArrayList<>();
+
+    public ConversionQueueStatus() {
+    }
+
+    public ConversionQueueStatus(long queued, Map<String, Integer> running, Map<String, Integer> limits, List<Conversion> conversions) {
+        this.queued = queued;
+        this.running.putAll(running);
+        this.limits.putAll(limits);
+        this.conversions = conversions;
+    }
+
+    /**
+     * @return the number of conversions waiting in the queue, in all workspaces
+     */
+    public long getQueued() {
+        return queued;
+    }
+
+    /**
+     * @return the number of conversions running, by converter
+     */
+    public Map<String, Integer> getRunning() {
+        return running;
+    }
+
+    /**
+     * @return the maximum number of conversions running at the same time, by converter
+     */
+    public Map<String, Integer> getLimits() {
+        return limits;
+    }
+
+    public List<Conversion> getConversions() {
+        return conversions;
+    }
+}
@@ -41,6 +41,16 @@ import java.util.Date;
 @Entity
 public class Geometry extends BinaryResource{
 
+    /**
+     * Sub-resource holding the geometry in the binary mesh format, gzip compressed.
+     */
+    public static final String BINARY_MESH_SUB_RESOURCE = "mesh.ddmb.gz";
+
+    /**
+     * Output format requested to download the binary mesh instead of the file itself.
+     */
+    public static final String BINARY_MESH_OUTPUT = "mesh";
+
     /**
      * Starts at 0, smaller is greater.
      */
@@ -57,6 +67,11 @@ public class Geometry extends BinaryResource{
     private double yMax = 0;
     private double zMax = 0;
 
+    /**
+     * Compressed size of the binary mesh, 0 when there is none.
+     */
+    private long binaryMeshLength;
+
     public Geometry() {
     }
     
@@ -130,6 +145,18 @@ public class Geometry extends BinaryResource{
         this.zMax = zMax;
     }
 
+    public long getBinaryMeshLength() {
+        return binaryMeshLength;
+    }
+
+    public void setBinaryMeshLength(long binaryMeshLength) {
+        this.binaryMeshLength = binaryMeshLength;
+    }
+
+    public boolean hasBinaryMesh() {
+        return binaryMeshLength > 0;
+    }
+
     @Override
     public int compareTo(BinaryResource pBinaryResource) {
         if (!(pBinaryResource instanceof Geometry)) {
@@ -46,7 +46,9 @@ import java.util.*;
         @NamedQuery(name="PartIteration.findUsedByAsSubstitute", query="SELECT p FROM PartIteration p JOIN p.components l JOIN l.substitutes s WHERE s.substitute = :partMaster"),
         @NamedQuery(name="PartIteration.findUsedByAsComponent", query="SELECT p FROM PartIteration p JOIN p.components l WHERE l.component = :partMaster"),
         @NamedQuery(name="PartIteration.findDistinctInstanceAttributes", query="SELECT DISTINCT i FROM InstanceAttribute i LEFT JOIN PartIteration p WHERE p.partRevision.partMaster.workspace.id = :workspaceId AND i member of p.instanceAttributes"),
-        @NamedQuery(name="PartIteration.findWhereLOV", query="SELECT p FROM PartIteration p WHERE EXISTS ( SELECT i FROM InstanceAttributeTemplate i, ListOfValuesAttributeTemplate il WHERE i member of p.instanceAttributeTemplates AND i = il AND il.lov.name = :lovName AND il.lov.workspaceId = :workspace_id)")
+        @NamedQuery(name="PartIteration.findWhereLOV", query="SELECT p FROM PartIteration p WHERE EXISTS ( SELECT i FROM InstanceAttributeTemplate i, ListOfValuesAttributeTemplate il WHERE i member of p.instanceAttributeTemplates AND i = il AND il.lov.name = :lovName AND il.lov.workspaceId = :workspace_id)"),
+        @NamedQuery(name="PartIteration.findByPartNumbers", query="SELECT p FROM PartIteration p WHERE p.partRevision.partMasterWorkspaceId = :workspaceId AND p.partRevision.partMasterNumber IN :partNumbers"),
+        @NamedQuery(name="PartIteration.findByPartNumbersFetchComponents", query="SELECT DISTINCT p FROM PartIteration p LEFT JOIN FETCH p.components WHERE p.partRevision.partMasterWorkspaceId = :workspaceId AND p.partRevision.partMasterNumber IN :partNumbers")
 })
 @Entity
 public class PartIteration implements Serializable, FileHolder, Comparable<PartIteration>, Cloneable {
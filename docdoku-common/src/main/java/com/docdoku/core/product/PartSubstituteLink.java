@@ -36,6 +36,7 @@ import java.util.List;
 @Entity
 @NamedQueries({
         @NamedQuery(name="PartSubstituteLink.findBySubstitute",query="SELECT u FROM PartSubstituteLink u WHERE u.substitute.number LIKE :partNumber AND u.substitute.workspace.id = :workspaceId"),
+        @NamedQuery(name="PartSubstituteLink.findByIds",query="SELECT u FROM PartSubstituteLink u WHERE u.id IN :ids"),
 })
 public class PartSubstituteLink implements Serializable, Cloneable, PartLink {
 
@@ -37,7 +37,10 @@ import java.util.List;
 @NamedQueries({
     @NamedQuery(name="PartUsageLink.findByComponent",query="SELECT u FROM PartUsageLink u WHERE u.component.number LIKE :partNumber AND u.component.workspace.id = :workspaceId"),
     @NamedQuery(name="PartUsageLink.getPartOwner",query="SELECT p FROM PartIteration p WHERE :usage MEMBER OF p.components"),
-    @NamedQuery(name="PartUsageLink.findOrphans",query="SELECT p FROM PartUsageLink p WHERE NOT EXISTS (SELECT pi FROM PartIteration pi WHERE p member of pi.components) ")
+    @NamedQuery(name="PartUsageLink.findOrphans",query="SELECT p FROM PartUsageLink p WHERE NOT EXISTS (SELECT pi FROM PartIteration pi WHERE p member of pi.components) "),
+    @NamedQuery(name="PartUsageLink.findByIds",query="SELECT u FROM PartUsageLink u WHERE u.id IN :ids"),
+    @NamedQuery(name="PartUsageLink.findByIdsFetchSubstitutes",query="SELECT DISTINCT u FROM PartUsageLink u LEFT JOIN FETCH u.substitutes WHERE u.id IN :ids"),
+    @NamedQuery(name="PartUsageLink.findByIdsFetchCADInstances",query="SELECT DISTINCT u FROM PartUsageLink u LEFT JOIN FETCH u.cadInstances WHERE u.id IN :ids")
 })
 public class PartUsageLink implements Serializable, Cloneable, PartLink {
 
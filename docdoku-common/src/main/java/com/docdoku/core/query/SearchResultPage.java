@@ -0,0 +1,81 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.query;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A page of search results, with the cursor to fetch the next one.
+ *
+ * The results of a page are the readable ones among the hits of the page, there may be fewer of
+ * them than the requested size even if more pages follow.
+ */
+public class SearchResultPage<T> implements Serializable {
+
+    private List<T> results = new ArrayList<>();
+    private String nextCursor;
+    private long totalHits;
+
+    public SearchResultPage() {
+    }
+
+    public SearchResultPage(List<T> results, String nextCursor, long totalHits) {
+        this.results = results;
+        this.nextCursor = nextCursor;
+        this.totalHits = totalHits;
+    }
+
+    public List<T> getResults() {
+        return results;
+    }
+
+    public void setResults(List<T> results) {
+        this.results = results;
+    }
+
+    /**
+     * @return the cursor of the next page, null if this page is the last one
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the number of hits of the search, before the access rights are checked
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    public void setTotalHits(long totalHits) {
+        this.totalHits = totalHits;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -22,11 +22,14 @@ package com.docdoku.core.security;
 
 import com.docdoku.core.common.User;
 import com.docdoku.core.common.UserGroup;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
 import javax.persistence.*;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This class can be attached to any entity so that an access control
@@ -50,11 +53,14 @@ public class ACL implements Serializable, Cloneable{
     @Id
     private int id;
 
+    // Loaded with one query for all the ACLs read together, as when listing parts
     @OneToMany(cascade=CascadeType.ALL, mappedBy="acl", fetch=FetchType.EAGER)
+    @BatchFetch(BatchFetchType.IN)
     @MapKey(name="principal")
     private Map<User,ACLUserEntry> userEntries=new HashMap<User,ACLUserEntry>();
 
     @OneToMany(cascade=CascadeType.ALL, mappedBy="acl", fetch=FetchType.EAGER)
+    @BatchFetch(BatchFetchType.IN)
     @MapKey(name="principal")
     private Map<UserGroup,ACLUserGroupEntry> groupEntries=new HashMap<UserGroup,ACLUserGroupEntry>();
 
@@ -114,6 +120,46 @@ public class ACL implements Serializable, Cloneable{
         return false;
     }
 
+    /**
+     * Same as {@link #hasReadAccess(User)}, the groups of the user being given by their ids
+     * rather than looked up in the members of each group entry.
+     *
+     * @param userGroupIds ids of the groups the user belongs to, null to look them up
+     */
+    public boolean hasReadAccess(User user, Set<String> userGroupIds){
+        if(userGroupIds==null)
+            return hasReadAccess(user);
+        ACLUserEntry userAccess=userEntries.get(user);
+        if(userAccess!=null)
+            return !userAccess.getPermission().equals(Permission.FORBIDDEN);
+        for(Map.Entry<UserGroup, ACLUserGroupEntry> entry:groupEntries.entrySet()){
+            if(userGroupIds.contains(entry.getKey().getId()) && !entry.getValue().getPermission().equals(Permission.FORBIDDEN)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #hasWriteAccess(User)}, the groups of the user being given by their ids
+     * rather than looked up in the members of each group entry.
+     *
+     * @param userGroupIds ids of the groups the user belongs to, null to look them up
+     */
+    public boolean hasWriteAccess(User user, Set<String> userGroupIds){
+        if(userGroupIds==null)
+            return hasWriteAccess(user);
+        ACLUserEntry userAccess=userEntries.get(user);
+        if(userAccess!=null)
+            return userAccess.getPermission().equals(Permission.FULL_ACCESS);
+        for(Map.Entry<UserGroup, ACLUserGroupEntry> entry:groupEntries.entrySet()){
+            if(userGroupIds.contains(entry.getKey().getId()) && entry.getValue().getPermission().equals(Permission.FULL_ACCESS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void addEntry(User user, Permission perm){
         userEntries.put(user, new ACLUserEntry(this,user,perm));
     }
@@ -0,0 +1,74 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.security;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * A session token revoked before its expiration, by the logout of its session.
+ *
+ * It is kept until the token expires, so that the nodes started meanwhile, or the other nodes of
+ * a cluster, know the revocation too.
+ */
+@Table(name = "REVOKEDSESSIONTOKEN")
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "RevokedSessionToken.findRevokedSince", query = "SELECT t FROM RevokedSessionToken t WHERE t.revokedAt >= :since AND t.expiresAt > :now"),
+        @NamedQuery(name = "RevokedSessionToken.removeExpired", query = "DELETE FROM RevokedSessionToken t WHERE t.expiresAt <= :now")
+})
+public class RevokedSessionToken implements Serializable {
+
+    @Id
+    private String tokenId;
+
+    private String login;
+
+    // In milliseconds since the epoch, like the dates of the token
+    private long revokedAt;
+    private long expiresAt;
+
+    public RevokedSessionToken() {
+    }
+
+    public RevokedSessionToken(SessionToken token, long revokedAt) {
+        this.tokenId = token.getId();
+        this.login = token.getLogin();
+        this.revokedAt = revokedAt;
+        this.expiresAt = token.getExpiresAt();
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public long getRevokedAt() {
+        return revokedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.security;
+
+import java.io.Serializable;
+
+/**
+ * A signed and expiring token identifying an authenticated account.
+ *
+ * The token carries the login and the security group of the account, so it can be verified
+ * without reading the database. Its <code>value</code> is what the client sends back, in the
+ * <code>Authorization: Bearer</code> header.
+ */
+public class SessionToken implements Serializable {
+
+    private String id;
+    private String login;
+    private String groupName;
+    private long issuedAt;
+    private long expiresAt;
+    private String value;
+
+    public SessionToken() {
+    }
+
+    public SessionToken(String id, String login, String groupName, long issuedAt, long expiresAt) {
+        this.id = id;
+        this.login = login;
+        this.groupName = groupName;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.security;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * The time before which the session tokens of an account are no longer valid, set on each change
+ * of its password or of its groups.
+ */
+@Table(name = "SESSIONTOKENVALIDITY")
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "SessionTokenValidity.findChangedSince", query = "SELECT v FROM SessionTokenValidity v WHERE v.validAfter >= :since")
+})
+public class SessionTokenValidity implements Serializable {
+
+    @Id
+    private String login;
+
+    // In milliseconds since the epoch, tokens issued until then are not valid
+    private long validAfter;
+
+    public SessionTokenValidity() {
+    }
+
+    public SessionTokenValidity(String login, long validAfter) {
+        this.login = login;
+        this.validAfter = validAfter;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public long getValidAfter() {
+        return validAfter;
+    }
+
+    public void setValidAfter(long validAfter) {
+        this.validAfter = validAfter;
+    }
+}
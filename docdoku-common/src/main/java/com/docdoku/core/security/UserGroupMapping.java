@@ -41,6 +41,7 @@ public class UserGroupMapping implements java.io.Serializable {
     public static final String REGULAR_USER_ROLE_ID="users";
     public static final String ADMIN_ROLE_ID ="admin";
     public static final String GUEST_PROXY_ROLE_ID ="guest-proxy";
+    public static final String CONVERTER_ROLE_ID ="converter";
 
     public UserGroupMapping() {
     }
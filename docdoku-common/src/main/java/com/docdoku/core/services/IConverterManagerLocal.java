@@ -21,6 +21,9 @@
 package com.docdoku.core.services;
 
 import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.exceptions.*;
+import com.docdoku.core.product.Conversion;
+import com.docdoku.core.product.ConversionQueueStatus;
 import com.docdoku.core.product.PartIterationKey;
 
 /**
@@ -28,5 +31,29 @@ import com.docdoku.core.product.PartIterationKey;
  * @author Florent Garin
  */
 public interface IConverterManagerLocal {
-    void convertCADFileToOBJ(PartIterationKey pPartIPK, BinaryResource cadFile) throws Exception;
+
+    /**
+     * Queues the conversion of a CAD file checked in by a user, with the interactive priority.
+     */
+    void convertCADFileToOBJ(PartIterationKey pPartIPK, BinaryResource cadFile) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException, CreationException;
+
+    /**
+     * Queues the conversion of the native CAD file of the part iteration. The file is read when the
+     * conversion starts, a conversion already running for the part iteration is superseded.
+     *
+     * @param priority {@link Conversion#PRIORITY_INTERACTIVE} or {@link Conversion#PRIORITY_BULK}
+     */
+    void convertCADFileToOBJ(PartIterationKey pPartIPK, BinaryResource cadFile, int priority) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException, CreationException;
+
+    /**
+     * Removes the conversion from the queue, or stops it if it is running.
+     *
+     * @return the conversion, null if there is none
+     */
+    Conversion cancelConversion(PartIterationKey pPartIPK) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException;
+
+    /**
+     * @return the state of the queue, with the pending conversions of the workspace and those ended during the last hours
+     */
+    ConversionQueueStatus getConversionQueueStatus(String workspaceId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException;
 }
@@ -21,9 +21,12 @@
 package com.docdoku.core.services;
 
 import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.ExportJob;
+import com.docdoku.core.common.UploadSession;
 import com.docdoku.core.exceptions.FileNotFoundException;
 import com.docdoku.core.exceptions.StorageException;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
@@ -31,10 +34,14 @@ import java.util.List;
 
 public interface IDataManagerLocal {
     InputStream getBinaryResourceInputStream(BinaryResource binaryResource) throws StorageException;
+    File getBinaryResourceFile(BinaryResource binaryResource) throws StorageException;
     InputStream getBinarySubResourceInputStream(BinaryResource binaryResource, String subResourceVirtualPath) throws StorageException;
     OutputStream getBinaryResourceOutputStream(BinaryResource binaryResource) throws StorageException;
     OutputStream getBinarySubResourceOutputStream(BinaryResource binaryResource, String subResourceVirtualPath) throws StorageException;
     boolean exists(BinaryResource binaryResource, String subResourceVirtualPath) throws StorageException;
+    void moveSubResource(BinaryResource binaryResource, String sourceVirtualPath, String targetVirtualPath) throws StorageException;
+    void deleteSubResource(BinaryResource binaryResource, String subResourceVirtualPath) throws StorageException;
+    List<String> getSubResourceNames(BinaryResource binaryResource) throws StorageException;
     void copyData(BinaryResource source, BinaryResource destination) throws StorageException;
     void deleteData(BinaryResource binaryResource) throws StorageException;
     void renameFile(BinaryResource binaryResource, String pNewName) throws StorageException, FileNotFoundException;
@@ -42,4 +49,18 @@ public interface IDataManagerLocal {
     String getExternalStorageURI(BinaryResource binaryResource);
     String getShortenExternalStorageURI(BinaryResource binaryResource);
     void deleteWorkspaceFolder(String workspaceId, List<BinaryResource> binaryResourcesInWorkspace) throws StorageException;
+    UploadSession createUploadSession(String binaryResourceFullName, String login, long size, int chunkSize) throws StorageException;
+    UploadSession getUploadSession(String uploadId) throws StorageException;
+    boolean writeUploadChunk(UploadSession uploadSession, int index, InputStream content, String checksum) throws StorageException;
+    long completeUploadSession(UploadSession uploadSession, BinaryResource binaryResource) throws StorageException;
+    void deleteUploadSession(String uploadId);
+    String getContentHash(BinaryResource binaryResource) throws StorageException;
+    void checkStorageQuota(String binaryResourceFullName, long size) throws StorageException;
+    ExportJob createExportJob(ExportJob exportJob) throws StorageException;
+    ExportJob getExportJob(String exportJobId) throws StorageException;
+    void updateExportJob(ExportJob exportJob) throws StorageException;
+    OutputStream getExportJobOutputStream(String exportJobId) throws StorageException;
+    long completeExportJobArchive(String exportJobId) throws StorageException;
+    File getExportJobFile(String exportJobId);
+    void deleteExportJob(String exportJobId);
 }
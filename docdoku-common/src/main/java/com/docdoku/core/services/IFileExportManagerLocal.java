@@ -0,0 +1,67 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.services;
+
+import com.docdoku.core.common.ExportJob;
+import com.docdoku.core.exceptions.*;
+import com.docdoku.core.product.ConfigurationItemKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Exports the files of product structures as zip archives.
+ */
+public interface IFileExportManagerLocal {
+
+    /**
+     * Writes the archive of the files of the product structure to the stream.
+     *
+     * @param configSpecType "wip", "latest", "released", a baseline id, or "pi-" followed by a serial number
+     */
+    void exportFiles(ConfigurationItemKey ciKey, String configSpecType, boolean exportNativeCADFiles, boolean exportDocumentLinks, boolean deduplicate, OutputStream outputStream) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, ConfigurationItemNotFoundException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, NotAllowedException, EntityConstraintException, PartMasterNotFoundException, IOException;
+
+    /**
+     * Starts building the archive in the vault, to be downloaded once the job is completed.
+     */
+    ExportJob createExportJob(ConfigurationItemKey ciKey, String configSpecType, boolean exportNativeCADFiles, boolean exportDocumentLinks, boolean deduplicate) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, StorageException;
+
+    /**
+     * @return the job, null if the caller has no such job. An interrupted job is started again.
+     */
+    ExportJob getExportJob(String workspaceId, String exportJobId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, StorageException;
+
+    /**
+     * @return the archive of a completed job of the caller, null if there is none
+     */
+    File getExportJobFile(String workspaceId, String exportJobId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, StorageException;
+
+    /**
+     * Removes a job of the caller with its archive.
+     */
+    void deleteExportJob(String workspaceId, String exportJobId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, StorageException;
+
+    /**
+     * Builds the archive of the job, in the background. Used to start and restart jobs.
+     */
+    void runExportJob(String exportJobId);
+}
@@ -34,11 +34,13 @@ import com.docdoku.core.product.*;
 import com.docdoku.core.query.PartSearchQuery;
 import com.docdoku.core.query.Query;
 import com.docdoku.core.query.QueryResultRow;
+import com.docdoku.core.query.SearchResultPage;
 import com.docdoku.core.security.ACLUserEntry;
 import com.docdoku.core.security.ACLUserGroupEntry;
 import com.docdoku.core.sharing.SharedEntityKey;
 import com.docdoku.core.sharing.SharedPart;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -173,6 +175,8 @@ public interface IProductManagerLocal {
 
     List<PartRevision> searchPartRevisions(PartSearchQuery partSearchQuery) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, ESServerException;
 
+    SearchResultPage<PartRevision> searchPartRevisions(PartSearchQuery partSearchQuery, String cursor, int pageSize) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, ESServerException;
+
     List<ProductBaseline> findBaselinesWherePartRevisionHasIterations(PartRevisionKey partRevisionKey) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, PartRevisionNotFoundException;
 
 
@@ -222,6 +226,12 @@ public interface IProductManagerLocal {
 
     void endConversion(PartIterationKey partIterationKey, boolean succeed) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException;
 
+    Conversion queueConversion(PartIterationKey partIterationKey, int priority) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException, CreationException;
+
+    Conversion cancelConversion(PartIterationKey partIterationKey) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException;
+
+    List<Conversion> getConversions(String workspaceId, Date since) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException;
+
     Import createImport(String workspaceId, String fileName) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, CreationException;
     List<Import> getImports(String workspaceId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException;
     Import getImport(String workspaceId, String id) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, AccessRightException;
@@ -241,6 +251,13 @@ public interface IProductManagerLocal {
 
     List<ModificationNotification> getModificationNotifications(PartIterationKey pPartIPK) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException;
 
+    /**
+     * Gets the notifications of several iterations of the workspace at once, as listings do.
+     *
+     * @return the notifications by iteration, none for the revisions the user cannot read
+     */
+    Map<PartIterationKey, List<ModificationNotification>> getModificationNotifications(String workspaceId, Collection<PartIterationKey> pPartIPKs) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException;
+
     void createModificationNotifications(PartIteration modifiedPartIteration) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException;
 
     void removeModificationNotificationsOnIteration(PartIterationKey pPartIPK);
@@ -289,6 +306,28 @@ public interface IProductManagerLocal {
 
     List<QueryResultRow> filterProductBreakdownStructure(String workspaceId, Query query) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, ConfigurationItemNotFoundException, NotAllowedException, PartMasterNotFoundException, EntityConstraintException;
 
+    /**
+     * Runs a query, its contexts aside, and returns a page of its rows, in the order of the part
+     * revision keys. Each page is read in a transaction of its own, the rows being written by the
+     * caller once it is over.
+     *
+     * @param cursor   The cursor of the page, null for the first one
+     * @param pageSize The number of part revisions read for the page
+     */
+    SearchResultPage<QueryResultRow> runQuery(String workspaceId, Query query, String cursor, int pageSize) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException;
+
+    /**
+     * Runs a query restricted to its contexts, and returns a page of the rows of their product
+     * structures matching it. Each page walks a part of the structures in a transaction of its own.
+     *
+     * The total hits of a page are the rows walked, matching the query or not: contexts without any
+     * of them do not restrict the query.
+     *
+     * @param cursor   The cursor of the page, null for the first one
+     * @param pageSize The number of paths walked for the page
+     */
+    SearchResultPage<QueryResultRow> runQueryInContexts(String workspaceId, Query query, String cursor, int pageSize) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, ConfigurationItemNotFoundException, NotAllowedException, PartMasterNotFoundException, EntityConstraintException;
+
     Query loadQuery(String workspaceId, int queryId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException;
 
     Map<String, Set<BinaryResource>> getBinariesInTree(Integer baselineId, String workspaceId, ConfigurationItemKey configurationItemKey, PSFilter psFilter, boolean exportNativeCADFiles, boolean exportDocumentLinks) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, ConfigurationItemNotFoundException, NotAllowedException, EntityConstraintException, PartMasterNotFoundException;
@@ -0,0 +1,48 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.core.services;
+
+import com.docdoku.core.security.SessionToken;
+
+/**
+ * Issues and verifies the session tokens of the REST API.
+ */
+public interface ISessionTokenManagerLocal {
+
+    /**
+     * Issues a token for the caller.
+     */
+    SessionToken createToken();
+
+    /**
+     * Checks the signature, the expiration and the revocation of a token, without any database access.
+     *
+     * @return the token, null if it is not valid
+     */
+    SessionToken verifyToken(String pValue);
+
+    void revokeToken(String pValue);
+
+    /**
+     * @return a number which changes each time the account of the given login is modified
+     */
+    long getAccountRevision(String pLogin);
+}
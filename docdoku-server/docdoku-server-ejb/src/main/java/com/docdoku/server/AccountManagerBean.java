@@ -30,11 +30,13 @@ import com.docdoku.server.dao.AccountDAO;
 import com.docdoku.server.dao.GCMAccountDAO;
 import com.docdoku.server.dao.OrganizationDAO;
 import com.docdoku.server.dao.UserDAO;
+import com.docdoku.server.events.AccountChangeEvent;
 
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.RolesAllowed;
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.jws.WebService;
 import javax.persistence.EntityManager;
@@ -58,6 +60,9 @@ public class AccountManagerBean implements IAccountManagerLocal, IAccountManager
     @Inject
     private IMailerLocal mailer;
 
+    @Inject
+    private Event<AccountChangeEvent> accountChangeEvent;
+
     private static final Logger LOGGER = Logger.getLogger(AccountManagerBean.class.getName());
 
     public AccountManagerBean() {
@@ -89,6 +94,7 @@ public class AccountManagerBean implements IAccountManagerLocal, IAccountManager
         if (pPassword != null) {
             accountDAO.updateCredential(account.getLogin(), pPassword);
         }
+        accountChangeEvent.fire(new AccountChangeEvent(account.getLogin(), pPassword != null));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -34,7 +34,7 @@ import javax.ejb.Stateless;
  * @author morgan on 07/09/15.
  */
 
-@DeclareRoles({UserGroupMapping.GUEST_PROXY_ROLE_ID, UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
+@DeclareRoles({UserGroupMapping.GUEST_PROXY_ROLE_ID, UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID, UserGroupMapping.CONVERTER_ROLE_ID})
 @Local(IContextManagerLocal.class)
 @Stateless(name = "ContextManagerBean")
 public class ContextManagerBean implements IContextManagerLocal{
@@ -42,7 +42,7 @@ public class ContextManagerBean implements IContextManagerLocal{
     @Resource
     private SessionContext ctx;
 
-    @RolesAllowed({UserGroupMapping.GUEST_PROXY_ROLE_ID, UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
+    @RolesAllowed({UserGroupMapping.GUEST_PROXY_ROLE_ID, UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID, UserGroupMapping.CONVERTER_ROLE_ID})
     @Override
     public boolean isCallerInRole(String role) {
         return ctx.isCallerInRole(role);
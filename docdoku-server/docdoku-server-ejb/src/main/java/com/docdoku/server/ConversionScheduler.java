@@ -0,0 +1,280 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server;
+
+import com.docdoku.core.product.Conversion;
+import com.docdoku.core.product.PartIterationKey;
+import com.docdoku.core.security.UserGroupMapping;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.annotation.security.DeclareRoles;
+import javax.annotation.security.RunAs;
+import javax.ejb.*;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts the queued CAD conversions.
+ *
+ * Queued conversions are started by priority then in the order they were queued, as long as their
+ * converter runs less conversions than its limit: the conversions of a busy converter are left out
+ * of the queue reads, so that they do not hold back the files of the others. The queue is looked at
+ * when a conversion is queued or ends, and every few seconds for the conversions waiting for their
+ * next attempt.
+ *
+ * Conversions run in the converter role, whoever queued them. The conversions running in this
+ * server are tracked so that they can be stopped. Those which were running when the server stopped
+ * are queued again at startup.
+ */
+@DeclareRoles(UserGroupMapping.CONVERTER_ROLE_ID)
+@RunAs(UserGroupMapping.CONVERTER_ROLE_ID)
+@Singleton(name = "ConversionScheduler")
+@Startup
+@Lock(LockType.READ)
+public class ConversionScheduler {
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final Logger LOGGER = Logger.getLogger(ConversionScheduler.class.getName());
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Inject
+    private ConverterBean converterBean;
+
+    private final ConcurrentMap<PartIterationKey, RunningConversion> runningConversions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Semaphore> slots = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final AtomicBoolean dispatchRequested = new AtomicBoolean();
+
+    @PostConstruct
+    private void init() {
+        int requeued = converterBean.requeueInterruptedConversions();
+        if (requeued > 0) {
+            LOGGER.log(Level.INFO, requeued + " interrupted conversions queued again");
+        }
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/10", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void poll() {
+        dispatch();
+    }
+
+    /**
+     * Looks at the queue in the background, once a conversion has been queued.
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void requestDispatch() {
+        dispatch();
+    }
+
+    /**
+     * Stops the conversion of the part iteration if it started before the given date, its file having
+     * been replaced.
+     */
+    public void supersede(PartIterationKey partIterationKey, Date queueDate) {
+        RunningConversion runningConversion = runningConversions.get(partIterationKey);
+        if (runningConversion != null && queueDate != null && runningConversion.startDate < queueDate.getTime()) {
+            stop(partIterationKey, runningConversion);
+        }
+    }
+
+    /**
+     * Stops the conversion of the part iteration if it runs in this server.
+     */
+    public void cancel(PartIterationKey partIterationKey) {
+        RunningConversion runningConversion = runningConversions.get(partIterationKey);
+        if (runningConversion != null) {
+            stop(partIterationKey, runningConversion);
+        }
+    }
+
+    /**
+     * @return the number of conversions running in this server, by converter
+     */
+    public Map<String, Integer> getRunningConversions() {
+        Map<String, Integer> running = new HashMap<>();
+        for (String converterName : slots.keySet()) {
+            running.put(converterName, 0);
+        }
+        for (RunningConversion runningConversion : runningConversions.values()) {
+            running.merge(runningConversion.converterName, 1, Integer::sum);
+        }
+        return running;
+    }
+
+    /**
+     * @return the maximum number of conversions running at the same time, for the converters used so far
+     */
+    public Map<String, Integer> getLimits() {
+        Map<String, Integer> limits = new HashMap<>();
+        for (String converterName : slots.keySet()) {
+            limits.put(converterName, ConverterBean.getMaxConcurrentConversions(converterName));
+        }
+        return limits;
+    }
+
+    private void dispatch() {
+        dispatchRequested.set(true);
+        // A request made while dispatching is served by the running dispatch
+        while (dispatchRequested.get() && dispatching.compareAndSet(false, true)) {
+            try {
+                dispatchRequested.set(false);
+                startQueuedConversions();
+            } catch (EJBException e) {
+                LOGGER.log(Level.WARNING, "Cannot start the queued conversions", e);
+            } finally {
+                dispatching.set(false);
+            }
+        }
+    }
+
+    /*
+     * Reads the queue by batches, leaving out the converters found busy. Each batch starts
+     * conversions or finds busy converters, otherwise the next one would be the same.
+     */
+    private void startQueuedConversions() {
+        Set<String> busyConverters = new HashSet<>();
+        for (Map.Entry<String, Semaphore> converterSlots : slots.entrySet()) {
+            if (converterSlots.getValue().availablePermits() == 0) {
+                busyConverters.add(converterSlots.getKey());
+            }
+        }
+
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            List<Conversion> conversions = converterBean.findQueuedConversions(busyConverters, BATCH_SIZE);
+            for (Conversion conversion : conversions) {
+                PartIterationKey partIterationKey = conversion.getPartIteration().getKey();
+                String converterName = conversion.getConverter();
+                // Still running in this server, started again once ended
+                if (runningConversions.containsKey(partIterationKey) || busyConverters.contains(converterName)) {
+                    continue;
+                }
+
+                Semaphore converterSlots = slots.computeIfAbsent(converterName, name -> new Semaphore(ConverterBean.getMaxConcurrentConversions(name)));
+                if (!converterSlots.tryAcquire()) {
+                    busyConverters.add(converterName);
+                    progress = true;
+                    continue;
+                }
+
+                boolean started = false;
+                try {
+                    if (converterBean.startConversion(partIterationKey, converterName)) {
+                        start(partIterationKey, converterName, converterSlots);
+                        started = true;
+                        progress = true;
+                    }
+                } finally {
+                    if (!started) {
+                        converterSlots.release();
+                    }
+                }
+            }
+            // The whole queue has been read
+            if (conversions.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+    }
+
+    private void start(PartIterationKey partIterationKey, String converterName, Semaphore converterSlots) {
+        RunningConversion runningConversion = new RunningConversion(converterName, converterSlots);
+        runningConversion.task = new FutureTask<>(() -> {
+            // Not stopped while waiting for a thread
+            if (runningConversion.started.compareAndSet(false, true)) {
+                run(partIterationKey, runningConversion);
+            }
+            return null;
+        });
+        runningConversions.put(partIterationKey, runningConversion);
+        LOGGER.log(Level.FINE, "Starting the conversion of " + partIterationKey + " with " + converterName);
+        try {
+            executor.execute(runningConversion.task);
+        } catch (RuntimeException e) {
+            runningConversions.remove(partIterationKey, runningConversion);
+            converterBean.endConversion(partIterationKey, "Cannot start the conversion: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private void run(PartIterationKey partIterationKey, RunningConversion runningConversion) {
+        try {
+            String errorMessage = null;
+            try {
+                converterBean.convert(partIterationKey);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Conversion of " + partIterationKey + " failed", e);
+                errorMessage = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            }
+            // Otherwise stopped, its state has already been updated
+            if (runningConversions.remove(partIterationKey, runningConversion)) {
+                converterBean.endConversion(partIterationKey, errorMessage);
+            }
+            LOGGER.log(Level.FINE, "Conversion of " + partIterationKey + " ended in " + (System.currentTimeMillis() - runningConversion.startDate) + " ms");
+        } catch (EJBException e) {
+            LOGGER.log(Level.WARNING, "Cannot end the conversion of " + partIterationKey, e);
+        } finally {
+            runningConversions.remove(partIterationKey, runningConversion);
+            runningConversion.converterSlots.release();
+            dispatch();
+        }
+    }
+
+    private void stop(PartIterationKey partIterationKey, RunningConversion runningConversion) {
+        if (runningConversions.remove(partIterationKey, runningConversion)) {
+            LOGGER.log(Level.INFO, "Stopping the conversion of " + partIterationKey);
+            runningConversion.task.cancel(true);
+            // Released by the task once it has started
+            if (runningConversion.started.compareAndSet(false, true)) {
+                runningConversion.converterSlots.release();
+            }
+        }
+    }
+
+    private static class RunningConversion {
+        private final String converterName;
+        private final Semaphore converterSlots;
+        private final long startDate = System.currentTimeMillis();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private FutureTask<Void> task;
+
+        RunningConversion(String converterName, Semaphore converterSlots) {
+            this.converterName = converterName;
+            this.converterSlots = converterSlots;
+        }
+    }
+}
@@ -20,21 +20,28 @@
 package com.docdoku.server;
 
 import com.docdoku.core.common.BinaryResource;
-import com.docdoku.core.product.Geometry;
-import com.docdoku.core.product.PartIteration;
-import com.docdoku.core.product.PartIterationKey;
+import com.docdoku.core.exceptions.*;
+import com.docdoku.core.product.*;
+import com.docdoku.core.security.UserGroupMapping;
 import com.docdoku.core.services.IConverterManagerLocal;
 import com.docdoku.core.services.IDataManagerLocal;
 import com.docdoku.core.services.IProductManagerLocal;
 import com.docdoku.core.util.FileIO;
-import com.docdoku.core.util.Tools;
 import com.docdoku.server.converters.CADConverter;
+import com.docdoku.server.converters.utils.BinaryMesh;
 import com.docdoku.server.converters.utils.ConversionResult;
 import com.docdoku.server.converters.utils.GeometryParser;
+import com.docdoku.server.converters.utils.MeshDecimator;
+import com.docdoku.server.dao.BinaryResourceDAO;
+import com.docdoku.server.dao.ConversionDAO;
 import com.docdoku.server.dao.PartIterationDAO;
+import org.apache.commons.io.output.CountingOutputStream;
 import java.nio.file.Files;
 
-import javax.ejb.Asynchronous;
+import javax.annotation.security.DeclareRoles;
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.Local;
+import javax.ejb.LocalBean;
 import javax.ejb.Stateless;
 import javax.enterprise.inject.Any;
 import javax.enterprise.inject.Instance;
@@ -42,17 +49,26 @@ import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.io.*;
-import java.util.List;
-import java.util.Properties;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 
 /**
  * CAD File converter
  *
+ * Conversions are queued, and run in the background by the {@link ConversionScheduler}: the
+ * methods which are not part of {@link IConverterManagerLocal} are the steps of a conversion, run
+ * by the scheduler in the converter role. The access to the part iteration is checked when queuing.
+ *
  * @author Florent.Garin
  */
+@DeclareRoles({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.CONVERTER_ROLE_ID})
+@LocalBean
+@Local(IConverterManagerLocal.class)
 @Stateless(name = "ConverterBean")
 public class ConverterBean implements IConverterManagerLocal {
 
@@ -69,42 +85,167 @@ public class ConverterBean implements IConverterManagerLocal {
     @Inject
     private IDataManagerLocal dataManager;
 
+    @Inject
+    private ConversionScheduler scheduler;
+
     private static final String CONF_PROPERTIES = "/com/docdoku/server/converters/utils/conf.properties";
     private static final Properties CONF = new Properties();
     private static final Logger LOGGER = Logger.getLogger(ConverterBean.class.getName());
 
+    private static final int MAX_ATTEMPTS;
+    private static final long RETRY_DELAY;
+    private static final long MAX_RETRY_DELAY = 60 * 60 * 1000;
+    private static final int MAX_ERROR_LENGTH = 1024;
+    private static final double[] LOD_RATIOS;
+    private static final String SERVER_NAME = getServerName();
+
     static {
         try (InputStream inputStream = ConverterBean.class.getResourceAsStream(CONF_PROPERTIES)){
             CONF.load(inputStream);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, null, e);
         }
+        MAX_ATTEMPTS = Integer.parseInt(CONF.getProperty("conversion.maxAttempts", "3"));
+        RETRY_DELAY = Long.parseLong(CONF.getProperty("conversion.retryDelay", "60000"));
+        LOD_RATIOS = parseRatios(CONF.getProperty("lods", "0.6,0.2"));
+    }
+
+    @Override
+    public void convertCADFileToOBJ(PartIterationKey pPartIPK, BinaryResource cadBinaryResource) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException, CreationException {
+        convertCADFileToOBJ(pPartIPK, cadBinaryResource, Conversion.PRIORITY_INTERACTIVE);
+    }
+
+    @Override
+    public void convertCADFileToOBJ(PartIterationKey pPartIPK, BinaryResource cadBinaryResource, int priority) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException, CreationException {
+        Conversion conversion = productService.queueConversion(pPartIPK, priority);
+        // The conversion of the previous file, if still running, is of no use anymore
+        scheduler.supersede(pPartIPK, conversion.getQueueDate());
+        scheduler.requestDispatch();
+    }
+
+    @Override
+    public Conversion cancelConversion(PartIterationKey pPartIPK) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException {
+        Conversion conversion = productService.cancelConversion(pPartIPK);
+        scheduler.cancel(pPartIPK);
+        return conversion;
     }
 
     @Override
-    @Asynchronous
-    @CADConvert
-    public void convertCADFileToOBJ(PartIterationKey pPartIPK, BinaryResource cadBinaryResource) throws Exception{
+    public ConversionQueueStatus getConversionQueueStatus(String workspaceId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException {
+        // Pending conversions, and the ones ended during the last day
+        List<Conversion> conversions = productService.getConversions(workspaceId, new Date(System.currentTimeMillis() - 24 * 60 * 60 * 1000));
+        return new ConversionQueueStatus(new ConversionDAO(em).countQueuedConversions(), scheduler.getRunningConversions(), scheduler.getLimits(), conversions);
+    }
+
+    /**
+     * Selects the converter of the conversions which do not have one yet. The ones no converter can
+     * handle are ended.
+     *
+     * @param busyConverters the converters whose conversions are left aside
+     * @return the conversions to start, by priority, with their converter
+     */
+    @RolesAllowed(UserGroupMapping.CONVERTER_ROLE_ID)
+    public List<Conversion> findQueuedConversions(Collection<String> busyConverters, int maxResults) {
+        List<Conversion> conversions = new ArrayList<>();
+        for (Conversion conversion : new ConversionDAO(em).findQueuedConversions(new Date(), busyConverters, maxResults)) {
+            if (conversion.getConverter() == null) {
+                BinaryResource cadFile = conversion.getPartIteration().getNativeCADFile();
+                CADConverter converter = cadFile == null ? null : getConverter(cadFile.getName());
+                if (converter == null) {
+                    conversion.setPending(false);
+                    conversion.setSucceed(false);
+                    conversion.setEndDate(new Date());
+                    conversion.setErrorMessage(cadFile == null ? "No native CAD file" : truncate("No CAD converter able to handle " + cadFile.getName()));
+                    continue;
+                }
+                conversion.setConverter(converter.getClass().getSimpleName());
+            }
+            conversions.add(conversion);
+        }
+        return conversions;
+    }
+
+    /**
+     * Marks the conversion as running on this server.
+     *
+     * @return false if the conversion is not queued anymore, or has been started by another server
+     */
+    @RolesAllowed(UserGroupMapping.CONVERTER_ROLE_ID)
+    public boolean startConversion(PartIterationKey pPartIPK, String converterName) {
+        try {
+            PartIteration partI = new PartIterationDAO(em).loadPartI(pPartIPK);
+            return new ConversionDAO(em).startConversion(partI, converterName, SERVER_NAME);
+        } catch (PartIterationNotFoundException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return false;
+        }
+    }
+
+    /**
+     * Ends a running conversion. A failed one is queued again until its last attempt, after a delay
+     * growing with the attempts.
+     *
+     * @param errorMessage null if the conversion succeeded
+     */
+    @RolesAllowed(UserGroupMapping.CONVERTER_ROLE_ID)
+    public void endConversion(PartIterationKey pPartIPK, String errorMessage) {
+        Conversion conversion = findConversion(pPartIPK);
+        // Canceled or queued again meanwhile
+        if (conversion == null || !conversion.isRunning()) {
+            return;
+        }
+
+        Date now = new Date();
+        conversion.setErrorMessage(truncate(errorMessage));
+        if (errorMessage != null && conversion.getAttempts() < MAX_ATTEMPTS) {
+            conversion.setStartDate(null);
+            conversion.setNextAttemptDate(new Date(now.getTime() + getRetryDelay(conversion.getAttempts(), RETRY_DELAY)));
+            LOGGER.log(Level.INFO, "Conversion of " + pPartIPK + " failed, attempt " + conversion.getAttempts() + " of " + MAX_ATTEMPTS + ": " + errorMessage);
+        } else {
+            conversion.setPending(false);
+            conversion.setSucceed(errorMessage == null);
+            conversion.setEndDate(now);
+        }
+    }
+
+    /**
+     * Puts back in the queue the conversions which were running on this server when it stopped. The
+     * ones running on the other servers of the cluster are left alone.
+     *
+     * @return the number of conversions queued again
+     */
+    @RolesAllowed(UserGroupMapping.CONVERTER_ROLE_ID)
+    public int requeueInterruptedConversions() {
+        return new ConversionDAO(em).requeueInterruptedConversions(SERVER_NAME);
+    }
+
+    /**
+     * Runs the conversion of the native CAD file of the part iteration, and saves its geometries.
+     *
+     * @throws Exception if nothing could be converted
+     */
+    @RolesAllowed(UserGroupMapping.CONVERTER_ROLE_ID)
+    public void convert(PartIterationKey pPartIPK) throws Exception {
 
         boolean succeed = false;
 
-        File tempDir = Files.createTempDirectory("docdoku-").toFile();
+        PartIterationDAO partIDAO = new PartIterationDAO(em);
+        PartIteration partI = partIDAO.loadPartI(pPartIPK);
+        BinaryResource cadBinaryResource = partI.getNativeCADFile();
 
-        String ext = FileIO.getExtension(cadBinaryResource.getName());
+        if (cadBinaryResource == null) {
+            throw new Exception("No native CAD file");
+        }
 
-        CADConverter selectedConverter = null;
+        CADConverter selectedConverter = getConverter(cadBinaryResource.getName());
 
-        for (CADConverter converter : converters) {
-            if (converter.canConvertToOBJ(ext)) {
-                selectedConverter = converter;
-                break;
-            }
+        if (selectedConverter == null) {
+            throw new Exception("No CAD converter able to handle " + cadBinaryResource.getName());
         }
 
-        if (selectedConverter != null) {
+        File tempDir = Files.createTempDirectory("docdoku-").toFile();
 
-            PartIterationDAO partIDAO = new PartIterationDAO(em);
-            PartIteration  partI = partIDAO.loadPartI(pPartIPK);
+        try {
             ConversionResult conversionResult = selectedConverter.convert(partI, cadBinaryResource, tempDir);
 
             if (conversionResult != null && conversionResult.getConvertedFile() != null) {
@@ -113,138 +254,182 @@ public class ConverterBean implements IConverterManagerLocal {
 
                 double[] box = GeometryParser.calculateBox(convertedFile);
 
-                //succeed = decimate(pPartIPK, convertedFile, tempDir, box);
+                succeed = decimate(partI, convertedFile, tempDir, box);
 
                 // Copy the converted file if decimation failed, ignore decimated files
                 if(!succeed){
-                    saveGeometryFile(pPartIPK, 0, convertedFile, box);
+                    saveGeometryFile(partI, 0, convertedFile, box);
                     succeed = true;
                 }
 
+                for(File material:conversionResult.getMaterials()){
+                    saveAttachedFile(partI, material);
+                }
+
             }else{
                 LOGGER.log(Level.WARNING, "Cannot convert " + cadBinaryResource.getName());
             }
 
-            List<File> materials = conversionResult.getMaterials();
-
-            for(File material:materials){
-                saveAttachedFile(pPartIPK,material);
-            }
-
-
-        } else {
-            LOGGER.log(Level.WARNING, "No CAD converter able to handle " + cadBinaryResource.getName());
+        } finally {
+            FileIO.rmDir(tempDir);
         }
 
-        FileIO.rmDir(tempDir);
-        
         if(!succeed){
             throw new Exception("Conversion Failed");
         }
     }
 
-    private boolean decimate(PartIterationKey pPartIPK, File file, File tempDir, double[] box) {
-
-        String decimater = CONF.getProperty("decimater");
+    static double[] parseRatios(String ratios) {
+        return Arrays.stream(ratios.split(","))
+                .map(String::trim)
+                .filter(ratio -> !ratio.isEmpty())
+                .mapToDouble(Double::parseDouble)
+                .toArray();
+    }
 
-        File executable = new File(decimater);
+    static long getRetryDelay(int attempts, long retryDelay) {
+        return Math.min(MAX_RETRY_DELAY, retryDelay << Math.min(20, Math.max(0, attempts - 1)));
+    }
 
-        if(!executable.exists()){
-            LOGGER.log(Level.SEVERE, "Cannot decimate file \""+file.getName()+"\", decimater \""+decimater+"\" is not available");
-            return false;
+    // Same across restarts, for the conversions left running to be found again
+    private static String getServerName() {
+        String instanceName = System.getProperty("com.sun.aas.instanceName", "server");
+        try {
+            return InetAddress.getLocalHost().getHostName() + "/" + instanceName;
+        } catch (UnknownHostException e) {
+            LOGGER.log(Level.WARNING, null, e);
+            return instanceName;
         }
+    }
 
-        if(!executable.canExecute()){
-            LOGGER.log(Level.SEVERE, "Cannot decimate file \""+file.getName()+"\", decimater \""+decimater+"\" has no execution rights");
-            return false;
-        }
+    static int getMaxConcurrentConversions(String converterName) {
+        return Integer.parseInt(CONF.getProperty("conversion.maxConcurrent." + converterName, CONF.getProperty("conversion.maxConcurrent", "2")));
+    }
 
-        boolean decimateSucceed = false;
+    private CADConverter getConverter(String fileName) {
+        String ext = FileIO.getExtension(fileName);
+        for (CADConverter converter : converters) {
+            if (converter.canConvertToOBJ(ext)) {
+                return converter;
+            }
+        }
+        return null;
+    }
 
+    private Conversion findConversion(PartIterationKey pPartIPK) {
         try {
-            String[] args = {decimater, "-i", file.getAbsolutePath(), "-o", tempDir.getAbsolutePath(), "1", "0.6", "0.2"};
-            ProcessBuilder pb = new ProcessBuilder(args);
-            Process proc = pb.start();
-
-            StringBuilder output = new StringBuilder();
-            String line;
-            // Read buffer
-            try(InputStreamReader isr = new InputStreamReader(proc.getInputStream(),"UTF-8");BufferedReader br = new BufferedReader(isr)){
-                while ((line = br.readLine()) != null){
-                    output.append(line).append("\n");
-                }
-            }
+            return new ConversionDAO(em).findConversion(new PartIterationDAO(em).loadPartI(pPartIPK));
+        } catch (PartIterationNotFoundException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return null;
+        }
+    }
 
-            proc.waitFor();
+    private static String truncate(String message) {
+        return message == null || message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
 
-            if (proc.exitValue() == 0) {
-                String baseName = Tools.unAccent(tempDir.getAbsolutePath() + "/" + FileIO.getFileNameWithoutExtension(file.getName()));
-                saveGeometryFile(pPartIPK, 0, new File(baseName + "100.obj"), box);
-                saveGeometryFile(pPartIPK, 1, new File(baseName + "60.obj"), box);
-                saveGeometryFile(pPartIPK, 2, new File(baseName + "20.obj"), box);
-                decimateSucceed = true;
-            } else {
-                LOGGER.log(Level.SEVERE, "Decimation failed with code = " + proc.exitValue(), output.toString());
+    // The full resolution geometry is quality 0, the ones simplified to these ratios of its triangles follow
+    private boolean decimate(PartIteration partI, File file, File tempDir, double[] box) {
+        try {
+            List<File> lods = MeshDecimator.decimate(file, tempDir, LOD_RATIOS);
+            saveGeometryFile(partI, 0, file, box);
+            for (int i = 0; i < lods.size(); i++) {
+                saveGeometryFile(partI, i + 1, lods.get(i), box);
             }
-
-        } catch (Exception e) {
+            return true;
+        } catch (IOException | RuntimeException e) {
             LOGGER.log(Level.SEVERE, "Decimation failed for " + file.getAbsolutePath(), e);
+            return false;
         }
-        
-        return decimateSucceed;
     }
 
-    private void saveGeometryFile(PartIterationKey partIPK, int quality, File file, double[] box) {
+    private void saveGeometryFile(PartIteration partI, int quality, File file, double[] box) {
 
         if(!file.exists()){
             return;
         }
 
-        OutputStream os = null;
-
         try {
-            Geometry lod = (Geometry) productService.saveGeometryInPartIteration(partIPK, file.getName(), quality, file.length(), box);
-            os = dataManager.getBinaryResourceOutputStream(lod);
-            Files.copy(file.toPath(), os);
-            LOGGER.log(Level.INFO, "Decimation and save done");
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Cannot save geometry to part iteration", e);
-        } finally {
-            try {
-                if(os != null){
-                    os.close();
+            String fullName = getFullName(partI, file.getName());
+            Geometry lod = null;
+            for (Geometry geometry : partI.getGeometries()) {
+                if (geometry.getFullName().equals(fullName)) {
+                    lod = geometry;
+                    break;
                 }
-            } catch (IOException e) {
-                LOGGER.log(Level.SEVERE,null, e);
             }
+            if (lod == null) {
+                lod = new Geometry(quality, fullName, file.length(), new Date());
+                new BinaryResourceDAO(em).createBinaryResource(lod);
+                partI.addGeometry(lod);
+            } else {
+                new BinaryResourceDAO(em).updateContentLength(lod, file.length());
+                lod.setQuality(quality);
+                lod.setLastModified(new Date());
+            }
+            if (box != null) {
+                lod.setBox(box[0], box[1], box[2], box[3], box[4], box[5]);
+            }
+            copy(file, lod);
+            saveBinaryMesh(file, lod);
+            LOGGER.log(Level.INFO, "Geometry " + fullName + " saved");
+        } catch (FileAlreadyExistsException | CreationException | StorageException | IOException e) {
+            LOGGER.log(Level.SEVERE, "Cannot save geometry to part iteration", e);
         }
     }
 
-    private void saveAttachedFile(PartIterationKey partIPK, File file) {
+    private void saveAttachedFile(PartIteration partI, File file) {
 
         if(!file.exists()){
             return;
         }
 
-        OutputStream os = null;
-
         try {
-            BinaryResource binaryResource = productService.saveFileInPartIteration(partIPK, file.getName(), "attachedfiles" ,file.length());
-            os = dataManager.getBinaryResourceOutputStream(binaryResource);
-            Files.copy(file.toPath(), os);
-            LOGGER.log(Level.INFO, "Attached file copied");
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Cannot save attached file to part iteration", e);
-        } finally {
-            try {
-                if(os != null){
-                    os.close();
+            String fullName = getFullName(partI, "attachedfiles/" + file.getName());
+            BinaryResource binaryResource = null;
+            for (BinaryResource attachedFile : partI.getAttachedFiles()) {
+                if (attachedFile.getFullName().equals(fullName)) {
+                    binaryResource = attachedFile;
+                    break;
                 }
-            } catch (IOException e) {
-                LOGGER.log(Level.SEVERE,null, e);
             }
+            if (binaryResource == null) {
+                binaryResource = new BinaryResource(fullName, file.length(), new Date());
+                new BinaryResourceDAO(em).createBinaryResource(binaryResource);
+                partI.addAttachedFile(binaryResource);
+            } else {
+                new BinaryResourceDAO(em).updateContentLength(binaryResource, file.length());
+                binaryResource.setLastModified(new Date());
+            }
+            copy(file, binaryResource);
+            LOGGER.log(Level.INFO, "Attached file copied");
+        } catch (FileAlreadyExistsException | CreationException | StorageException | IOException e) {
+            LOGGER.log(Level.SEVERE, "Cannot save attached file to part iteration", e);
+        }
+    }
+
+    // Optional, the viewers read the file itself when there is no binary mesh
+    private void saveBinaryMesh(File file, Geometry geometry) {
+        geometry.setBinaryMeshLength(0);
+        try (CountingOutputStream compressed = new CountingOutputStream(dataManager.getBinarySubResourceOutputStream(geometry, Geometry.BINARY_MESH_SUB_RESOURCE));
+             GZIPOutputStream outputStream = new GZIPOutputStream(compressed, 64 * 1024)) {
+            BinaryMesh.write(file, outputStream);
+            outputStream.finish();
+            geometry.setBinaryMeshLength(compressed.getByteCount());
+        } catch (StorageException | IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Cannot save the binary mesh of " + geometry.getFullName(), e);
         }
     }
 
+    private void copy(File file, BinaryResource binaryResource) throws StorageException, IOException {
+        try (OutputStream os = dataManager.getBinaryResourceOutputStream(binaryResource)) {
+            Files.copy(file.toPath(), os);
+        }
+    }
 
-}
\ No newline at end of file
+    private static String getFullName(PartIteration partI, String name) {
+        PartRevision partR = partI.getPartRevision();
+        return partR.getWorkspaceId() + "/parts/" + partR.getPartNumber() + "/" + partR.getVersion() + "/" + partI.getIteration() + "/" + name;
+    }
+}
@@ -20,39 +20,84 @@
 package com.docdoku.server;
 
 import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.ExportJob;
+import com.docdoku.core.common.UploadSession;
 import com.docdoku.core.exceptions.FileNotFoundException;
 import com.docdoku.core.exceptions.StorageException;
+import com.docdoku.core.exceptions.StorageQuotaExceededException;
 import com.docdoku.core.security.UserGroupMapping;
 import com.docdoku.core.services.IDataManagerLocal;
+import com.docdoku.server.dao.StorageUsageDAO;
+import com.docdoku.server.storage.ContentHash;
 import com.docdoku.server.storage.StorageProvider;
+import com.docdoku.server.storage.contentaddressed.ContentAddressedStorageProvider;
+import com.docdoku.server.storage.export.ExportJobStore;
 import com.docdoku.server.storage.filesystem.FileStorageProvider;
+import com.docdoku.server.storage.upload.UploadSessionStore;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.annotation.security.DeclareRoles;
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Date;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 @DeclareRoles(UserGroupMapping.REGULAR_USER_ROLE_ID)
 @Local(IDataManagerLocal.class)
 @Stateless(name = "DataManagerBean")
 public class DataManagerBean implements IDataManagerLocal {
 
+    private static final String CONTENT_ADDRESSED_STORAGE = "contentaddressed";
+
+    private static final Logger LOGGER = Logger.getLogger(DataManagerBean.class.getName());
+
     @Resource(name = "vaultPath")
     private String vaultPath;
 
+    // "filesystem" or "contentaddressed"
+    @Resource(name = "storageProvider")
+    private String storageProvider;
+
+    // Bytes a workspace may store in the vault, 0 for no limit
+    @Resource(name = "workspaceStorageQuota")
+    private Long workspaceStorageQuota;
+
+    @PersistenceContext
+    private EntityManager em;
+
     private StorageProvider defaultStorageProvider;
     private FileStorageProvider fileStorageProvider;
+    private UploadSessionStore uploadSessionStore;
+    private ExportJobStore exportJobStore;
 
     @PostConstruct
     private void init() {
-        fileStorageProvider = new FileStorageProvider(vaultPath);
+        if (CONTENT_ADDRESSED_STORAGE.equals(storageProvider) && ContentAddressedStorageProvider.isSupported(vaultPath)) {
+            fileStorageProvider = new ContentAddressedStorageProvider(vaultPath);
+        } else {
+            if (CONTENT_ADDRESSED_STORAGE.equals(storageProvider)) {
+                LOGGER.log(Level.SEVERE, "The file system of the vault " + vaultPath + " does not count hard links,"
+                        + " the content addressed storage is not enabled");
+            }
+            fileStorageProvider = new FileStorageProvider(vaultPath);
+        }
         defaultStorageProvider = fileStorageProvider;
+        uploadSessionStore = new UploadSessionStore(vaultPath);
+        exportJobStore = new ExportJobStore(vaultPath);
     }
 
     @Override
@@ -85,7 +130,8 @@ public class DataManagerBean implements IDataManagerLocal {
 
     @Override
     public OutputStream getBinaryResourceOutputStream(BinaryResource binaryResource) throws StorageException {
-        return defaultStorageProvider.getBinaryResourceOutputStream(binaryResource);
+        OutputStream outputStream = defaultStorageProvider.getBinaryResourceOutputStream(binaryResource);
+        return new ContentHash.HashingOutputStream(outputStream, hash -> storeContentHash(binaryResource, hash));
     }
 
     @Override
@@ -103,6 +149,21 @@ public class DataManagerBean implements IDataManagerLocal {
         }
     }
 
+    @Override
+    public void moveSubResource(BinaryResource binaryResource, String sourceVirtualPath, String targetVirtualPath) throws StorageException {
+        fileStorageProvider.moveSubResource(binaryResource, sourceVirtualPath, targetVirtualPath);
+    }
+
+    @Override
+    public void deleteSubResource(BinaryResource binaryResource, String subResourceVirtualPath) throws StorageException {
+        fileStorageProvider.deleteSubResource(binaryResource, subResourceVirtualPath);
+    }
+
+    @Override
+    public List<String> getSubResourceNames(BinaryResource binaryResource) throws StorageException {
+        return fileStorageProvider.getSubResourceNames(binaryResource);
+    }
+
     @Override
     public void copyData(BinaryResource source, BinaryResource destination) throws StorageException {
         try {
@@ -126,13 +187,14 @@ public class DataManagerBean implements IDataManagerLocal {
     }
 
 
-    private File getBinarySubResourceFile(BinaryResource binaryResource) throws StorageException {
+    @Override
+    public File getBinaryResourceFile(BinaryResource binaryResource) throws StorageException {
         try {
             return fileStorageProvider.getBinaryResourceFile(binaryResource);
         } catch (FileNotFoundException e) {
             BinaryResource previous = binaryResource.getPrevious();
             if (previous != null) {
-                return getBinarySubResourceFile(previous);
+                return getBinaryResourceFile(previous);
             } else {
                 throw new StorageException(new StringBuilder().append("Can't find resource ").append(binaryResource.getFullName()).toString());
             }
@@ -142,7 +204,7 @@ public class DataManagerBean implements IDataManagerLocal {
     @Override
     public void renameFile(BinaryResource binaryResource, String pNewName) throws StorageException, FileNotFoundException {
 
-        File file = getBinarySubResourceFile(binaryResource);
+        File file = getBinaryResourceFile(binaryResource);
 
         try {
             fileStorageProvider.getBinaryResourceFile(binaryResource);
@@ -183,4 +245,182 @@ public class DataManagerBean implements IDataManagerLocal {
         defaultStorageProvider.deleteWorkspaceFolder(workspaceId, binaryResourcesInWorkspace);
     }
 
+    @Override
+    public UploadSession createUploadSession(String binaryResourceFullName, String login, long size, int chunkSize) throws StorageException {
+        checkStorageQuota(binaryResourceFullName, size);
+        try {
+            return uploadSessionStore.create(binaryResourceFullName, login, size, chunkSize);
+        } catch (IOException e) {
+            throw new StorageException("Can't create an upload session for " + binaryResourceFullName, e);
+        }
+    }
+
+    @Override
+    public UploadSession getUploadSession(String uploadId) throws StorageException {
+        try {
+            return uploadSessionStore.get(uploadId);
+        } catch (IOException e) {
+            throw new StorageException("Can't read upload session " + uploadId, e);
+        }
+    }
+
+    @Override
+    public boolean writeUploadChunk(UploadSession uploadSession, int index, InputStream content, String checksum) throws StorageException {
+        try {
+            return uploadSessionStore.writeChunk(uploadSession, index, content, checksum);
+        } catch (IOException e) {
+            throw new StorageException("Can't write chunk " + index + " of upload session " + uploadSession.getId(), e);
+        }
+    }
+
+    @Override
+    public long completeUploadSession(UploadSession uploadSession, BinaryResource binaryResource) throws StorageException {
+        if (!uploadSession.isComplete()) {
+            throw new StorageException("Upload session " + uploadSession.getId() + " is missing chunks");
+        }
+        Path data = uploadSessionStore.getDataFile(uploadSession);
+        try {
+            long length = Files.size(data);
+            String hash;
+            try (InputStream in = Files.newInputStream(data)) {
+                hash = ContentHash.hash(in);
+            }
+            defaultStorageProvider.moveFile(data.toFile(), binaryResource);
+            storeContentHash(binaryResource, hash);
+            uploadSessionStore.delete(uploadSession.getId());
+            return length;
+        } catch (IOException | FileNotFoundException e) {
+            throw new StorageException("Can't complete upload session " + uploadSession.getId(), e);
+        }
+    }
+
+    @Override
+    public void deleteUploadSession(String uploadId) {
+        uploadSessionStore.delete(uploadId);
+    }
+
+    /**
+     * Reads the hash stored beside the file when it was written. Files written before it was kept,
+     * or whose hash could not be stored, are hashed once here.
+     * The previous iterations are not looked at: their content may differ.
+     */
+    @Override
+    public String getContentHash(BinaryResource binaryResource) throws StorageException {
+        if (fileStorageProvider.exists(binaryResource, ContentHash.SUB_RESOURCE)) {
+            String hash = readContentHash(binaryResource);
+            if (ContentHash.isHash(hash)) {
+                return hash;
+            }
+        }
+        String hash;
+        try (InputStream in = getBinaryResourceInputStream(binaryResource)) {
+            hash = ContentHash.hash(in);
+        } catch (IOException e) {
+            throw new StorageException("Can't hash " + binaryResource.getFullName(), e);
+        }
+        storeContentHash(binaryResource, hash);
+        return hash;
+    }
+
+    private String readContentHash(BinaryResource binaryResource) {
+        try (InputStream in = fileStorageProvider.getBinarySubResourceInputStream(binaryResource, ContentHash.SUB_RESOURCE)) {
+            byte[] bytes = new byte[64];
+            int length = 0;
+            int read;
+            while (length < bytes.length && (read = in.read(bytes, length, bytes.length - length)) != -1) {
+                length += read;
+            }
+            return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+        } catch (IOException | StorageException | FileNotFoundException e) {
+            LOGGER.log(Level.WARNING, "Can't read the content hash of " + binaryResource.getFullName(), e);
+            return null;
+        }
+    }
+
+    // The hash is only a key, it is computed again when it can't be stored
+    private void storeContentHash(BinaryResource binaryResource, String hash) {
+        try (Writer writer = new OutputStreamWriter(fileStorageProvider.getBinarySubResourceOutputStream(binaryResource, ContentHash.SUB_RESOURCE), StandardCharsets.US_ASCII)) {
+            writer.write(hash);
+        } catch (IOException | StorageException e) {
+            LOGGER.log(Level.WARNING, "Can't store the content hash of " + binaryResource.getFullName(), e);
+        }
+    }
+
+    /**
+     * Checks the usage counters of the workspace, so that a file going over the quota is refused
+     * before being written to the vault. The bytes of the file replaced, if any, are not counted.
+     */
+    @Override
+    public void checkStorageQuota(String binaryResourceFullName, long size) throws StorageException {
+        if (workspaceStorageQuota == null || workspaceStorageQuota <= 0) {
+            return;
+        }
+        BinaryResource replaced = em.find(BinaryResource.class, binaryResourceFullName);
+        long additionalBytes = replaced == null ? size : size - replaced.getContentLength();
+        if (additionalBytes <= 0) {
+            return;
+        }
+        String workspaceId = BinaryResource.parseWorkspaceId(binaryResourceFullName);
+        long usage = new StorageUsageDAO(em).getUsage(workspaceId);
+        if (usage + additionalBytes > workspaceStorageQuota) {
+            throw new StorageQuotaExceededException(workspaceId, workspaceStorageQuota);
+        }
+    }
+
+    @Override
+    public ExportJob createExportJob(ExportJob exportJob) throws StorageException {
+        try {
+            return exportJobStore.create(exportJob);
+        } catch (IOException e) {
+            throw new StorageException("Can't create an export job for " + exportJob.getConfigurationItemId(), e);
+        }
+    }
+
+    @Override
+    public ExportJob getExportJob(String exportJobId) throws StorageException {
+        try {
+            return exportJobStore.get(exportJobId);
+        } catch (IOException e) {
+            throw new StorageException("Can't read export job " + exportJobId, e);
+        }
+    }
+
+    @Override
+    public void updateExportJob(ExportJob exportJob) throws StorageException {
+        try {
+            exportJobStore.update(exportJob);
+        } catch (IOException e) {
+            throw new StorageException("Can't update export job " + exportJob.getId(), e);
+        }
+    }
+
+    @Override
+    public OutputStream getExportJobOutputStream(String exportJobId) throws StorageException {
+        try {
+            return exportJobStore.openArchive(exportJobId);
+        } catch (IOException e) {
+            throw new StorageException("Can't write the archive of export job " + exportJobId, e);
+        }
+    }
+
+    @Override
+    public long completeExportJobArchive(String exportJobId) throws StorageException {
+        try {
+            return exportJobStore.completeArchive(exportJobId);
+        } catch (IOException e) {
+            throw new StorageException("Can't complete the archive of export job " + exportJobId, e);
+        }
+    }
+
+    @Override
+    public File getExportJobFile(String exportJobId) {
+        Path archive = exportJobStore.getArchive(exportJobId);
+        return archive != null ? archive.toFile() : null;
+    }
+
+    @Override
+    public void deleteExportJob(String exportJobId) {
+        exportJobStore.delete(exportJobId);
+    }
+
 }
@@ -27,6 +27,7 @@ import com.docdoku.core.gcm.GCMAccount;
 import com.docdoku.core.meta.*;
 import com.docdoku.core.product.PartRevision;
 import com.docdoku.core.query.DocumentSearchQuery;
+import com.docdoku.core.query.SearchResultPage;
 import com.docdoku.core.security.ACL;
 import com.docdoku.core.security.ACLUserEntry;
 import com.docdoku.core.security.ACLUserGroupEntry;
@@ -41,6 +42,7 @@ import com.docdoku.server.dao.*;
 import com.docdoku.server.esindexer.ESIndexer;
 import com.docdoku.server.esindexer.ESSearcher;
 import com.docdoku.server.factory.ACLFactory;
+import com.docdoku.server.security.WorkspaceAccessCache;
 import com.docdoku.server.validation.AttributesConsistencyUtils;
 
 import javax.annotation.security.DeclareRoles;
@@ -87,6 +89,9 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
     @Inject
     private IDataManagerLocal dataManager;
 
+    @Inject
+    private WorkspaceAccessCache workspaceAccessCache;
+
     private static final Logger LOGGER = Logger.getLogger(DocumentManagerBean.class.getName());
 
     @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
@@ -116,7 +121,7 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
             new BinaryResourceDAO(locale, em).createBinaryResource(binaryResource);
             template.addFile(binaryResource);
         } else {
-            binaryResource.setContentLength(pSize);
+            new BinaryResourceDAO(locale, em).updateContentLength(binaryResource, pSize);
             binaryResource.setLastModified(new Date());
         }
         return binaryResource;
@@ -148,7 +153,7 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
                 new BinaryResourceDAO(locale, em).createBinaryResource(binaryResource);
                 document.addFile(binaryResource);
             } else {
-                binaryResource.setContentLength(pSize);
+                new BinaryResourceDAO(locale, em).updateContentLength(binaryResource, pSize);
                 binaryResource.setLastModified(new Date());
             }
             return binaryResource;
@@ -313,6 +318,8 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
             } else {
                 aclFactory.updateACL(pWorkspaceId, docR.getACL(), pACLUserEntries, pACLUserGroupEntries);
             }
+            // The principals of the ACL are indexed to filter the searches
+            reindexACL(docR);
 
         } else {
             throw new AccessRightException(userLocale, user);
@@ -353,6 +360,7 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
             if (acl != null) {
                 new ACLDAO(em).removeACLEntries(acl);
                 docR.setACL(null);
+                reindexACL(docR);
             }
         } else {
             throw new AccessRightException(locale, user);
@@ -507,20 +515,17 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
     @Override
     public DocumentRevision[] searchDocumentRevisions(DocumentSearchQuery pQuery) throws WorkspaceNotFoundException, UserNotFoundException, UserNotActiveException, ESServerException {
         User user = userManager.checkWorkspaceReadAccess(pQuery.getWorkspaceId());
-        List<DocumentRevision> fetchedDocRs = esSearcher.search(pQuery);                                                // Get Search Results
-        List<DocumentRevision> docList = new ArrayList<>();
-
-        if (!fetchedDocRs.isEmpty()) {
-            for (DocumentRevision docR : fetchedDocRs) {
-                DocumentRevision filteredDocR = applyDocumentRevisionReadAccess(user, docR);
-                if (filteredDocR != null) {
-                    docList.add(filteredDocR);
-                }
-            }
+        List<DocumentRevision> docList = applyDocumentRevisionReadAccess(user, esSearcher.search(pQuery, user));
+        return docList.toArray(new DocumentRevision[docList.size()]);
+    }
 
-            return docList.toArray(new DocumentRevision[docList.size()]);
-        }
-        return new DocumentRevision[0];
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public SearchResultPage<DocumentRevision> searchDocumentRevisions(DocumentSearchQuery pQuery, String cursor, int pageSize) throws WorkspaceNotFoundException, UserNotFoundException, UserNotActiveException, ESServerException {
+        User user = userManager.checkWorkspaceReadAccess(pQuery.getWorkspaceId());
+        SearchResultPage<DocumentRevision> page = esSearcher.search(pQuery, user, cursor, pageSize);
+        page.setResults(applyDocumentRevisionReadAccess(user, page.getResults()));
+        return page;
     }
 
     @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
@@ -992,6 +997,7 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
 
             DocumentDAO docDAO = new DocumentDAO(em);
             docDAO.removeDoc(doc);
+            new StorageUsageDAO(userLocale, em).releaseUsage(doc.getAttachedFiles());
             docR.setCheckOutDate(null);
             docR.setCheckOutUser(null);
 
@@ -1172,7 +1178,9 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
             docRDAO.removeRevision(docR);
         }
 
+        StorageUsageDAO storageUsageDAO = new StorageUsageDAO(locale, em);
         for (DocumentIteration doc : docR.getDocumentIterations()) {
+            storageUsageDAO.releaseUsage(doc.getAttachedFiles());
             for (BinaryResource file : doc.getAttachedFiles()) {
                 try {
                     dataManager.deleteData(file);
@@ -1196,6 +1204,7 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
         checkDocumentTemplateWriteAccess(documentMasterTemplate, user);
 
         DocumentMasterTemplate template = templateDAO.removeDocMTemplate(pKey);
+        new StorageUsageDAO(new Locale(user.getLanguage()), em).releaseUsage(template.getAttachedFiles());
 
         for (BinaryResource file : template.getAttachedFiles()) {
             try {
@@ -1710,6 +1719,25 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
         return docRs.toArray(new DocumentRevision[docRs.size()]);
     }
 
+    /**
+     * Apply read access policy on document revisions, such as search hits: they are filtered on the
+     * indexed ACL, which may be behind the current one.
+     *
+     * @param user              The user to test
+     * @param documentRevisions The document revisions to test
+     * @return The readable document revisions, in the same order
+     */
+    private List<DocumentRevision> applyDocumentRevisionReadAccess(User user, List<DocumentRevision> documentRevisions) {
+        List<DocumentRevision> docList = new ArrayList<>();
+        for (DocumentRevision docR : documentRevisions) {
+            DocumentRevision filteredDocR = applyDocumentRevisionReadAccess(user, docR);
+            if (filteredDocR != null) {
+                docList.add(filteredDocR);
+            }
+        }
+        return docList;
+    }
+
     /**
      * Apply read access policy on a document revision
      *
@@ -1860,7 +1888,7 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
     }
 
     private boolean isACLGrantReadAccess(User user, DocumentRevision documentRevision) {
-        return documentRevision.getACL() == null || documentRevision.getACL().hasReadAccess(user);
+        return documentRevision.getACL() == null || documentRevision.getACL().hasReadAccess(user, workspaceAccessCache.getUserGroupIds(user));
     }
 
     private boolean isACLGrantReadAccess(User user, DocumentMasterTemplate template) {
@@ -1868,7 +1896,7 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
     }
 
     private boolean isACLGrantWriteAccess(User user, DocumentRevision documentRevision) {
-        return documentRevision.getACL() == null || documentRevision.getACL().hasWriteAccess(user);
+        return documentRevision.getACL() == null || documentRevision.getACL().hasWriteAccess(user, workspaceAccessCache.getUserGroupIds(user));
     }
 
     private boolean isAnotherUserHomeFolder(User user, Folder folder) {
@@ -1883,6 +1911,12 @@ public class DocumentManagerBean implements IDocumentManagerWS, IDocumentManager
         return documentRevision.isCheckedOut() && documentRevision.getCheckOutUser().equals(user);
     }
 
+    private void reindexACL(DocumentRevision docR) {
+        if (docR.getLastIteration() != null) {
+            esIndexer.index(docR.getLastIteration());
+        }
+    }
+
     private boolean isCheckoutByAnotherUser(User user, DocumentRevision documentRevision) {
         return documentRevision.isCheckedOut() && !documentRevision.getCheckOutUser().equals(user);
     }
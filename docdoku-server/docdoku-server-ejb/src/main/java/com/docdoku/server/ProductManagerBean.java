@@ -31,6 +31,7 @@ import com.docdoku.core.query.PartSearchQuery;
 import com.docdoku.core.query.Query;
 import com.docdoku.core.query.QueryContext;
 import com.docdoku.core.query.QueryResultRow;
+import com.docdoku.core.query.SearchResultPage;
 import com.docdoku.core.security.ACL;
 import com.docdoku.core.security.ACLUserEntry;
 import com.docdoku.core.security.ACLUserGroupEntry;
@@ -42,15 +43,18 @@ import com.docdoku.core.util.NamingConvention;
 import com.docdoku.core.util.Tools;
 import com.docdoku.core.workflow.*;
 import com.docdoku.server.configuration.PSFilterVisitor;
+import com.docdoku.server.configuration.ProductStructureCache;
 import com.docdoku.server.configuration.filter.*;
 import com.docdoku.server.dao.*;
 import com.docdoku.server.esindexer.ESIndexer;
 import com.docdoku.server.esindexer.ESSearcher;
 import com.docdoku.server.events.CheckedIn;
+import com.docdoku.server.events.Created;
 import com.docdoku.server.events.PartIterationChangeEvent;
 import com.docdoku.server.events.PartRevisionChangeEvent;
 import com.docdoku.server.events.Removed;
 import com.docdoku.server.factory.ACLFactory;
+import com.docdoku.server.security.WorkspaceAccessCache;
 import com.docdoku.server.validation.AttributesConsistencyUtils;
 
 import javax.annotation.security.DeclareRoles;
@@ -68,10 +72,11 @@ import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import java.text.ParseException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-@DeclareRoles({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID, UserGroupMapping.GUEST_PROXY_ROLE_ID})
+@DeclareRoles({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID, UserGroupMapping.GUEST_PROXY_ROLE_ID, UserGroupMapping.CONVERTER_ROLE_ID})
 @Local(IProductManagerLocal.class)
 @Stateless(name = "ProductManagerBean")
 @WebService(endpointInterface = "com.docdoku.core.services.IProductManagerWS")
@@ -108,8 +113,16 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
     @Inject
     private Event<PartRevisionChangeEvent> partRevisionEvent;
 
+    @Inject
+    private ProductStructureCache productStructureCache;
+
+    @Inject
+    private WorkspaceAccessCache workspaceAccessCache;
+
     private static final Logger LOGGER = Logger.getLogger(ProductManagerBean.class.getName());
 
+    private static final int QUERY_CHUNK_SIZE = 500;
+
     @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
     @Override
     public List<PartLink[]> findPartUsages(ConfigurationItemKey pKey, PSFilter filter, String search) throws WorkspaceNotFoundException, UserNotFoundException, UserNotActiveException, NotAllowedException, EntityConstraintException, PartMasterNotFoundException, ConfigurationItemNotFoundException {
@@ -340,6 +353,12 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
 
             PartIterationDAO partIDAO = new PartIterationDAO(locale, em);
             partIDAO.removeIteration(partIte);
+            StorageUsageDAO storageUsageDAO = new StorageUsageDAO(locale, em);
+            storageUsageDAO.releaseUsage(partIte.getGeometries());
+            storageUsageDAO.releaseUsage(partIte.getAttachedFiles());
+            if (partIte.getNativeCADFile() != null) {
+                storageUsageDAO.releaseUsage(partIte.getNativeCADFile());
+            }
             partR.setCheckOutDate(null);
             partR.setCheckOutUser(null);
 
@@ -455,6 +474,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
                 Date lastModified = sourceFile.getLastModified();
                 String fullName = partR.getWorkspaceId() + "/parts/" + partR.getPartNumber() + "/" + partR.getVersion() + "/" + newPartIteration.getIteration() + "/" + fileName;
                 Geometry targetFile = new Geometry(quality, fullName, length, lastModified);
+                targetFile.setBinaryMeshLength(sourceFile.getBinaryMeshLength());
                 binDAO.createBinaryResource(targetFile);
                 newPartIteration.addGeometry(targetFile);
             }
@@ -600,7 +620,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
                 partI.setNativeCADFile(nativeCADBinaryResource);
 
             } else if (nativeCADBinaryResource.getFullName().equals(fullName)) {
-                nativeCADBinaryResource.setContentLength(pSize);
+                binDAO.updateContentLength(nativeCADBinaryResource, pSize);
                 nativeCADBinaryResource.setLastModified(new Date());
 
             } else {
@@ -661,9 +681,11 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
                 new BinaryResourceDAO(locale, em).createBinaryResource(geometryBinaryResource);
                 partI.addGeometry(geometryBinaryResource);
             } else {
-                geometryBinaryResource.setContentLength(pSize);
+                new BinaryResourceDAO(locale, em).updateContentLength(geometryBinaryResource, pSize);
                 geometryBinaryResource.setQuality(quality);
                 geometryBinaryResource.setLastModified(new Date());
+                // Replaced by the uploaded file, the binary mesh is outdated
+                geometryBinaryResource.setBinaryMeshLength(0);
             }
 
             if (box != null) {
@@ -701,7 +723,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
                 new BinaryResourceDAO(locale, em).createBinaryResource(binaryResource);
                 partI.addAttachedFile(binaryResource);
             } else {
-                binaryResource.setContentLength(pSize);
+                new BinaryResourceDAO(locale, em).updateContentLength(binaryResource, pSize);
                 binaryResource.setLastModified(new Date());
             }
             return binaryResource;
@@ -925,6 +947,45 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         return new ModificationNotificationDAO(em).getModificationNotifications(pPartIPK);
     }
 
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    @Override
+    public Map<PartIterationKey, List<ModificationNotification>> getModificationNotifications(String workspaceId, Collection<PartIterationKey> pPartIPKs) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException {
+        User user = userManager.checkWorkspaceReadAccess(workspaceId);
+
+        Map<PartIterationKey, List<ModificationNotification>> notifications = new HashMap<>();
+        Set<String> partNumbers = new LinkedHashSet<>();
+        for (PartIterationKey partIPK : pPartIPKs) {
+            if (workspaceId.equals(partIPK.getWorkspaceId())) {
+                notifications.put(partIPK, new ArrayList<>());
+                partNumbers.add(partIPK.getPartMasterNumber());
+            }
+        }
+
+        // One query for all the parts, notifications of the other iterations are dropped
+        Set<String> userGroupIds = user.isAdministrator() ? null : workspaceAccessCache.getUserGroupIds(user);
+        Map<PartRevisionKey, Boolean> readAccess = new HashMap<>();
+        ModificationNotificationDAO modificationNotificationDAO = new ModificationNotificationDAO(em);
+        List<String> numbers = new ArrayList<>(partNumbers);
+
+        for (int i = 0; i < numbers.size(); i += QUERY_CHUNK_SIZE) {
+            List<String> chunk = numbers.subList(i, Math.min(i + QUERY_CHUNK_SIZE, numbers.size()));
+            for (ModificationNotification notification : modificationNotificationDAO.getModificationNotifications(workspaceId, chunk)) {
+                PartIteration impactedPart = notification.getImpactedPart();
+                List<ModificationNotification> iterationNotifications = notifications.get(impactedPart.getKey());
+                if (iterationNotifications == null) {
+                    continue;
+                }
+                PartRevision partRevision = impactedPart.getPartRevision();
+                boolean readable = readAccess.computeIfAbsent(partRevision.getKey(),
+                        key -> user.isAdministrator() || isACLGrantReadAccess(user, userGroupIds, partRevision));
+                if (readable) {
+                    iterationNotifications.add(notification);
+                }
+            }
+        }
+        return notifications;
+    }
+
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
     @Override
     public void removeModificationNotificationsOnIteration(PartIterationKey pPartIPK) {
@@ -1040,6 +1101,8 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
             } else {
                 aclFactory.updateACL(workspaceId, partRevision.getACL(), pACLUserEntries, pACLUserGroupEntries);
             }
+            // The principals of the ACL are indexed to filter the searches
+            reindexACL(partRevision);
         } else {
             throw new AccessRightException(locale, user);
         }
@@ -1061,6 +1124,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
             if (acl != null) {
                 new ACLDAO(em).removeACLEntries(acl);
                 partRevision.setACL(null);
+                reindexACL(partRevision);
             }
         } else {
             throw new AccessRightException(locale, user);
@@ -1072,31 +1136,48 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
     @Override
     public List<PartRevision> searchPartRevisions(PartSearchQuery pQuery) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, ESServerException {
         User user = userManager.checkWorkspaceReadAccess(pQuery.getWorkspaceId());
-        List<PartRevision> fetchedPartRs = esSearcher.search(pQuery);
-        // Get Search Results
+        return applyPartRevisionReadAccess(user, esSearcher.search(pQuery, user));
+    }
 
-        ListIterator<PartRevision> ite = fetchedPartRs.listIterator();
-        while (ite.hasNext()) {
-            PartRevision partR = ite.next();
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public SearchResultPage<PartRevision> searchPartRevisions(PartSearchQuery pQuery, String cursor, int pageSize) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, ESServerException {
+        User user = userManager.checkWorkspaceReadAccess(pQuery.getWorkspaceId());
+        SearchResultPage<PartRevision> page = esSearcher.search(pQuery, user, cursor, pageSize);
+        page.setResults(applyPartRevisionReadAccess(user, page.getResults()));
+        return page;
+    }
 
+    // Listings and search hits, the latter being filtered on the indexed ACL which may be behind the current one.
+    // The ACL entries are loaded with the revisions and the groups of the user are resolved once for the whole list.
+    private List<PartRevision> applyPartRevisionReadAccess(User user, List<PartRevision> partRevisions) {
+        Set<String> userGroupIds = user.isAdministrator() ? null : workspaceAccessCache.getUserGroupIds(user);
+        List<PartRevision> partList = new ArrayList<>();
+        for (PartRevision partR : partRevisions) {
+            if (!user.isAdministrator() && !isACLGrantReadAccess(user, userGroupIds, partR)) {
+                continue;
+            }
             if (isCheckoutByAnotherUser(user, partR)) {
                 // Remove CheckedOut PartRevision From Results
                 em.detach(partR);
                 partR.removeLastIteration();
             }
-
-            if (!hasPartRevisionReadAccess(user, partR)) {
-                ite.remove();
-            }
+            partList.add(partR);
         }
-        return new ArrayList<>(fetchedPartRs);
+        return partList;
     }
 
-    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.CONVERTER_ROLE_ID})
     @Override
     public PartMaster findPartMasterByCADFileName(String workspaceId, String cadFileName) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException {
-        User user = userManager.checkWorkspaceReadAccess(workspaceId);
-        Locale locale = new Locale(user.getLanguage());
+        Locale locale;
+        if (contextManager.isCallerInRole(UserGroupMapping.CONVERTER_ROLE_ID)) {
+            // Converting a file of the workspace, the access has been checked when it was queued
+            locale = Locale.getDefault();
+        } else {
+            User user = userManager.checkWorkspaceReadAccess(workspaceId);
+            locale = new Locale(user.getLanguage());
+        }
 
         BinaryResource br = new BinaryResourceDAO(locale, em).findNativeCadBinaryResourceInWorkspace(workspaceId, cadFileName);
         if (br == null) {
@@ -1165,6 +1246,61 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         conversion.setEndDate(new Date());
     }
 
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @TransactionAttribute(value = TransactionAttributeType.REQUIRES_NEW)
+    @Override
+    public Conversion queueConversion(PartIterationKey partIterationKey, int priority) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException, CreationException {
+        User user = checkPartRevisionWriteAccess(partIterationKey.getPartRevision());
+        Locale locale = new Locale(user.getLanguage());
+        PartIterationDAO partIterationDAO = new PartIterationDAO(locale, em);
+        PartIteration partIteration = partIterationDAO.loadPartI(partIterationKey);
+        ConversionDAO conversionDAO = new ConversionDAO(locale, em);
+        Conversion conversion = conversionDAO.findConversion(partIteration);
+        if (conversion == null) {
+            conversion = new Conversion(partIteration, priority);
+            conversionDAO.createConversion(conversion);
+        } else if (conversion.isQueued()) {
+            // Still waiting, its converter is selected again for the new native CAD file
+            conversion.setPriority(Math.max(conversion.getPriority(), priority));
+            conversion.setConverter(null);
+        } else {
+            conversion.queue(priority);
+        }
+        return conversion;
+    }
+
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @TransactionAttribute(value = TransactionAttributeType.REQUIRES_NEW)
+    @Override
+    public Conversion cancelConversion(PartIterationKey partIterationKey) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, PartRevisionNotFoundException, AccessRightException, PartIterationNotFoundException {
+        User user = checkPartRevisionWriteAccess(partIterationKey.getPartRevision());
+        Locale locale = new Locale(user.getLanguage());
+        PartIterationDAO partIterationDAO = new PartIterationDAO(locale, em);
+        PartIteration partIteration = partIterationDAO.loadPartI(partIterationKey);
+        ConversionDAO conversionDAO = new ConversionDAO(locale, em);
+        Conversion conversion = conversionDAO.findConversion(partIteration);
+        if (conversion != null && conversion.isPending()) {
+            conversion.setPending(false);
+            conversion.setSucceed(false);
+            conversion.setCanceled(true);
+            conversion.setEndDate(new Date());
+        }
+        return conversion;
+    }
+
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public List<Conversion> getConversions(String workspaceId, Date since) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException {
+        User user = userManager.checkWorkspaceReadAccess(workspaceId);
+        List<Conversion> conversions = new ArrayList<>();
+        for (Conversion conversion : new ConversionDAO(new Locale(user.getLanguage()), em).findConversions(workspaceId, since)) {
+            if (hasPartRevisionReadAccess(user, conversion.getPartIteration().getPartRevision())) {
+                conversions.add(conversion);
+            }
+        }
+        return conversions;
+    }
+
     @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
     @TransactionAttribute(value = TransactionAttributeType.REQUIRES_NEW)
     @Override
@@ -1554,9 +1690,12 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
     private void removeCADFile(PartIteration partIteration)
             throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, PartIterationNotFoundException {
 
+        StorageUsageDAO storageUsageDAO = new StorageUsageDAO(em);
+
         // Delete native cad file
         BinaryResource br = partIteration.getNativeCADFile();
         if (br != null) {
+            storageUsageDAO.releaseUsage(br);
             try {
                 dataManager.deleteData(br);
             } catch (StorageException e) {
@@ -1567,6 +1706,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
 
         // Delete generated 3D files
         List<Geometry> geometries = new ArrayList<>(partIteration.getGeometries());
+        storageUsageDAO.releaseUsage(geometries);
         for (Geometry geometry : geometries) {
             try {
                 dataManager.deleteData(geometry);
@@ -1581,6 +1721,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
             throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, PartIterationNotFoundException {
 
         // Delete attached files
+        new StorageUsageDAO(em).releaseUsage(partIteration.getAttachedFiles());
         for (BinaryResource file : partIteration.getAttachedFiles()) {
             try {
                 dataManager.deleteData(file);
@@ -1865,6 +2006,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         PartMasterTemplate template = templateDAO.removePartMTemplate(pKey);
         BinaryResource file = template.getAttachedFile();
         if (file != null) {
+            new StorageUsageDAO(em).releaseUsage(file);
             try {
                 dataManager.deleteData(file);
             } catch (StorageException e) {
@@ -1892,6 +2034,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         if (bin != null && bin.getFullName().equals(fullName)) {
             binaryResource = bin;
         } else if(bin != null && !bin.getFullName().equals(fullName)) {
+            new StorageUsageDAO(locale, em).releaseUsage(bin);
             try {
                 dataManager.deleteData(bin);
             } catch (StorageException e) {
@@ -1904,7 +2047,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
             new BinaryResourceDAO(locale, em).createBinaryResource(binaryResource);
             template.setAttachedFile(binaryResource);
         } else {
-            binaryResource.setContentLength(pSize);
+            new BinaryResourceDAO(locale, em).updateContentLength(binaryResource, pSize);
             binaryResource.setLastModified(new Date());
         }
         return binaryResource;
@@ -1978,24 +2121,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
             partRevisions = new PartRevisionDAO(new Locale(user.getLanguage()), em).getPartRevisions(pWorkspaceId, start, pMaxResults);
         }
 
-        List<PartRevision> filteredPartRevisions = new ArrayList<>();
-
-        for (PartRevision partRevision : partRevisions) {
-            try {
-                checkPartRevisionReadAccess(partRevision.getKey());
-
-                if (isCheckoutByAnotherUser(user, partRevision)) {
-                    em.detach(partRevision);
-                    partRevision.removeLastIteration();
-                }
-
-                filteredPartRevisions.add(partRevision);
-
-            } catch (AccessRightException | PartRevisionNotFoundException e) {
-                LOGGER.log(Level.FINER, null, e);
-            }
-        }
-        return filteredPartRevisions;
+        return applyPartRevisionReadAccess(user, partRevisions);
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
@@ -2168,6 +2294,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
                 Date lastModified = sourceFile.getLastModified();
                 String fullName = partR.getWorkspaceId() + "/parts/" + partR.getPartNumber() + "/" + partR.getVersion() + "/1/" + fileName;
                 Geometry targetFile = new Geometry(quality, fullName, length, lastModified);
+                targetFile.setBinaryMeshLength(sourceFile.getBinaryMeshLength());
                 binDAO.createBinaryResource(targetFile);
                 firstPartI.addGeometry(targetFile);
                 try {
@@ -2272,6 +2399,9 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
 
         partRevisionDAO.createPartR(partR);
 
+        partRevisionEvent.select(new AnnotationLiteral<Created>() {
+        }).fire(new PartRevisionChangeEvent(partR));
+
         return partR;
 
     }
@@ -2447,6 +2577,15 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         User user = userManager.checkWorkspaceReadAccess(ciKey.getWorkspace());
         Locale locale = new Locale(user.getLanguage());
 
+        String cacheKey = productStructureCache.getKey(ciKey, filter, path, pDepth);
+        if (cacheKey != null) {
+            List<PartLink> rootPath = path != null ? path : Collections.singletonList(getRootPartUsageLink(ciKey));
+            Component cachedComponent = productStructureCache.get(cacheKey, em, rootPath);
+            if (cachedComponent != null) {
+                return cachedComponent;
+            }
+        }
+        long cacheGeneration = productStructureCache.getGeneration();
 
         PSFilterVisitor psFilterVisitor = new PSFilterVisitor(em, user, filter) {
             @Override
@@ -2493,7 +2632,11 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
             psFilterVisitor.visit(path, pDepth);
         }
 
-        return psFilterVisitor.getComponent();
+        Component component = psFilterVisitor.getComponent();
+        if (cacheKey != null) {
+            productStructureCache.put(cacheKey, component, path, cacheGeneration);
+        }
+        return component;
 
     }
 
@@ -2797,7 +2940,12 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
 
         QueryDAO queryDAO = new QueryDAO(locale, em);
         List<PartRevision> parts = queryDAO.runQuery(workspace, query);
+        removeUnreadablePartRevisions(user, parts);
+
+        return parts;
+    }
 
+    private void removeUnreadablePartRevisions(User user, List<PartRevision> parts) {
         ListIterator<PartRevision> ite = parts.listIterator();
 
         while (ite.hasNext()) {
@@ -2812,8 +2960,6 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
                 ite.remove();
             }
         }
-
-        return parts;
     }
 
     @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
@@ -3104,11 +3250,114 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
     public List<QueryResultRow> filterProductBreakdownStructure(String workspaceId, Query query) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, ConfigurationItemNotFoundException, NotAllowedException, PartMasterNotFoundException, EntityConstraintException {
         List<QueryResultRow> rows = new ArrayList<>();
         for (QueryContext queryContext : query.getContexts()) {
-            rows.addAll(filterPBS(workspaceId, queryContext));
+            filterPBS(workspaceId, queryContext, null, -1, rows::add);
         }
         return rows;
     }
 
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public SearchResultPage<QueryResultRow> runQuery(String workspaceId, Query query, String cursor, int pageSize) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException {
+        User user = userManager.checkWorkspaceReadAccess(workspaceId);
+        Locale locale = new Locale(user.getLanguage());
+        Workspace workspace = new WorkspaceDAO(locale, em).loadWorkspace(workspaceId);
+
+        List<PartRevision> page = runQueryPage(new QueryDAO(locale, em), workspace, query, cursor, pageSize);
+        String nextCursor = getQueryCursor(page, pageSize);
+
+        List<QueryResultRow> rows = new ArrayList<>();
+        for (PartRevision partRevision : getReadableCheckedInPartRevisions(user, page)) {
+            rows.add(new QueryResultRow(partRevision));
+        }
+
+        SearchResultPage<QueryResultRow> resultPage = new SearchResultPage<>();
+        resultPage.setResults(rows);
+        resultPage.setNextCursor(nextCursor);
+        return resultPage;
+    }
+
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public SearchResultPage<QueryResultRow> runQueryInContexts(String workspaceId, Query query, String cursor, int pageSize) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, ConfigurationItemNotFoundException, NotAllowedException, PartMasterNotFoundException, EntityConstraintException {
+        User user = userManager.checkWorkspaceReadAccess(workspaceId);
+        Locale locale = new Locale(user.getLanguage());
+        Workspace workspace = new WorkspaceDAO(locale, em).loadWorkspace(workspaceId);
+
+        int contextIndex = 0;
+        String fromPath = null;
+        if (cursor != null) {
+            int separator = cursor.indexOf(':');
+            contextIndex = Integer.parseInt(cursor.substring(0, separator));
+            fromPath = separator + 1 < cursor.length() ? cursor.substring(separator + 1) : null;
+        }
+
+        List<QueryContext> contexts = query.getContexts();
+        List<QueryResultRow> walkedRows = new ArrayList<>();
+        String lastPath = filterPBS(workspaceId, contexts.get(contextIndex), fromPath, pageSize, walkedRows::add);
+
+        // Only the rows of the revisions matching the query are kept, the query being run for the
+        // parts of the page only
+        Set<String> partNumbers = new HashSet<>();
+        for (QueryResultRow row : walkedRows) {
+            partNumbers.add(row.getPartRevision().getPartNumber());
+        }
+        Set<PartRevisionKey> matchingRevisions = new HashSet<>();
+        if (!partNumbers.isEmpty()) {
+            List<PartRevision> partRevisions = new QueryDAO(locale, em).runQuery(workspace, query, partNumbers);
+            for (PartRevision partRevision : getReadableCheckedInPartRevisions(user, partRevisions)) {
+                matchingRevisions.add(partRevision.getKey());
+            }
+        }
+        List<QueryResultRow> rows = new ArrayList<>();
+        for (QueryResultRow row : walkedRows) {
+            if (matchingRevisions.contains(row.getPartRevision().getKey())) {
+                rows.add(row);
+            }
+        }
+
+        String nextCursor = null;
+        if (lastPath != null) {
+            nextCursor = contextIndex + ":" + lastPath;
+        } else if (contextIndex + 1 < contexts.size()) {
+            nextCursor = (contextIndex + 1) + ":";
+        }
+        return new SearchResultPage<>(rows, nextCursor, walkedRows.size());
+    }
+
+    private List<PartRevision> runQueryPage(QueryDAO queryDAO, Workspace workspace, Query query, String cursor, int pageSize) {
+        String fromNumber = "";
+        String fromVersion = "";
+        if (cursor != null) {
+            int separator = cursor.indexOf(':');
+            fromVersion = cursor.substring(0, separator);
+            fromNumber = cursor.substring(separator + 1);
+        }
+        return queryDAO.runQuery(workspace, query, fromNumber, fromVersion, pageSize);
+    }
+
+    /**
+     * Return the cursor of the page following the given one. The cursor holds the version, then the
+     * part number of the last revision of the page, versions never holding a colon.
+     */
+    private static String getQueryCursor(List<PartRevision> page, int pageSize) {
+        if (page.size() < pageSize) {
+            return null;
+        }
+        PartRevision last = page.get(page.size() - 1);
+        return last.getVersion() + ":" + last.getPartNumber();
+    }
+
+    private List<PartRevision> getReadableCheckedInPartRevisions(User user, List<PartRevision> page) {
+        List<PartRevision> revisions = new ArrayList<>();
+        for (PartRevision partRevision : page) {
+            if (partRevision.getLastCheckedInIteration() != null) {
+                revisions.add(partRevision);
+            }
+        }
+        removeUnreadablePartRevisions(user, revisions);
+        return revisions;
+    }
+
     @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
     @Override
     public List<BinaryResource> getBinaryResourceFromBaseline(int baselineId) {
@@ -3255,7 +3504,19 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         return queryDAO.loadQuery(queryId);
     }
 
-    private List<QueryResultRow> filterPBS(String workspaceId, QueryContext queryContext) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, ConfigurationItemNotFoundException, NotAllowedException, EntityConstraintException, PartMasterNotFoundException {
+    /**
+     * Walks the product structure of a context and passes a row to the consumer for each path
+     * resolving to a part revision.
+     *
+     * The walk may be split into pages: it then resumes after the last path walked by the previous
+     * page, skipping the subtrees walked before it, and stops once the given number of paths have
+     * been walked.
+     *
+     * @param fromPath The last path walked by the previous page, null to walk from the root
+     * @param maxPaths The number of paths to walk, -1 for all of them
+     * @return the last path walked if the walk was stopped before its end, null otherwise
+     */
+    private String filterPBS(String workspaceId, QueryContext queryContext, String fromPath, int maxPaths, Consumer<QueryResultRow> consumer) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, ConfigurationItemNotFoundException, NotAllowedException, EntityConstraintException, PartMasterNotFoundException {
         User user = userManager.checkWorkspaceReadAccess(workspaceId);
 
         String configurationItemId = queryContext.getConfigurationItemId();
@@ -3264,8 +3525,6 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         ConfigurationItemKey ciKey = new ConfigurationItemKey(workspaceId, configurationItemId);
         Locale locale = new Locale(user.getLanguage());
 
-        List<QueryResultRow> rows = new ArrayList<>();
-
         PSFilter filter = serialNumber != null ? psFilterManager.getPSFilter(ciKey, "pi-" + serialNumber, false) : psFilterManager.getPSFilter(ciKey, "latest", false);
 
         ProductInstanceIteration productInstanceIteration = null;
@@ -3277,12 +3536,27 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         ConfigurationItem ci = new ConfigurationItemDAO(locale, em).loadConfigurationItem(ciKey);
         PartMaster root = ci.getDesignItem();
 
-        List<PathToPathLink> pathToPathLinks = ci.getPathToPathLinks();
-        PathDataIterationDAO pathDataIterationDAO = new PathDataIterationDAO(em);
+        // Links by source and target path, each linked path is decoded once
+        Map<String, List<PathToPathLink>> linksBySource = new HashMap<>();
+        Map<String, List<PathToPathLink>> linksByTarget = new HashMap<>();
+        for (PathToPathLink pathToPathLink : ci.getPathToPathLinks()) {
+            addPathToPathLink(linksBySource, pathToPathLink.getSourcePath(), pathToPathLink);
+            addPathToPathLink(linksByTarget, pathToPathLink.getTargetPath(), pathToPathLink);
+        }
+        Map<String, List<PartLink>> decodedPaths = new HashMap<>();
 
-        final ProductInstanceIteration finalProductInstanceIteration = productInstanceIteration;
+        Map<String, PathDataIteration> pathDataIterations = productInstanceIteration != null
+                ? new PathDataIterationDAO(em).getLastPathDataIterations(productInstanceIteration)
+                : Collections.<String, PathDataIteration>emptyMap();
+
+        String[] lastPath = {null};
+        String[] stoppedAfter = {null};
 
         PSFilterVisitor psFilterVisitor = new PSFilterVisitor(em, user, filter) {
+
+            private boolean resumed = fromPath == null;
+            private int walkedPaths;
+
             @Override
             public void onIndeterminateVersion(PartMaster partMaster, List<PartIteration> partIterations) throws NotAllowedException {
                 // Unused here
@@ -3310,6 +3584,26 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
 
             @Override
             public boolean onPathWalk(List<PartLink> path, List<PartMaster> parts) {
+                String pathAsString = Tools.getPathAsString(path);
+
+                if (!resumed) {
+                    if (pathAsString.equals(fromPath)) {
+                        // Walked by the previous page, but not its subtree
+                        resumed = true;
+                        return true;
+                    }
+                    // Before the path to resume from, only its ancestors have not been fully walked
+                    return fromPath.startsWith(pathAsString + "-");
+                }
+
+                if (walkedPaths == maxPaths) {
+                    stoppedAfter[0] = lastPath[0];
+                    stop();
+                    return false;
+                }
+                walkedPaths++;
+                lastPath[0] = pathAsString;
+
                 QueryResultRow row = new QueryResultRow();
                 double totalAmount = 1;
                 for (PartLink pl : path) {
@@ -3317,7 +3611,6 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
                         totalAmount *= pl.getAmount();
                     }
                 }
-                String pathAsString = Tools.getPathAsString(path);
                 row.setPath(pathAsString);
                 int depth = parts.size() -1;
                 PartMaster part = parts.get(parts.size() - 1);
@@ -3329,28 +3622,27 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
                     row.setContext(queryContext);
                     row.setAmount(totalAmount);
 
-                    for(PathToPathLink pathToPathLink:pathToPathLinks){
-                        try{
-                            if(pathToPathLink.getSourcePath().equals(pathAsString)){
-                                row.addSource(pathToPathLink.getType(), decodePath(ciKey, pathToPathLink.getTargetPath()));
+                    try{
+                        if(linksBySource.containsKey(pathAsString)){
+                            for(PathToPathLink pathToPathLink:linksBySource.get(pathAsString)){
+                                row.addSource(pathToPathLink.getType(), decodePath(ciKey, pathToPathLink.getTargetPath(), decodedPaths));
                             }
-                            if(pathToPathLink.getTargetPath().equals(pathAsString)){
-                                row.addTarget(pathToPathLink.getType(), decodePath(ciKey, pathToPathLink.getTargetPath()));
+                        }
+                        if(linksByTarget.containsKey(pathAsString)){
+                            for(PathToPathLink pathToPathLink:linksByTarget.get(pathAsString)){
+                                row.addTarget(pathToPathLink.getType(), decodePath(ciKey, pathToPathLink.getSourcePath(), decodedPaths));
                             }
-                        } catch (WorkspaceNotFoundException |UserNotFoundException | ConfigurationItemNotFoundException | PartUsageLinkNotFoundException | UserNotActiveException e) {
-                            LOGGER.log(Level.SEVERE,null,e);
                         }
+                    } catch (WorkspaceNotFoundException |UserNotFoundException | ConfigurationItemNotFoundException | PartUsageLinkNotFoundException | UserNotActiveException e) {
+                        LOGGER.log(Level.SEVERE,null,e);
                     }
 
-                    if(finalProductInstanceIteration != null) {
-                        PathDataIteration pathDataIteration = pathDataIterationDAO.getLastPathDataIteration(pathAsString, finalProductInstanceIteration);
-
-                        if (null != pathDataIteration) {
-                            row.setPathDataIteration(pathDataIteration);
-                        }
+                    PathDataIteration pathDataIteration = pathDataIterations.get(pathAsString);
+                    if (null != pathDataIteration) {
+                        row.setPathDataIteration(pathDataIteration);
                     }
 
-                    rows.add(row);
+                    consumer.accept(row);
                 }
                 return true;
             }
@@ -3362,8 +3654,25 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         };
 
         psFilterVisitor.visit(root, -1);
+        return stoppedAfter[0];
+    }
 
-        return rows;
+    private static void addPathToPathLink(Map<String, List<PathToPathLink>> linksByPath, String path, PathToPathLink pathToPathLink) {
+        List<PathToPathLink> links = linksByPath.get(path);
+        if (links == null) {
+            links = new ArrayList<>();
+            linksByPath.put(path, links);
+        }
+        links.add(pathToPathLink);
+    }
+
+    private List<PartLink> decodePath(ConfigurationItemKey ciKey, String path, Map<String, List<PartLink>> decodedPaths) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, PartUsageLinkNotFoundException, ConfigurationItemNotFoundException {
+        List<PartLink> decodedPath = decodedPaths.get(path);
+        if (decodedPath == null) {
+            decodedPath = decodePath(ciKey, path);
+            decodedPaths.put(path, decodedPath);
+        }
+        return decodedPath;
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
@@ -3627,7 +3936,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
         if (partRevision.getACL() == null) {                                                                                // Check if the part haven't ACL
             return userManager.checkWorkspaceWriteAccess(workspaceId);
         }
-        if (partRevision.getACL().hasWriteAccess(user)) {                                                                 // Check if the ACL grant write access
+        if (partRevision.getACL().hasWriteAccess(user, workspaceAccessCache.getUserGroupIds(user))) {                    // Check if the ACL grant write access
             return user;
         }
         throw new AccessRightException(new Locale(user.getLanguage()), user);                                            // Else throw a AccessRightException
@@ -3653,6 +3962,12 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
 
     }
 
+    private void reindexACL(PartRevision partRevision) {
+        if (partRevision.getLastIteration() != null) {
+            esIndexer.index(partRevision.getLastIteration());
+        }
+    }
+
     /**
      * Say if a user, which have access to the workspace, have read access to a part revision
      *
@@ -3688,7 +4003,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
      */
     private boolean hasPartOrWorkspaceWriteAccess(User user, PartRevision partRevision) throws WorkspaceNotFoundException {
         return partRevision.getACL() == null ?
-                userManager.hasWorkspaceWriteAccess(user,partRevision.getWorkspaceId()) : partRevision.getACL().hasWriteAccess(user);
+                userManager.hasWorkspaceWriteAccess(user,partRevision.getWorkspaceId()) : partRevision.getACL().hasWriteAccess(user, workspaceAccessCache.getUserGroupIds(user));
     }
 
     private boolean isAuthor(User user, PartRevision partRevision) {
@@ -3696,7 +4011,11 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
     }
 
     private boolean isACLGrantReadAccess(User user, PartRevision partRevision) {
-        return partRevision.getACL() == null || partRevision.getACL().hasReadAccess(user);
+        return partRevision.getACL() == null || partRevision.getACL().hasReadAccess(user, workspaceAccessCache.getUserGroupIds(user));
+    }
+
+    private boolean isACLGrantReadAccess(User user, Set<String> userGroupIds, PartRevision partRevision) {
+        return partRevision.getACL() == null || partRevision.getACL().hasReadAccess(user, userGroupIds);
     }
 
     private boolean isACLGrantReadAccess(User user, PartMasterTemplate template) {
@@ -3704,7 +4023,7 @@ public class ProductManagerBean implements IProductManagerWS, IProductManagerLoc
     }
 
     private boolean isACLGrantWriteAccess(User user, PartRevision partRevision) {
-        return partRevision.getACL() == null || partRevision.getACL().hasWriteAccess(user);
+        return partRevision.getACL() == null || partRevision.getACL().hasWriteAccess(user, workspaceAccessCache.getUserGroupIds(user));
     }
 
     private boolean isCheckoutByUser(User user, PartRevision partRevision) {
@@ -0,0 +1,134 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server;
+
+import com.docdoku.core.security.SessionToken;
+import com.docdoku.core.security.UserGroupMapping;
+import com.docdoku.core.services.IContextManagerLocal;
+import com.docdoku.core.services.ISessionTokenManagerLocal;
+import com.docdoku.server.security.SessionTokenRevocations;
+import com.docdoku.server.security.SessionTokenSigner;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.annotation.security.DeclareRoles;
+import javax.annotation.security.PermitAll;
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.*;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Issues the session tokens of the REST API and verifies them in memory.
+ *
+ * Tokens are signed with a key read from the <code>sessionTokenKeyFile</code>, created at the first
+ * start. Sharing this file between the nodes of a cluster lets each of them verify the tokens
+ * issued by the others. Revocations are stored in the database, loaded at startup and read again
+ * every few seconds, which bounds the delay before the other nodes know them.
+ */
+@DeclareRoles({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
+@Local(ISessionTokenManagerLocal.class)
+@Singleton(name = "SessionTokenManagerBean")
+@Lock(LockType.READ)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class SessionTokenManagerBean implements ISessionTokenManagerLocal {
+
+    private static final Logger LOGGER = Logger.getLogger(SessionTokenManagerBean.class.getName());
+
+    @Resource(name = "sessionTokenKeyFile")
+    private String keyFile;
+
+    // In minutes
+    @Resource(name = "sessionTokenLifetime")
+    private Integer lifetime;
+
+    @Inject
+    private IContextManagerLocal contextManager;
+
+    @Inject
+    private SessionTokenRevocations revocations;
+
+    private SessionTokenSigner signer;
+
+    @PostConstruct
+    private void init() {
+        byte[] key;
+        try {
+            key = SessionTokenSigner.loadOrCreateKey(Paths.get(keyFile));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Cannot read the session token key " + keyFile + ", tokens will not be valid after a restart", e);
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        }
+        signer = new SessionTokenSigner(key);
+        revocations.load(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(lifetime));
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/10", persistent = false)
+    public void loadRevocations() {
+        revocations.load(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(lifetime));
+    }
+
+    @Schedule(hour = "*", minute = "15", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void removeExpiredRevocations() {
+        int removed = revocations.removeExpiredRevocations();
+        LOGGER.log(Level.FINE, "Removed {0} revocations of expired session tokens", removed);
+    }
+
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
+    @Override
+    public SessionToken createToken() {
+        String groupName = contextManager.isCallerInRole(UserGroupMapping.ADMIN_ROLE_ID) ? UserGroupMapping.ADMIN_ROLE_ID : UserGroupMapping.REGULAR_USER_ROLE_ID;
+        return signer.createToken(contextManager.getCallerPrincipalLogin(), groupName, System.currentTimeMillis(), TimeUnit.MINUTES.toMillis(lifetime));
+    }
+
+    @PermitAll
+    @Override
+    public SessionToken verifyToken(String pValue) {
+        SessionToken token = signer.verifyToken(pValue, System.currentTimeMillis());
+        if (token == null || revocations.isRevoked(token)) {
+            return null;
+        }
+        return token;
+    }
+
+    @PermitAll
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void revokeToken(String pValue) {
+        SessionToken token = signer.verifyToken(pValue, System.currentTimeMillis());
+        if (token != null) {
+            revocations.revoke(token);
+        }
+    }
+
+    @PermitAll
+    @Override
+    public long getAccountRevision(String pLogin) {
+        return revocations.getAccountRevision(pLogin);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server;
+
+import com.docdoku.core.common.Workspace;
+import com.docdoku.server.dao.StorageUsageDAO;
+import com.docdoku.server.dao.WorkspaceDAO;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.*;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rebuilds the storage usage counters from the binary resources of the vault, every night.
+ *
+ * The counters are maintained along with the binary resources, but files removed outside of the
+ * managers, or before the counters existed, would make them drift. They are also rebuilt shortly
+ * after the server starts, so that a fresh installation does not wait for the night.
+ *
+ * Each workspace is rebuilt in its own transaction; a file stored in a workspace while it is rebuilt
+ * may be miscounted until the next run.
+ */
+@Singleton(name = "StorageUsageReconciler")
+@Startup
+@Lock(LockType.READ)
+public class StorageUsageReconciler {
+
+    private static final long STARTUP_DELAY = 60 * 1000;
+
+    private static final Logger LOGGER = Logger.getLogger(StorageUsageReconciler.class.getName());
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Resource
+    private SessionContext ctx;
+
+    @Resource
+    private TimerService timerService;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    private void init() {
+        timerService.createSingleActionTimer(STARTUP_DELAY, new TimerConfig(null, false));
+    }
+
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void reconcileAtStartup() {
+        reconcileAll();
+    }
+
+    @Schedule(hour = "3", minute = "30", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void reconcileAll() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            StorageUsageReconciler self = ctx.getBusinessObject(StorageUsageReconciler.class);
+            for (String workspaceId : self.getWorkspaceIds()) {
+                try {
+                    self.reconcileWorkspace(workspaceId);
+                } catch (EJBException e) {
+                    LOGGER.log(Level.WARNING, "Could not rebuild the storage usage of workspace " + workspaceId, e);
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<String> getWorkspaceIds() {
+        List<String> workspaceIds = new ArrayList<>();
+        for (Workspace workspace : new WorkspaceDAO(em).getAll()) {
+            workspaceIds.add(workspace.getId());
+        }
+        return workspaceIds;
+    }
+
+    /**
+     * Replaces the counters of a workspace and logs the difference, if any.
+     *
+     * @return The number of bytes used by the workspace
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public long reconcileWorkspace(String workspaceId) {
+        StorageUsageDAO storageUsageDAO = new StorageUsageDAO(em);
+        long previous = storageUsageDAO.getUsage(workspaceId);
+
+        long usage = 0;
+        for (Map.Entry<String, Long> entry : storageUsageDAO.rebuildUsage(workspaceId).entrySet()) {
+            usage += entry.getValue();
+        }
+
+        if (usage != previous) {
+            LOGGER.log(Level.INFO, "Storage usage of workspace " + workspaceId + " corrected from " + previous + " to " + usage + " bytes");
+        }
+        return usage;
+    }
+}
@@ -29,6 +29,9 @@ import com.docdoku.core.util.NamingConvention;
 import com.docdoku.server.dao.*;
 import com.docdoku.server.esindexer.ESIndexer;
 import com.docdoku.server.events.*;
+import com.docdoku.server.security.WorkspaceAccess;
+import com.docdoku.server.security.WorkspaceAccessCache;
+import com.docdoku.server.security.WorkspaceAccessContext;
 
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.RolesAllowed;
@@ -40,8 +43,12 @@ import javax.inject.Inject;
 import javax.jws.WebService;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 @DeclareRoles({UserGroupMapping.GUEST_PROXY_ROLE_ID, UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
 @Local(IUserManagerLocal.class)
@@ -61,10 +68,22 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
     @Inject
     private Event<UserRemovedEvent> userRemovedEvent;
 
+    @Inject
+    private Event<WorkspaceAccessChangeEvent> workspaceAccessChangeEvent;
+
+    @Inject
+    private Event<AccountChangeEvent> accountChangeEvent;
+
     @Inject
     private IContextManagerLocal contextManager;
 
+    @Inject
+    private WorkspaceAccessCache workspaceAccessCache;
+
+    @Inject
+    private WorkspaceAccessContext workspaceAccessContext;
 
+    private static final Logger LOGGER = Logger.getLogger(UserManagerBean.class.getName());
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
     @Override
@@ -83,6 +102,8 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
 
         userDAO.removeUserMembership(new WorkspaceUserMembershipKey(pGroupKey.getWorkspaceId(), pGroupKey.getWorkspaceId(), pLogin));
         group.addUser(userToAdd);
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pGroupKey.getWorkspaceId()));
+        accountChangeEvent.fire(new AccountChangeEvent(pLogin, false, true));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -98,6 +119,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
             userDAO.createUser(userToAdd);
         }
         userDAO.addUserMembership(workspace, userToAdd);
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @Override
@@ -113,6 +135,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         userRemovedEvent.select(new AnnotationLiteral<Removed>() {
         }).fire(new UserRemovedEvent(user));
         userDAO.removeUser(user);
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
 
         return workspace;
     }
@@ -126,6 +149,10 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
             User userToRemove = em.getReference(User.class, new UserKey(pGroupKey.getWorkspaceId(), login));
             group.removeUser(userToRemove);
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pGroupKey.getWorkspaceId()));
+        for (String login : pLogins) {
+            accountChangeEvent.fire(new AccountChangeEvent(login, false, true));
+        }
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -135,6 +162,8 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         UserGroup group = new UserGroupDAO(new Locale(account.getLanguage()), em).loadUserGroup(pGroupKey);
         User userToRemove = em.getReference(User.class, new UserKey(pGroupKey.getWorkspaceId(), login));
         group.removeUser(userToRemove);
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pGroupKey.getWorkspaceId()));
+        accountChangeEvent.fire(new AccountChangeEvent(login, false, true));
         return group;
     }
 
@@ -299,6 +328,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
                 ms.setReadOnly(pReadOnly);
             }
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -310,6 +340,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         if (ms != null) {
             ms.setReadOnly(pReadOnly);
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
         return ms;
     }
 
@@ -322,6 +353,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         if (ms != null) {
             ms.setReadOnly(pReadOnly);
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
 
         return ms;
     }
@@ -337,6 +369,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
                 ms.setReadOnly(pReadOnly);
             }
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -349,6 +382,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
             User member = em.getReference(User.class, new UserKey(pWorkspaceId, login));
             userDAO.addUserMembership(workspace, member);
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -361,6 +395,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
             UserGroup member = em.getReference(UserGroup.class, new UserGroupKey(pWorkspaceId, id));
             groupDAO.addUserGroupMembership(workspace, member);
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -371,7 +406,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         UserDAO userDAO = new UserDAO(new Locale(account.getLanguage()), em);
         User member = em.getReference(User.class, new UserKey(pWorkspaceId, login));
         userDAO.addUserMembership(workspace, member);
-
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -382,7 +417,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         UserGroupDAO groupDAO = new UserGroupDAO(new Locale(account.getLanguage()), em);
         UserGroup member = em.getReference(UserGroup.class, new UserGroupKey(pWorkspaceId, groupId));
         groupDAO.addUserGroupMembership(workspace, member);
-
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
 
@@ -394,6 +429,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         for (String id : pGroupIds) {
             groupDAO.removeUserGroupMembership(new WorkspaceUserGroupMembershipKey(pWorkspaceId, pWorkspaceId, id));
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -404,6 +440,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         for (String login : pLogins) {
             userDAO.removeUserMembership(new WorkspaceUserMembershipKey(pWorkspaceId, pWorkspaceId, login));
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -412,7 +449,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         Account account = checkAdmin(pWorkspaceId);
         UserGroupDAO groupDAO = new UserGroupDAO(new Locale(account.getLanguage()), em);
         groupDAO.removeUserGroupMembership(new WorkspaceUserGroupMembershipKey(pWorkspaceId, pWorkspaceId, groupId));
-
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -428,7 +465,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
             }).fire(new UserRemovedEvent(user));
             userDAO.removeUser(user);
         }
-
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -437,7 +474,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         Account account = checkAdmin(pWorkspaceId);
         UserDAO userDAO = new UserDAO(new Locale(account.getLanguage()), em);
         userDAO.removeUserMembership(new WorkspaceUserMembershipKey(pWorkspaceId, pWorkspaceId, login));
-
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -446,13 +483,21 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         Account account = checkAdmin(pWorkspaceId);
         Locale locale = new Locale(account.getLanguage());
         UserGroupDAO groupDAO = new UserGroupDAO(locale, em);
+        Set<String> members = new HashSet<>();
         for (String id : pIds) {
             UserGroupKey userGroupKey = new UserGroupKey(pWorkspaceId, id);
             if (groupDAO.hasACLConstraint(userGroupKey)) {
                 throw new EntityConstraintException(locale, "EntityConstraintException11");
             }
+            for (User user : groupDAO.loadUserGroup(userGroupKey).getUsers()) {
+                members.add(user.getLogin());
+            }
             groupDAO.removeUserGroup(userGroupKey);
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspaceId));
+        for (String login : members) {
+            accountChangeEvent.fire(new AccountChangeEvent(login, false, true));
+        }
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -460,6 +505,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
     public void updateWorkspace(Workspace pWorkspace) throws AccessRightException, AccountNotFoundException, WorkspaceNotFoundException {
         Account account = checkAdmin(pWorkspace);
         new WorkspaceDAO(new Locale(account.getLanguage()), em).updateWorkspace(pWorkspace);
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(pWorkspace.getId()));
     }
 
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID, UserGroupMapping.ADMIN_ROLE_ID})
@@ -483,6 +529,7 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
         AccountDAO accountDAO = new AccountDAO(em);
         accountDAO.updateCredential(passwdRR.getLogin(), pPassword);
         passwdRRequestDAO.removePasswordRecoveryRequest(passwdRR);
+        accountChangeEvent.fire(new AccountChangeEvent(passwdRR.getLogin(), true));
     }
 
     @Override
@@ -496,23 +543,15 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
     @Override
     public User checkWorkspaceReadAccess(String pWorkspaceId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException {
         String login = contextManager.getCallerPrincipalLogin();
-        User user;
-        UserDAO userDAO = new UserDAO(em);
-        WorkspaceUserMembership userMS = userDAO.loadUserMembership(new WorkspaceUserMembershipKey(pWorkspaceId, pWorkspaceId, login));
-        if (userMS != null) {
-            user = userMS.getMember();
-        } else {
-            Workspace wks = new WorkspaceDAO(em).loadWorkspace(pWorkspaceId);
-            user = userDAO.loadUser(new UserKey(pWorkspaceId, login));
-            if (!wks.getAdmin().getLogin().equals(login)) {
-                WorkspaceUserGroupMembership[] groupMS = new UserGroupDAO(em).getUserGroupMemberships(pWorkspaceId, user);
-                if (groupMS.length == 0) {
-                    throw new UserNotActiveException(new Locale(user.getLanguage()), login);
-                }
-            }
+        WorkspaceAccess access = getWorkspaceAccess(login, pWorkspaceId);
+        User user = new UserDAO(em).loadUser(new UserKey(pWorkspaceId, login));
+        if (!access.hasReadAccess()) {
+            throw new UserNotActiveException(new Locale(user.getLanguage()), login);
+        }
+        if (workspaceAccessContext.isFirstNotification(login, pWorkspaceId, "read")) {
+            workspaceAccessEvent.select(new AnnotationLiteral<Read>() {
+            }).fire(new WorkspaceAccessEvent(user));
         }
-        workspaceAccessEvent.select(new AnnotationLiteral<Read>() {
-        }).fire(new WorkspaceAccessEvent(user));
 
         return user;
     }
@@ -524,11 +563,13 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
 
         UserDAO userDAO = new UserDAO(em);
         User user = userDAO.loadUser(new UserKey(pWorkspaceId, login));
-        if(!hasWorkspaceWriteAccess(user,pWorkspaceId)) {
+        if (!getWorkspaceAccess(login, pWorkspaceId).hasWriteAccess()) {
             throw new AccessRightException(new Locale(user.getLanguage()), user);
         }
-        workspaceAccessEvent.select(new AnnotationLiteral<Write>() {
-        }).fire(new WorkspaceAccessEvent(user));
+        if (workspaceAccessContext.isFirstNotification(login, pWorkspaceId, "write")) {
+            workspaceAccessEvent.select(new AnnotationLiteral<Write>() {
+            }).fire(new WorkspaceAccessEvent(user));
+        }
 
         return user;
     }
@@ -536,32 +577,61 @@ public class UserManagerBean implements IUserManagerLocal, IUserManagerWS {
     @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
     @Override
     public boolean hasWorkspaceWriteAccess(User user, String pWorkspaceId) throws WorkspaceNotFoundException {
-        String login = contextManager.getCallerPrincipalLogin();
+        try {
+            return getWorkspaceAccess(contextManager.getCallerPrincipalLogin(), pWorkspaceId).hasWriteAccess();
+        } catch (UserNotFoundException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return false;
+        }
+    }
+
+    /*
+    * Gets the access of the user to the workspace, from the current request, the cache, or resolved
+    * from the memberships.
+    */
+    private WorkspaceAccess getWorkspaceAccess(String login, String pWorkspaceId) throws UserNotFoundException, WorkspaceNotFoundException {
+        long generation = workspaceAccessCache.getGeneration();
+        WorkspaceAccess access = workspaceAccessContext.get(login, pWorkspaceId, generation);
+        if (access == null) {
+            access = workspaceAccessCache.get(login, pWorkspaceId);
+            if (access == null) {
+                access = resolveWorkspaceAccess(login, pWorkspaceId, generation);
+                workspaceAccessCache.put(access);
+            }
+            workspaceAccessContext.put(access, generation);
+        }
+        return access;
+    }
 
+    private WorkspaceAccess resolveWorkspaceAccess(String login, String pWorkspaceId, long generation) throws UserNotFoundException, WorkspaceNotFoundException {
         UserDAO userDAO = new UserDAO(em);
+        UserGroupDAO groupDAO = new UserGroupDAO(em);
+        User user;
+        Workspace wks;
+        WorkspaceUserMembership userMS = userDAO.loadUserMembership(new WorkspaceUserMembershipKey(pWorkspaceId, pWorkspaceId, login));
+        if (userMS != null) {
+            user = userMS.getMember();
+            wks = userMS.getWorkspace();
+        } else {
+            wks = new WorkspaceDAO(em).loadWorkspace(pWorkspaceId);
+            user = userDAO.loadUser(new UserKey(pWorkspaceId, login));
+        }
 
-        Workspace wks = new WorkspaceDAO(em).loadWorkspace(pWorkspaceId);
-        if (!wks.getAdmin().getLogin().equals(login)) {
-            WorkspaceUserMembership userMS = userDAO.loadUserMembership(new WorkspaceUserMembershipKey(pWorkspaceId, pWorkspaceId, login));
-            if (userMS != null) {
-                if (userMS.isReadOnly()) {
-                    return false;
-                }
-            } else {
-                WorkspaceUserGroupMembership[] groupMS = new UserGroupDAO(em).getUserGroupMemberships(pWorkspaceId, user);
-                boolean readOnly = true;
-                for (WorkspaceUserGroupMembership ms : groupMS) {
-                    if (!ms.isReadOnly()) {
-                        readOnly = false;
-                        break;
-                    }
-                }
-                if (readOnly) {
-                    return false;
-                }
+        boolean isAdmin = wks.getAdmin().getLogin().equals(login);
+        boolean readAccess = isAdmin || userMS != null;
+        boolean writeAccess = isAdmin || userMS != null && !userMS.isReadOnly();
+        if (!isAdmin && userMS == null) {
+            for (WorkspaceUserGroupMembership groupMS : groupDAO.getUserGroupMemberships(pWorkspaceId, user)) {
+                readAccess = true;
+                writeAccess = writeAccess || !groupMS.isReadOnly();
             }
         }
-        return true;
+
+        Set<String> userGroupIds = new HashSet<>();
+        for (UserGroup group : groupDAO.getUserGroups(pWorkspaceId, user)) {
+            userGroupIds.add(group.getId());
+        }
+        return new WorkspaceAccess(login, pWorkspaceId, readAccess, writeAccess, userGroupIds, generation, workspaceAccessCache.getExpiration());
     }
 
 
@@ -29,12 +29,14 @@ import com.docdoku.core.services.*;
 import com.docdoku.server.dao.AccountDAO;
 import com.docdoku.server.dao.WorkspaceDAO;
 import com.docdoku.server.esindexer.ESIndexer;
+import com.docdoku.server.events.WorkspaceAccessChangeEvent;
 
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.RolesAllowed;
 import javax.ejb.Asynchronous;
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -66,6 +68,9 @@ public class WorkspaceManagerBean implements IWorkspaceManagerLocal {
     @Inject
     private ESIndexer esIndexer;
 
+    @Inject
+    private Event<WorkspaceAccessChangeEvent> workspaceAccessChangeEvent;
+
     private static final Logger LOGGER = Logger.getLogger(WorkspaceManagerBean.class.getName());
 
     @RolesAllowed(UserGroupMapping.ADMIN_ROLE_ID)
@@ -117,6 +122,7 @@ public class WorkspaceManagerBean implements IWorkspaceManagerLocal {
         Workspace workspace = new WorkspaceDAO(em).loadWorkspace(workspaceId);
 
         workspace.setAdmin(account);
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(workspaceId));
         return workspace;
     }
 
@@ -136,6 +142,7 @@ public class WorkspaceManagerBean implements IWorkspaceManagerLocal {
             throw new Exception("Runtime exception while deleting the workspace : "+workspaceId);
 
         }
+        workspaceAccessChangeEvent.fire(new WorkspaceAccessChangeEvent(workspaceId));
 
         mailerManager.sendWorkspaceDeletionNotification(admin,workspaceId);
     }
@@ -29,9 +29,7 @@ import com.docdoku.core.product.*;
 import com.docdoku.server.dao.PartMasterDAO;
 
 import javax.persistence.EntityManager;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
+import java.util.*;
 
 
 public abstract class PSFilterVisitor {
@@ -46,6 +44,13 @@ public abstract class PSFilterVisitor {
     private int stopAtDepth = -1;
     private boolean stopped = false;
 
+    // Resolved once per traversal
+    private Map<PartMaster, List<PartIteration>> resolvedIterations = new HashMap<>();
+    private Map<String, PartMaster> loadedPartMasters = new HashMap<>();
+
+    // Loads each level of the structure in a few queries, may be disabled
+    private ProductStructurePrefetcher prefetcher;
+
     private String workspaceId;
 
     public PSFilterVisitor(EntityManager pEm, User pUser, PSFilter pFilter)
@@ -57,6 +62,7 @@ public abstract class PSFilterVisitor {
         workspaceId = user.getWorkspaceId();
         locale = new Locale(user.getLanguage());
         partMasterDAO = new PartMasterDAO(locale, em);
+        prefetcher = new ProductStructurePrefetcher(em, locale, workspaceId);
 
     }
 
@@ -80,33 +86,38 @@ public abstract class PSFilterVisitor {
         stopped = true;
     }
 
+    /**
+     * Enables or disables the batch loading of each level before descending, enabled by default.
+     */
+    public void setPrefetching(boolean prefetching){
+        prefetcher = prefetching ? new ProductStructurePrefetcher(em, locale, workspaceId) : null;
+    }
+
     private void startVisit(List<PartLink> pStartingPath, Integer pDepth) throws NotAllowedException, EntityConstraintException, PartMasterNotFoundException {
-        List<PartLink> currentPath = pStartingPath;
-        List<PartMaster> currentPathParts = new ArrayList<>();
-        List<PartIteration> currentPathPartIterations = new ArrayList<>();
+        PersistentList<PartLink> currentPath = PersistentList.of(pStartingPath);
 
         // Visit last
-        PartMaster rootNode = currentPath.get(currentPath.size() - 1).getComponent();
-        currentPathParts.add(rootNode);
+        PartMaster rootNode = currentPath.getLast().getComponent();
+        PersistentList<PartMaster> currentPathParts = PersistentList.<PartMaster>empty().append(rootNode);
 
         stopAtDepth = (pDepth == null) ? -1 : pDepth + currentPath.size();
 
-        component = new Component(rootNode.getAuthor(),rootNode,currentPath,null);
-        component.setComponents(visit(component,currentPathPartIterations, currentPathParts, currentPath));
+        if(prefetcher != null){
+            prefetcher.markAsPrefetched(rootNode.getNumber());
+        }
+
+        component = new Component(rootNode.getAuthor(),rootNode,pStartingPath,null);
+        component.setComponents(visit(component, PersistentList.empty(), currentPathParts, currentPath));
 
     }
 
     private void startVisit(PartMaster pNodeFrom, Integer pDepth) throws NotAllowedException, EntityConstraintException, PartMasterNotFoundException {
 
-        List<PartLink> currentPath = new ArrayList<>();
-        List<PartMaster> currentPathParts = new ArrayList<>();
-        List<PartIteration> currentPathPartIterations = new ArrayList<>();
-
         PartMaster rootNode = pNodeFrom;
 
         // Add root node and its virtual link
-        currentPathParts.add(rootNode);
-        currentPath.add(new PartLink() {
+        PersistentList<PartMaster> currentPathParts = PersistentList.<PartMaster>empty().append(rootNode);
+        PersistentList<PartLink> currentPath = PersistentList.<PartLink>empty().append(new PartLink() {
             @Override
             public int getId() {
                 return 1;
@@ -165,12 +176,20 @@ public abstract class PSFilterVisitor {
 
         stopAtDepth = (pDepth == null) ? -1 : pDepth;
 
+        if(prefetcher != null){
+            prefetcher.markAsPrefetched(rootNode.getNumber());
+        }
+
         component = new Component(rootNode.getAuthor(),rootNode,currentPath,null);
-        component.setComponents(visit(component,currentPathPartIterations, currentPathParts, currentPath));
+        component.setComponents(visit(component, PersistentList.empty(), currentPathParts, currentPath));
     }
 
 
-    private List<Component> visit(Component currentComponent, List<PartIteration> pCurrentPathPartIterations, List<PartMaster> pCurrentPathParts, List<PartLink> pCurrentPath) throws PartMasterNotFoundException, NotAllowedException, EntityConstraintException {
+    /*
+     * Paths are persistent lists: extending them at each level shares the parent path instead of
+     * copying it, and lists handed to the callbacks can safely be kept since they are never modified.
+     */
+    private List<Component> visit(Component currentComponent, PersistentList<PartIteration> pCurrentPathPartIterations, PersistentList<PartMaster> pCurrentPathParts, PersistentList<PartLink> pCurrentPath) throws PartMasterNotFoundException, NotAllowedException, EntityConstraintException {
 
         List<Component> components = new ArrayList<>();
 
@@ -178,20 +197,15 @@ public abstract class PSFilterVisitor {
             return components;
         }
 
-        if(!onPathWalk(new ArrayList<>(pCurrentPath), new ArrayList<>(pCurrentPathParts))) {
+        if(!onPathWalk(pCurrentPath, pCurrentPathParts)) {
             return components;
         }
 
-
-
-        // Current depth
-        int depth = pCurrentPathParts.size() - 1;
-
         // Current part master is the last from pCurrentPathParts
-        PartMaster currentUsagePartMaster = pCurrentPathParts.get(depth);
+        PartMaster currentUsagePartMaster = pCurrentPathParts.getLast();
 
         // Find filtered iterations to visit
-        List<PartIteration> partIterations = filter.filter(currentUsagePartMaster);
+        List<PartIteration> partIterations = filterPartMaster(currentUsagePartMaster);
 
         if(partIterations.isEmpty()){
             onUnresolvedVersion(currentUsagePartMaster);
@@ -209,38 +223,39 @@ public abstract class PSFilterVisitor {
         for (PartIteration partIteration : partIterations) {
 
             // We know which iteration of current partMaster, add it to list
-            List<PartIteration> copyPartIteration = new ArrayList<>(pCurrentPathPartIterations);
-            copyPartIteration.add(partIteration);
+            PersistentList<PartIteration> currentPathPartIterations = pCurrentPathPartIterations.append(partIteration);
 
             // Is branch over ?
             if(partIteration.getComponents().isEmpty()){
-                onBranchDiscovered(new ArrayList<>(pCurrentPath),new ArrayList<>(copyPartIteration));
+                onBranchDiscovered(pCurrentPath, currentPathPartIterations);
+            }
+
+            // Load the next level at once if going down
+            if(prefetcher != null && (stopAtDepth == -1 || stopAtDepth >= pCurrentPathParts.size())){
+                prefetcher.prefetchChildren(partIteration);
             }
 
             // Navigate links
             for (PartUsageLink usageLink : partIteration.getComponents()) {
 
-                List<PartLink> currentPath = new ArrayList<>(pCurrentPath);
-                currentPath.add(usageLink);
+                PersistentList<PartLink> currentPath = pCurrentPath.append(usageLink);
 
                 // Filter the current path, potentially diverging branches
                 List<PartLink> eligiblePath = filter.filter(currentPath);
 
                 if(eligiblePath.isEmpty() && !usageLink.isOptional()){
-                    onUnresolvedPath(new ArrayList<>(currentPath), new ArrayList<>(copyPartIteration));
+                    onUnresolvedPath(currentPath, currentPathPartIterations);
                 }
 
                 if(eligiblePath.size() > 1 ){
-                    onIndeterminatePath(new ArrayList<>(currentPath), new ArrayList<>(copyPartIteration));
+                    onIndeterminatePath(currentPath, currentPathPartIterations);
                 }
 
                 if (eligiblePath.size() == 1 && eligiblePath.get(0).isOptional()){
-                    onOptionalPath(new ArrayList<>(currentPath), new ArrayList<>(copyPartIteration));
+                    onOptionalPath(currentPath, currentPathPartIterations);
                 }
 
                 for(PartLink link : eligiblePath){
-                    List<PartLink> nextPath = new ArrayList<>(pCurrentPath);
-                    nextPath.add(link);
 
                     // Stop if depth reached
                     if (stopAtDepth == -1 || stopAtDepth >= pCurrentPathParts.size()) {
@@ -254,14 +269,12 @@ public abstract class PSFilterVisitor {
                         }
 
                         // Continue tree walking on pm
-                        List<PartMaster> copyPathParts = new ArrayList<>(pCurrentPathParts);
-                        List<PartLink> copyPath = new ArrayList<>(nextPath);
-                        List<PartIteration> copyPartIterations = new ArrayList<>(copyPartIteration);
-                        copyPathParts.add(pm);
+                        PersistentList<PartLink> nextPath = link == usageLink ? currentPath : pCurrentPath.append(link);
+                        PersistentList<PartMaster> nextPathParts = pCurrentPathParts.append(pm);
 
                         // Recursive
-                        Component subComponent= new Component(pm.getAuthor(), pm, copyPath, null);
-                        subComponent.setComponents(visit(subComponent,copyPartIterations, copyPathParts, copyPath));
+                        Component subComponent= new Component(pm.getAuthor(), pm, nextPath, null);
+                        subComponent.setComponents(visit(subComponent, currentPathPartIterations, nextPathParts, nextPath));
                         components.add(subComponent);
                     }
 
@@ -273,10 +286,26 @@ public abstract class PSFilterVisitor {
         return components;
     }
 
-
+    /*
+     * A part master resolves to the same iterations wherever it is used in the structure,
+     * resolve it once per traversal.
+     */
+    private List<PartIteration> filterPartMaster(PartMaster partMaster) {
+        List<PartIteration> partIterations = resolvedIterations.get(partMaster);
+        if (partIterations == null) {
+            partIterations = filter.filter(partMaster);
+            resolvedIterations.put(partMaster, partIterations);
+        }
+        return partIterations;
+    }
 
     private PartMaster loadPartMaster(String partNumber) throws PartMasterNotFoundException {
-        return partMasterDAO.loadPartM(new PartMasterKey(workspaceId, partNumber));
+        PartMaster partMaster = loadedPartMasters.get(partNumber);
+        if (partMaster == null) {
+            partMaster = partMasterDAO.loadPartM(new PartMasterKey(workspaceId, partNumber));
+            loadedPartMasters.put(partNumber, partMaster);
+        }
+        return partMaster;
     }
 
     /**
@@ -0,0 +1,131 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.configuration;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Immutable list which shares all its elements but the last one with the list it was appended to.
+ *
+ * Appending is done in constant time without copying the prefix, so a path can be extended at
+ * every level of a structure walk for free. Nothing is kept besides the chain: reading by index
+ * walks it back from the last element, in a time proportional to the distance from the end, and
+ * iterating gathers the elements into an array, once per iterator. Reading the last elements is
+ * cheap, reading a whole path by index is not: iterate it instead.
+ */
+public final class PersistentList<E> extends AbstractList<E> implements Serializable {
+
+    private static final PersistentList<?> EMPTY = new PersistentList<>(null, null, 0);
+
+    private final PersistentList<E> parent;
+    private final E last;
+    private final int size;
+
+    private PersistentList(PersistentList<E> parent, E last, int size) {
+        this.parent = parent;
+        this.last = last;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentList<E> empty() {
+        return (PersistentList<E>) EMPTY;
+    }
+
+    public static <E> PersistentList<E> of(List<E> list) {
+        if (list instanceof PersistentList) {
+            return (PersistentList<E>) list;
+        }
+        PersistentList<E> result = empty();
+        for (E e : list) {
+            result = result.append(e);
+        }
+        return result;
+    }
+
+    public PersistentList<E> append(E e) {
+        return new PersistentList<>(this, e, size + 1);
+    }
+
+    public E getLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("Empty list");
+        }
+        return last;
+    }
+
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        PersistentList<E> node = this;
+        while (node.size - 1 > index) {
+            node = node.parent;
+        }
+        return node.last;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ListIterator<E> listIterator(int index) {
+        return Collections.unmodifiableList(Arrays.asList((E[]) toArray())).listIterator(index);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size];
+        for (PersistentList<E> node = this; node.size > 0; node = node.parent) {
+            array[node.size - 1] = node.last;
+        }
+        return array;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Walks the chain backwards, without gathering the elements.
+     */
+    @Override
+    public boolean contains(Object o) {
+        for (PersistentList<E> node = this; node.size > 0; node = node.parent) {
+            if (o == null ? node.last == null : o.equals(node.last)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
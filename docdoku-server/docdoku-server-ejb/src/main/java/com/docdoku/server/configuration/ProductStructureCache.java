@@ -0,0 +1,380 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.configuration;
+
+import com.docdoku.core.configuration.PSFilter;
+import com.docdoku.core.product.*;
+import com.docdoku.core.util.Tools;
+import com.docdoku.server.dao.PartIterationDAO;
+import com.docdoku.server.dao.PartMasterDAO;
+import com.docdoku.server.dao.PartUsageLinkDAO;
+import com.docdoku.server.events.CheckedIn;
+import com.docdoku.server.events.Created;
+import com.docdoku.server.events.PartIterationChangeEvent;
+import com.docdoku.server.events.PartRevisionChangeEvent;
+import com.docdoku.server.events.Removed;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps resolved product structures in memory, per configuration item, filter, starting path and depth.
+ *
+ * Only filters providing a {@link PSFilter#getCacheKey()} are cached. Each entry is indexed by the
+ * parts it contains, so that a part change only evicts the structures this part belongs to. Changes
+ * are received through the part CDI events once their transaction is committed.
+ *
+ * A structure resolved while a change was committed is not stored, as it may have been read before
+ * the change.
+ *
+ * Entries only hold the keys of the resolved parts, iterations and links, never the entities: they
+ * are shared between requests, whereas entities are bound to the persistence context which loaded
+ * them. Each hit is rebuilt with the entities of the calling request, so that check outs, releases
+ * or attribute changes, which do not change the structure itself, are always seen. The entities of a
+ * hit are loaded with a few set based queries, not one by one.
+ */
+@ApplicationScoped
+public class ProductStructureCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ProductStructureCache.class.getName());
+
+    private static final int MAX_ENTRIES = 256;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                unindex(eldest.getKey(), eldest.getValue());
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Cache keys of the entries containing a part, by part key
+    private final Map<String, Set<String>> keysByPart = new HashMap<>();
+
+    // Incremented on each change
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Computes the key of a structure, null if this structure cannot be cached.
+     */
+    public String getKey(ConfigurationItemKey ciKey, PSFilter filter, List<PartLink> path, Integer depth) {
+        String filterKey = filter.getCacheKey();
+        if (filterKey == null) {
+            return null;
+        }
+        String pathAsString = path == null ? "" : Tools.getPathAsString(path);
+        return ciKey.getWorkspace() + "/" + ciKey.getId() + "/" + filterKey + "/" + pathAsString + "/" + depth;
+    }
+
+    /**
+     * Rebuilds a cached structure with the entities of the given entity manager.
+     *
+     * @param rootPath The path of the root component
+     * @return The structure, or null if it is not cached or one of its entities no longer exists
+     */
+    public Component get(String key, EntityManager em, List<PartLink> rootPath) {
+        Node node;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            node = entry.node;
+        }
+        return toComponent(node, PersistentList.of(rootPath), new Entities(node, em));
+    }
+
+    /**
+     * To be read before resolving a structure, and given back when storing it.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized void put(String key, Component component, List<PartLink> path, long resolvedAtGeneration) {
+        if (resolvedAtGeneration != generation) {
+            return;
+        }
+
+        Set<String> parts = new HashSet<>();
+        if (path != null) {
+            for (PartLink link : path) {
+                parts.add(getPartKey(link.getComponent()));
+            }
+        }
+        collectParts(component, parts);
+
+        Entry previous = entries.put(key, new Entry(toNode(component, null), parts));
+        if (previous != null) {
+            unindex(key, previous);
+        }
+        for (String part : parts) {
+            Set<String> keys = keysByPart.get(part);
+            if (keys == null) {
+                keys = new HashSet<>();
+                keysByPart.put(part, keys);
+            }
+            keys.add(key);
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Evicts the structures containing the given part.
+     */
+    public synchronized void evict(PartMaster partMaster) {
+        generation++;
+        Set<String> keys = keysByPart.remove(getPartKey(partMaster));
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                unindex(key, entry);
+                evictions++;
+            }
+        }
+        LOGGER.log(Level.FINE, "Product structure cache: " + keys.size() + " structures evicted for part " + partMaster.getNumber()
+                + " (hits: " + hits + ", misses: " + misses + ", evictions: " + evictions + ")");
+    }
+
+    private void onCheckInPartIteration(@Observes(during = TransactionPhase.AFTER_SUCCESS) @CheckedIn PartIterationChangeEvent event) {
+        evict(event.getModifiedPart().getPartRevision().getPartMaster());
+    }
+
+    private void onRemovePartIteration(@Observes(during = TransactionPhase.AFTER_SUCCESS) @Removed PartIterationChangeEvent event) {
+        evict(event.getModifiedPart().getPartRevision().getPartMaster());
+    }
+
+    private void onCreatePartRevision(@Observes(during = TransactionPhase.AFTER_SUCCESS) @Created PartRevisionChangeEvent event) {
+        evict(event.getModifiedPart().getPartMaster());
+    }
+
+    private void onRemovePartRevision(@Observes(during = TransactionPhase.AFTER_SUCCESS) @Removed PartRevisionChangeEvent event) {
+        evict(event.getModifiedPart().getPartMaster());
+    }
+
+    private void unindex(String key, Entry entry) {
+        for (String part : entry.parts) {
+            Set<String> keys = keysByPart.get(part);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByPart.remove(part);
+                }
+            }
+        }
+    }
+
+    private void collectParts(Component component, Set<String> parts) {
+        parts.add(getPartKey(component.getPartMaster()));
+        for (Component child : component.getComponents()) {
+            collectParts(child, parts);
+        }
+    }
+
+    private static String getPartKey(PartMaster partMaster) {
+        return partMaster.getWorkspaceId() + "/" + partMaster.getNumber();
+    }
+
+    private static Node toNode(Component component, PartLink link) {
+        PartMaster partMaster = component.getPartMaster();
+        PartIteration retainedIteration = component.getRetainedIteration();
+        List<Component> components = component.getComponents();
+        Node[] children = new Node[components.size()];
+        for (int i = 0; i < children.length; i++) {
+            Component child = components.get(i);
+            children[i] = toNode(child, child.getPartLink());
+        }
+        return new Node(new PartMasterKey(partMaster.getWorkspaceId(), partMaster.getNumber()),
+                retainedIteration == null ? null : retainedIteration.getKey(),
+                link instanceof PartSubstituteLink, link == null ? 0 : link.getId(),
+                component.isVirtual(), children);
+    }
+
+    private static Component toComponent(Node node, PersistentList<PartLink> path, Entities entities) {
+        PartMaster partMaster = entities.partMasters.get(node.partMasterKey);
+        if (partMaster == null) {
+            return null;
+        }
+        Component component = new Component(partMaster.getAuthor(), partMaster, path, new ArrayList<Component>(node.children.length));
+        component.setVirtual(node.virtual);
+        if (node.retainedIterationKey != null) {
+            PartIteration retainedIteration = entities.partIterations.get(node.retainedIterationKey);
+            if (retainedIteration == null) {
+                return null;
+            }
+            component.setRetainedIteration(retainedIteration);
+        }
+        for (Node childNode : node.children) {
+            PartLink link = childNode.substitute
+                    ? entities.substituteLinks.get(childNode.linkId)
+                    : entities.usageLinks.get(childNode.linkId);
+            if (link == null) {
+                return null;
+            }
+            Component child = toComponent(childNode, path.append(link), entities);
+            if (child == null) {
+                return null;
+            }
+            component.addComponent(child);
+        }
+        return component;
+    }
+
+    /**
+     * The entities of a cached structure, loaded with IN queries on the keys of its nodes.
+     */
+    private static final class Entities {
+
+        private final Map<PartMasterKey, PartMaster> partMasters = new HashMap<>();
+        private final Map<PartIterationKey, PartIteration> partIterations = new HashMap<>();
+        private final Map<Integer, PartUsageLink> usageLinks = new HashMap<>();
+        private final Map<Integer, PartSubstituteLink> substituteLinks = new HashMap<>();
+
+        Entities(Node root, EntityManager em) {
+            // Part numbers by workspace, of all the parts and of the parts with a retained iteration
+            Map<String, Set<String>> partNumbers = new HashMap<>();
+            Map<String, Set<String>> iteratedPartNumbers = new HashMap<>();
+            Set<Integer> usageLinkIds = new HashSet<>();
+            Set<Integer> substituteLinkIds = new HashSet<>();
+            collectKeys(root, partNumbers, iteratedPartNumbers, usageLinkIds, substituteLinkIds);
+
+            PartMasterDAO partMasterDAO = new PartMasterDAO(em);
+            for (Map.Entry<String, Set<String>> workspace : partNumbers.entrySet()) {
+                for (List<String> batch : ProductStructurePrefetcher.split(new ArrayList<>(workspace.getValue()))) {
+                    for (PartMaster partMaster : partMasterDAO.getPartMastersWithRevisions(workspace.getKey(), batch)) {
+                        partMasters.put(partMaster.getKey(), partMaster);
+                    }
+                }
+            }
+            PartIterationDAO partIterationDAO = new PartIterationDAO(em);
+            for (Map.Entry<String, Set<String>> workspace : iteratedPartNumbers.entrySet()) {
+                for (List<String> batch : ProductStructurePrefetcher.split(new ArrayList<>(workspace.getValue()))) {
+                    for (PartIteration partIteration : partIterationDAO.getPartIterations(workspace.getKey(), batch)) {
+                        partIterations.put(partIteration.getKey(), partIteration);
+                    }
+                }
+            }
+            PartUsageLinkDAO partUsageLinkDAO = new PartUsageLinkDAO(em);
+            for (List<Integer> batch : ProductStructurePrefetcher.split(new ArrayList<>(usageLinkIds))) {
+                for (PartUsageLink usageLink : partUsageLinkDAO.getPartUsageLinks(batch)) {
+                    usageLinks.put(usageLink.getId(), usageLink);
+                }
+            }
+            for (List<Integer> batch : ProductStructurePrefetcher.split(new ArrayList<>(substituteLinkIds))) {
+                for (PartSubstituteLink substituteLink : partUsageLinkDAO.getPartSubstituteLinks(batch)) {
+                    substituteLinks.put(substituteLink.getId(), substituteLink);
+                }
+            }
+        }
+
+        private static void collectKeys(Node node, Map<String, Set<String>> partNumbers, Map<String, Set<String>> iteratedPartNumbers,
+                                        Set<Integer> usageLinkIds, Set<Integer> substituteLinkIds) {
+            add(partNumbers, node.partMasterKey);
+            if (node.retainedIterationKey != null) {
+                add(iteratedPartNumbers, node.partMasterKey);
+            }
+            for (Node child : node.children) {
+                if (child.substitute) {
+                    substituteLinkIds.add(child.linkId);
+                } else {
+                    usageLinkIds.add(child.linkId);
+                }
+                collectKeys(child, partNumbers, iteratedPartNumbers, usageLinkIds, substituteLinkIds);
+            }
+        }
+
+        private static void add(Map<String, Set<String>> partNumbers, PartMasterKey partMasterKey) {
+            Set<String> numbers = partNumbers.get(partMasterKey.getWorkspace());
+            if (numbers == null) {
+                numbers = new HashSet<>();
+                partNumbers.put(partMasterKey.getWorkspace(), numbers);
+            }
+            numbers.add(partMasterKey.getNumber());
+        }
+    }
+
+    private static class Entry {
+
+        private final Node node;
+        private final Set<String> parts;
+
+        Entry(Node node, Set<String> parts) {
+            this.node = node;
+            this.parts = parts;
+        }
+    }
+
+    /**
+     * A resolved component, by the keys of its part, retained iteration and link from its parent.
+     */
+    private static final class Node {
+
+        private final PartMasterKey partMasterKey;
+        private final PartIterationKey retainedIterationKey;
+        private final boolean substitute;
+        private final int linkId;
+        private final boolean virtual;
+        private final Node[] children;
+
+        Node(PartMasterKey partMasterKey, PartIterationKey retainedIterationKey, boolean substitute, int linkId, boolean virtual, Node[] children) {
+            this.partMasterKey = partMasterKey;
+            this.retainedIterationKey = retainedIterationKey;
+            this.substitute = substitute;
+            this.linkId = linkId;
+            this.virtual = virtual;
+            this.children = children;
+        }
+    }
+
+}
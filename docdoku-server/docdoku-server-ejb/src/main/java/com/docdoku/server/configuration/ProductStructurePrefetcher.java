@@ -0,0 +1,123 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.configuration;
+
+import com.docdoku.core.product.PartIteration;
+import com.docdoku.core.product.PartSubstituteLink;
+import com.docdoku.core.product.PartUsageLink;
+import com.docdoku.server.dao.PartIterationDAO;
+import com.docdoku.server.dao.PartMasterDAO;
+import com.docdoku.server.dao.PartRevisionDAO;
+import com.docdoku.server.dao.PartUsageLinkDAO;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+
+/**
+ * Loads the level of the product structure found under an assembly with a few set based queries,
+ * before {@link PSFilterVisitor} descends into it.
+ *
+ * For all the children of the assembly, the part masters with their revisions, the revisions with
+ * their iterations and the iterations with their usage links are fetched at once, as well as the
+ * substitutes and CAD instances of the assembly usage links. Walking the level afterwards only hits
+ * the persistence context instead of issuing a query per node and per lazy collection.
+ *
+ * Each part and each link is prefetched only once, so subtrees shared across the structure are not
+ * fetched again.
+ */
+public class ProductStructurePrefetcher {
+
+    // Keep IN clauses under the limits of the databases
+    private static final int BATCH_SIZE = 500;
+
+    private String workspaceId;
+
+    private PartMasterDAO partMasterDAO;
+    private PartRevisionDAO partRevisionDAO;
+    private PartIterationDAO partIterationDAO;
+    private PartUsageLinkDAO partUsageLinkDAO;
+
+    private Set<String> prefetchedPartNumbers = new HashSet<>();
+    private Set<Integer> prefetchedLinkIds = new HashSet<>();
+
+    public ProductStructurePrefetcher(EntityManager pEm, Locale pLocale, String pWorkspaceId) {
+        workspaceId = pWorkspaceId;
+        partMasterDAO = new PartMasterDAO(pLocale, pEm);
+        partRevisionDAO = new PartRevisionDAO(pLocale, pEm);
+        partIterationDAO = new PartIterationDAO(pLocale, pEm);
+        partUsageLinkDAO = new PartUsageLinkDAO(pLocale, pEm);
+    }
+
+    /**
+     * Marks parts as already loaded, typically the root of the visit.
+     */
+    public void markAsPrefetched(String partNumber) {
+        prefetchedPartNumbers.add(partNumber);
+    }
+
+    /**
+     * Prefetches the level found under the given assembly iteration.
+     */
+    public void prefetchChildren(PartIteration partIteration) {
+
+        List<Integer> linkIds = new ArrayList<>();
+        for (PartUsageLink usageLink : partIteration.getComponents()) {
+            if (prefetchedLinkIds.add(usageLink.getId())) {
+                linkIds.add(usageLink.getId());
+            }
+        }
+
+        for (List<Integer> batch : split(linkIds)) {
+            partUsageLinkDAO.getPartUsageLinksWithSubstitutes(batch);
+            partUsageLinkDAO.getPartUsageLinksWithCADInstances(batch);
+        }
+
+        List<String> partNumbers = new ArrayList<>();
+        for (PartUsageLink usageLink : partIteration.getComponents()) {
+            addPartNumber(usageLink.getComponent().getNumber(), partNumbers);
+            for (PartSubstituteLink substituteLink : usageLink.getSubstitutes()) {
+                addPartNumber(substituteLink.getSubstitute().getNumber(), partNumbers);
+            }
+        }
+
+        for (List<String> batch : split(partNumbers)) {
+            partMasterDAO.getPartMastersWithRevisions(workspaceId, batch);
+            partRevisionDAO.getPartRevisionsWithIterations(workspaceId, batch);
+            partIterationDAO.getPartIterationsWithComponents(workspaceId, batch);
+        }
+
+    }
+
+    private void addPartNumber(String partNumber, List<String> partNumbers) {
+        if (prefetchedPartNumbers.add(partNumber)) {
+            partNumbers.add(partNumber);
+        }
+    }
+
+    static <T> List<List<T>> split(List<T> values) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += BATCH_SIZE) {
+            batches.add(values.subList(i, Math.min(i + BATCH_SIZE, values.size())));
+        }
+        return batches;
+    }
+
+}
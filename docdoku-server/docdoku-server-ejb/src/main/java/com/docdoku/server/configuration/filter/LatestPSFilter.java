@@ -94,4 +94,10 @@ public class LatestPSFilter extends PSFilter {
         return links;
     }
 
+    @Override
+    public String getCacheKey() {
+        // Does not depend on the user
+        return diverge ? "latest-diverge" : "latest";
+    }
+
 }
@@ -114,4 +114,10 @@ public class ProductBaselineConfigSpec extends ProductConfigSpec {
         return nominalLink;
     }
 
-}
\ No newline at end of file
+    @Override
+    public String getCacheKey() {
+        // Baselined iterations and links never change
+        return "baseline-" + productBaseline.getId();
+    }
+
+}
@@ -57,6 +57,7 @@ public class BinaryResourceDAO {
             //the EntityExistsException is thrown only when flush occurs    
             em.persist(pBinaryResource);
             em.flush();
+            new StorageUsageDAO(em).addUsage(pBinaryResource, pBinaryResource.getContentLength());
         } catch (EntityExistsException pEEEx) {
             LOGGER.log(Level.FINER,null,pEEEx);
             throw new FileAlreadyExistsException(mLocale, pBinaryResource);
@@ -72,11 +73,23 @@ public class BinaryResourceDAO {
     public void removeBinaryResource(String pFullName) throws FileNotFoundException {
         BinaryResource file = loadBinaryResource(pFullName);
         em.remove(file);
+        new StorageUsageDAO(em).addUsage(file, -file.getContentLength());
     }
 
     public void removeBinaryResource(BinaryResource pBinaryResource) {
         em.remove(pBinaryResource);
         em.flush();
+        new StorageUsageDAO(em).addUsage(pBinaryResource, -pBinaryResource.getContentLength());
+    }
+
+    /**
+     * Sets the length of a binary resource once its content has been written, and accounts for the
+     * difference in the storage usage of its workspace.
+     */
+    public void updateContentLength(BinaryResource pBinaryResource, long pContentLength) {
+        long delta = pContentLength - pBinaryResource.getContentLength();
+        pBinaryResource.setContentLength(pContentLength);
+        new StorageUsageDAO(em).addUsage(pBinaryResource, delta);
     }
 
     public BinaryResource loadBinaryResource(String pFullName) throws FileNotFoundException {
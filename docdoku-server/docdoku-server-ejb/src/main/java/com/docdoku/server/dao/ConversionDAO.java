@@ -26,6 +26,9 @@ import com.docdoku.core.product.PartIteration;
 import com.docdoku.core.product.PartRevision;
 
 import javax.persistence.*;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class ConversionDAO {
@@ -68,6 +71,60 @@ public class ConversionDAO {
         }
     }
 
+    /**
+     * @return the queued conversions, but the ones of the given converters, by priority
+     */
+    public List<Conversion> findQueuedConversions(Date now, Collection<String> excludedConverters, int maxResults) {
+        TypedQuery<Conversion> query;
+        if (excludedConverters.isEmpty()) {
+            query = em.createNamedQuery("Conversion.findQueued", Conversion.class);
+        } else {
+            query = em.createNamedQuery("Conversion.findQueuedForOtherConverters", Conversion.class)
+                    .setParameter("converters", excludedConverters);
+        }
+        return query.setParameter("now", now)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
+
+    /**
+     * Marks a queued conversion as running on the given server, in a single update so that only one
+     * server starts it.
+     *
+     * @return false if the conversion is not queued anymore
+     */
+    public boolean startConversion(PartIteration partIteration, String converter, String server) {
+        return em.createNamedQuery("Conversion.start")
+                .setParameter("now", new Date())
+                .setParameter("converter", converter)
+                .setParameter("server", server)
+                .setParameter("partIteration", partIteration)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * Puts back in the queue the conversions left running by the given server.
+     *
+     * @return the number of conversions queued again
+     */
+    public int requeueInterruptedConversions(String server) {
+        return em.createNamedQuery("Conversion.requeueInterrupted")
+                .setParameter("server", server)
+                .executeUpdate();
+    }
+
+    public long countQueuedConversions() {
+        return em.createNamedQuery("Conversion.countQueued", Long.class)
+                .getSingleResult();
+    }
+
+    public List<Conversion> findConversions(String workspaceId, Date since) {
+        return em.createNamedQuery("Conversion.findByWorkspace", Conversion.class)
+                .setParameter("workspaceId", workspaceId)
+                .setParameter("since", since)
+                .getResultList();
+    }
+
     public void deleteConversion(Conversion conversion) {
         em.remove(conversion);
         em.flush();
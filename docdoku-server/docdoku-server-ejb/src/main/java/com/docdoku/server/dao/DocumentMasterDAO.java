@@ -81,4 +81,17 @@ public class DocumentMasterDAO {
                                                  .setParameter("workspaceId",workspaceId)
                                                  .getResultList();
     }
+
+    /**
+     * Keyset pagination over the documents of a workspace, in the order of their id.
+     *
+     * @param fromId the id of the last document of the previous page, null for the first page
+     */
+    public List<DocumentMaster> getPageByWorkspace(String workspaceId, String fromId, int maxResults) {
+        return em.createNamedQuery("DocumentMaster.findByWorkspaceFrom",DocumentMaster.class)
+                                                 .setParameter("workspaceId",workspaceId)
+                                                 .setParameter("id",fromId == null ? "" : fromId)
+                                                 .setMaxResults(maxResults)
+                                                 .getResultList();
+    }
 }
@@ -29,6 +29,7 @@ import com.docdoku.core.exceptions.DocumentRevisionNotFoundException;
 import com.docdoku.core.meta.Tag;
 
 import javax.persistence.*;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.logging.Level;
@@ -179,6 +180,14 @@ public class DocumentRevisionDAO {
                 .setMaxResults(maxResults).getResultList();
     }
 
+    public List<DocumentRevision> getDocumentRevisionsWithIterations(String pWorkspaceId, Collection<String> pDocumentMasterIds) {
+        return em.createNamedQuery("DocumentRevision.findByDocumentMasterIds", DocumentRevision.class)
+                .setParameter("workspaceId", pWorkspaceId)
+                .setParameter("documentMasterIds", pDocumentMasterIds)
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
+    }
+
     public int getTotalNumberOfDocuments(String pWorkspaceId) {
         return ((Number)em.createNamedQuery("DocumentRevision.countByWorkspace")
                 .setParameter("workspaceId", pWorkspaceId)
@@ -186,21 +195,11 @@ public class DocumentRevisionDAO {
     }
 
     public long getDiskUsageForDocumentsInWorkspace(String pWorkspaceId) {
-        Number result = (Number)em.createNamedQuery("BinaryResource.diskUsageInPath")
-                .setParameter("path", pWorkspaceId+"/documents/%")
-                .getSingleResult();
-
-        return result != null ? result.longValue() : 0L;
-
+        return new StorageUsageDAO(mLocale, em).getUsage(pWorkspaceId, "documents");
     }
 
     public long getDiskUsageForDocumentTemplatesInWorkspace(String pWorkspaceId) {
-        Number result = (Number)em.createNamedQuery("BinaryResource.diskUsageInPath")
-                .setParameter("path", pWorkspaceId+"/document-templates/%")
-                .getSingleResult();
-
-        return result != null ? result.longValue() : 0L;
-
+        return new StorageUsageDAO(mLocale, em).getUsage(pWorkspaceId, "document-templates");
     }
 
     public List<DocumentRevision> findAllCheckedOutDocRevisions(String pWorkspaceId) {
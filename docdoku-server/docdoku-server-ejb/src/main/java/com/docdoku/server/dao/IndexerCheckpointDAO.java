@@ -0,0 +1,84 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.dao;
+
+import com.docdoku.core.common.IndexerCheckpoint;
+
+import javax.persistence.EntityManager;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+public class IndexerCheckpointDAO {
+
+    private EntityManager em;
+    private Locale mLocale;
+
+    public IndexerCheckpointDAO(Locale pLocale, EntityManager pEM) {
+        mLocale = pLocale;
+        em = pEM;
+    }
+
+    public IndexerCheckpointDAO(EntityManager pEM) {
+        mLocale = Locale.getDefault();
+        em = pEM;
+    }
+
+    public IndexerCheckpoint getCheckpoint(String workspaceId) {
+        return em.find(IndexerCheckpoint.class, workspaceId);
+    }
+
+    public List<IndexerCheckpoint> getAllCheckpoints() {
+        return em.createNamedQuery("IndexerCheckpoint.findAll", IndexerCheckpoint.class)
+                .getResultList();
+    }
+
+    /**
+     * @return The checkpoints not updated since the given date
+     */
+    public List<IndexerCheckpoint> getStaleCheckpoints(Date date) {
+        return em.createNamedQuery("IndexerCheckpoint.findStale", IndexerCheckpoint.class)
+                .setParameter("date", date)
+                .getResultList();
+    }
+
+    /**
+     * Marks a stale checkpoint as updated, so that a single run resumes it.
+     *
+     * @return true if the checkpoint was still stale
+     */
+    public boolean claimCheckpoint(String workspaceId, Date staleDate) {
+        return em.createNamedQuery("IndexerCheckpoint.claim")
+                .setParameter("now", new Date())
+                .setParameter("workspaceId", workspaceId)
+                .setParameter("date", staleDate)
+                .executeUpdate() == 1;
+    }
+
+    public void createCheckpoint(IndexerCheckpoint checkpoint) {
+        em.persist(checkpoint);
+        em.flush();
+    }
+
+    public void removeCheckpoint(IndexerCheckpoint checkpoint) {
+        em.remove(checkpoint);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.dao;
+
+import com.docdoku.core.common.IndexerQueueEntry;
+
+import javax.persistence.EntityManager;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+public class IndexerQueueDAO {
+
+    private EntityManager em;
+    private Locale mLocale;
+
+    public IndexerQueueDAO(Locale pLocale, EntityManager pEM) {
+        mLocale = pLocale;
+        em = pEM;
+    }
+
+    public IndexerQueueDAO(EntityManager pEM) {
+        mLocale = Locale.getDefault();
+        em = pEM;
+    }
+
+    public void enqueue(IndexerQueueEntry entry) {
+        em.persist(entry);
+    }
+
+    public List<IndexerQueueEntry> getOldestEntries(int maxResults) {
+        return em.createNamedQuery("IndexerQueueEntry.findOldest", IndexerQueueEntry.class)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
+
+    /**
+     * Removes the entries of the same revision as the given one, up to it. Entries added while
+     * it was processed are kept.
+     */
+    public void removeProcessed(IndexerQueueEntry entry) {
+        em.createNamedQuery("IndexerQueueEntry.removeProcessed")
+                .setParameter("entityType", entry.getEntityType())
+                .setParameter("workspaceId", entry.getWorkspaceId())
+                .setParameter("entityId", entry.getEntityId())
+                .setParameter("version", entry.getVersion())
+                .setParameter("id", entry.getId())
+                .executeUpdate();
+    }
+
+    /**
+     * @return For each workspace, its id, number of entries and last entry id, the largest first
+     */
+    public List<Object[]> getCountsByWorkspace() {
+        return em.createNamedQuery("IndexerQueueEntry.countByWorkspace", Object[].class).getResultList();
+    }
+
+    /**
+     * Removes the entries of the workspace, up to the given one.
+     */
+    public int removeWorkspaceEntries(String workspaceId, long lastId) {
+        return em.createNamedQuery("IndexerQueueEntry.removeByWorkspace")
+                .setParameter("workspaceId", workspaceId)
+                .setParameter("id", lastId)
+                .executeUpdate();
+    }
+
+    public long count() {
+        return em.createNamedQuery("IndexerQueueEntry.count", Long.class).getSingleResult();
+    }
+
+    public Date getOldestEnqueueDate() {
+        return em.createNamedQuery("IndexerQueueEntry.findOldestEnqueueDate", Date.class).getSingleResult();
+    }
+}
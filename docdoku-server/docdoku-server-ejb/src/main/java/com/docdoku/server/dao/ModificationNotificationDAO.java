@@ -24,6 +24,7 @@ import com.docdoku.core.product.PartIterationKey;
 import com.docdoku.core.product.PartRevisionKey;
 
 import javax.persistence.EntityManager;
+import java.util.Collection;
 import java.util.List;
 
 public class ModificationNotificationDAO {
@@ -65,6 +66,16 @@ public class ModificationNotificationDAO {
                 .setParameter("iteration", pPartIPK.getIteration()).getResultList();
     }
 
+    /**
+     * Notifications of all the iterations of the given parts, to be dispatched to the iterations
+     * by the caller. Ordered as for a single iteration.
+     */
+    public List<ModificationNotification> getModificationNotifications(String pWorkspaceId, Collection<String> pPartNumbers) {
+        return em.createNamedQuery("ModificationNotification.findByImpactedPartNumbers", ModificationNotification.class)
+                .setParameter("workspaceId", pWorkspaceId)
+                .setParameter("partNumbers", pPartNumbers).getResultList();
+    }
+
     public boolean hasModificationNotifications(PartIterationKey pPartIPK){
         return !getModificationNotifications(pPartIPK).isEmpty();
     }
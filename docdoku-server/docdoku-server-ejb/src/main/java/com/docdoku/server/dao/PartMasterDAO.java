@@ -28,6 +28,7 @@ import com.docdoku.core.product.PartMasterKey;
 import com.docdoku.core.product.PartRevision;
 
 import javax.persistence.*;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.logging.Level;
@@ -132,19 +133,19 @@ public class PartMasterDAO {
     }
 
     public long getDiskUsageForPartsInWorkspace(String pWorkspaceId) {
-        Number result = (Number)em.createNamedQuery("BinaryResource.diskUsageInPath")
-                .setParameter("path", pWorkspaceId+"/parts/%")
-                .getSingleResult();
-
-        return result != null ? result.longValue() : 0L;
+        return new StorageUsageDAO(mLocale, em).getUsage(pWorkspaceId, "parts");
     }
 
     public long getDiskUsageForPartTemplatesInWorkspace(String pWorkspaceId) {
-        Number result = (Number)em.createNamedQuery("BinaryResource.diskUsageInPath")
-                .setParameter("path", pWorkspaceId+"/part-templates/%")
-                .getSingleResult();
+        return new StorageUsageDAO(mLocale, em).getUsage(pWorkspaceId, "part-templates");
+    }
 
-        return result != null ? result.longValue() : 0L;
+    public List<PartMaster> getPartMastersWithRevisions(String pWorkspaceId, Collection<String> pPartNumbers) {
+        return em.createNamedQuery("PartMaster.findByNumbersFetchRevisions", PartMaster.class)
+                .setParameter("workspaceId", pWorkspaceId)
+                .setParameter("partNumbers", pPartNumbers)
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
     }
 
     public List<PartMaster> getAllByWorkspace(String workspaceId) {
@@ -152,4 +153,17 @@ public class PartMasterDAO {
                 .setParameter("workspaceId",workspaceId)
                 .getResultList();
     }
+
+    /**
+     * Keyset pagination over the parts of a workspace, in the order of their number.
+     *
+     * @param fromNumber the number of the last part of the previous page, null for the first page
+     */
+    public List<PartMaster> getPageByWorkspace(String workspaceId, String fromNumber, int maxResults) {
+        return em.createNamedQuery("PartMaster.findByWorkspaceFrom",PartMaster.class)
+                .setParameter("workspaceId",workspaceId)
+                .setParameter("number",fromNumber == null ? "" : fromNumber)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
 }
\ No newline at end of file
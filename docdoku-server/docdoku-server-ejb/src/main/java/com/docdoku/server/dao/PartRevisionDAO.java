@@ -29,8 +29,10 @@ import com.docdoku.core.product.*;
 
 import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
 import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 
@@ -101,6 +103,14 @@ public class PartRevisionDAO {
                 .getResultList();
     }
 
+    public List<PartRevision> getPartRevisionsWithIterations(String pWorkspaceId, Collection<String> pPartNumbers) {
+        return em.createNamedQuery("PartRevision.findByPartNumbersFetchIterations", PartRevision.class)
+                .setParameter("workspaceId", pWorkspaceId)
+                .setParameter("partNumbers", pPartNumbers)
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
+    }
+
     public int getTotalNumberOfParts(String pWorkspaceId) {
         return ((Number)em.createNamedQuery("PartRevision.countByWorkspace")
                 .setParameter("workspaceId", pWorkspaceId)
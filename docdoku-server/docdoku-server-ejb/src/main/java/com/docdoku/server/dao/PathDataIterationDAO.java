@@ -21,10 +21,13 @@
 package com.docdoku.server.dao;
 
 import com.docdoku.core.configuration.PathDataIteration;
+import com.docdoku.core.configuration.PathDataMaster;
 import com.docdoku.core.configuration.ProductInstanceIteration;
 
 import javax.persistence.EntityManager;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -62,4 +65,24 @@ public class PathDataIterationDAO {
         return pathDataIterations.get(pathDataIterations.size()-1);
     }
 
+    /**
+     * Loads the path data of a product instance iteration in a single query.
+     *
+     * @return the last iteration of the data of each path, by path
+     */
+    public Map<String, PathDataIteration> getLastPathDataIterations(ProductInstanceIteration productInstanceIteration){
+        List<PathDataMaster> pathDataMasters = em.createNamedQuery("pathDataMaster.findByProductInstanceIterationFetchIterations", PathDataMaster.class)
+                .setParameter("productInstanceIteration", productInstanceIteration)
+                .getResultList();
+
+        Map<String, PathDataIteration> lastPathDataIterations = new HashMap<>();
+        for(PathDataMaster pathDataMaster : pathDataMasters){
+            PathDataIteration last = pathDataMaster.getLastIteration();
+            if(last != null){
+                lastPathDataIterations.put(pathDataMaster.getPath(), last);
+            }
+        }
+        return lastPathDataIterations;
+    }
+
 }
\ No newline at end of file
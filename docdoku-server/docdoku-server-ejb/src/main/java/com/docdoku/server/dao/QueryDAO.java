@@ -60,11 +60,6 @@ public class QueryDAO {
         em = pEM;
         mLocale = pLocale;
         cb = em.getCriteriaBuilder();
-
-        cq = cb.createQuery();
-        pm = cq.from(PartMaster.class);
-        pr = cq.from(PartRevision.class);
-        pi = cq.from(PartIteration.class);
     }
 
     public void createQuery(Query query) throws CreationException, QueryAlreadyExistsException {
@@ -135,6 +130,53 @@ public class QueryDAO {
 
     public List<PartRevision> runQuery(Workspace workspace, Query query) {
 
+        TypedQuery<PartRevision> tp = createPartRevisionQuery(workspace, query, false, null);
+        Set<PartRevision> revisions = new HashSet<>();
+
+        for(PartRevision part : tp.getResultList()){
+            if(part.getLastCheckedInIteration() != null) {
+                revisions.add(part);
+            }
+        }
+
+        return new ArrayList<>(revisions);
+    }
+
+    /**
+     * Runs the query for a page of part revisions, in the order of their keys, checked in or not.
+     *
+     * Pages start after the last revision of the previous one instead of at an offset, the cost of
+     * reading a page does not grow with the size of the result.
+     *
+     * @param fromNumber  The part number of the last revision of the previous page, empty for the first one
+     * @param fromVersion The version of the last revision of the previous page, empty for the first one
+     * @param maxResults  The size of the page
+     */
+    public List<PartRevision> runQuery(Workspace workspace, Query query, String fromNumber, String fromVersion, int maxResults) {
+
+        return createPartRevisionQuery(workspace, query, true, null)
+                .setParameter("fromNumber", fromNumber)
+                .setParameter("fromVersion", fromVersion)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
+
+    /**
+     * Runs the query for the part revisions of the given part numbers only, checked in or not.
+     */
+    public List<PartRevision> runQuery(Workspace workspace, Query query, Collection<String> partNumbers) {
+
+        return createPartRevisionQuery(workspace, query, false, partNumbers).getResultList();
+    }
+
+    private TypedQuery<PartRevision> createPartRevisionQuery(Workspace workspace, Query query, boolean ordered, Collection<String> partNumbers) {
+
+        // A new criteria query each time, the roots and their joins are not shared between queries
+        cq = cb.createQuery();
+        pm = cq.from(PartMaster.class);
+        pr = cq.from(PartRevision.class);
+        pi = cq.from(PartIteration.class);
+
         // Simple select
         cq.select(pr);
 
@@ -154,33 +196,33 @@ public class QueryDAO {
         Join<PartIteration,PartRevision> piJoin = pi.join("partRevision");
         Predicate piJoinPredicate = piJoin.on(cb.and(cb.equal(pi.get("partRevision").get("partMasterNumber"), pr.get("partMasterNumber")), cb.equal(pr.get("partMaster").get("workspace"), workspace))).getOn();
 
-
+        List<Predicate> predicates = new ArrayList<>();
         if ( firstCondition != null) {
-            cq.where(cb.and(
-                    rulesPredicate,
-                    workspacePredicate,
-                    prJoinPredicate,
-                    piJoinPredicate
-            ));
-        }else{
-            cq.where(cb.and(
-                    workspacePredicate,
-                    prJoinPredicate,
-                    piJoinPredicate
-            ));
+            predicates.add(rulesPredicate);
         }
+        predicates.add(workspacePredicate);
+        predicates.add(prJoinPredicate);
+        predicates.add(piJoinPredicate);
 
+        if (partNumbers != null) {
+            predicates.add(pr.get("partMasterNumber").in(partNumbers));
+        }
 
-        TypedQuery<PartRevision> tp = em.createQuery(cq);
-        Set<PartRevision> revisions = new HashSet<>();
-
-        for(PartRevision part : tp.getResultList()){
-            if(part.getLastCheckedInIteration() != null) {
-                revisions.add(part);
-            }
+        if (ordered) {
+            // Revisions after the last one of the previous chunk
+            ParameterExpression<String> fromNumber = cb.parameter(String.class, "fromNumber");
+            ParameterExpression<String> fromVersion = cb.parameter(String.class, "fromVersion");
+            predicates.add(cb.or(
+                    cb.greaterThan(pr.<String>get("partMasterNumber"), fromNumber),
+                    cb.and(cb.equal(pr.get("partMasterNumber"), fromNumber), cb.greaterThan(pr.<String>get("version"), fromVersion))
+            ));
+            cq.distinct(true);
+            cq.orderBy(cb.asc(pr.get("partMasterNumber")), cb.asc(pr.get("version")));
         }
 
-        return new ArrayList<>(revisions);
+        cq.where(cb.and(predicates.toArray(new Predicate[predicates.size()])));
+
+        return em.createQuery(cq);
     }
 
     private Predicate getPredicate(QueryRule queryRule){
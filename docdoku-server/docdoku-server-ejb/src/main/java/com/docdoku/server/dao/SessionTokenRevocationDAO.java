@@ -0,0 +1,75 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.dao;
+
+import com.docdoku.core.security.RevokedSessionToken;
+import com.docdoku.core.security.SessionTokenValidity;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+public class SessionTokenRevocationDAO {
+
+    private EntityManager em;
+
+    public SessionTokenRevocationDAO(EntityManager pEM) {
+        em = pEM;
+    }
+
+    public void revokeToken(RevokedSessionToken revokedToken) {
+        // A token may be logged out twice
+        em.merge(revokedToken);
+        em.flush();
+    }
+
+    /**
+     * Invalidates the tokens of an account issued until the given time, keeping a later time
+     * already set.
+     */
+    public void invalidateTokens(String login, long validAfter) {
+        SessionTokenValidity validity = em.find(SessionTokenValidity.class, login);
+        if (validity == null) {
+            em.persist(new SessionTokenValidity(login, validAfter));
+        } else if (validity.getValidAfter() < validAfter) {
+            validity.setValidAfter(validAfter);
+        }
+        em.flush();
+    }
+
+    public List<RevokedSessionToken> findRevokedTokens(long since, long now) {
+        return em.createNamedQuery("RevokedSessionToken.findRevokedSince", RevokedSessionToken.class)
+                .setParameter("since", since)
+                .setParameter("now", now)
+                .getResultList();
+    }
+
+    public List<SessionTokenValidity> findValidities(long since) {
+        return em.createNamedQuery("SessionTokenValidity.findChangedSince", SessionTokenValidity.class)
+                .setParameter("since", since)
+                .getResultList();
+    }
+
+    public int removeExpiredTokens(long now) {
+        return em.createNamedQuery("RevokedSessionToken.removeExpired")
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.dao;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.StorageUsage;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class StorageUsageDAO {
+
+    private static final Logger LOGGER = Logger.getLogger(StorageUsageDAO.class.getName());
+
+    private EntityManager em;
+    private Locale mLocale;
+
+    public StorageUsageDAO(Locale pLocale, EntityManager pEM) {
+        mLocale = pLocale;
+        em = pEM;
+    }
+
+    public StorageUsageDAO(EntityManager pEM) {
+        mLocale = Locale.getDefault();
+        em = pEM;
+    }
+
+    /**
+     * Creates the empty counters of a new workspace.
+     */
+    public void createUsage(String workspaceId) {
+        for (String holderType : StorageUsage.HOLDER_TYPES) {
+            em.persist(new StorageUsage(workspaceId, holderType, 0));
+        }
+        em.flush();
+    }
+
+    /**
+     * Adds the given number of bytes, negative when released, to the usage of a holder type.
+     *
+     * The counter is incremented in place so that concurrent uploads in the same workspace do not
+     * overwrite each other. It is never inserted here, as two first uploads would both try to; a
+     * missing counter, of a workspace created before them, is left to the reconcile job.
+     */
+    public void addUsage(String workspaceId, String holderType, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        int updated = em.createNamedQuery("StorageUsage.add")
+                .setParameter("delta", delta)
+                .setParameter("updateDate", new Date())
+                .setParameter("workspaceId", workspaceId)
+                .setParameter("holderType", holderType)
+                .executeUpdate();
+        if (updated == 0) {
+            LOGGER.log(Level.FINE, "No storage usage counter for " + holderType + " in workspace " + workspaceId + ", it will be rebuilt by the reconcile job");
+        }
+    }
+
+    public void addUsage(BinaryResource pBinaryResource, long delta) {
+        addUsage(pBinaryResource.getWorkspaceId(), pBinaryResource.getHolderType(), delta);
+    }
+
+    public void releaseUsage(BinaryResource pBinaryResource) {
+        addUsage(pBinaryResource, -pBinaryResource.getContentLength());
+    }
+
+    /**
+     * Releases the usage of binary resources removed along with their holder, grouped by holder type.
+     */
+    public void releaseUsage(Collection<? extends BinaryResource> pBinaryResources) {
+        Map<String, Long> released = new HashMap<>();
+        for (BinaryResource binaryResource : pBinaryResources) {
+            String key = binaryResource.getWorkspaceId() + "/" + binaryResource.getHolderType();
+            Long bytes = released.get(key);
+            released.put(key, (bytes == null ? 0L : bytes) + binaryResource.getContentLength());
+        }
+        for (Map.Entry<String, Long> entry : released.entrySet()) {
+            String[] key = entry.getKey().split("/");
+            addUsage(key[0], key[1], -entry.getValue());
+        }
+    }
+
+    public long getUsage(String workspaceId) {
+        Number result = (Number) em.createNamedQuery("StorageUsage.sumInWorkspace")
+                .setParameter("workspaceId", workspaceId)
+                .getSingleResult();
+        return result != null ? result.longValue() : 0L;
+    }
+
+    public long getUsage(String workspaceId, String holderType) {
+        Number result = (Number) em.createNamedQuery("StorageUsage.sumInWorkspaceForHolderType")
+                .setParameter("workspaceId", workspaceId)
+                .setParameter("holderType", holderType)
+                .getSingleResult();
+        return result != null ? result.longValue() : 0L;
+    }
+
+    public void removeUsage(String workspaceId) {
+        em.createNamedQuery("StorageUsage.removeInWorkspace")
+                .setParameter("workspaceId", workspaceId)
+                .executeUpdate();
+    }
+
+    /**
+     * Sets the counters of a workspace to the sum of the content lengths of its binary resources,
+     * creating the missing ones.
+     */
+    public Map<String, Long> rebuildUsage(String workspaceId) {
+        String pathToMatch = workspaceId.replace("_", "\\_").replace("%", "\\%") + "/%";
+        List<Object[]> binaryResources = em.createNamedQuery("BinaryResource.findContentLengthsInPath", Object[].class)
+                .setParameter("path", pathToMatch)
+                .getResultList();
+
+        Map<String, Long> usage = new HashMap<>();
+        for (Object[] binaryResource : binaryResources) {
+            String holderType = BinaryResource.parseHolderType((String) binaryResource[0]);
+            Long bytes = usage.get(holderType);
+            usage.put(holderType, (bytes == null ? 0L : bytes) + ((Number) binaryResource[1]).longValue());
+        }
+
+        for (String holderType : StorageUsage.HOLDER_TYPES) {
+            if (!usage.containsKey(holderType)) {
+                usage.put(holderType, 0L);
+            }
+        }
+
+        List<StorageUsage> counters = em.createNamedQuery("StorageUsage.findInWorkspace", StorageUsage.class)
+                .setParameter("workspaceId", workspaceId)
+                .getResultList();
+        Map<String, Long> missing = new HashMap<>(usage);
+        for (StorageUsage counter : counters) {
+            Long bytes = missing.remove(counter.getHolderType());
+            counter.setBytes(bytes == null ? 0L : bytes);
+        }
+        for (Map.Entry<String, Long> entry : missing.entrySet()) {
+            em.persist(new StorageUsage(workspaceId, entry.getKey(), entry.getValue()));
+        }
+        em.flush();
+        return usage;
+    }
+}
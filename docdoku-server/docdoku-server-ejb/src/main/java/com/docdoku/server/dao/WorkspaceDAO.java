@@ -74,6 +74,7 @@ public class WorkspaceDAO {
             em.persist(pWorkspace);
             em.flush();
             new FolderDAO(mLocale, em).createFolder(new Folder(pWorkspace.getId()));
+            new StorageUsageDAO(mLocale, em).createUsage(pWorkspace.getId());
         }catch(EntityExistsException pEEEx){
             throw new WorkspaceAlreadyExistsException(mLocale, pWorkspace);
         }catch(PersistenceException pPEx){
@@ -95,11 +96,7 @@ public class WorkspaceDAO {
     }
 
     public long getDiskUsageForWorkspace(String pWorkspaceId) {
-        Number result = (Number) em.createNamedQuery("BinaryResource.diskUsageInPath")
-                .setParameter("path", pWorkspaceId+"/%")
-                .getSingleResult();
-
-        return result != null ? result.longValue() : 0L;
+        return new StorageUsageDAO(mLocale, em).getUsage(pWorkspaceId);
     }
 
     public List<Workspace> findWorkspacesWhereUserIsActive(String userLogin){
@@ -320,6 +317,9 @@ public class WorkspaceDAO {
         em.createQuery("DELETE FROM User u where u.workspace = :workspace")
                 .setParameter("workspace",workspace).executeUpdate();
 
+        // Storage usage counters
+        new StorageUsageDAO(mLocale, em).removeUsage(workspaceId);
+
         // Finally delete the workspace
 
         em.flush();
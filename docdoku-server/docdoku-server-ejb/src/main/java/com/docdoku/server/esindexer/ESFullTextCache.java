@@ -0,0 +1,125 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.esindexer;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.exceptions.StorageException;
+import com.docdoku.core.services.IDataManagerLocal;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Extracts the text of binary resources to index, and keeps it in a sub-resource.
+ *
+ * The sub-resource starts with the content hash of the file it was extracted from: the text is
+ * reused by reindexing as long as the content is unchanged, without reading the file. As the
+ * sub-resources are copied to the next iterations, a file kept from one iteration to the next is not
+ * extracted again. Files larger than the configured maximum size are not extracted, nor the files
+ * of types without text.
+ */
+public class ESFullTextCache {
+
+    public static final String FULL_TEXT_SUB_RESOURCE = "fulltext.txt";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(ESFullTextCache.class.getName());
+
+    private final IDataManagerLocal dataManager;
+    private final long maxFileSize;
+
+    public ESFullTextCache(IDataManagerLocal dataManager) {
+        this(dataManager, ESTools.MAX_EXTRACTED_FILE_SIZE);
+    }
+
+    public ESFullTextCache(IDataManagerLocal dataManager, long maxFileSize) {
+        this.dataManager = dataManager;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * @return the text of the binary resource, null if it cannot be read
+     */
+    public String getText(BinaryResource bin) {
+        if (!ESTools.isExtractable(bin.getFullName())) {
+            return " ";
+        }
+        if (bin.getContentLength() > maxFileSize) {
+            LOGGER.log(Level.INFO, "The file " + bin.getFullName() + " is too large to have its content indexed");
+            return " ";
+        }
+
+        try {
+            String key = dataManager.getContentHash(bin);
+            String[] cached = readCachedText(bin);
+            if (cached != null && cached[0].equals(key)) {
+                return cached[1];
+            }
+
+            String text;
+            try (InputStream in = dataManager.getBinaryResourceInputStream(bin)) {
+                text = ESTools.streamToString(bin.getFullName(), in);
+            }
+            writeCachedText(bin, key, text);
+            return text;
+        } catch (StorageException | IOException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return null;
+        }
+    }
+
+    /*
+     * The content hash of the file and the text extracted from it, null if there is no cached text
+     */
+    private String[] readCachedText(BinaryResource bin) throws StorageException, IOException {
+        if (!dataManager.exists(bin, FULL_TEXT_SUB_RESOURCE)) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                dataManager.getBinarySubResourceInputStream(bin, FULL_TEXT_SUB_RESOURCE), StandardCharsets.UTF_8))) {
+            String key = reader.readLine();
+            if (key == null) {
+                return null;
+            }
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[BUFFER_SIZE];
+            int length;
+            while ((length = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, length);
+            }
+            return new String[]{key, text.toString()};
+        }
+    }
+
+    private void writeCachedText(BinaryResource bin, String key, String text) {
+        try (Writer writer = new OutputStreamWriter(
+                dataManager.getBinarySubResourceOutputStream(bin, FULL_TEXT_SUB_RESOURCE), StandardCharsets.UTF_8)) {
+            writer.write(key);
+            writer.write('\n');
+            writer.write(text);
+        } catch (StorageException | IOException e) {
+            LOGGER.log(Level.WARNING, "The text of the file " + bin.getFullName() + " cannot be cached", e);
+        }
+    }
+}
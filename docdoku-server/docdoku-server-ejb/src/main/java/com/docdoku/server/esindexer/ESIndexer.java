@@ -21,29 +21,36 @@ package com.docdoku.server.esindexer;
 
 import com.docdoku.core.common.Account;
 import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.IndexerCheckpoint;
+import com.docdoku.core.common.IndexerQueueEntry;
 import com.docdoku.core.common.Workspace;
 import com.docdoku.core.document.DocumentIteration;
 import com.docdoku.core.document.DocumentMaster;
 import com.docdoku.core.document.DocumentRevision;
+import com.docdoku.core.document.DocumentRevisionKey;
 import com.docdoku.core.exceptions.*;
 import com.docdoku.core.product.PartIteration;
 import com.docdoku.core.product.PartMaster;
 import com.docdoku.core.product.PartRevision;
+import com.docdoku.core.product.PartRevisionKey;
 import com.docdoku.core.services.IAccountManagerLocal;
 import com.docdoku.core.services.IDataManagerLocal;
 import com.docdoku.core.services.IMailerLocal;
 import com.docdoku.server.dao.DocumentMasterDAO;
+import com.docdoku.server.dao.IndexerCheckpointDAO;
+import com.docdoku.server.dao.IndexerQueueDAO;
 import com.docdoku.server.dao.PartMasterDAO;
 import com.docdoku.server.dao.WorkspaceDAO;
 import org.elasticsearch.ElasticsearchIllegalArgumentException;
-import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
-import org.elasticsearch.action.delete.DeleteRequestBuilder;
-import org.elasticsearch.action.update.UpdateRequestBuilder;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
@@ -51,14 +58,22 @@ import org.elasticsearch.indices.InvalidIndexNameException;
 
 import javax.annotation.Resource;
 import javax.ejb.Asynchronous;
+import javax.ejb.EJBException;
 import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -88,6 +103,9 @@ public class ESIndexer {
     @Inject
     private Client client;
 
+    @Resource
+    private ManagedExecutorService extractionExecutor;
+
     private static final String CONF_PROPERTIES = "/com/docdoku/server/esindexer/conf.properties";
     private static final Properties CONF = new Properties();
     private static final String I18N_CONF = "com.docdoku.core.i18n.LocalStrings";
@@ -100,6 +118,15 @@ public class ESIndexer {
     private static final String ES_INDEX_CREATION_ERROR_2 = "ES_IndexCreationError2";
     private static final String ES_DELETE_ERROR_1 = "ES_DeleteError1";
 
+    private static final int QUEUE_BATCH_SIZE = 500;
+    private static final int REINDEX_PAGE_SIZE = 100;
+    private static final long MAX_BULK_SIZE = 5 * 1024 * 1024;
+    // A reindexing whose checkpoint is not updated for this long has been interrupted
+    private static final long STALE_CHECKPOINT_DELAY = 10 * 60 * 1000;
+
+    // Indices created or found by this server, not to be checked on every update
+    private static final Set<String> KNOWN_INDICES = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     static {
         try (InputStream inputStream  = ESIndexer.class.getResourceAsStream(CONF_PROPERTIES)) {
             CONF.load(inputStream);
@@ -212,11 +239,22 @@ public class ESIndexer {
         tmp.endObject();
         tmp.endObject();
         tmp.endObject();
+        //principals of the ACL, only used to filter the searches
+        aclMapping(tmp, ESMapper.ACL_READ_KEY);
+        aclMapping(tmp, ESMapper.ACL_DENIED_KEY);
         tmp.endObject();
 
         return tmp;
     }
 
+    private void aclMapping(XContentBuilder tmp, String field) throws IOException {
+        tmp.startObject(field);
+        tmp.field("type", "string");
+        tmp.field("index", "not_analyzed");
+        tmp.field("include_in_all", false);
+        tmp.endObject();
+    }
+
     private void tryCreateIndex(String pIndex) throws ESIndexNamingException {
         try {
             generateIndex(pIndex);
@@ -253,6 +291,7 @@ public class ESIndexer {
      * @param workspaceId The name of the index to delete.
      */
     public void deleteIndex(String workspaceId) {
+        KNOWN_INDICES.remove(ESTools.formatIndexName(workspaceId));
         try {
             client.admin().indices().prepareDelete(ESTools.formatIndexName(workspaceId))
                     .execute().actionGet();
@@ -262,144 +301,525 @@ public class ESIndexer {
     }
 
     /**
-     * Index all content in all workspace
+     * Index all content in all workspace.
+     *
+     * Workspaces are reindexed one after the other, from the start. If the run is interrupted, the
+     * workspaces it has not completed are resumed from their checkpoint by {@link #resumeReindex()}.
      */
     @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void indexAll() {
-        try {
-            BulkRequestBuilder bulkRequest = client.prepareBulk();
-            WorkspaceDAO wDAO = new WorkspaceDAO(em);
+        ESIndexer self = ctx.getBusinessObject(ESIndexer.class);
+        reindexWorkspaces(self, self.startReindex(null));
+    }
 
-            for (Workspace w : wDAO.getAll()) {
-                bulkRequest = bulkWorkspaceRequestBuilder(bulkRequest, w.getId(), true);
+    /**
+     * Resume the reindexings which have been interrupted, from their checkpoint.
+     *
+     * Each workspace is claimed before being resumed, so that it is resumed by a single run.
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void resumeReindex() {
+        ESIndexer self = ctx.getBusinessObject(ESIndexer.class);
+        List<String> claimedWorkspaceIds = new ArrayList<>();
+        for (String workspaceId : self.getInterruptedReindexes()) {
+            if (self.claimReindex(workspaceId)) {
+                claimedWorkspaceIds.add(workspaceId);
             }
+        }
+        if (!claimedWorkspaceIds.isEmpty()) {
+            LOGGER.log(Level.INFO, "Resuming the indexing of workspaces " + claimedWorkspaceIds);
+            reindexWorkspaces(self, claimedWorkspaceIds);
+        }
+    }
 
-            BulkResponse bulkResponse = bulkRequest.execute().actionGet();
-
-            if (bulkResponse.hasFailures()) {
-                String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_3);
-                LOGGER.log(Level.WARNING, logMessage + " \n " + bulkResponse.buildFailureMessage());
+    private void reindexWorkspaces(ESIndexer self, List<String> workspaceIds) {
+        for (String workspaceId : workspaceIds) {
+            try {
+                reindexWorkspace(self, workspaceId);
+            } catch (ESIndexNamingException e) {
+                String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_CREATION_ERROR_2);
+                LOGGER.log(Level.WARNING, logMessage + " " + workspaceId, e);
+                self.cancelReindex(workspaceId);
+            } catch (EJBException | NoNodeAvailableException e) {
+                // The cluster is not available, the remaining workspaces are resumed later from their checkpoints
+                String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_2);
+                LOGGER.log(Level.WARNING, logMessage, e);
+                return;
             }
-        } catch (NoNodeAvailableException | ESIndexNamingException e) {
-            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_2);
-            LOGGER.log(Level.WARNING, logMessage, e);
         }
     }
 
     /**
-     * Index all resources in this workspace
+     * Index all resources in this workspace, from the start
      *
      * @param workspaceId Workspace to index
      */
     @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void indexWorkspace(String workspaceId) {
         String failureMessage = "";
         boolean hasSuccess = true;
+        ESIndexer self = ctx.getBusinessObject(ESIndexer.class);
 
         try {
-            BulkRequestBuilder bulkRequest = client.prepareBulk();
-            bulkRequest = bulkWorkspaceRequestBuilder(bulkRequest, workspaceId, false);
-            BulkResponse bulkResponse = bulkRequest.execute().actionGet();
-
-            if (bulkResponse.hasFailures()) {
-                hasSuccess = false;
-                failureMessage = bulkResponse.buildFailureMessage();
-            }
-        } catch (ActionRequestValidationException e) {
-            hasSuccess = false;
-            failureMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString("ES_IndexError4");
+            self.startReindex(workspaceId);
+            long indexed = reindexWorkspace(self, workspaceId);
+            LOGGER.log(Level.INFO, "The workspace " + workspaceId + " has been indexed, " + indexed + " revisions");
         } catch (ESIndexNamingException e) {
             hasSuccess = false;
             failureMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_CREATION_ERROR_2) + " " + workspaceId;
-        } catch (NoNodeAvailableException e) {
+            self.cancelReindex(workspaceId);
+        } catch (EJBException | NoNodeAvailableException e) {
             hasSuccess = false;
             failureMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_2);
+            LOGGER.log(Level.FINE, null, e);
         }
 
         if (!hasSuccess) {
             String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_3);
             LOGGER.log(Level.WARNING, logMessage + " \n " + failureMessage);
-        } else {
-            LOGGER.log(Level.INFO, "The workspace " + workspaceId + " has been indexed");
         }
         sendNotification(workspaceId,hasSuccess,failureMessage);
     }
 
     /**
-     * Index a documentIteration in ElasticSearch Cluster
+     * Create or reset the checkpoints of a new reindexing, an interrupted one being started over.
      *
-     * @param doc The document iteration to index
+     * @param workspaceId The workspace to reindex, null for all of them
+     * @return The workspaces to reindex
      */
-    @Asynchronous
-    public void index(DocumentIteration doc) {
-        String workspaceId = doc.getWorkspaceId();
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<String> startReindex(String workspaceId) {
+        IndexerCheckpointDAO checkpointDAO = new IndexerCheckpointDAO(em);
+        List<String> workspaceIds = new ArrayList<>();
+
+        if (workspaceId != null) {
+            workspaceIds.add(workspaceId);
+        } else {
+            for (Workspace w : new WorkspaceDAO(em).getAll()) {
+                workspaceIds.add(w.getId());
+            }
+            // Left by workspaces removed since
+            for (IndexerCheckpoint checkpoint : checkpointDAO.getAllCheckpoints()) {
+                if (!workspaceIds.contains(checkpoint.getWorkspaceId())) {
+                    checkpointDAO.removeCheckpoint(checkpoint);
+                }
+            }
+        }
+
+        for (String id : workspaceIds) {
+            IndexerCheckpoint checkpoint = checkpointDAO.getCheckpoint(id);
+            if (checkpoint == null) {
+                checkpointDAO.createCheckpoint(new IndexerCheckpoint(id));
+            } else {
+                checkpoint.reset();
+            }
+        }
+        return workspaceIds;
+    }
+
+    /**
+     * @return The workspaces whose reindexing has been interrupted
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<String> getInterruptedReindexes() {
+        Date staleDate = new Date(System.currentTimeMillis() - STALE_CHECKPOINT_DELAY);
+        List<String> workspaceIds = new ArrayList<>();
+        for (IndexerCheckpoint checkpoint : new IndexerCheckpointDAO(em).getStaleCheckpoints(staleDate)) {
+            workspaceIds.add(checkpoint.getWorkspaceId());
+        }
+        return workspaceIds;
+    }
+
+    /**
+     * @return true if the interrupted reindexing of the workspace can be resumed by the caller
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean claimReindex(String workspaceId) {
+        Date staleDate = new Date(System.currentTimeMillis() - STALE_CHECKPOINT_DELAY);
+        return new IndexerCheckpointDAO(em).claimCheckpoint(workspaceId, staleDate);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void cancelReindex(String workspaceId) {
+        IndexerCheckpointDAO checkpointDAO = new IndexerCheckpointDAO(em);
+        IndexerCheckpoint checkpoint = checkpointDAO.getCheckpoint(workspaceId);
+        if (checkpoint != null) {
+            checkpointDAO.removeCheckpoint(checkpoint);
+        }
+    }
+
+    /**
+     * Index the next page of a workspace reindexing, after its checkpoint, and record the new one.
+     *
+     * The page is read, indexed and checkpointed in its own transaction, and the persistence context
+     * is cleared afterwards, so the memory used does not grow with the size of the workspace.
+     *
+     * @return The number of indexed revisions, or -1 once the whole workspace has been indexed
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int indexNextPage(String workspaceId) {
+        IndexerCheckpointDAO checkpointDAO = new IndexerCheckpointDAO(em);
+        IndexerCheckpoint checkpoint = checkpointDAO.getCheckpoint(workspaceId);
+        if (checkpoint == null) {
+            return -1;
+        }
+
+        int indexed;
+        if (checkpoint.getEntityType() == IndexerQueueEntry.EntityType.DOCUMENT) {
+            List<DocumentMaster> page = new DocumentMasterDAO(em).getPageByWorkspace(workspaceId, checkpoint.getLastEntityId(), REINDEX_PAGE_SIZE);
+            if (page.isEmpty()) {
+                checkpoint.advance(IndexerQueueEntry.EntityType.PART, null, 0);
+                return 0;
+            }
+            indexed = indexDocumentsPage(page);
+            checkpoint.advance(IndexerQueueEntry.EntityType.DOCUMENT, page.get(page.size() - 1).getId(), indexed);
+        } else {
+            List<PartMaster> page = new PartMasterDAO(em).getPageByWorkspace(workspaceId, checkpoint.getLastEntityId(), REINDEX_PAGE_SIZE);
+            if (page.isEmpty()) {
+                checkpointDAO.removeCheckpoint(checkpoint);
+                return -1;
+            }
+            indexed = indexPartsPage(page);
+            checkpoint.advance(IndexerQueueEntry.EntityType.PART, page.get(page.size() - 1).getNumber(), indexed);
+        }
+
+        em.flush();
+        em.clear();
+        return indexed;
+    }
+
+    private long reindexWorkspace(ESIndexer self, String workspaceId) throws ESIndexNamingException {
+        String index = ESTools.formatIndexName(workspaceId);
+        tryCreateIndex(index);
+        KNOWN_INDICES.add(index);
+
+        long total = 0;
+        int indexed;
+        while ((indexed = self.indexNextPage(workspaceId)) >= 0) {
+            total += indexed;
+        }
+        return total;
+    }
+
+    private int indexDocumentsPage(List<DocumentMaster> page) {
+        List<DocumentIteration> iterations = new ArrayList<>();
+        List<Future<Map<String, String>>> contents = new ArrayList<>();
+        for (DocumentMaster docM : page) {
+            for (DocumentRevision docR : docM.getDocumentRevisions()) {
+                DocumentIteration doc = docR.getLastCheckedInIteration();
+                if (doc != null) {
+                    iterations.add(doc);
+                    contents.add(submitExtraction(doc.getAttachedFiles()));
+                }
+            }
+        }
+
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        for (int i = 0; i < iterations.size(); i++) {
+            bulkRequest.add(indexRequest(iterations.get(i), getExtraction(contents.get(i))));
+            bulkRequest = flushReindexBulk(bulkRequest, false);
+        }
+        flushReindexBulk(bulkRequest, true);
+        return iterations.size();
+    }
+
+    private int indexPartsPage(List<PartMaster> page) {
+        List<PartIteration> iterations = new ArrayList<>();
+        List<Future<Map<String, String>>> contents = new ArrayList<>();
+        for (PartMaster partMaster : page) {
+            for (PartRevision partRev : partMaster.getPartRevisions()) {
+                PartIteration part = partRev.getLastCheckedInIteration();
+                if (part != null) {
+                    iterations.add(part);
+                    contents.add(submitExtraction(part.getAttachedFiles()));
+                }
+            }
+        }
+
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        for (int i = 0; i < iterations.size(); i++) {
+            bulkRequest.add(indexRequest(iterations.get(i), getExtraction(contents.get(i))));
+            bulkRequest = flushReindexBulk(bulkRequest, false);
+        }
+        flushReindexBulk(bulkRequest, true);
+        return iterations.size();
+    }
+
+    /*
+     * Send the bulk request once it reaches its maximum size, or when forced if it is not empty
+     */
+    private BulkRequestBuilder flushReindexBulk(BulkRequestBuilder bulkRequest, boolean force) {
+        if (bulkRequest.numberOfActions() == 0
+                || !force && bulkRequest.request().estimatedSizeInBytes() < MAX_BULK_SIZE) {
+            return bulkRequest;
+        }
+        BulkResponse bulkResponse = bulkRequest.execute().actionGet();
+        if (bulkResponse.hasFailures()) {
+            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_3);
+            LOGGER.log(Level.WARNING, logMessage + " \n " + bulkResponse.buildFailureMessage());
+        }
+        return client.prepareBulk();
+    }
+
+    /*
+     * Extract the text of the files on the worker pool, while the page is read
+     */
+    private Future<Map<String, String>> submitExtraction(Collection<BinaryResource> files) {
+        final List<BinaryResource> binaryResources = new ArrayList<>(files);
+        return extractionExecutor.submit(new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() {
+                return extractContents(binaryResources);
+            }
+        });
+    }
+
+    private Map<String, String> getExtraction(Future<Map<String, String>> extraction) {
         try {
-            tryCreateIndex(ESTools.formatIndexName(workspaceId));
-            indexRequest(doc).execute()
-                    .actionGet();
-        } catch (NoNodeAvailableException e) {
-            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_1);
-            LOGGER.log(Level.WARNING, doc + ES_INDEX_FAIL + logMessage, e);
-        } catch (ESIndexNamingException e) {
-            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_CREATION_ERROR_2);
-            LOGGER.log(Level.WARNING, doc + ES_INDEX_FAIL + logMessage + " " + workspaceId, e);
-        } catch (ElasticsearchIllegalArgumentException e){
-            LOGGER.log(Level.SEVERE, null, e);
+            return extraction.get();
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.FINE, null, e);
+        }
+        return new HashMap<>();
+    }
+
+    private Map<String, String> extractContents(Collection<BinaryResource> files) {
+        ESFullTextCache fullTextCache = new ESFullTextCache(dataManager);
+        Map<String, String> binaryList = new HashMap<>();
+        for (BinaryResource bin : files) {
+            String text = fullTextCache.getText(bin);
+            if (text != null) {
+                binaryList.put(bin.getName(), text);
+            }
         }
+        return binaryList;
+    }
+
+    /**
+     * Queue the indexing of the revision of a documentIteration, in the current transaction
+     *
+     * @param doc The document iteration to index
+     */
+    public void index(DocumentIteration doc) {
+        enqueue(doc);
     }
 
     /**
-     * Index a partIteration in ElasticSearch Cluster
+     * Queue the indexing of the revision of a partIteration, in the current transaction
      *
      * @param part The part iteration to index
      */
-    @Asynchronous
     public void index(PartIteration part) {
-        String workspaceId = part.getWorkspaceId();
-        try {
-            tryCreateIndex(ESTools.formatIndexName(workspaceId));
-            indexRequest(part).execute()
-                    .actionGet();
-        } catch (NoNodeAvailableException  e) {
-            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_1);
-            LOGGER.log(Level.WARNING, part + ES_INDEX_FAIL + logMessage, e);
-        } catch (ESIndexNamingException e) {
-            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_CREATION_ERROR_2);
-            LOGGER.log(Level.WARNING, part + ES_INDEX_FAIL + logMessage + " " + workspaceId, e);
-        } catch (ElasticsearchIllegalArgumentException e){
-            LOGGER.log(Level.SEVERE, null, e);
-        }
+        enqueue(part);
     }
 
     /**
-     * Remove this docIteration from ElasticSearch Cluster
+     * Queue the removal of this docIteration from ElasticSearch Cluster. Its revision is indexed
+     * again without it, or removed if it has been deleted.
      *
      * @param doc The document iteration to remove from index
      */
-    @Asynchronous
     public void delete(DocumentIteration doc) {
-        try {
-            deleteRequest(doc).execute()
-                    .actionGet();
-        } catch (NoNodeAvailableException e) {
-            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_DELETE_ERROR_1);
-            LOGGER.log(Level.WARNING, logMessage, e);
-        }
+        enqueue(doc);
     }
 
     /**
-     * Remove this partIteration from ElasticSearch Cluster
+     * Queue the removal of this partIteration from ElasticSearch Cluster. Its revision is indexed
+     * again without it, or removed if it has been deleted.
      *
      * @param part The part iteration to remove from index
      */
-    @Asynchronous
     public void delete(PartIteration part) {
+        enqueue(part);
+    }
+
+    private void enqueue(DocumentIteration doc) {
+        new IndexerQueueDAO(em).enqueue(new IndexerQueueEntry(IndexerQueueEntry.EntityType.DOCUMENT,
+                doc.getWorkspaceId(), doc.getDocumentMasterId(), doc.getVersion()));
+    }
+
+    private void enqueue(PartIteration part) {
+        new IndexerQueueDAO(em).enqueue(new IndexerQueueEntry(IndexerQueueEntry.EntityType.PART,
+                part.getWorkspaceId(), part.getPartNumber(), part.getPartVersion()));
+    }
+
+    /**
+     * Index the revisions of the oldest entries of the queue, in bulk requests bounded in size.
+     *
+     * Entries of the same revision are coalesced: the revision is read once, in its current state,
+     * and indexed as a whole. Processed entries are removed from the queue, unless the cluster
+     * rejected them because it is overloaded. Entries of deleted workspaces are dropped, so that
+     * their index is not created again.
+     *
+     * @return The number of indexed revisions, or -1 if the cluster is unavailable or overloaded and
+     * the queue should be processed later
+     */
+    public int processQueue() {
+        IndexerQueueDAO queueDAO = new IndexerQueueDAO(em);
+        List<IndexerQueueEntry> entries = queueDAO.getOldestEntries(QUEUE_BATCH_SIZE);
+
+        // Latest entry of each revision, in queue order
+        Map<String, IndexerQueueEntry> coalesced = new LinkedHashMap<>();
+        for (IndexerQueueEntry entry : entries) {
+            coalesced.remove(entry.getCoalescingKey());
+            coalesced.put(entry.getCoalescingKey(), entry);
+        }
+
+        Map<String, Boolean> existingWorkspaces = new HashMap<>();
+
         try {
-            deleteRequest(part).execute()
-                    .actionGet();
-        } catch (NoNodeAvailableException e) {
-            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_DELETE_ERROR_1);
+            BulkRequestBuilder bulkRequest = client.prepareBulk();
+            List<IndexerQueueEntry> bulkEntries = new ArrayList<>();
+
+            for (IndexerQueueEntry entry : coalesced.values()) {
+                String workspaceId = entry.getWorkspaceId();
+                if (!existingWorkspaces.containsKey(workspaceId)) {
+                    existingWorkspaces.put(workspaceId, em.find(Workspace.class, workspaceId) != null);
+                }
+                if (!existingWorkspaces.get(workspaceId) || !ensureIndex(workspaceId)) {
+                    queueDAO.removeProcessed(entry);
+                    continue;
+                }
+                addSyncRequest(bulkRequest, entry);
+                bulkEntries.add(entry);
+
+                if (bulkRequest.request().estimatedSizeInBytes() >= MAX_BULK_SIZE) {
+                    if (!executeQueueBulk(bulkRequest, bulkEntries, queueDAO)) {
+                        return -1;
+                    }
+                    bulkRequest = client.prepareBulk();
+                    bulkEntries = new ArrayList<>();
+                }
+            }
+
+            if (!bulkEntries.isEmpty() && !executeQueueBulk(bulkRequest, bulkEntries, queueDAO)) {
+                return -1;
+            }
+        } catch (NoNodeAvailableException | EsRejectedExecutionException e) {
+            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_1);
             LOGGER.log(Level.WARNING, logMessage, e);
+            return -1;
+        }
+        return coalesced.size();
+    }
+
+    /**
+     * Bound the queue: when it holds more than the given number of entries, the entries of the
+     * workspaces with the most of them are replaced by a reindexing of these workspaces, which
+     * is started by the next {@link #resumeReindex()}.
+     *
+     * @return The number of removed entries
+     */
+    public int collapseQueue(long maxEntries) {
+        IndexerQueueDAO queueDAO = new IndexerQueueDAO(em);
+        long entries = queueDAO.count();
+        if (entries <= maxEntries) {
+            return 0;
+        }
+
+        IndexerCheckpointDAO checkpointDAO = new IndexerCheckpointDAO(em);
+        int removed = 0;
+        for (Object[] workspaceCount : queueDAO.getCountsByWorkspace()) {
+            if (entries - removed <= maxEntries) {
+                break;
+            }
+            String workspaceId = (String) workspaceCount[0];
+            removed += queueDAO.removeWorkspaceEntries(workspaceId, (Long) workspaceCount[2]);
+
+            IndexerCheckpoint checkpoint = checkpointDAO.getCheckpoint(workspaceId);
+            if (checkpoint == null) {
+                checkpointDAO.createCheckpoint(new IndexerCheckpoint(workspaceId, false));
+            } else {
+                // A running reindexing starts over, so that it covers the removed entries
+                checkpoint.reset();
+            }
+            LOGGER.log(Level.WARNING, "Indexer queue full, workspace " + workspaceId + " will be reindexed instead");
+        }
+        return removed;
+    }
+
+    /**
+     * @return The number of pending entries, and the age in milliseconds of the oldest one
+     */
+    public long[] getQueueStatus() {
+        IndexerQueueDAO queueDAO = new IndexerQueueDAO(em);
+        Date oldest = queueDAO.getOldestEnqueueDate();
+        return new long[]{queueDAO.count(), oldest == null ? 0 : System.currentTimeMillis() - oldest.getTime()};
+    }
+
+    private boolean executeQueueBulk(BulkRequestBuilder bulkRequest, List<IndexerQueueEntry> bulkEntries, IndexerQueueDAO queueDAO) {
+        BulkResponse bulkResponse = bulkRequest.execute().actionGet();
+        BulkItemResponse[] items = bulkResponse.getItems();
+        boolean rejected = false;
+
+        for (int i = 0; i < items.length; i++) {
+            if (items[i].isFailed() && items[i].getFailureMessage().contains(EsRejectedExecutionException.class.getSimpleName())) {
+                // Kept in the queue, sent again later
+                rejected = true;
+                continue;
+            }
+            if (items[i].isFailed() && !isMissingDocument(items[i])) {
+                String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_ERROR_3);
+                LOGGER.log(Level.WARNING, logMessage + " \n " + items[i].getFailureMessage());
+            }
+            queueDAO.removeProcessed(bulkEntries.get(i));
+        }
+        return !rejected;
+    }
+
+    private boolean isMissingDocument(BulkItemResponse item) {
+        return item.getResponse() instanceof DeleteResponse && !((DeleteResponse) item.getResponse()).isFound();
+    }
+
+    /*
+     * Index the revision in its current state, with its checked in iterations, or remove it from
+     * the index if it has been deleted or has never been checked in.
+     */
+    private void addSyncRequest(BulkRequestBuilder bulkRequest, IndexerQueueEntry entry) {
+        String index = ESTools.formatIndexName(entry.getWorkspaceId());
+        if (entry.getEntityType() == IndexerQueueEntry.EntityType.DOCUMENT) {
+            DocumentRevisionKey key = new DocumentRevisionKey(entry.getWorkspaceId(), entry.getEntityId(), entry.getVersion());
+            DocumentRevision docR = em.find(DocumentRevision.class, key);
+            DocumentIteration doc = docR != null ? docR.getLastCheckedInIteration() : null;
+            if (doc != null) {
+                bulkRequest.add(indexRequest(doc));
+            } else {
+                bulkRequest.add(client.prepareDelete(index, ESMapper.DOCUMENT_TYPE, key.toString()));
+            }
+        } else {
+            PartRevisionKey key = new PartRevisionKey(entry.getWorkspaceId(), entry.getEntityId(), entry.getVersion());
+            PartRevision partR = em.find(PartRevision.class, key);
+            PartIteration part = partR != null ? partR.getLastCheckedInIteration() : null;
+            if (part != null) {
+                bulkRequest.add(indexRequest(part));
+            } else {
+                bulkRequest.add(client.prepareDelete(index, ESMapper.PART_TYPE, key.toString()));
+            }
+        }
+    }
+
+    /*
+     * Create the index of a workspace the first time it is used by this server
+     */
+    private boolean ensureIndex(String workspaceId) {
+        String index = ESTools.formatIndexName(workspaceId);
+        if (KNOWN_INDICES.contains(index)) {
+            return true;
+        }
+        try {
+            tryCreateIndex(index);
+            KNOWN_INDICES.add(index);
+            return true;
+        } catch (ESIndexNamingException e) {
+            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_INDEX_CREATION_ERROR_2);
+            LOGGER.log(Level.WARNING, logMessage + " " + workspaceId, e);
+            return false;
         }
     }
 
@@ -412,6 +832,14 @@ public class ESIndexer {
     public void deleteWorkspace(String workspaceId) {
         String failureMessage = "";
         boolean hasSuccess = true;
+
+        new IndexerQueueDAO(em).removeWorkspaceEntries(workspaceId, Long.MAX_VALUE);
+        IndexerCheckpointDAO checkpointDAO = new IndexerCheckpointDAO(em);
+        IndexerCheckpoint checkpoint = checkpointDAO.getCheckpoint(workspaceId);
+        if (checkpoint != null) {
+            checkpointDAO.removeCheckpoint(checkpoint);
+        }
+
         try {
             deleteIndex(workspaceId);
         } catch (NoNodeAvailableException e) {
@@ -434,66 +862,19 @@ public class ESIndexer {
         }
     }
 
-    private BulkRequestBuilder bulkWorkspaceRequestBuilder(BulkRequestBuilder pBulkRequest, String workspaceId, boolean silent) throws ESIndexNamingException {
-        BulkRequestBuilder bulkRequest = pBulkRequest;
-        try {
-            generateIndex(ESTools.formatIndexName(workspaceId));
-        } catch (ESIndexAlreadyExistsException e) {
-            LOGGER.log(Level.FINEST, null, e);
-        } catch (ESIndexNamingException e) {
-            LOGGER.log(Level.FINEST, null, e);
-            if (!silent) {
-                throw e;
-            }
-        }
-
-        bulkRequest = bulkDocumentsIndexRequestBuilder(bulkRequest, workspaceId);
-        bulkRequest = bulkPartsIndexRequestBuilder(bulkRequest, workspaceId);
-
-        return bulkRequest;
-    }
-
-    private BulkRequestBuilder bulkDocumentsIndexRequestBuilder(BulkRequestBuilder pBulkRequest, String workspaceId) {
-        DocumentMasterDAO docMasterDAO = new DocumentMasterDAO(em);
-        for (DocumentMaster docM : docMasterDAO.getAllByWorkspace(workspaceId)) {
-            for (DocumentRevision docR : docM.getDocumentRevisions()) {
-                pBulkRequest.add(indexRequest(docR.getLastIteration()));
-            }
-        }
-        return pBulkRequest;
-    }
-
-    private BulkRequestBuilder bulkPartsIndexRequestBuilder(BulkRequestBuilder pBulkRequest, String workspaceId) {
-        PartMasterDAO partMasterDAO = new PartMasterDAO(em);
-        for (PartMaster partMaster : partMasterDAO.getAllByWorkspace(workspaceId)) {
-            for (PartRevision partRev : partMaster.getPartRevisions()) {
-                pBulkRequest.add(indexRequest(partRev.getLastIteration()));
-            }
-        }
-        return pBulkRequest;
-    }
-
-
     /**
      * Get the Index request for a documentIteration in ElasticSearch Cluster
      *
      * @param doc The document iteration to index
      */
-    private UpdateRequestBuilder indexRequest(DocumentIteration doc) throws NoNodeAvailableException {
-        Map<String, String> binaryList = new HashMap<>();
-        for (BinaryResource bin : doc.getAttachedFiles()) {
-            try (InputStream in = dataManager.getBinaryResourceInputStream(bin)){
-                binaryList.put(bin.getName(), ESTools.streamToString(bin.getFullName(), in));
-            } catch (StorageException | IOException e) {
-                LOGGER.log(Level.FINEST, null, e);
-            }
-        }
+    private IndexRequestBuilder indexRequest(DocumentIteration doc) throws NoNodeAvailableException {
+        return indexRequest(doc, extractContents(doc.getAttachedFiles()));
+    }
+
+    private IndexRequestBuilder indexRequest(DocumentIteration doc, Map<String, String> binaryList) throws NoNodeAvailableException {
         XContentBuilder jsonDoc = ESMapper.documentRevisionToJSON(doc, binaryList);
-        Map<String, Object> params = ESMapper.docIterationMap(doc, binaryList);
-        return client.prepareUpdate(ESTools.formatIndexName(doc.getWorkspaceId()), ESMapper.DOCUMENT_TYPE, doc.getDocumentRevisionKey().toString())
-                .setScript("ctx._source.iterations += iteration")
-                .addScriptParam("iteration", params)
-                .setUpsert(jsonDoc);
+        return client.prepareIndex(ESTools.formatIndexName(doc.getWorkspaceId()), ESMapper.DOCUMENT_TYPE, doc.getDocumentRevisionKey().toString())
+                .setSource(jsonDoc);
     }
 
     /**
@@ -501,42 +882,15 @@ public class ESIndexer {
      *
      * @param part The part iteration to index
      */
-    private UpdateRequestBuilder indexRequest(PartIteration part) {
-        Map<String, String> binaryList = new HashMap<>();
-        for(BinaryResource bin : part.getAttachedFiles()) {
-            try (InputStream in = dataManager.getBinaryResourceInputStream(bin)){
-                binaryList.put(bin.getName(),ESTools.streamToString(bin.getFullName(), in));
-            } catch (StorageException | IOException e) {
-                LOGGER.log(Level.FINEST, null, e);
-            }
-        }
+    private IndexRequestBuilder indexRequest(PartIteration part) {
+        return indexRequest(part, extractContents(part.getAttachedFiles()));
+    }
+
+    private IndexRequestBuilder indexRequest(PartIteration part, Map<String, String> binaryList) {
         XContentBuilder json = ESMapper.partRevisionToJson(part, binaryList);
-        Map<String, Object> params = ESMapper.partIterationMap(part, binaryList);
         return client
-                .prepareUpdate(ESTools.formatIndexName(part.getWorkspaceId()),
+                .prepareIndex(ESTools.formatIndexName(part.getWorkspaceId()),
                         ESMapper.PART_TYPE, part.getPartRevisionKey().toString())
-                .setScript("ctx._source.iterations += iteration")
-                .addScriptParam("iteration", params)
-                .setUpsert(json);
-    }
-
-    /**
-     * Get the Delete request for a documentIteration in ElasticSearch Cluster
-     *
-     * @param doc The document iteration to delete
-     */
-    private DeleteRequestBuilder deleteRequest(DocumentIteration doc) throws NoNodeAvailableException {
-        return client.prepareDelete(ESTools.formatIndexName(doc.getWorkspaceId()), ESMapper.DOCUMENT_TYPE, doc.getKey().toString());
+                .setSource(json);
     }
-
-    /**
-     * Get the Delete request for a partIteration in ElasticSearch Cluster
-     *
-     * @param part The part iteration to delete
-     */
-    private DeleteRequestBuilder deleteRequest(PartIteration part) throws NoNodeAvailableException {
-        return client.prepareDelete(ESTools.formatIndexName(part.getWorkspaceId()), ESMapper.PART_TYPE, part.getKey().toString());
-    }
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.esindexer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.*;
+import javax.inject.Inject;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drains the indexer queue in the background.
+ *
+ * Each batch is processed in its own transaction by the {@link ESIndexer}. When the cluster is
+ * unavailable or overloaded, the next attempts are delayed, exponentially up to a few minutes;
+ * entries stay in the queue meanwhile and are indexed once the cluster is back. Reindexings which
+ * have been interrupted are resumed once the cluster is available.
+ *
+ * The queue is bounded: past {@link #MAX_QUEUE_DEPTH} entries, the workspaces with the most
+ * entries are reindexed instead. Its metrics are registered as an MXBean.
+ */
+@Singleton(name = "ESIndexerQueue")
+@LocalBean
+@Lock(LockType.READ)
+public class ESIndexerQueue implements ESIndexerQueueMXBean {
+
+    private static final long MAX_QUEUE_DEPTH = 100000;
+    private static final String OBJECT_NAME = "com.docdoku.server:type=ESIndexerQueue";
+
+    private static final long MIN_BACKOFF = 5 * 1000;
+    private static final long MAX_BACKOFF = 5 * 60 * 1000;
+    private static final long RESUME_INTERVAL = 60 * 1000;
+
+    private static final Logger LOGGER = Logger.getLogger(ESIndexerQueue.class.getName());
+
+    @Inject
+    private ESIndexer esIndexer;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong backoff = new AtomicLong();
+    private final AtomicLong nextAttempt = new AtomicLong();
+    private final AtomicLong nextResume = new AtomicLong();
+
+    private final AtomicLong indexedRevisions = new AtomicLong();
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final AtomicLong queueLag = new AtomicLong();
+
+    @PostConstruct
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Cannot register the indexer queue metrics", e);
+        }
+    }
+
+    @PreDestroy
+    private void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Cannot unregister the indexer queue metrics", e);
+        }
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/5", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void drain() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // Bounded even while the cluster is unavailable
+            int collapsed = esIndexer.collapseQueue(MAX_QUEUE_DEPTH);
+            if (collapsed > 0) {
+                LOGGER.log(Level.WARNING, collapsed + " indexer queue entries replaced by workspace reindexings");
+            }
+            if (System.currentTimeMillis() < nextAttempt.get()) {
+                return;
+            }
+
+            int processed;
+            do {
+                processed = esIndexer.processQueue();
+                if (processed > 0) {
+                    indexedRevisions.addAndGet(processed);
+                }
+            } while (processed > 0);
+
+            if (processed < 0) {
+                long delay = Math.min(MAX_BACKOFF, Math.max(MIN_BACKOFF, backoff.get() * 2));
+                backoff.set(delay);
+                nextAttempt.set(System.currentTimeMillis() + delay);
+                LOGGER.log(Level.WARNING, "Indexing delayed for " + delay + " ms, the cluster is unavailable or overloaded");
+            } else {
+                backoff.set(0);
+                long now = System.currentTimeMillis();
+                if (now >= nextResume.get()) {
+                    nextResume.set(now + RESUME_INTERVAL);
+                    esIndexer.resumeReindex();
+                }
+            }
+
+            long[] status = esIndexer.getQueueStatus();
+            queueDepth.set(status[0]);
+            queueLag.set(status[1]);
+            if (status[0] > 0) {
+                LOGGER.log(Level.FINE, "Indexer queue: " + status[0] + " pending, " + status[1] + " ms behind");
+            }
+        } catch (EJBException e) {
+            LOGGER.log(Level.WARNING, "Indexer queue processing failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @Override
+    public long getIndexedRevisions() {
+        return indexedRevisions.get();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    @Override
+    public long getQueueLag() {
+        return queueLag.get();
+    }
+}
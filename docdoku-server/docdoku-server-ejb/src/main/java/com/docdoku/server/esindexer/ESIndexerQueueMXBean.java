@@ -17,20 +17,26 @@
  * You should have received a copy of the GNU Affero General Public License
  * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
  */
-package com.docdoku.server;
 
-import javax.interceptor.InterceptorBinding;
-import java.lang.annotation.Inherited;
-import java.lang.annotation.Retention;
-import java.lang.annotation.Target;
+package com.docdoku.server.esindexer;
 
-import static java.lang.annotation.ElementType.METHOD;
-import static java.lang.annotation.ElementType.TYPE;
-import static java.lang.annotation.RetentionPolicy.RUNTIME;
+/**
+ * Metrics of the indexer queue, exposed over JMX.
+ */
+public interface ESIndexerQueueMXBean {
+
+    /**
+     * @return the number of revisions indexed since the server started
+     */
+    long getIndexedRevisions();
+
+    /**
+     * @return the number of pending entries, as of the last run
+     */
+    long getQueueDepth();
 
-@Inherited
-@InterceptorBinding
-@Target({TYPE, METHOD})
-@Retention(RUNTIME)
-public @interface CADConvert {
+    /**
+     * @return the age in milliseconds of the oldest pending entry, as of the last run
+     */
+    long getQueueLag();
 }
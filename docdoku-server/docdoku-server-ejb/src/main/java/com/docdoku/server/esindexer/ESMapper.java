@@ -20,6 +20,8 @@
 
 package com.docdoku.server.esindexer;
 
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.UserGroup;
 import com.docdoku.core.document.DocumentIteration;
 import com.docdoku.core.document.DocumentRevisionKey;
 import com.docdoku.core.meta.InstanceAttribute;
@@ -27,6 +29,9 @@ import com.docdoku.core.meta.InstanceListOfValuesAttribute;
 import com.docdoku.core.meta.Tag;
 import com.docdoku.core.product.PartIteration;
 import com.docdoku.core.product.PartRevisionKey;
+import com.docdoku.core.security.ACL;
+import com.docdoku.core.security.ACLUserEntry;
+import com.docdoku.core.security.ACLUserGroupEntry;
 import com.docdoku.core.workflow.Workflow;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -72,6 +77,10 @@ public class ESMapper {
     public static final String PART_TYPE = "part";
     public static final String DOCUMENT_TYPE = "document" ;
     public static final String ATTR_NESTED_PATH = ITERATIONS_KEY +"."+ ATTRIBUTES_KEY;
+    public static final String ACL_READ_KEY = "aclRead";
+    public static final String ACL_DENIED_KEY = "aclDenied";
+    // Principal granted read access to the revisions without ACL
+    public static final String ACL_EVERYONE = "*";
 
 
     private ESMapper() {
@@ -116,8 +125,13 @@ public class ESMapper {
             setField(tmp, VERSION_KEY, doc.getVersion(), 0.10f);
             setField(tmp, TYPE_KEY, doc.getDocumentRevision().getDocumentMaster().getType(), 2f);
             setField(tmp, DESCRIPTION_KEY, doc.getDocumentRevision().getDescription(), 2f);
+            setACLFields(tmp, doc.getDocumentRevision().getACL());
             tmp.startArray(ITERATIONS_KEY);
             for (DocumentIteration iteration : doc.getDocumentRevision().getDocumentIterations()) {
+                if (iteration.getIteration() > doc.getIteration()) {
+                    // Working copy, not indexed until checked in
+                    continue;
+                }
                 tmp.startObject();
                 setField(tmp, ITERATION_KEY, "" + iteration.getIteration(), 0.10f);
                 if (doc.getAuthor() != null) {
@@ -247,8 +261,13 @@ public class ESMapper {
             setField(tmp, TYPE_KEY, part.getPartRevision().getPartMaster().getType(), 2f);
             setField(tmp, VERSION_KEY, part.getPartVersion(), 0.10f);
             setField(tmp, DESCRIPTION_KEY, part.getPartRevision().getDescription(), 2f);
+            setACLFields(tmp, part.getPartRevision().getACL());
             tmp.startArray(ITERATIONS_KEY);
             for (PartIteration iteration : part.getPartRevision().getPartIterations()) {
+                if (iteration.getIteration() > part.getIteration()) {
+                    // Working copy, not indexed until checked in
+                    continue;
+                }
                 tmp.startObject();
 
                 setField(tmp, ITERATION_KEY, iteration.getIteration(), 0.10f);
@@ -365,6 +384,54 @@ public class ESMapper {
         return params;
     }
 
+    /**
+     * Principal of a user in the ACL fields.
+     *
+     * @param login The login of the user
+     * @return The indexed principal
+     */
+    protected static String userPrincipal(String login) {
+        return "u:" + login;
+    }
+
+    /**
+     * Principal of a group in the ACL fields.
+     *
+     * @param groupId The id of the group
+     * @return The indexed principal
+     */
+    protected static String groupPrincipal(String groupId) {
+        return "g:" + groupId;
+    }
+
+    /**
+     * Index the principals which can read the revision, so that searches are filtered by the cluster.
+     * A user entry overrides the entries of the groups of the user: the users whose entry is
+     * forbidden are listed apart, to be excluded whatever their groups are.
+     */
+    private static void setACLFields(XContentBuilder object, ACL acl) throws IOException {
+        List<String> readers = new ArrayList<>();
+        List<String> denied = new ArrayList<>();
+        if (acl == null) {
+            readers.add(ACL_EVERYONE);
+        } else {
+            for (Map.Entry<User, ACLUserEntry> entry : acl.getUserEntries().entrySet()) {
+                if (entry.getValue().getPermission() == ACL.Permission.FORBIDDEN) {
+                    denied.add(userPrincipal(entry.getKey().getLogin()));
+                } else {
+                    readers.add(userPrincipal(entry.getKey().getLogin()));
+                }
+            }
+            for (Map.Entry<UserGroup, ACLUserGroupEntry> entry : acl.getGroupEntries().entrySet()) {
+                if (entry.getValue().getPermission() != ACL.Permission.FORBIDDEN) {
+                    readers.add(groupPrincipal(entry.getKey().getId()));
+                }
+            }
+        }
+        object.array(ACL_READ_KEY, readers.toArray());
+        object.array(ACL_DENIED_KEY, denied.toArray());
+    }
+
     private static void setAttrField(XContentBuilder object,InstanceAttribute attr, float coef ) throws IOException {
         setField(object,ATTRIBUTE_NAME,attr.getNameWithoutWhiteSpace(),coef);
         if(attr instanceof InstanceListOfValuesAttribute) {
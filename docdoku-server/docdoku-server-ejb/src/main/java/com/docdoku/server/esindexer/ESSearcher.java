@@ -20,23 +20,27 @@
 
 package com.docdoku.server.esindexer;
 
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.UserGroup;
 import com.docdoku.core.common.Workspace;
 import com.docdoku.core.document.DocumentRevision;
 import com.docdoku.core.document.DocumentRevisionKey;
-import com.docdoku.core.exceptions.DocumentRevisionNotFoundException;
 import com.docdoku.core.exceptions.ESServerException;
-import com.docdoku.core.exceptions.PartRevisionNotFoundException;
 import com.docdoku.core.product.PartRevision;
 import com.docdoku.core.product.PartRevisionKey;
 import com.docdoku.core.query.DocumentSearchQuery;
 import com.docdoku.core.query.PartSearchQuery;
 import com.docdoku.core.query.SearchQuery;
+import com.docdoku.core.query.SearchResultPage;
 import com.docdoku.server.dao.DocumentRevisionDAO;
 import com.docdoku.server.dao.PartRevisionDAO;
+import com.docdoku.server.dao.UserGroupDAO;
 import com.docdoku.server.dao.WorkspaceDAO;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.search.*;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.transport.NoNodeAvailableException;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.*;
 import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.search.SearchHit;
@@ -53,18 +57,29 @@ import java.util.logging.Logger;
 /**
  * Search Method using ElasticSearch API.
  *
+ * The hits are filtered by the cluster on the principals of the ACL indexed with the revisions,
+ * and turned into entities a page at a time, with one query per workspace. Large result sets are
+ * read page by page: the cursor of a page is the position of the next one in a scroll of the
+ * search, kept alive by the cluster between two pages.
+ *
  * @author Taylor LABEJOF
  */
 @Stateless(name = "ESSearcher")
 public class ESSearcher {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
     private static final String I18N_CONF = "com.docdoku.core.i18n.LocalStrings";
     private static final Logger LOGGER = Logger.getLogger(ESSearcher.class.getName());
     private static final String ES_TYPE_DOCUMENT = "document";
     private static final String ES_TYPE_PART = "part";
     private static final String ES_SEARCH_ERROR_1 = "ES_SearchError1";
     private static final String ES_SEARCH_ERROR_2 = "ES_SearchError2";
+    private static final String ES_SEARCH_ERROR_3 = "ES_SearchError3";
     private static final String ES_SERVER_ERROR_1 = "IndexerServerException";
     private static final String ES_SERVER_ERROR_2 ="MissingIndexException";
+    private static final String ES_SERVER_ERROR_3 = "ExpiredSearchCursorException";
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(5);
 
     @PersistenceContext
     private EntityManager em;
@@ -80,29 +95,64 @@ public class ESSearcher {
     }
 
     /**
-     * Search a document
+     * Search documents, the first hits only
      *
      * @param docQuery DocumentSearchQuery
-     * @return List of document master
+     * @param user     The user searching, hits of the revisions this user cannot read are left out
+     * @return List of document revisions
+     */
+    public List<DocumentRevision> search(DocumentSearchQuery docQuery, User user) throws ESServerException {
+        return searchPage(docQuery, user, null, DEFAULT_PAGE_SIZE, false).getResults();
+    }
+
+    /**
+     * Search a page of documents
+     *
+     * @param docQuery DocumentSearchQuery
+     * @param user     The user searching, hits of the revisions this user cannot read are left out
+     * @param cursor   The cursor of the page, null for the first one
+     * @param pageSize The number of hits of the page, 0 for the default size
+     * @return The document revisions of the page
+     */
+    public SearchResultPage<DocumentRevision> search(DocumentSearchQuery docQuery, User user, String cursor, int pageSize) throws ESServerException {
+        return searchPage(docQuery, user, cursor, pageSize, true);
+    }
+
+    /**
+     * Search parts, the first hits only
+     *
+     * @param partQuery PartSearchQuery
+     * @param user      The user searching, hits of the revisions this user cannot read are left out
+     * @return List of part revisions
+     */
+    public List<PartRevision> search(PartSearchQuery partQuery, User user) throws ESServerException {
+        return searchPage(partQuery, user, null, DEFAULT_PAGE_SIZE, false).getResults();
+    }
+
+    /**
+     * Search a page of parts
+     *
+     * @param partQuery PartSearchQuery
+     * @param user      The user searching, hits of the revisions this user cannot read are left out
+     * @param cursor    The cursor of the page, null for the first one
+     * @param pageSize  The number of hits of the page, 0 for the default size
+     * @return The part revisions of the page
      */
-    public List<DocumentRevision> search(DocumentSearchQuery docQuery) throws ESServerException {
+    public SearchResultPage<PartRevision> search(PartSearchQuery partQuery, User user, String cursor, int pageSize) throws ESServerException {
+        return searchPage(partQuery, user, cursor, pageSize, true);
+    }
+
+    private SearchResultPage<DocumentRevision> searchPage(DocumentSearchQuery docQuery, User user, String cursor, int pageSize, boolean scroll) throws ESServerException {
         try {
-            QueryBuilder qr = getQueryBuilder(docQuery);
+            QueryBuilder qr = getQueryBuilder(docQuery, getACLFilter(docQuery.getWorkspaceId(), user));
             SearchRequestBuilder srb = getSearchRequest(ESTools.formatIndexName(docQuery.getWorkspaceId()), ES_TYPE_DOCUMENT, qr);
-            SearchResponse sr = srb.execute().actionGet();
-
-            List<DocumentRevision> listOfDocuments = new ArrayList<>();
-            for (int i = 0; i < sr.getHits().getHits().length; i++) {
-                SearchHit hit = sr.getHits().getAt(i);
-                DocumentRevision docR = getDocumentRevision(hit);
-                if (docR != null && !listOfDocuments.contains(docR)) {
-                    listOfDocuments.add(docR);
-                }
-            }
+            SearchResponse sr = executeSearch(srb, cursor, pageSize, scroll);
+            SearchHit[] hits = sr.getHits().getHits();
 
             //Todo FilterConfigSpec
 
-            return listOfDocuments;
+            return new SearchResultPage<>(getDocumentRevisions(hits, docQuery.getWorkspaceId()),
+                    getNextCursor(sr, cursor, scroll), sr.getHits().getTotalHits());
         } catch (NoNodeAvailableException e) {
             String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_SEARCH_ERROR_1);
             LOGGER.log(Level.WARNING, logMessage, e);
@@ -114,29 +164,16 @@ public class ESSearcher {
         }
     }
 
-    /**
-     * Search a part
-     *
-     * @param partQuery PartSearchQuery
-     * @return List of part revision
-     */
-    public List<PartRevision> search(PartSearchQuery partQuery) throws ESServerException {
+    private SearchResultPage<PartRevision> searchPage(PartSearchQuery partQuery, User user, String cursor, int pageSize, boolean scroll) throws ESServerException {
         try {
-            QueryBuilder qr = getQueryBuilder(partQuery);
+            QueryBuilder qr = getQueryBuilder(partQuery, getACLFilter(partQuery.getWorkspaceId(), user));
             SearchRequestBuilder srb = getSearchRequest(ESTools.formatIndexName(partQuery.getWorkspaceId()), ES_TYPE_PART, qr);
-            SearchResponse sr = srb.execute().actionGet();
-
-            Set<PartRevision> setOfParts = new HashSet<>();
-            for (int i = 0; i < sr.getHits().getHits().length; i++) {
-                SearchHit hit = sr.getHits().getAt(i);
-                PartRevision partRevision = getPartRevision(hit);
-                if (partRevision != null) {
-                    setOfParts.add(partRevision);
-                }
-            }
+            SearchResponse sr = executeSearch(srb, cursor, pageSize, scroll);
+            SearchHit[] hits = sr.getHits().getHits();
 
             //Todo FilterConfigSpec
-            return new ArrayList<>(setOfParts);
+            return new SearchResultPage<>(getPartRevisions(hits, partQuery.getWorkspaceId()),
+                    getNextCursor(sr, cursor, scroll), sr.getHits().getTotalHits());
         } catch (NoNodeAvailableException e) {
             String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_SEARCH_ERROR_1);
             LOGGER.log(Level.WARNING, logMessage, e);
@@ -157,7 +194,7 @@ public class ESSearcher {
      */
     public List<DocumentRevision> searchInAllWorkspace(DocumentSearchQuery docQuery) throws ESServerException {
         try {
-            QueryBuilder qr = getQueryBuilder(docQuery);
+            QueryBuilder qr = getQueryBuilder(docQuery, null);
             MultiSearchRequestBuilder srbm = client.prepareMultiSearch();
             WorkspaceDAO wDAO = new WorkspaceDAO(em);
             for (Workspace w : wDAO.getAll()) {
@@ -166,20 +203,13 @@ public class ESSearcher {
             MultiSearchResponse srm = srbm.execute().actionGet();
 
 
-            List<DocumentRevision> listOfDocuments = new ArrayList<>();
+            List<SearchHit> hits = new ArrayList<>();
             for (MultiSearchResponse.Item sri : srm.getResponses()) {
                 if (!sri.isFailure()) {
-                    SearchResponse sr = sri.getResponse();
-                    for (int i = 0; i < sr.getHits().getHits().length; i++) {
-                        SearchHit hit = sr.getHits().getAt(i);
-                        DocumentRevision docR = getDocumentRevision(hit);
-                        if (docR != null && !listOfDocuments.contains(docR)) {
-                            listOfDocuments.add(docR);
-                        }
-                    }
+                    hits.addAll(Arrays.asList(sri.getResponse().getHits().getHits()));
                 }
             }
-            return listOfDocuments;
+            return getDocumentRevisions(hits.toArray(new SearchHit[hits.size()]), null);
         } catch (NoNodeAvailableException e) {
             String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_SEARCH_ERROR_1);
             LOGGER.log(Level.WARNING, logMessage, e);
@@ -196,7 +226,7 @@ public class ESSearcher {
     public List<PartRevision> searchInAllWorkspace(PartSearchQuery partQuery) throws ESServerException {
 
         try {
-            QueryBuilder qr = getQueryBuilder(partQuery);
+            QueryBuilder qr = getQueryBuilder(partQuery, null);
             MultiSearchRequestBuilder srbm = client.prepareMultiSearch();
             WorkspaceDAO wDAO = new WorkspaceDAO(em);
             for (Workspace w : wDAO.getAll()) {
@@ -205,21 +235,14 @@ public class ESSearcher {
             MultiSearchResponse srm = srbm.execute().actionGet();
 
 
-            List<PartRevision> listOfParts = new ArrayList<>();
+            List<SearchHit> hits = new ArrayList<>();
             for (MultiSearchResponse.Item sri : srm.getResponses()) {
                 if (!sri.isFailure()) {
-                    SearchResponse sr = sri.getResponse();
-                    for (int i = 0; i < sr.getHits().getHits().length; i++) {
-                        SearchHit hit = sr.getHits().getAt(i);
-                        PartRevision partRevision = getPartRevision(hit);
-                        if (partRevision != null && !listOfParts.contains(partRevision)) {
-                            listOfParts.add(partRevision);
-                        }
-                    }
+                    hits.addAll(Arrays.asList(sri.getResponse().getHits().getHits()));
                 }
             }
 
-            return listOfParts;
+            return getPartRevisions(hits.toArray(new SearchHit[hits.size()]), null);
         } catch (NoNodeAvailableException e) {
             String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_SEARCH_ERROR_1);
             LOGGER.log(Level.WARNING, logMessage, e);
@@ -239,10 +262,14 @@ public class ESSearcher {
      * Return a ElasticSearch Query for DocumentSearch
      *
      * @param docQuery DocumentSearchQuery wanted
+     * @param aclFilter Filter of the readable revisions, null if all can be read
      * @return a ElasticSearch.QueryBuilder
      */
-    private QueryBuilder getQueryBuilder(DocumentSearchQuery docQuery) {
+    private QueryBuilder getQueryBuilder(DocumentSearchQuery docQuery, FilterBuilder aclFilter) {
         ESQueryBuilder queryBuilder = new ESQueryBuilder();
+        if (aclFilter != null) {
+            queryBuilder.add(aclFilter);
+        }
 
         if (docQuery.getFullText() != null) {
             QueryBuilder query = getFullTextQuery(docQuery);
@@ -314,10 +341,14 @@ public class ESSearcher {
      * Return a ElasticSearch Query for PartSearch
      *
      * @param partQuery PartSearchQuery wanted
+     * @param aclFilter Filter of the readable revisions, null if all can be read
      * @return a ElasticSearch.QueryBuilder
      */
-    private QueryBuilder getQueryBuilder(PartSearchQuery partQuery) {
+    private QueryBuilder getQueryBuilder(PartSearchQuery partQuery, FilterBuilder aclFilter) {
         ESQueryBuilder queryBuilder = new ESQueryBuilder();
+        if (aclFilter != null) {
+            queryBuilder.add(aclFilter);
+        }
         if (partQuery.getFullText() != null) {
             QueryBuilder query = getFullTextQuery(partQuery);
             queryBuilder.add(query);
@@ -353,36 +384,178 @@ public class ESSearcher {
     }
 
     /**
-     * Get a document matching a search hit
+     * Return the filter of the revisions a user can read through their ACL: revisions without ACL,
+     * and revisions granting read access to the user or to one of the groups of the user, unless the access
+     * of the user is forbidden by its own entry. Revisions indexed before their ACL are kept, their access
+     * is checked once loaded.
      *
-     * @param hit The search hit provide by ElasticSearch
+     * @param workspaceId Workspace of research
+     * @param user        The user searching
+     * @return the filter, null if the user can read all the revisions of the workspace
      */
-    private DocumentRevision getDocumentRevision(SearchHit hit) {
-        DocumentRevisionKey docRevisionKey = ESMapper.getDocumentRevisionKey(hit.getSource());
-        try {
-            return new DocumentRevisionDAO(em).loadDocR(docRevisionKey);
-        } catch (DocumentRevisionNotFoundException e) {
-            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString("DocumentRevisionNotFoundException");
-            logMessage = MessageFormat.format(logMessage, docRevisionKey.getDocumentMaster().getWorkspace(), docRevisionKey.getVersion());
-            LOGGER.log(Level.INFO, logMessage, e);
+    private FilterBuilder getACLFilter(String workspaceId, User user) {
+        if (user.isAdministrator()) {
             return null;
         }
+        List<String> principals = new ArrayList<>();
+        principals.add(ESMapper.ACL_EVERYONE);
+        principals.add(ESMapper.userPrincipal(user.getLogin()));
+        for (UserGroup group : new UserGroupDAO(em).getUserGroups(workspaceId, user)) {
+            principals.add(ESMapper.groupPrincipal(group.getId()));
+        }
+        return FilterBuilders.boolFilter()
+                .should(FilterBuilders.termsFilter(ESMapper.ACL_READ_KEY, principals.toArray()))
+                .should(FilterBuilders.missingFilter(ESMapper.ACL_READ_KEY))
+                .mustNot(FilterBuilders.termFilter(ESMapper.ACL_DENIED_KEY, ESMapper.userPrincipal(user.getLogin())));
     }
 
     /**
-     * Get a document matching a search hit
+     * Execute the search of a page, scrolling from the page of the cursor if any
      *
-     * @param hit The search hit provide by ElasticSearch
+     * @param srb      The search request, used for the first page
+     * @param cursor   The cursor of the page, null for the first one
+     * @param pageSize The number of hits of a page, 0 for the default size
+     * @param scroll   Whether the next pages will be read
+     * @return the response holding the hits of the page
      */
-    private PartRevision getPartRevision(SearchHit hit) {
-        PartRevisionKey partRevisionKey = ESMapper.getPartRevisionKey(hit.getSource());
+    private SearchResponse executeSearch(SearchRequestBuilder srb, String cursor, int pageSize, boolean scroll) throws ESServerException {
+        if (cursor == null) {
+            srb.setSize(pageSize > 0 ? Math.min(pageSize, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE);
+            if (scroll) {
+                srb.setScroll(SCROLL_KEEP_ALIVE);
+            }
+            return srb.execute().actionGet();
+        }
+
+        int separator = cursor.indexOf(':');
         try {
-            return new PartRevisionDAO(em).loadPartR(partRevisionKey);
-        } catch (PartRevisionNotFoundException e) {
-            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString("PartRevisionNotFoundException");
-            logMessage = MessageFormat.format(logMessage, partRevisionKey.getPartMaster().toString(), partRevisionKey.getVersion());
-            LOGGER.log(Level.INFO, logMessage, e);
+            // The size of the pages is the one of the first page
+            return client.prepareSearchScroll(cursor.substring(separator + 1))
+                    .setScroll(SCROLL_KEEP_ALIVE)
+                    .execute().actionGet();
+        } catch (NoNodeAvailableException e) {
+            throw e;
+        } catch (ElasticsearchException e) {
+            String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString(ES_SEARCH_ERROR_3);
+            LOGGER.log(Level.FINE, logMessage, e);
+            throw new ESServerException(Locale.getDefault(), ES_SERVER_ERROR_3);
+        }
+    }
+
+    /**
+     * Return the cursor of the page following the one of a response. The cursor holds the number
+     * of hits read so far, so that the scroll is released by the cluster after the last page.
+     *
+     * @param sr     The response of the page
+     * @param cursor The cursor of the page, null for the first one
+     * @param scroll Whether the response is part of a scroll
+     * @return the cursor, null if there are no more hits
+     */
+    private String getNextCursor(SearchResponse sr, String cursor, boolean scroll) {
+        if (!scroll || sr.getScrollId() == null) {
+            return null;
+        }
+        long read = sr.getHits().getHits().length;
+        if (cursor != null) {
+            try {
+                read += Long.parseLong(cursor.substring(0, Math.max(0, cursor.indexOf(':'))));
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.FINEST, null, e);
+            }
+        }
+        if (sr.getHits().getHits().length == 0 || read >= sr.getHits().getTotalHits()) {
+            client.prepareClearScroll().addScrollId(sr.getScrollId()).execute();
             return null;
         }
+        return read + ":" + sr.getScrollId();
+    }
+
+    /**
+     * Get the documents matching search hits, in the order of the hits. The revisions are loaded
+     * with one query per workspace.
+     *
+     * @param hits        The search hits provided by ElasticSearch
+     * @param workspaceId The workspace of the hits to keep, null to keep all of them
+     */
+    private List<DocumentRevision> getDocumentRevisions(SearchHit[] hits, String workspaceId) {
+        Set<DocumentRevisionKey> keys = new LinkedHashSet<>();
+        Map<String, Set<String>> idsByWorkspace = new HashMap<>();
+        for (SearchHit hit : hits) {
+            DocumentRevisionKey key = ESMapper.getDocumentRevisionKey(hit.getSource());
+            if (workspaceId == null || workspaceId.equals(key.getWorkspaceId())) {
+                keys.add(key);
+                getOrCreate(idsByWorkspace, key.getWorkspaceId()).add(key.getDocumentMasterId());
+            }
+        }
+
+        Map<DocumentRevisionKey, DocumentRevision> docRs = new HashMap<>();
+        DocumentRevisionDAO documentRevisionDAO = new DocumentRevisionDAO(em);
+        for (Map.Entry<String, Set<String>> ids : idsByWorkspace.entrySet()) {
+            for (DocumentRevision docR : documentRevisionDAO.getDocumentRevisionsWithIterations(ids.getKey(), ids.getValue())) {
+                docRs.put(docR.getKey(), docR);
+            }
+        }
+
+        List<DocumentRevision> listOfDocuments = new ArrayList<>();
+        for (DocumentRevisionKey key : keys) {
+            DocumentRevision docR = docRs.get(key);
+            if (docR != null) {
+                listOfDocuments.add(docR);
+            } else {
+                String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString("DocumentRevisionNotFoundException");
+                logMessage = MessageFormat.format(logMessage, key.getDocumentMasterId(), key.getVersion());
+                LOGGER.log(Level.INFO, logMessage);
+            }
+        }
+        return listOfDocuments;
+    }
+
+    /**
+     * Get the parts matching search hits, in the order of the hits. The revisions are loaded with
+     * one query per workspace.
+     *
+     * @param hits        The search hits provided by ElasticSearch
+     * @param workspaceId The workspace of the hits to keep, null to keep all of them
+     */
+    private List<PartRevision> getPartRevisions(SearchHit[] hits, String workspaceId) {
+        Set<PartRevisionKey> keys = new LinkedHashSet<>();
+        Map<String, Set<String>> numbersByWorkspace = new HashMap<>();
+        for (SearchHit hit : hits) {
+            PartRevisionKey key = ESMapper.getPartRevisionKey(hit.getSource());
+            if (workspaceId == null || workspaceId.equals(key.getWorkspaceId())) {
+                keys.add(key);
+                getOrCreate(numbersByWorkspace, key.getWorkspaceId()).add(key.getPartMasterNumber());
+            }
+        }
+
+        Map<PartRevisionKey, PartRevision> partRs = new HashMap<>();
+        PartRevisionDAO partRevisionDAO = new PartRevisionDAO(em);
+        for (Map.Entry<String, Set<String>> numbers : numbersByWorkspace.entrySet()) {
+            for (PartRevision partR : partRevisionDAO.getPartRevisionsWithIterations(numbers.getKey(), numbers.getValue())) {
+                partRs.put(partR.getKey(), partR);
+            }
+        }
+
+        List<PartRevision> listOfParts = new ArrayList<>();
+        for (PartRevisionKey key : keys) {
+            PartRevision partR = partRs.get(key);
+            if (partR != null) {
+                listOfParts.add(partR);
+            } else {
+                String logMessage = ResourceBundle.getBundle(I18N_CONF, Locale.getDefault()).getString("PartRevisionNotFoundException");
+                logMessage = MessageFormat.format(logMessage, key.getPartMaster().toString(), key.getVersion());
+                LOGGER.log(Level.INFO, logMessage);
+            }
+        }
+        return listOfParts;
+    }
+
+    private static Set<String> getOrCreate(Map<String, Set<String>> map, String key) {
+        Set<String> values = map.get(key);
+        if (values == null) {
+            values = new HashSet<>();
+            map.put(key, values);
+        }
+        return values;
     }
 }
@@ -58,10 +58,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.util.Iterator;
-import java.util.Locale;
-import java.util.Properties;
-import java.util.Scanner;
+import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -76,12 +73,24 @@ public class ESTools {
     private static final Properties CONF = new Properties();
     private static final Logger LOGGER = Logger.getLogger(ESTools.class.getName());
 
+    // Caps on the text extraction, so that a single huge file cannot stall the indexer
+    protected static final long MAX_EXTRACTED_FILE_SIZE;
+    private static final int MAX_EXTRACTED_PDF_PAGES;
+    private static final int MAX_EXTRACTED_TEXT_LENGTH;
+
+    private static final Set<String> EXTRACTABLE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            ".odt", ".ods", ".odp", ".odg", ".odc", ".odf", ".odb", ".odi", ".odm",
+            ".doc", ".docx", ".ppt", ".pps", ".pptx", ".txt", ".csv", ".xls", ".xlsx", ".pdf"));
+
     static{
         try (InputStream inputStream = ESTools.class.getResourceAsStream(CONF_PROPERTIES)){
             CONF.load(inputStream);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, null, e);
         }
+        MAX_EXTRACTED_FILE_SIZE = Long.parseLong(CONF.getProperty("fulltext.max_file_size", "52428800"));
+        MAX_EXTRACTED_PDF_PAGES = Integer.parseInt(CONF.getProperty("fulltext.max_pdf_pages", "500"));
+        MAX_EXTRACTED_TEXT_LENGTH = Integer.parseInt(CONF.getProperty("fulltext.max_text_length", "1048576"));
     }
 
     private ESTools() {
@@ -120,23 +129,30 @@ public class ESTools {
         }
     }
 
+    /**
+     * @param fullName The full name of the resource
+     * @return true if text can be extracted from this type of file
+     */
+    protected static boolean isExtractable(String fullName) {
+        return EXTRACTABLE_EXTENSIONS.contains(getExtension(fullName));
+    }
+
+    private static String getExtension(String fullName) {
+        int lastDotIndex = fullName.lastIndexOf('.');
+        return lastDotIndex != -1 ? fullName.substring(lastDotIndex) : "";
+    }
+
     /**
      * Get Stream for a Bin Resource
      * @param fullName The full name of the resource
      * @param inputStream Stream of the resource
-     * @return String to index
+     * @return String to index, truncated to the maximum text length
      */
     protected static String streamToString(String fullName, InputStream inputStream) {
         String strRet = " ";
 
         try {
-            int lastDotIndex = fullName.lastIndexOf('.');
-            String extension = "";
-            if (lastDotIndex != -1) {
-                extension = fullName.substring(lastDotIndex);
-            }
-
-            switch (extension){
+            switch (getExtension(fullName)){
                 case ".odt":
                 case ".ods":
                 case ".odp":
@@ -180,6 +196,10 @@ public class ESTools {
         } catch (Exception ex) {
             LOGGER.log(Level.WARNING, "The file " + fullName + " can't be indexed.",ex);
         }
+        if (strRet.length() > MAX_EXTRACTED_TEXT_LENGTH) {
+            LOGGER.log(Level.INFO, "The text of the file " + fullName + " is truncated to " + MAX_EXTRACTED_TEXT_LENGTH + " characters");
+            strRet = strRet.substring(0, MAX_EXTRACTED_TEXT_LENGTH);
+        }
         return strRet;
     }
 
@@ -275,7 +295,8 @@ public class ESTools {
         StringBuilder buf = new StringBuilder();
         try(InputStream pdfStream=new BufferedInputStream(inputStream)){
             PdfReader reader = new PdfReader(pdfStream);
-            for(int i=1; i<=reader.getNumberOfPages(); i++){
+            int pages = Math.min(reader.getNumberOfPages(), MAX_EXTRACTED_PDF_PAGES);
+            for(int i=1; i<=pages && buf.length()<MAX_EXTRACTED_TEXT_LENGTH; i++){
                 buf.append(pdfPageToString(reader,i,fullName));
             }
             reader.close();
@@ -0,0 +1,67 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.events;
+
+/**
+ * Fired when an account is modified, <code>credentialChanged</code> telling whether its password
+ * has been changed too, <code>groupsChanged</code> whether the user has been added to or removed
+ * from a group.
+ */
+public class AccountChangeEvent {
+
+    private String login;
+    private boolean credentialChanged;
+    private boolean groupsChanged;
+
+    public AccountChangeEvent(String login, boolean credentialChanged) {
+        this(login, credentialChanged, false);
+    }
+
+    public AccountChangeEvent(String login, boolean credentialChanged, boolean groupsChanged) {
+        this.login = login;
+        this.credentialChanged = credentialChanged;
+        this.groupsChanged = groupsChanged;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public boolean isCredentialChanged() {
+        return credentialChanged;
+    }
+
+    public void setCredentialChanged(boolean credentialChanged) {
+        this.credentialChanged = credentialChanged;
+    }
+
+    public boolean isGroupsChanged() {
+        return groupsChanged;
+    }
+
+    public void setGroupsChanged(boolean groupsChanged) {
+        this.groupsChanged = groupsChanged;
+    }
+}
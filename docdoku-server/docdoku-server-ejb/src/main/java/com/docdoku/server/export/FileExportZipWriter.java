@@ -0,0 +1,299 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.export;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.exceptions.StorageException;
+import com.docdoku.core.services.IDataManagerLocal;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes binary resources to a zip archive.
+ *
+ * Files are read ahead by the executor, several at a time, while the previous ones are written:
+ * they are read in memory, or spooled to a temporary file when larger than the maximum buffered
+ * size, so that the writing thread only deflates. The bytes read ahead in memory are bounded as
+ * well as the number of files. Each file is read once. Entries keep the order in which they are
+ * added.
+ *
+ * Files of already compressed formats are deflated without compression: unlike stored entries,
+ * they need neither their size nor their checksum before being written.
+ *
+ * When deduplicating, a file already written is not written again: the duplicates are listed in
+ * the {@value #DUPLICATES_ENTRY} entry, with the entry holding their content. Files are the same
+ * when they have the same length and content hash, as stored beside them by the data manager.
+ */
+public class FileExportZipWriter implements Closeable {
+
+    public static final String DUPLICATES_ENTRY = "duplicates.txt";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_BUFFERED_SIZE = 64 * 1024 * 1024;
+    private static final long MAX_PENDING_BYTES = 256L * 1024 * 1024;
+
+    // Formats which would not get smaller, deflating them only costs time
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "jar",
+            "jpg", "jpeg", "png", "gif", "webp", "mp3", "mp4", "avi", "mov", "mkv",
+            "pdf", "docx", "xlsx", "pptx", "odt", "ods", "odp", "3dxml", "glb", "jt", "cgr"));
+
+    private static final Logger LOGGER = Logger.getLogger(FileExportZipWriter.class.getName());
+
+    private final IDataManagerLocal dataManager;
+    private final ExecutorService executor;
+    private final int maxPendingEntries;
+    private final boolean deduplicate;
+    private final int maxBufferedSize;
+    private final ZipOutputStream zipOutputStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private final Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+    private final Set<String> entryNames = new HashSet<>();
+    private final Map<String, String> writtenContents = new HashMap<>();
+    private final Map<String, String> duplicates = new LinkedHashMap<>();
+    private long pendingBytes;
+    private int writtenEntries;
+
+    public FileExportZipWriter(OutputStream outputStream, IDataManagerLocal dataManager, ExecutorService executor, int parallelism, boolean deduplicate) {
+        this(outputStream, dataManager, executor, parallelism, deduplicate, MAX_BUFFERED_SIZE);
+    }
+
+    FileExportZipWriter(OutputStream outputStream, IDataManagerLocal dataManager, ExecutorService executor, int parallelism, boolean deduplicate, int maxBufferedSize) {
+        this.dataManager = dataManager;
+        this.executor = executor;
+        this.maxPendingEntries = Math.max(1, parallelism) * 2;
+        this.deduplicate = deduplicate;
+        this.maxBufferedSize = maxBufferedSize;
+        this.zipOutputStream = new ZipOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+    }
+
+    /**
+     * Adds a file to the archive, in the given folder. Previous files are written as the read
+     * ahead window fills up.
+     */
+    public void add(String folderName, BinaryResource binaryResource) throws IOException {
+        String entryName = folderName + "/" + binaryResource.getName();
+        if (!entryNames.add(entryName)) {
+            return;
+        }
+
+        if (deduplicate) {
+            String contentKey = getContentKey(binaryResource);
+            String writtenEntry = writtenContents.putIfAbsent(contentKey, entryName);
+            if (writtenEntry != null) {
+                duplicates.put(entryName, writtenEntry);
+                return;
+            }
+        }
+
+        // One more byte than expected, so that the end of the file is reached
+        int bufferSize = (int) Math.min(maxBufferedSize, Math.max(0, binaryResource.getContentLength()) + 1);
+        pendingEntries.add(new PendingEntry(entryName, binaryResource, isCompressed(binaryResource.getName()), bufferSize,
+                executor.submit(() -> prefetch(binaryResource, bufferSize))));
+        pendingBytes += bufferSize;
+
+        while (pendingEntries.size() > maxPendingEntries || pendingEntries.size() > 1 && pendingBytes > MAX_PENDING_BYTES) {
+            writeNextEntry();
+        }
+    }
+
+    /**
+     * @return the number of files written so far
+     */
+    public int getWrittenEntries() {
+        return writtenEntries;
+    }
+
+    /**
+     * Writes the remaining files and the end of the archive.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            while (!pendingEntries.isEmpty()) {
+                writeNextEntry();
+            }
+            if (!duplicates.isEmpty()) {
+                writeDuplicates();
+            }
+            zipOutputStream.close();
+        } finally {
+            // Read ahead files of an aborted export
+            for (PendingEntry pendingEntry : pendingEntries) {
+                if (!pendingEntry.prefetched.cancel(true)) {
+                    deleteSpooled(pendingEntry);
+                }
+            }
+        }
+    }
+
+    private void deleteSpooled(PendingEntry pendingEntry) {
+        try {
+            Path spooled = pendingEntry.prefetched.get().spooled;
+            if (spooled != null) {
+                Files.deleteIfExists(spooled);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException e) {
+            LOGGER.log(Level.FINEST, null, e);
+        }
+    }
+
+    private void writeNextEntry() throws IOException {
+        PendingEntry pendingEntry = pendingEntries.poll();
+        pendingBytes -= pendingEntry.bufferSize;
+        Prefetched prefetched;
+        try {
+            prefetched = pendingEntry.prefetched.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            // Missing files are left out, as they always were
+            LOGGER.log(Level.FINE, "Cannot read " + pendingEntry.binaryResource.getFullName() + ", not exported", e.getCause());
+            return;
+        }
+
+        zipOutputStream.setLevel(pendingEntry.compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        zipOutputStream.putNextEntry(new ZipEntry(pendingEntry.entryName));
+        if (prefetched.spooled == null) {
+            zipOutputStream.write(prefetched.content, 0, prefetched.length);
+        } else {
+            try (InputStream spooled = Files.newInputStream(prefetched.spooled)) {
+                int length;
+                while ((length = spooled.read(buffer)) != -1) {
+                    zipOutputStream.write(buffer, 0, length);
+                }
+            } finally {
+                Files.deleteIfExists(prefetched.spooled);
+            }
+        }
+        zipOutputStream.closeEntry();
+        writtenEntries++;
+    }
+
+    private void writeDuplicates() throws IOException {
+        zipOutputStream.putNextEntry(new ZipEntry(DUPLICATES_ENTRY));
+        Writer writer = new OutputStreamWriter(zipOutputStream, StandardCharsets.UTF_8);
+        for (Map.Entry<String, String> duplicate : duplicates.entrySet()) {
+            writer.write(duplicate.getKey() + "\t" + duplicate.getValue() + "\n");
+        }
+        writer.flush();
+        zipOutputStream.closeEntry();
+    }
+
+    /*
+     * Reads the whole file: in memory when it fits in the buffer, the buffer and the rest are spooled
+     * to a temporary file otherwise.
+     */
+    private Prefetched prefetch(BinaryResource binaryResource, int bufferSize) throws StorageException, IOException {
+        Prefetched prefetched = new Prefetched();
+        prefetched.content = new byte[bufferSize];
+
+        try (InputStream in = dataManager.getBinaryResourceInputStream(binaryResource)) {
+            int length;
+            while (prefetched.length < prefetched.content.length
+                    && (length = in.read(prefetched.content, prefetched.length, prefetched.content.length - prefetched.length)) != -1) {
+                prefetched.length += length;
+            }
+            if (prefetched.length == prefetched.content.length) {
+                prefetched.spooled = spool(prefetched.content, in);
+                prefetched.content = null;
+            }
+        }
+        if (prefetched.spooled != null && Thread.currentThread().isInterrupted()) {
+            // Cancelled while spooling, nobody will write or delete it
+            Files.deleteIfExists(prefetched.spooled);
+            throw new InterruptedIOException("Export interrupted");
+        }
+        return prefetched;
+    }
+
+    private static Path spool(byte[] head, InputStream in) throws IOException {
+        Path spooled = Files.createTempFile("export", ".tmp");
+        try (OutputStream out = Files.newOutputStream(spooled)) {
+            out.write(head);
+            byte[] spoolBuffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = in.read(spoolBuffer)) != -1) {
+                out.write(spoolBuffer, 0, length);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+        return spooled;
+    }
+
+    /*
+     * Identifies the content by its length and hash. A file which cannot be hashed is only the same
+     * as itself, and will be left out when read.
+     */
+    private String getContentKey(BinaryResource binaryResource) {
+        try {
+            return binaryResource.getContentLength() + "/" + dataManager.getContentHash(binaryResource);
+        } catch (StorageException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return binaryResource.getFullName();
+        }
+    }
+
+    static boolean isCompressed(String fileName) {
+        int index = fileName.lastIndexOf('.');
+        return index != -1 && COMPRESSED_EXTENSIONS.contains(fileName.substring(index + 1).toLowerCase(Locale.ENGLISH));
+    }
+
+    private static class PendingEntry {
+        private final String entryName;
+        private final BinaryResource binaryResource;
+        private final boolean compressed;
+        private final int bufferSize;
+        private final Future<Prefetched> prefetched;
+
+        PendingEntry(String entryName, BinaryResource binaryResource, boolean compressed, int bufferSize, Future<Prefetched> prefetched) {
+            this.entryName = entryName;
+            this.binaryResource = binaryResource;
+            this.compressed = compressed;
+            this.bufferSize = bufferSize;
+            this.prefetched = prefetched;
+        }
+    }
+
+    private static class Prefetched {
+        private byte[] content;
+        private int length;
+        private Path spooled;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.products;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.ExportJob;
+import com.docdoku.core.common.User;
+import com.docdoku.core.configuration.PSFilter;
+import com.docdoku.core.configuration.ProductInstanceIteration;
+import com.docdoku.core.configuration.ProductInstanceMaster;
+import com.docdoku.core.configuration.ProductInstanceMasterKey;
+import com.docdoku.core.document.DocumentLink;
+import com.docdoku.core.exceptions.*;
+import com.docdoku.core.product.ConfigurationItemKey;
+import com.docdoku.core.security.UserGroupMapping;
+import com.docdoku.core.services.*;
+import com.docdoku.server.export.FileExportZipWriter;
+
+import javax.annotation.Resource;
+import javax.annotation.security.DeclareRoles;
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.*;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds the archives of the files of product structures, either streamed to the client or
+ * written to the vault by export jobs.
+ */
+@DeclareRoles({UserGroupMapping.REGULAR_USER_ROLE_ID})
+@Local(IFileExportManagerLocal.class)
+@Stateless(name = "FileExportManagerBean")
+public class FileExportManagerBean implements IFileExportManagerLocal {
+
+    // Files read ahead at the same time by an export
+    private static final int PARALLELISM = 4;
+
+    private static final Logger LOGGER = Logger.getLogger(FileExportManagerBean.class.getName());
+
+    // Jobs running in this server, the others not done have been interrupted by a restart
+    private static final Set<String> ACTIVE_JOBS = ConcurrentHashMap.newKeySet();
+
+    @Resource
+    private SessionContext ctx;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Inject
+    private IUserManagerLocal userManager;
+
+    @Inject
+    private IProductManagerLocal productManager;
+
+    @Inject
+    private IProductInstanceManagerLocal productInstanceManager;
+
+    @Inject
+    private IPSFilterManagerLocal psFilterManager;
+
+    @Inject
+    private IDataManagerLocal dataManager;
+
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public void exportFiles(ConfigurationItemKey ciKey, String configSpecType, boolean exportNativeCADFiles, boolean exportDocumentLinks, boolean deduplicate, OutputStream outputStream) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, ConfigurationItemNotFoundException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, NotAllowedException, EntityConstraintException, PartMasterNotFoundException, IOException {
+        userManager.checkWorkspaceReadAccess(ciKey.getWorkspace());
+
+        String type = configSpecType == null ? "wip" : configSpecType;
+        PSFilter psFilter = psFilterManager.getPSFilter(ciKey, type, false);
+        String serialNumber = null;
+        Integer baselineId = null;
+
+        if (type.startsWith("pi-")) {
+            serialNumber = type.substring(3);
+            baselineId = productManager.loadProductBaselineForProductInstanceMaster(ciKey, serialNumber).getId();
+        } else if (!"wip".equals(type) && !"latest".equals(type) && !"released".equals(type)) {
+            try {
+                baselineId = Integer.parseInt(type);
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.FINEST, null, e);
+            }
+        }
+
+        Map<String, Set<BinaryResource>> binariesInTree = productManager.getBinariesInTree(baselineId, ciKey.getWorkspace(), ciKey, psFilter, exportNativeCADFiles, exportDocumentLinks);
+
+        try (FileExportZipWriter zipWriter = new FileExportZipWriter(outputStream, dataManager, executor, PARALLELISM, deduplicate)) {
+            List<String> baselinedSourcesName = new ArrayList<>();
+
+            if (exportDocumentLinks && baselineId != null) {
+                for (BinaryResource binaryResource : productManager.getBinaryResourceFromBaseline(baselineId)) {
+                    String[] parts = binaryResource.getFullName().split("/");
+                    String folderName = parts[2] + "-" + parts[3] + "-" + parts[4];
+                    baselinedSourcesName.add(folderName);
+                    zipWriter.add("links/" + folderName, binaryResource);
+                }
+            }
+
+            for (Map.Entry<String, Set<BinaryResource>> entry : binariesInTree.entrySet()) {
+                for (BinaryResource binaryResource : entry.getValue()) {
+                    String fileType = binaryResource.getFileType();
+                    zipWriter.add(entry.getKey() + (fileType == null ? "" : "/" + fileType), binaryResource);
+                }
+            }
+
+            if (serialNumber != null) {
+                addProductInstanceData(zipWriter, ciKey, serialNumber, baselinedSourcesName);
+            }
+        }
+    }
+
+    private void addProductInstanceData(FileExportZipWriter zipWriter, ConfigurationItemKey ciKey, String serialNumber, List<String> baselinedSourcesName) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, ProductInstanceMasterNotFoundException, IOException {
+        ProductInstanceMaster productInstanceMaster = productInstanceManager.getProductInstanceMaster(new ProductInstanceMasterKey(serialNumber, ciKey));
+        ProductInstanceIteration lastIteration = productInstanceMaster.getLastIteration();
+
+        for (BinaryResource attachedFile : lastIteration.getAttachedFiles()) {
+            zipWriter.add("attachedfiles", attachedFile);
+        }
+
+        for (DocumentLink docLink : lastIteration.getLinkedDocuments()) {
+            String folderName = docLink.getTargetDocument().getLastIteration().toString();
+            if (!baselinedSourcesName.contains(folderName)) {
+                for (BinaryResource linkedFile : docLink.getTargetDocument().getLastIteration().getAttachedFiles()) {
+                    zipWriter.add("links/" + folderName, linkedFile);
+                }
+            }
+        }
+    }
+
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public ExportJob createExportJob(ConfigurationItemKey ciKey, String configSpecType, boolean exportNativeCADFiles, boolean exportDocumentLinks, boolean deduplicate) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, StorageException {
+        User user = userManager.checkWorkspaceReadAccess(ciKey.getWorkspace());
+
+        ExportJob exportJob = dataManager.createExportJob(new ExportJob(null, ciKey.getWorkspace(), ciKey.getId(),
+                configSpecType == null ? "wip" : configSpecType, user.getLogin(),
+                exportNativeCADFiles, exportDocumentLinks, deduplicate, new Date()));
+        startExportJob(exportJob.getId());
+        return exportJob;
+    }
+
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public ExportJob getExportJob(String workspaceId, String exportJobId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, StorageException {
+        ExportJob exportJob = getOwnExportJob(workspaceId, exportJobId);
+        if (exportJob != null && !exportJob.isDone() && !ACTIVE_JOBS.contains(exportJobId)) {
+            // The server has been restarted meanwhile, the archive is built again
+            LOGGER.log(Level.INFO, "Restarting the interrupted export job " + exportJobId);
+            startExportJob(exportJobId);
+        }
+        return exportJob;
+    }
+
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public File getExportJobFile(String workspaceId, String exportJobId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, StorageException {
+        ExportJob exportJob = getOwnExportJob(workspaceId, exportJobId);
+        if (exportJob == null || exportJob.getStatus() != ExportJob.Status.COMPLETED) {
+            return null;
+        }
+        return dataManager.getExportJobFile(exportJobId);
+    }
+
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Override
+    public void deleteExportJob(String workspaceId, String exportJobId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, StorageException {
+        if (getOwnExportJob(workspaceId, exportJobId) != null) {
+            dataManager.deleteExportJob(exportJobId);
+        }
+    }
+
+    @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    @Override
+    public void runExportJob(String exportJobId) {
+        try {
+            ExportJob exportJob = dataManager.getExportJob(exportJobId);
+            if (exportJob == null) {
+                return;
+            }
+
+            exportJob.setStatus(ExportJob.Status.RUNNING);
+            dataManager.updateExportJob(exportJob);
+
+            try {
+                ConfigurationItemKey ciKey = new ConfigurationItemKey(exportJob.getWorkspaceId(), exportJob.getConfigurationItemId());
+                try (OutputStream outputStream = dataManager.getExportJobOutputStream(exportJobId)) {
+                    exportFiles(ciKey, exportJob.getConfigSpecType(), exportJob.isExportNativeCADFiles(),
+                            exportJob.isExportDocumentLinks(), exportJob.isDeduplicate(), outputStream);
+                }
+                exportJob.setSize(dataManager.completeExportJobArchive(exportJobId));
+                exportJob.setStatus(ExportJob.Status.COMPLETED);
+            } catch (ApplicationException | IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Export job " + exportJobId + " failed", e);
+                exportJob.setStatus(ExportJob.Status.FAILED);
+            }
+
+            exportJob.setCompletionDate(new Date());
+            dataManager.updateExportJob(exportJob);
+        } catch (StorageException e) {
+            LOGGER.log(Level.WARNING, "Cannot update the export job " + exportJobId, e);
+        } finally {
+            ACTIVE_JOBS.remove(exportJobId);
+        }
+    }
+
+    private void startExportJob(String exportJobId) {
+        if (ACTIVE_JOBS.add(exportJobId)) {
+            ctx.getBusinessObject(IFileExportManagerLocal.class).runExportJob(exportJobId);
+        }
+    }
+
+    // Jobs of other users or workspaces are not disclosed
+    private ExportJob getOwnExportJob(String workspaceId, String exportJobId) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, StorageException {
+        User user = userManager.checkWorkspaceReadAccess(workspaceId);
+        ExportJob exportJob = dataManager.getExportJob(exportJobId);
+        if (exportJob == null || !workspaceId.equals(exportJob.getWorkspaceId()) || !user.getLogin().equals(exportJob.getLogin())) {
+            return null;
+        }
+        return exportJob;
+    }
+}
@@ -575,7 +575,9 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
 
         productInstanceMasterDAO.deleteProductInstanceMaster(prodInstM);
 
+        StorageUsageDAO storageUsageDAO = new StorageUsageDAO(userLocale, em);
         for (ProductInstanceIteration pii : prodInstM.getProductInstanceIterations()) {
+            storageUsageDAO.releaseUsage(pii.getAttachedFiles());
             for (BinaryResource file : pii.getAttachedFiles()) {
                 try {
                     dataManager.deleteData(file);
@@ -665,7 +667,7 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
             new BinaryResourceDAO(locale, em).createBinaryResource(binaryResource);
             productInstanceIteration.addFile(binaryResource);
         } else {
-            binaryResource.setContentLength(pSize);
+            new BinaryResourceDAO(locale, em).updateContentLength(binaryResource, pSize);
             binaryResource.setLastModified(new Date());
         }
         return binaryResource;
@@ -858,7 +860,9 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
         prodInstI.getPathDataMasterList().remove(pathDataMaster);
         pathDataMasterDAO.removePathData(pathDataMaster);
 
+        StorageUsageDAO storageUsageDAO = new StorageUsageDAO(locale, em);
         for(PathDataIteration pathDataIteration : pathDataMaster.getPathDataIterations()) {
+            storageUsageDAO.releaseUsage(pathDataIteration.getAttachedFiles());
             for (BinaryResource file : pathDataIteration.getAttachedFiles()) {
                 try {
                     dataManager.deleteData(file);
@@ -943,7 +947,7 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
             new BinaryResourceDAO(locale, em).createBinaryResource(binaryResource);
             pathDataIteration.addFile(binaryResource);
         } else {
-            binaryResource.setContentLength(pSize);
+            new BinaryResourceDAO(locale, em).updateContentLength(binaryResource, pSize);
             binaryResource.setLastModified(new Date());
         }
         return binaryResource;
@@ -1111,7 +1115,7 @@ public class ProductInstanceManagerBean implements IProductInstanceManagerLocal
             new BinaryResourceDAO(locale, em).createBinaryResource(binaryResource);
             pathDataIteration.addFile(binaryResource);
         } else {
-            binaryResource.setContentLength(pSize);
+            new BinaryResourceDAO(locale, em).updateContentLength(binaryResource, pSize);
             binaryResource.setLastModified(new Date());
         }
         return binaryResource;
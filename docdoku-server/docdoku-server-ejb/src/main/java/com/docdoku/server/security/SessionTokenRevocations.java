@@ -0,0 +1,174 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.security;
+
+import com.docdoku.core.security.RevokedSessionToken;
+import com.docdoku.core.security.SessionToken;
+import com.docdoku.core.security.SessionTokenValidity;
+import com.docdoku.server.dao.SessionTokenRevocationDAO;
+import com.docdoku.server.events.AccountChangeEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps what invalidates session tokens before they expire: the logout of a token, and the change
+ * of the password or of the groups of an account, which revokes all the tokens issued before it.
+ *
+ * Revocations are stored in the database, in the transaction which causes them, and kept in memory
+ * to verify tokens without a database access. The stored ones are loaded at startup and read again
+ * periodically, so that a restart does not bring back revoked tokens and the other nodes of a
+ * cluster know them too.
+ *
+ * Each {@link AccountChangeEvent} also changes the revision of the account, which tells the web
+ * tier to reload the account data it keeps per token. Like the workspace accesses, the event is
+ * handled once when it is fired and again when its transaction completes.
+ */
+@ApplicationScoped
+public class SessionTokenRevocations {
+
+    private static final int MAX_ENTRIES = 10000;
+
+    // Revocations stored by the other nodes are read again for this long, their transaction may
+    // have been committed after the previous load
+    private static final long LOAD_OVERLAP = 60 * 1000;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    // Token id -> expiration of the token
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    // Login -> time of the last change of the password or of the groups
+    private final Map<String, Long> credentialChanges = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> accountRevisions = new ConcurrentHashMap<>();
+
+    private volatile long lastLoad;
+
+    public boolean isRevoked(SessionToken token) {
+        if (revokedTokens.containsKey(token.getId())) {
+            return true;
+        }
+        Long credentialChange = credentialChanges.get(token.getLogin());
+        return credentialChange != null && token.getIssuedAt() <= credentialChange;
+    }
+
+    /**
+     * Revokes a token, to be called in a transaction.
+     */
+    public void revoke(SessionToken token) {
+        new SessionTokenRevocationDAO(em).revokeToken(new RevokedSessionToken(token, System.currentTimeMillis()));
+        putRevokedToken(token.getId(), token.getExpiresAt());
+    }
+
+    public long getAccountRevision(String login) {
+        Long revision = accountRevisions.get(login);
+        return revision == null ? 0 : revision;
+    }
+
+    /**
+     * Loads the revocations stored since the given time, or since the previous load if it is more
+     * recent.
+     *
+     * @param since The time before which revocations no longer matter, the tokens issued then
+     *              having expired
+     */
+    public void load(long since) {
+        long now = System.currentTimeMillis();
+        long from = Math.max(since, lastLoad - LOAD_OVERLAP);
+        SessionTokenRevocationDAO revocationDAO = new SessionTokenRevocationDAO(em);
+
+        for (RevokedSessionToken revokedToken : revocationDAO.findRevokedTokens(from, now)) {
+            putRevokedToken(revokedToken.getTokenId(), revokedToken.getExpiresAt());
+        }
+        for (SessionTokenValidity validity : revocationDAO.findValidities(from)) {
+            if (invalidateTokens(validity.getLogin(), validity.getValidAfter())) {
+                accountRevisions.merge(validity.getLogin(), 1L, Long::sum);
+            }
+        }
+        lastLoad = now;
+    }
+
+    /**
+     * Removes the stored revocations of expired tokens, to be called in a transaction.
+     */
+    public int removeExpiredRevocations() {
+        return new SessionTokenRevocationDAO(em).removeExpiredTokens(System.currentTimeMillis());
+    }
+
+    void onAccountChange(@Observes AccountChangeEvent event) {
+        if (isCredentialChange(event)) {
+            new SessionTokenRevocationDAO(em).invalidateTokens(event.getLogin(), System.currentTimeMillis());
+        }
+        apply(event);
+    }
+
+    void onAccountChangeCompletion(@Observes(during = TransactionPhase.AFTER_COMPLETION) AccountChangeEvent event) {
+        apply(event);
+    }
+
+    private void apply(AccountChangeEvent event) {
+        if (isCredentialChange(event)) {
+            invalidateTokens(event.getLogin(), System.currentTimeMillis());
+        }
+        accountRevisions.merge(event.getLogin(), 1L, Long::sum);
+    }
+
+    private static boolean isCredentialChange(AccountChangeEvent event) {
+        return event.isCredentialChanged() || event.isGroupsChanged();
+    }
+
+    /**
+     * @return whether the tokens of the account were still valid until then
+     */
+    private boolean invalidateTokens(String login, long validAfter) {
+        Long previous = credentialChanges.get(login);
+        if (previous != null && previous >= validAfter) {
+            return false;
+        }
+        credentialChanges.merge(login, validAfter, Math::max);
+        return true;
+    }
+
+    private void putRevokedToken(String tokenId, long expiresAt) {
+        if (revokedTokens.size() >= MAX_ENTRIES) {
+            purgeExpiredTokens();
+        }
+        revokedTokens.put(tokenId, expiresAt);
+    }
+
+    private void purgeExpiredTokens() {
+        long now = System.currentTimeMillis();
+        Iterator<Long> iterator = revokedTokens.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() <= now) {
+                iterator.remove();
+            }
+        }
+    }
+}
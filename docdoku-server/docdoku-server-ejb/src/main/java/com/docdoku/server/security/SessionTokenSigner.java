@@ -0,0 +1,136 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.security;
+
+import com.docdoku.core.security.SessionToken;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Signs and verifies session tokens with a HMAC-SHA256 of their content.
+ *
+ * The value of a token is <code>payload.signature</code>, both encoded in URL safe base64, the
+ * payload being <code>id|issuedAt|expiresAt|groupName|login</code>.
+ */
+public class SessionTokenSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+    private static final String SEPARATOR = "|";
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    public SessionTokenSigner(byte[] key) {
+        if (key.length < KEY_LENGTH) {
+            throw new IllegalArgumentException("The key must be at least " + KEY_LENGTH + " bytes long");
+        }
+        this.key = new SecretKeySpec(key, ALGORITHM);
+    }
+
+    public SessionToken createToken(String login, String groupName, long issuedAt, long lifetime) {
+        SessionToken token = new SessionToken(UUID.randomUUID().toString(), login, groupName, issuedAt, issuedAt + lifetime);
+        String payload = token.getId() + SEPARATOR + token.getIssuedAt() + SEPARATOR + token.getExpiresAt()
+                + SEPARATOR + token.getGroupName() + SEPARATOR + token.getLogin();
+        String encodedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        token.setValue(encodedPayload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(encodedPayload)));
+        return token;
+    }
+
+    /**
+     * @return the token, null if it is malformed, wrongly signed or expired
+     */
+    public SessionToken verifyToken(String value, long now) {
+        int dot = value == null ? -1 : value.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        String encodedPayload = value.substring(0, dot);
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(value.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(encodedPayload))) {
+                return null;
+            }
+            String payload = new String(Base64.getUrlDecoder().decode(encodedPayload), StandardCharsets.UTF_8);
+            String[] fields = payload.split("\\|", 5);
+            if (fields.length != 5) {
+                return null;
+            }
+            SessionToken token = new SessionToken(fields[0], fields[4], fields[3], Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+            token.setValue(value);
+            return token.isExpired(now) ? null : token;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the key from the given file, generating and writing a new one if the file does not exist.
+     */
+    public static byte[] loadOrCreateKey(Path keyFile) throws IOException {
+        if (!Files.exists(keyFile)) {
+            byte[] key = new byte[KEY_LENGTH];
+            new SecureRandom().nextBytes(key);
+            Files.createDirectories(keyFile.toAbsolutePath().getParent());
+            try {
+                Files.write(keyFile, key, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                try {
+                    Files.setPosixFilePermissions(keyFile, PosixFilePermissions.fromString("rw-------"));
+                } catch (UnsupportedOperationException e) {
+                    // Not a POSIX file system, the file keeps its default permissions
+                }
+                return key;
+            } catch (FileAlreadyExistsException e) {
+                // Created meanwhile by another node
+            }
+        }
+        return Files.readAllBytes(keyFile);
+    }
+
+    private byte[] sign(String encodedPayload) {
+        return macs.get().doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.security;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The access of a user to a workspace, as resolved from the user and group memberships.
+ */
+public class WorkspaceAccess {
+
+    private final String login;
+    private final String workspaceId;
+    private final boolean readAccess;
+    private final boolean writeAccess;
+    private final Set<String> userGroupIds;
+    private final long generation;
+    private final long expiration;
+
+    public WorkspaceAccess(String login, String workspaceId, boolean readAccess, boolean writeAccess, Set<String> userGroupIds, long generation, long expiration) {
+        this.login = login;
+        this.workspaceId = workspaceId;
+        this.readAccess = readAccess;
+        this.writeAccess = writeAccess;
+        this.userGroupIds = Collections.unmodifiableSet(userGroupIds);
+        this.generation = generation;
+        this.expiration = expiration;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    /**
+     * @return true if the user is active in the workspace, by itself, through a group or as its administrator
+     */
+    public boolean hasReadAccess() {
+        return readAccess;
+    }
+
+    /**
+     * @return true if the user has full access to the workspace, by itself, through a group or as its administrator
+     */
+    public boolean hasWriteAccess() {
+        return writeAccess;
+    }
+
+    /**
+     * @return the ids of all the groups of the workspace the user belongs to, active or not
+     */
+    public Set<String> getUserGroupIds() {
+        return userGroupIds;
+    }
+
+    /**
+     * @return the generation of the {@link WorkspaceAccessCache} this access was resolved at
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiration;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.security;
+
+import com.docdoku.core.common.User;
+import com.docdoku.server.events.WorkspaceAccessChangeEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the resolved accesses of users to workspaces for a short time, by login and workspace.
+ *
+ * Accesses of a workspace are evicted on each {@link WorkspaceAccessChangeEvent}, once when it is
+ * fired and again when its transaction completes: an access resolved meanwhile from the previous
+ * state, or from a change rolled back, is not kept. The time to live bounds the staleness of the
+ * changes made without such an event.
+ *
+ * An access resolved while an eviction happened is not stored, as it may have been read before
+ * the change.
+ */
+@ApplicationScoped
+public class WorkspaceAccessCache {
+
+    public static final long TIME_TO_LIVE = 30 * 1000;
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private final Map<String, WorkspaceAccess> entries = new ConcurrentHashMap<>();
+
+    // Incremented on each eviction
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @return the access, null if it is not cached or has expired
+     */
+    public WorkspaceAccess get(String login, String workspaceId) {
+        WorkspaceAccess access = entries.get(getKey(login, workspaceId));
+        if (access == null || access.isExpired(System.currentTimeMillis())) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return access;
+    }
+
+    /**
+     * @return the ids of the groups of the user, null if the access of the user is not cached
+     */
+    public Set<String> getUserGroupIds(User user) {
+        WorkspaceAccess access = get(user.getLogin(), user.getWorkspaceId());
+        return access == null ? null : access.getUserGroupIds();
+    }
+
+    /**
+     * To be read before resolving an access, and given to the resolved access.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public long getExpiration() {
+        return System.currentTimeMillis() + TIME_TO_LIVE;
+    }
+
+    public void put(WorkspaceAccess access) {
+        if (access.getGeneration() != generation.get()) {
+            return;
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            purgeExpiredEntries();
+        }
+        String key = getKey(access.getLogin(), access.getWorkspaceId());
+        entries.put(key, access);
+        if (access.getGeneration() != generation.get()) {
+            // Evicted while being stored
+            entries.remove(key, access);
+        }
+    }
+
+    /**
+     * Evicts the accesses to the given workspace.
+     */
+    public void evict(String workspaceId) {
+        generation.incrementAndGet();
+        Iterator<WorkspaceAccess> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getWorkspaceId().equals(workspaceId)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    private void onWorkspaceAccessChange(@Observes WorkspaceAccessChangeEvent event) {
+        evict(event.getWorkspaceId());
+    }
+
+    private void onWorkspaceAccessChangeCompletion(@Observes(during = TransactionPhase.AFTER_COMPLETION) WorkspaceAccessChangeEvent event) {
+        evict(event.getWorkspaceId());
+    }
+
+    private void purgeExpiredEntries() {
+        long now = System.currentTimeMillis();
+        Iterator<WorkspaceAccess> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+    }
+
+    private static String getKey(String login, String workspaceId) {
+        return login + "/" + workspaceId;
+    }
+}
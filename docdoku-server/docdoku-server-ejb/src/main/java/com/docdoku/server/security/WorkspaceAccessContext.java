@@ -0,0 +1,74 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.security;
+
+import javax.enterprise.context.RequestScoped;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the accesses to workspaces resolved during the current request, so that the numerous
+ * checks of a request neither resolve nor notify them again.
+ *
+ * An access is kept until the end of the request, even if it expires from the
+ * {@link WorkspaceAccessCache} meanwhile, unless an eviction happened.
+ */
+@RequestScoped
+public class WorkspaceAccessContext {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Set<String> notifications = new HashSet<>();
+
+    /**
+     * @return the access got during this request, null if there is none or if the cache has been evicted since
+     */
+    public WorkspaceAccess get(String login, String workspaceId, long generation) {
+        Entry entry = entries.get(login + "/" + workspaceId);
+        return entry != null && entry.generation == generation ? entry.access : null;
+    }
+
+    /**
+     * @param generation the generation of the {@link WorkspaceAccessCache} when the access was got
+     */
+    public void put(WorkspaceAccess access, long generation) {
+        entries.put(access.getLogin() + "/" + access.getWorkspaceId(), new Entry(access, generation));
+    }
+
+    /**
+     * @return true the first time a given kind of access of the user to the workspace is notified during this request
+     */
+    public boolean isFirstNotification(String login, String workspaceId, String kind) {
+        return notifications.add(kind + ":" + login + "/" + workspaceId);
+    }
+
+    private static class Entry {
+
+        private final WorkspaceAccess access;
+        private final long generation;
+
+        Entry(WorkspaceAccess access, long generation) {
+            this.access = access;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Consumer;
+
+/**
+ * The SHA-256 hash of the content of a binary resource.
+ *
+ * It is computed while the file is written and kept beside it, in a sub-resource which is copied
+ * along with the file to the next iterations: what depends only on the content of a file, like
+ * its extracted text, is keyed on this hash.
+ */
+public final class ContentHash {
+
+    public static final String SUB_RESOURCE = "content.sha256";
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentHash() {
+    }
+
+    public static String hash(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, length);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return whether the value is a hash, as read from a sub-resource
+     */
+    public static boolean isHash(String value) {
+        return value != null && value.matches("[0-9a-f]{64}");
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(byte[] digest) {
+        StringBuilder hexString = new StringBuilder();
+        for (byte aDigest : digest) {
+            String hex = Integer.toHexString(0xFF & aDigest);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    /**
+     * Hashes the content while it is written, and hands over the hash once the stream is closed.
+     */
+    public static class HashingOutputStream extends DigestOutputStream {
+
+        private final Consumer<String> hashConsumer;
+        private boolean closed;
+
+        public HashingOutputStream(OutputStream out, Consumer<String> hashConsumer) {
+            super(out, newDigest());
+            this.hashConsumer = hashConsumer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            super.close();
+            hashConsumer.accept(toHex(getMessageDigest().digest()));
+        }
+    }
+}
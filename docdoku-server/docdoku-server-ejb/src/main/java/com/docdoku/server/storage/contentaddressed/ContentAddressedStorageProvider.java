@@ -0,0 +1,444 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.storage.contentaddressed;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.exceptions.FileNotFoundException;
+import com.docdoku.core.exceptions.StorageException;
+import com.docdoku.server.storage.ContentHash;
+import com.docdoku.server.storage.filesystem.FileStorageProvider;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.DigestOutputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link FileStorageProvider} which stores each distinct content once, in a blob named after its
+ * SHA-256 hash under the <code>.blobs</code> folder of the vault.
+ *
+ * Binary resources keep their usual path in the vault, which is a hard link to their blob: the link
+ * count of a blob is the number of binary resources referencing it, plus the blob itself. Copying a
+ * binary resource only creates a link, and a blob is removed when its last binary resource is.
+ * Sub resources are stored as by the {@link FileStorageProvider}.
+ *
+ * Blobs are never written in place: a new content is written aside, then swapped with the resource
+ * link, so the other resources sharing the previous content are left untouched.
+ *
+ * The hash of a blob is also stored in a user attribute of the file, which its links share, so that
+ * the blob of a resource is found without reading it. Storing, linking and removing a blob are
+ * serialized per hash, a blob being removed only once no link to it is being created.
+ *
+ * Blobs are only removed through their link count, so the file system of the vault must have hard
+ * links and tell their count: {@link #isSupported(String)} is to be checked before using it.
+ */
+public class ContentAddressedStorageProvider extends FileStorageProvider {
+
+    public static final String BLOBS_FOLDER = ".blobs";
+
+    private static final String HASH_ATTRIBUTE = "docdoku.hash";
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(ContentAddressedStorageProvider.class.getName());
+
+    private final Path blobsFolder;
+    private final Path tmpFolder;
+
+    public ContentAddressedStorageProvider(String vaultPath) {
+        super(vaultPath);
+        blobsFolder = Paths.get(vaultPath, BLOBS_FOLDER);
+        tmpFolder = blobsFolder.resolve("tmp");
+    }
+
+    /**
+     * Checks that hard links can be created in the vault and that their count is known. Without it,
+     * as on Windows or some network file systems, no blob would ever be removed.
+     */
+    public static boolean isSupported(String vaultPath) {
+        Path file = null;
+        Path link = null;
+        try {
+            Path vault = Files.createDirectories(Paths.get(vaultPath));
+            file = Files.createTempFile(vault, "link-check", null);
+            link = file.resolveSibling(file.getFileName() + ".link");
+            Files.createLink(link, file);
+            return Integer.valueOf(2).equals(Files.getAttribute(file, "unix:nlink"));
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            LOGGER.log(Level.FINE, "No hard link count in " + vaultPath, e);
+            return false;
+        } finally {
+            deleteQuietly(link);
+            deleteQuietly(file);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINEST, null, e);
+        }
+    }
+
+    @Override
+    public OutputStream getBinaryResourceOutputStream(BinaryResource pBinaryResource) throws StorageException {
+        Path target = getPath(pBinaryResource);
+        try {
+            Files.createDirectories(tmpFolder);
+            Path tmpFile = Files.createTempFile(tmpFolder, "upload", null);
+            return new BufferedOutputStream(new BlobOutputStream(tmpFile, target));
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void copyData(BinaryResource pSourceBinaryResource, BinaryResource pTargetBinaryResource) throws StorageException, FileNotFoundException {
+        Path source = getPath(pSourceBinaryResource);
+        if (Files.exists(source)) {
+            try {
+                deleteIfUnreferenced(replaceWithLink(getPath(pTargetBinaryResource), source));
+            } catch (IOException e) {
+                throw new StorageException(new StringBuilder().append("Error in copying ").append(pSourceBinaryResource.getFullName()).append(" to ").append(pTargetBinaryResource.getFullName()).toString(), e);
+            }
+        } else {
+            throw new FileNotFoundException(new StringBuilder("Can't find source file to copy ").append(pSourceBinaryResource.getFullName()).toString());
+        }
+    }
+
+    @Override
+    public File copyFile(File source, BinaryResource pTargetBinaryResource) throws StorageException, FileNotFoundException {
+        if (source.exists()) {
+            Path target = getPath(pTargetBinaryResource);
+            try {
+                storeAndLink(target, source.toPath(), hash(source.toPath()), false);
+                return target.toFile();
+            } catch (IOException e) {
+                throw new StorageException(new StringBuilder().append("Error in copying ").append(source.getAbsolutePath()).append(" to ").append(pTargetBinaryResource.getFullName()).toString(), e);
+            }
+        } else {
+            throw new FileNotFoundException(new StringBuilder("Can't find source file to copy ").append(source.getAbsolutePath()).toString());
+        }
+    }
+
+    @Override
+    public File moveFile(File source, BinaryResource pTargetBinaryResource) throws StorageException, FileNotFoundException {
+        if (source.exists()) {
+            Path target = getPath(pTargetBinaryResource);
+            try {
+                storeAndLink(target, source.toPath(), hash(source.toPath()), true);
+                return target.toFile();
+            } catch (IOException e) {
+                throw new StorageException(new StringBuilder().append("Error in moving ").append(source.getAbsolutePath()).append(" to ").append(pTargetBinaryResource.getFullName()).toString(), e);
+            }
+        } else {
+            throw new FileNotFoundException(new StringBuilder("Can't find source file to move ").append(source.getAbsolutePath()).toString());
+        }
+    }
+
+    @Override
+    public void delData(BinaryResource pBinaryResource) {
+        Path path = getPath(pBinaryResource);
+        try {
+            Path blob = getReleasedBlob(path);
+            Files.deleteIfExists(path);
+            deleteIfUnreferenced(blob);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot delete " + path, e);
+        }
+    }
+
+    @Override
+    public void deleteWorkspaceFolder(String workspaceId, List<BinaryResource> binaryResourcesInWorkspace) throws StorageException {
+        super.deleteWorkspaceFolder(workspaceId, binaryResourcesInWorkspace);
+        try {
+            collectGarbage();
+        } catch (IOException e) {
+            throw new StorageException("Error in removing the blobs of workspace : " + workspaceId, e);
+        }
+    }
+
+    /**
+     * Moves the content of a file of the vault to the blob store, the file becoming a link to the blob.
+     *
+     * @return the number of bytes saved, that is the size of the file if its content was already stored
+     */
+    public long migrate(Path file) throws IOException {
+        String hash = hash(file);
+        Path blob = getBlobPath(hash);
+        Path releasedBlob;
+        long saved;
+        synchronized (getLock(hash)) {
+            if (Files.exists(blob)) {
+                if (Files.isSameFile(blob, file)) {
+                    return 0;
+                }
+                saved = Files.size(file);
+                releasedBlob = replaceWithLink(file, blob);
+            } else {
+                storeBlob(file, hash, false);
+                return 0;
+            }
+        }
+        deleteIfUnreferenced(releasedBlob);
+        return saved;
+    }
+
+    /**
+     * Removes the blobs no binary resource links to anymore.
+     *
+     * @return the number of removed blobs
+     */
+    public int collectGarbage() throws IOException {
+        if (!Files.exists(blobsFolder)) {
+            return 0;
+        }
+        final int[] removed = {0};
+        Files.walkFileTree(blobsFolder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, java.nio.file.attribute.BasicFileAttributes attrs) {
+                return dir.equals(tmpFolder) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, java.nio.file.attribute.BasicFileAttributes attrs) throws IOException {
+                if (deleteIfUnreferenced(file)) {
+                    removed[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return removed[0];
+    }
+
+    public Path getBlobsFolder() {
+        return blobsFolder;
+    }
+
+    private Path getPath(BinaryResource pBinaryResource) {
+        return Paths.get(getVirtualPath(pBinaryResource));
+    }
+
+    private Path getBlobPath(String hash) {
+        return blobsFolder.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static Object getLock(String hash) {
+        return LOCKS[(hash.hashCode() & 0x7fffffff) % LOCKS.length];
+    }
+
+    /*
+     * Stores the content of the file in its blob and links the target to it, then removes the blob
+     * of the previous target if it was its last reference.
+     */
+    private void storeAndLink(Path target, Path file, String hash, boolean move) throws IOException {
+        Path releasedBlob;
+        synchronized (getLock(hash)) {
+            Path blob = storeBlob(file, hash, move);
+            releasedBlob = replaceWithLink(target, blob);
+        }
+        deleteIfUnreferenced(releasedBlob);
+    }
+
+    /*
+     * To be called while holding the lock of the hash, so that an existing blob is not removed
+     * before it is linked.
+     */
+    private Path storeBlob(Path file, String hash, boolean move) throws IOException {
+        Path blob = getBlobPath(hash);
+        if (Files.exists(blob)) {
+            if (move) {
+                Files.delete(file);
+            }
+            return blob;
+        }
+        Files.createDirectories(blob.getParent());
+        if (move) {
+            Files.move(file, blob, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            try {
+                createLinkOrCopy(blob, file);
+            } catch (FileAlreadyExistsException e) {
+                // Stored meanwhile, same content
+                LOGGER.log(Level.FINEST, null, e);
+            }
+        }
+        writeHashAttribute(blob, hash);
+        return blob;
+    }
+
+    /*
+     * Atomically replaces the target by a link to the given file.
+     * Returns the blob of the previous target, to be removed if it was its last reference.
+     */
+    private Path replaceWithLink(Path target, Path existing) throws IOException {
+        Files.createDirectories(target.getParent());
+
+        Path releasedBlob = null;
+        if (Files.exists(target) && !Files.isSameFile(target, existing)) {
+            releasedBlob = getReleasedBlob(target);
+        }
+
+        Path tmpLink = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".link");
+        createLinkOrCopy(tmpLink, existing);
+        Files.move(tmpLink, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return releasedBlob;
+    }
+
+    /*
+     * Finds the blob a resource file is linked to, from the hash attribute they share.
+     * Without this attribute, the file is hashed, and only if it is the last reference to its blob.
+     */
+    private Path getReleasedBlob(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String hash = readHashAttribute(file);
+        if (hash == null) {
+            if (getLinkCount(file) != 2) {
+                return null;
+            }
+            hash = hash(file);
+        }
+        Path blob = getBlobPath(hash);
+        return Files.exists(blob) && Files.isSameFile(blob, file) ? blob : null;
+    }
+
+    private boolean deleteIfUnreferenced(Path blob) throws IOException {
+        if (blob == null) {
+            return false;
+        }
+        synchronized (getLock(blob.getFileName().toString())) {
+            if (Files.exists(blob) && getLinkCount(blob) == 1) {
+                Files.delete(blob);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeHashAttribute(Path blob, String hash) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(blob, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        try {
+            view.write(HASH_ATTRIBUTE, StandardCharsets.US_ASCII.encode(hash));
+        } catch (IOException | UnsupportedOperationException e) {
+            // Found by hashing the content instead
+            LOGGER.log(Level.FINEST, null, e);
+        }
+    }
+
+    private String readHashAttribute(Path file) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return null;
+        }
+        try {
+            if (!view.list().contains(HASH_ATTRIBUTE)) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(view.size(HASH_ATTRIBUTE));
+            view.read(HASH_ATTRIBUTE, buffer);
+            buffer.flip();
+            return StandardCharsets.US_ASCII.decode(buffer).toString();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return null;
+        }
+    }
+
+    private int getLinkCount(Path file) throws IOException {
+        try {
+            return (Integer) Files.getAttribute(file, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // Unknown, never considered as unreferenced
+            LOGGER.log(Level.FINEST, null, e);
+            return -1;
+        }
+    }
+
+    private void createLinkOrCopy(Path link, Path existing) throws IOException {
+        try {
+            Files.createLink(link, existing);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            if (e instanceof FileAlreadyExistsException) {
+                throw (FileAlreadyExistsException) e;
+            }
+            LOGGER.log(Level.FINE, "Hard links not supported, copying " + existing, e);
+            Files.copy(existing, link);
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return ContentHash.hash(in);
+        }
+    }
+
+    /**
+     * Hashes the content while it is written aside, and links it to the resource once closed.
+     */
+    private class BlobOutputStream extends DigestOutputStream {
+
+        private final Path tmpFile;
+        private final Path target;
+        private boolean closed;
+
+        BlobOutputStream(Path tmpFile, Path target) throws IOException {
+            super(Files.newOutputStream(tmpFile), ContentHash.newDigest());
+            this.tmpFile = tmpFile;
+            this.target = target;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+                storeAndLink(target, tmpFile, ContentHash.toHex(getMessageDigest().digest()), true);
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.storage.contentaddressed;
+
+import com.docdoku.server.storage.upload.UploadSessionStore;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Converts a vault written by the {@link com.docdoku.server.storage.filesystem.FileStorageProvider}
+ * to the {@link ContentAddressedStorageProvider} layout, in place.
+ *
+ * Every binary resource is hashed and becomes a link to its blob, identical files sharing the same
+ * blob. Sub resource folders and uploads in progress are left as they are. The migration can be
+ * interrupted and run again, already migrated files are skipped. The server should be stopped while
+ * it runs.
+ *
+ * Usage: <code>java com.docdoku.server.storage.contentaddressed.ContentAddressedVaultMigration /var/lib/docdoku/vault</code>
+ */
+public class ContentAddressedVaultMigration {
+
+    private static final Logger LOGGER = Logger.getLogger(ContentAddressedVaultMigration.class.getName());
+
+    private final Path vault;
+    private final Path uploadsFolder;
+    private final ContentAddressedStorageProvider storageProvider;
+
+    private long migratedFiles;
+    private long failedFiles;
+    private long savedBytes;
+
+    public ContentAddressedVaultMigration(String vaultPath) {
+        vault = Paths.get(vaultPath);
+        uploadsFolder = vault.resolve(UploadSessionStore.UPLOADS_FOLDER);
+        storageProvider = new ContentAddressedStorageProvider(vaultPath);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: ContentAddressedVaultMigration <vaultPath>");
+            System.exit(1);
+        }
+        if (!ContentAddressedStorageProvider.isSupported(args[0])) {
+            System.err.println("The file system of " + args[0] + " does not count hard links, blobs could never be removed");
+            System.exit(1);
+        }
+        ContentAddressedVaultMigration migration = new ContentAddressedVaultMigration(args[0]);
+        migration.run();
+        System.out.println(migration.migratedFiles + " files migrated, " + migration.failedFiles + " failed, "
+                + migration.savedBytes + " bytes saved");
+    }
+
+    public void run() throws IOException {
+        Files.walkFileTree(vault, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(storageProvider.getBlobsFolder()) || dir.equals(uploadsFolder) || isSubResourceFolder(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    try {
+                        savedBytes += storageProvider.migrate(file);
+                        migratedFiles++;
+                    } catch (IOException e) {
+                        failedFiles++;
+                        LOGGER.log(Level.WARNING, "Cannot migrate " + file, e);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    public long getMigratedFiles() {
+        return migratedFiles;
+    }
+
+    public long getFailedFiles() {
+        return failedFiles;
+    }
+
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    // Sub resources of a binary resource are stored in a folder named after it, prefixed with an underscore
+    private boolean isSubResourceFolder(Path dir) {
+        return !dir.equals(vault) && dir.getFileName().toString().startsWith("_");
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.storage.export;
+
+import com.docdoku.core.common.ExportJob;
+import com.docdoku.core.util.FileIO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.Date;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the export jobs under the <code>.exports</code> folder of the vault.
+ *
+ * Each job has its own folder holding its description and its archive. The archive is written to
+ * a temporary file, renamed once complete: an archive which is there is always a whole one. Jobs
+ * and their archives are removed after a few days.
+ */
+public class ExportJobStore {
+
+    public static final String EXPORTS_FOLDER = ".exports";
+
+    private static final String JOB_FILE = "job.properties";
+    private static final String ARCHIVE_FILE = "export.zip";
+    private static final String PARTIAL_ARCHIVE_FILE = "export.zip.part";
+    private static final long EXPIRATION_DELAY = 7L * 24 * 60 * 60 * 1000;
+    // Time left to a job being created to get its description
+    private static final long CREATION_DELAY = 60L * 60 * 1000;
+
+    private static final Logger LOGGER = Logger.getLogger(ExportJobStore.class.getName());
+
+    private final Path exportsFolder;
+
+    public ExportJobStore(String vaultPath) {
+        exportsFolder = Paths.get(vaultPath, EXPORTS_FOLDER);
+    }
+
+    public ExportJob create(ExportJob job) throws IOException {
+        purgeExpiredJobs();
+
+        ExportJob created = new ExportJob(UUID.randomUUID().toString(), job.getWorkspaceId(), job.getConfigurationItemId(),
+                job.getConfigSpecType(), job.getLogin(), job.isExportNativeCADFiles(), job.isExportDocumentLinks(),
+                job.isDeduplicate(), new Date());
+        Files.createDirectories(exportsFolder.resolve(created.getId()));
+        update(created);
+        return created;
+    }
+
+    /**
+     * @return the job, null if there is no such job
+     */
+    public ExportJob get(String id) throws IOException {
+        Path folder = getFolder(id);
+        if (folder == null || !Files.exists(folder.resolve(JOB_FILE))) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(folder.resolve(JOB_FILE))) {
+            properties.load(in);
+        }
+        ExportJob job = new ExportJob(id,
+                properties.getProperty("workspaceId"),
+                properties.getProperty("configurationItemId"),
+                properties.getProperty("configSpecType"),
+                properties.getProperty("login"),
+                Boolean.parseBoolean(properties.getProperty("exportNativeCADFiles")),
+                Boolean.parseBoolean(properties.getProperty("exportDocumentLinks")),
+                Boolean.parseBoolean(properties.getProperty("deduplicate")),
+                new Date(Long.parseLong(properties.getProperty("creationDate"))));
+        job.setStatus(ExportJob.Status.valueOf(properties.getProperty("status")));
+        job.setWrittenEntries(Integer.parseInt(properties.getProperty("writtenEntries", "0")));
+        job.setSize(Long.parseLong(properties.getProperty("size", "0")));
+        String completionDate = properties.getProperty("completionDate");
+        if (completionDate != null) {
+            job.setCompletionDate(new Date(Long.parseLong(completionDate)));
+        }
+        return job;
+    }
+
+    public void update(ExportJob job) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("workspaceId", job.getWorkspaceId());
+        properties.setProperty("configurationItemId", job.getConfigurationItemId());
+        properties.setProperty("configSpecType", job.getConfigSpecType());
+        properties.setProperty("login", job.getLogin());
+        properties.setProperty("exportNativeCADFiles", String.valueOf(job.isExportNativeCADFiles()));
+        properties.setProperty("exportDocumentLinks", String.valueOf(job.isExportDocumentLinks()));
+        properties.setProperty("deduplicate", String.valueOf(job.isDeduplicate()));
+        properties.setProperty("status", job.getStatus().name());
+        properties.setProperty("writtenEntries", String.valueOf(job.getWrittenEntries()));
+        properties.setProperty("size", String.valueOf(job.getSize()));
+        properties.setProperty("creationDate", String.valueOf(job.getCreationDate().getTime()));
+        if (job.getCompletionDate() != null) {
+            properties.setProperty("completionDate", String.valueOf(job.getCompletionDate().getTime()));
+        }
+
+        // Replaced at once, a concurrent reader never gets a partial description
+        Path folder = exportsFolder.resolve(job.getId());
+        Path tmp = folder.resolve(JOB_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            properties.store(out, null);
+        }
+        Files.move(tmp, folder.resolve(JOB_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return a stream to write the archive from its start, the archive is made available by {@link #completeArchive(String)}
+     */
+    public OutputStream openArchive(String id) throws IOException {
+        return Files.newOutputStream(exportsFolder.resolve(id).resolve(PARTIAL_ARCHIVE_FILE));
+    }
+
+    /**
+     * @return the size of the archive
+     */
+    public long completeArchive(String id) throws IOException {
+        Path folder = exportsFolder.resolve(id);
+        Path archive = Files.move(folder.resolve(PARTIAL_ARCHIVE_FILE), folder.resolve(ARCHIVE_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(archive);
+    }
+
+    /**
+     * @return the archive of a completed job, null if there is none
+     */
+    public Path getArchive(String id) {
+        Path folder = getFolder(id);
+        if (folder == null) {
+            return null;
+        }
+        Path archive = folder.resolve(ARCHIVE_FILE);
+        return Files.exists(archive) ? archive : null;
+    }
+
+    public void delete(String id) {
+        Path folder = getFolder(id);
+        if (folder != null) {
+            FileIO.rmDir(folder.toFile());
+        }
+    }
+
+    /**
+     * Removes the jobs created before the expiration delay, with their archives, and the folders
+     * left without a description by a failed creation.
+     */
+    public void purgeExpiredJobs() {
+        if (!Files.isDirectory(exportsFolder)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(exportsFolder)) {
+            for (Path folder : folders) {
+                Path jobFile = folder.resolve(JOB_FILE);
+                boolean expired;
+                if (Files.exists(jobFile)) {
+                    expired = Files.getLastModifiedTime(jobFile).toMillis() < now - EXPIRATION_DELAY;
+                } else {
+                    // Possibly being created
+                    expired = Files.getLastModifiedTime(folder).toMillis() < now - CREATION_DELAY;
+                }
+                if (expired) {
+                    FileIO.rmDir(folder.toFile());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot purge expired exports", e);
+        }
+    }
+
+    // The id comes from the request, only well formed ones are resolved
+    private Path getFolder(String id) {
+        try {
+            return exportsFolder.resolve(UUID.fromString(id).toString());
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return null;
+        }
+    }
+}
@@ -29,6 +29,10 @@ import com.docdoku.server.storage.StorageProvider;
 import org.apache.commons.io.FileUtils;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
@@ -45,7 +49,11 @@ public class FileStorageProvider implements StorageProvider {
         this.vaultPath = vaultPath;
     }
 
-    private String getVirtualPath(BinaryResource pBinaryResource) {
+    protected String getVaultPath() {
+        return vaultPath;
+    }
+
+    protected String getVirtualPath(BinaryResource pBinaryResource) {
         String normalizedName = Tools.unAccent(pBinaryResource.getFullName());
         return new StringBuilder().append(this.vaultPath).append("/").append(normalizedName).toString();
     }
@@ -147,6 +155,23 @@ public class FileStorageProvider implements StorageProvider {
         }
     }
 
+    @Override
+    public File moveFile(File source, BinaryResource pTargetBinaryResource) throws StorageException, FileNotFoundException {
+        if (source.exists()) {
+            File target = new File(getVirtualPath(pTargetBinaryResource));
+            target.getParentFile().mkdirs();
+            try {
+                // A rename when the source is on the same file system as the vault
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return target;
+            } catch (IOException e) {
+                throw new StorageException(new StringBuilder().append("Error in moving ").append(source.getAbsolutePath()).append(" to ").append(pTargetBinaryResource.getFullName()).toString(), e);
+            }
+        } else {
+            throw new FileNotFoundException(new StringBuilder("Can't find source file to move ").append(source.getAbsolutePath()).toString());
+        }
+    }
+
     @Override
     public void delData(BinaryResource pBinaryResource) {
         File fileToRemove = new File(getVirtualPath(pBinaryResource));
@@ -177,6 +202,37 @@ public class FileStorageProvider implements StorageProvider {
         return subResourceFile.exists();
     }
 
+    /**
+     * Replaces the target sub resource at once, a reader gets either the previous file or the new one.
+     */
+    public void moveSubResource(BinaryResource binaryResource, String sourceVirtualPath, String targetVirtualPath) throws StorageException {
+        File subResourceFolder = getSubResourceFolder(binaryResource);
+        try {
+            Files.move(new File(subResourceFolder, Tools.unAccent(sourceVirtualPath)).toPath(),
+                    new File(subResourceFolder, Tools.unAccent(targetVirtualPath)).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new StorageException("Can't move sub resource " + sourceVirtualPath + " of " + binaryResource.getFullName(), e);
+        }
+    }
+
+    public void deleteSubResource(BinaryResource binaryResource, String subResourceVirtualPath) throws StorageException {
+        File subResourceFile = new File(getSubResourceFolder(binaryResource), Tools.unAccent(subResourceVirtualPath));
+        try {
+            Files.deleteIfExists(subResourceFile.toPath());
+        } catch (IOException e) {
+            throw new StorageException("Can't delete sub resource " + subResourceVirtualPath + " of " + binaryResource.getFullName(), e);
+        }
+    }
+
+    /**
+     * @return the names of the files of the sub resource folder, without accents
+     */
+    public List<String> getSubResourceNames(BinaryResource binaryResource) {
+        String[] names = getSubResourceFolder(binaryResource).list();
+        return names == null ? Collections.<String>emptyList() : Arrays.asList(names);
+    }
+
     public void copySubResources(BinaryResource source, BinaryResource destination) throws StorageException {
         File subResourceFolder = getSubResourceFolder(source);
         if (subResourceFolder.exists()) {
@@ -0,0 +1,283 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.storage.upload;
+
+import com.docdoku.core.common.UploadSession;
+import com.docdoku.core.util.FileIO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the chunked uploads in progress under the <code>.uploads</code> folder of the vault.
+ *
+ * Each session has its own folder holding its description, the data file, allocated to the full
+ * size when the session is created, and one empty marker per received chunk. A chunk is written
+ * straight at its offset while its checksum is computed, and its marker is only created once the
+ * checksum matches: a chunk which does not match is left unmarked, to be sent and written again.
+ * A chunk already marked is never written again. Chunks can be received concurrently and the data
+ * file is the complete content once the last one is marked: it can then be moved to the vault, no
+ * assembling copy is needed. Sessions survive a restart and can be resumed as long as they have not
+ * expired.
+ */
+public class UploadSessionStore {
+
+    public static final String UPLOADS_FOLDER = ".uploads";
+
+    private static final String SESSION_FILE = "session.properties";
+    private static final String DATA_FILE = "data";
+    private static final String CHUNKS_FOLDER = "chunks";
+    private static final String CHECKSUM_ALGORITHM = "MD5";
+    private static final long EXPIRATION_DELAY = 7L * 24 * 60 * 60 * 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(UploadSessionStore.class.getName());
+
+    private final Path uploadsFolder;
+
+    public UploadSessionStore(String vaultPath) {
+        uploadsFolder = Paths.get(vaultPath, UPLOADS_FOLDER);
+    }
+
+    public UploadSession create(String binaryResourceFullName, String login, long size, int chunkSize) throws IOException {
+        if (size < 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid upload size " + size + " or chunk size " + chunkSize);
+        }
+        purgeExpiredSessions();
+
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), binaryResourceFullName, login, size, chunkSize, new Date());
+        Path folder = uploadsFolder.resolve(session.getId());
+        Files.createDirectories(folder.resolve(CHUNKS_FOLDER));
+
+        // Sparse on most file systems, the space is only used by the received chunks
+        try (RandomAccessFile data = new RandomAccessFile(folder.resolve(DATA_FILE).toFile(), "rw")) {
+            data.setLength(size);
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("binaryResource", binaryResourceFullName);
+        properties.setProperty("login", login);
+        properties.setProperty("size", String.valueOf(size));
+        properties.setProperty("chunkSize", String.valueOf(chunkSize));
+        properties.setProperty("creationDate", String.valueOf(session.getCreationDate().getTime()));
+        try (OutputStream out = Files.newOutputStream(folder.resolve(SESSION_FILE))) {
+            properties.store(out, null);
+        }
+        return session;
+    }
+
+    /**
+     * @return the session with its received chunks, null if there is no such session
+     */
+    public UploadSession get(String id) throws IOException {
+        Path folder = getFolder(id);
+        if (folder == null || !Files.exists(folder.resolve(SESSION_FILE))) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(folder.resolve(SESSION_FILE))) {
+            properties.load(in);
+        }
+        UploadSession session = new UploadSession(id,
+                properties.getProperty("binaryResource"),
+                properties.getProperty("login"),
+                Long.parseLong(properties.getProperty("size")),
+                Integer.parseInt(properties.getProperty("chunkSize")),
+                new Date(Long.parseLong(properties.getProperty("creationDate"))));
+
+        SortedSet<Integer> receivedChunks = new TreeSet<>();
+        try (DirectoryStream<Path> markers = Files.newDirectoryStream(folder.resolve(CHUNKS_FOLDER))) {
+            for (Path marker : markers) {
+                receivedChunks.add(Integer.valueOf(marker.getFileName().toString()));
+            }
+        }
+        session.setReceivedChunks(receivedChunks);
+        return session;
+    }
+
+    /**
+     * Writes a chunk at its offset in the data file.
+     *
+     * The chunk is recorded as received only if it has the expected length and checksum, it may be
+     * sent again otherwise. A chunk already received is only checked, and the same chunk sent
+     * concurrently is refused.
+     *
+     * @param checksum the base64 encoded MD5 of the chunk
+     * @return true if the chunk has been accepted
+     */
+    public boolean writeChunk(UploadSession session, int index, InputStream content, String checksum) throws IOException {
+        if (index < 0 || index >= session.getChunkCount() || checksum == null) {
+            return false;
+        }
+
+        Path folder = getFolder(session.getId());
+        Path marker = folder.resolve(CHUNKS_FOLDER).resolve(String.valueOf(index));
+        long offset = session.getChunkOffset(index);
+        long length = session.getChunkLength(index);
+
+        try (FileChannel channel = FileChannel.open(folder.resolve(DATA_FILE), StandardOpenOption.WRITE);
+             FileLock lock = lockChunk(channel, offset, length)) {
+            if (lock == null) {
+                return false;
+            }
+            if (Files.exists(marker)) {
+                // Sent again, the verified content is kept
+                return checkChunk(content, length, checksum);
+            }
+            if (!receiveChunk(channel, offset, content, length, checksum)) {
+                return false;
+            }
+            // The chunk must be on disk before being recorded
+            channel.force(false);
+            Files.createFile(marker);
+        }
+        session.getReceivedChunks().add(index);
+        return true;
+    }
+
+    /*
+     * The chunk region of the data file, null if the same chunk is being written
+     */
+    private static FileLock lockChunk(FileChannel channel, long offset, long length) throws IOException {
+        try {
+            // Locks of a zero length region would cover the end of the file
+            return channel.tryLock(offset, Math.max(1, length), false);
+        } catch (OverlappingFileLockException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return null;
+        }
+    }
+
+    /*
+     * Writes the content at its offset in the data file and checks its length and checksum.
+     */
+    private static boolean receiveChunk(FileChannel channel, long offset, InputStream content, long length, String checksum) throws IOException {
+        DigestInputStream in = new DigestInputStream(content, newDigest());
+        ReadableByteChannel source = Channels.newChannel(in);
+        long transferred = 0;
+        while (transferred < length) {
+            long count = channel.transferFrom(source, offset + transferred, length - transferred);
+            if (count <= 0) {
+                break;
+            }
+            transferred += count;
+        }
+        if (transferred != length || in.read() != -1) {
+            return false;
+        }
+        return MessageDigest.isEqual(in.getMessageDigest().digest(), decodeChecksum(checksum));
+    }
+
+    /*
+     * Reads the content, only checking its length and checksum.
+     */
+    private static boolean checkChunk(InputStream content, long length, String checksum) throws IOException {
+        DigestInputStream in = new DigestInputStream(content, newDigest());
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long read = 0;
+        int count;
+        // Up to one byte more than the chunk, to tell a longer content
+        while (read <= length && (count = in.read(buffer, 0, (int) Math.min(buffer.length, length + 1 - read))) != -1) {
+            read += count;
+        }
+        return read == length && MessageDigest.isEqual(in.getMessageDigest().digest(), decodeChecksum(checksum));
+    }
+
+    /**
+     * @return the data file of a complete session, to be moved to the vault
+     */
+    public Path getDataFile(UploadSession session) {
+        return getFolder(session.getId()).resolve(DATA_FILE);
+    }
+
+    public void delete(String id) {
+        Path folder = getFolder(id);
+        if (folder != null) {
+            FileIO.rmDir(folder.toFile());
+        }
+    }
+
+    /**
+     * Removes the sessions which have not been completed nor cancelled in time.
+     *
+     * A folder without description is a session being created, or whose creation failed: it is
+     * removed after the same delay.
+     */
+    public void purgeExpiredSessions() {
+        if (!Files.isDirectory(uploadsFolder)) {
+            return;
+        }
+        long limit = System.currentTimeMillis() - EXPIRATION_DELAY;
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(uploadsFolder)) {
+            for (Path folder : folders) {
+                Path sessionFile = folder.resolve(SESSION_FILE);
+                Path dateFile = Files.exists(sessionFile) ? sessionFile : folder;
+                if (Files.getLastModifiedTime(dateFile).toMillis() < limit) {
+                    FileIO.rmDir(folder.toFile());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot purge expired uploads", e);
+        }
+    }
+
+    // The id comes from the request, only well formed ones are resolved
+    private Path getFolder(String id) {
+        try {
+            return uploadsFolder.resolve(UUID.fromString(id).toString());
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return null;
+        }
+    }
+
+    private static byte[] decodeChecksum(String checksum) {
+        try {
+            return Base64.getDecoder().decode(checksum.trim());
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return new byte[0];
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
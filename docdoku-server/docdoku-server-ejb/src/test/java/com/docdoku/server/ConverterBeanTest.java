@@ -0,0 +1,170 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server;
+
+import com.docdoku.core.common.Account;
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.Workspace;
+import com.docdoku.core.product.*;
+import com.docdoku.server.util.ProductUtil;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ConverterBeanTest {
+
+    @InjectMocks
+    private ConverterBean converterBean = new ConverterBean();
+
+    @Mock
+    private EntityManager em;
+
+    @Mock
+    private TypedQuery<Conversion> conversionQuery;
+
+    @Mock
+    private Query startQuery;
+
+    private PartIterationKey partIterationKey;
+    private Conversion conversion;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+        Account account = new Account(ProductUtil.USER_1_LOGIN, ProductUtil.USER_1_NAME, ProductUtil.USER_1_MAIL, ProductUtil.USER_1_LANGUAGE, new Date(), null);
+        Workspace workspace = new Workspace(ProductUtil.WORKSPACE_ID, account, "pDescription", false);
+        User user = new User(workspace, account);
+        PartRevision partRevision = new PartRevision(new PartMaster(workspace, ProductUtil.PART_ID, user), ProductUtil.VERSION, user);
+        PartIteration partIteration = new PartIteration(partRevision, ProductUtil.ITERATION, user);
+        partIterationKey = partIteration.getKey();
+        conversion = new Conversion(partIteration, Conversion.PRIORITY_BULK);
+
+        Mockito.when(em.find(PartIteration.class, partIterationKey)).thenReturn(partIteration);
+        Mockito.when(em.createQuery(Matchers.anyString(), Matchers.eq(Conversion.class))).thenReturn(conversionQuery);
+        Mockito.when(conversionQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(conversionQuery);
+        Mockito.when(conversionQuery.getSingleResult()).thenReturn(conversion);
+        Mockito.when(em.createNamedQuery(Matchers.anyString(), Matchers.eq(Conversion.class))).thenReturn(conversionQuery);
+        Mockito.when(conversionQuery.setMaxResults(Matchers.anyInt())).thenReturn(conversionQuery);
+        Mockito.when(conversionQuery.getResultList()).thenReturn(Collections.singletonList(conversion));
+
+        // Applies the update to the conversion
+        Mockito.when(em.createNamedQuery("Conversion.start")).thenReturn(startQuery);
+        Mockito.when(startQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(startQuery);
+        Mockito.when(startQuery.executeUpdate()).thenAnswer(invocation -> {
+            if (!conversion.isQueued()) {
+                return 0;
+            }
+            conversion.setStartDate(new Date());
+            conversion.setAttempts(conversion.getAttempts() + 1);
+            conversion.setNextAttemptDate(null);
+            conversion.setConverter("ObjFileConverterImpl");
+            return 1;
+        });
+    }
+
+    @Test
+    public void startQueuedConversionOnlyTest() {
+        Assert.assertTrue(converterBean.startConversion(partIterationKey, "ObjFileConverterImpl"));
+        Assert.assertTrue(conversion.isRunning());
+        Assert.assertEquals(1, conversion.getAttempts());
+        Assert.assertEquals("ObjFileConverterImpl", conversion.getConverter());
+
+        Assert.assertFalse(converterBean.startConversion(partIterationKey, "ObjFileConverterImpl"));
+        Assert.assertEquals(1, conversion.getAttempts());
+        Mockito.verify(startQuery, Mockito.times(2)).setParameter("converter", "ObjFileConverterImpl");
+    }
+
+    @Test
+    public void conversionWithoutCADFileIsEndedTest() {
+        List<Conversion> conversions = converterBean.findQueuedConversions(Collections.<String>emptySet(), 10);
+
+        Assert.assertTrue(conversions.isEmpty());
+        Assert.assertFalse(conversion.isPending());
+        Assert.assertFalse(conversion.isSucceed());
+        Assert.assertEquals("No native CAD file", conversion.getErrorMessage());
+    }
+
+    @Test
+    public void failedConversionIsRetriedTest() {
+        converterBean.startConversion(partIterationKey, "ObjFileConverterImpl");
+        converterBean.endConversion(partIterationKey, "Conversion Failed");
+
+        Assert.assertTrue(conversion.isQueued());
+        Assert.assertEquals("Conversion Failed", conversion.getErrorMessage());
+        Assert.assertNotNull(conversion.getNextAttemptDate());
+        Assert.assertTrue(conversion.getNextAttemptDate().after(new Date()));
+    }
+
+    @Test
+    public void failedConversionEndsAfterLastAttemptTest() {
+        for (int i = 0; i < 3; i++) {
+            conversion.setNextAttemptDate(null);
+            converterBean.startConversion(partIterationKey, "ObjFileConverterImpl");
+            converterBean.endConversion(partIterationKey, "Conversion Failed");
+        }
+
+        Assert.assertFalse(conversion.isPending());
+        Assert.assertFalse(conversion.isSucceed());
+        Assert.assertNotNull(conversion.getEndDate());
+    }
+
+    @Test
+    public void succeededConversionEndsTest() {
+        converterBean.startConversion(partIterationKey, "ObjFileConverterImpl");
+        converterBean.endConversion(partIterationKey, null);
+
+        Assert.assertFalse(conversion.isPending());
+        Assert.assertTrue(conversion.isSucceed());
+        Assert.assertNull(conversion.getErrorMessage());
+    }
+
+    @Test
+    public void canceledConversionIsNotEndedTest() {
+        converterBean.startConversion(partIterationKey, "ObjFileConverterImpl");
+        conversion.setPending(false);
+        conversion.setCanceled(true);
+        converterBean.endConversion(partIterationKey, null);
+
+        Assert.assertTrue(conversion.isCanceled());
+        Assert.assertFalse(conversion.isSucceed());
+    }
+
+    @Test
+    public void retryDelayGrowsUpToLimitTest() {
+        Assert.assertEquals(60000, ConverterBean.getRetryDelay(1, 60000));
+        Assert.assertEquals(120000, ConverterBean.getRetryDelay(2, 60000));
+        Assert.assertEquals(240000, ConverterBean.getRetryDelay(3, 60000));
+        Assert.assertEquals(60 * 60 * 1000, ConverterBean.getRetryDelay(40, 60000));
+    }
+}
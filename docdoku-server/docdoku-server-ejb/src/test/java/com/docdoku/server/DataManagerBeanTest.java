@@ -21,15 +21,31 @@
 package com.docdoku.server;
 
 import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.exceptions.StorageQuotaExceededException;
+import com.docdoku.core.util.FileIO;
+import com.docdoku.server.storage.ContentHash;
 import com.docdoku.server.storage.StorageProvider;
 import com.docdoku.server.storage.filesystem.FileStorageProvider;
 import com.docdoku.server.util.DocumentUtil;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.internal.util.reflection.Whitebox;
 
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Date;
+import java.util.Scanner;
 
 
 public class DataManagerBeanTest {
@@ -54,4 +70,76 @@ public class DataManagerBeanTest {
         Assert.assertTrue(outputStream != null);
     }
 
+    @Test
+    public void testReplacedFileIsNotCountedInTheQuota() throws Exception {
+        DataManagerBean dataManager = createDataManagerWithQuota(1000, 900);
+
+        // 50 bytes more than the file replaced
+        dataManager.checkStorageQuota(binaryResource.getFullName(), DocumentUtil.DOCUMENT_SIZE + 50);
+
+        try {
+            dataManager.checkStorageQuota(binaryResource.getFullName(), DocumentUtil.DOCUMENT_SIZE + 150);
+            Assert.fail("The quota should be exceeded");
+        } catch (StorageQuotaExceededException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testNewFileIsCountedInTheQuota() throws Exception {
+        DataManagerBean dataManager = createDataManagerWithQuota(1000, 900);
+
+        dataManager.checkStorageQuota(binaryResource.getFullName() + ".new", 100);
+
+        try {
+            dataManager.checkStorageQuota(binaryResource.getFullName() + ".new", 101);
+            Assert.fail("The quota should be exceeded");
+        } catch (StorageQuotaExceededException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testContentHashIsStoredWhenFileIsWritten() throws Exception {
+        Path vault = Files.createTempDirectory("vault");
+        try {
+            DataManagerBean dataManager = new DataManagerBean();
+            Whitebox.setInternalState(dataManager, "vaultPath", vault.toString());
+            Method init = DataManagerBean.class.getDeclaredMethod("init");
+            init.setAccessible(true);
+            init.invoke(dataManager);
+
+            try (OutputStream outputStream = dataManager.getBinaryResourceOutputStream(binaryResource)) {
+                outputStream.write("content".getBytes(StandardCharsets.UTF_8));
+            }
+
+            String hash;
+            try (InputStream inputStream = new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8))) {
+                hash = ContentHash.hash(inputStream);
+            }
+            Assert.assertTrue(dataManager.exists(binaryResource, ContentHash.SUB_RESOURCE));
+            try (InputStream inputStream = dataManager.getBinarySubResourceInputStream(binaryResource, ContentHash.SUB_RESOURCE);
+                 Scanner scanner = new Scanner(inputStream, "US-ASCII")) {
+                Assert.assertEquals(hash, scanner.useDelimiter("\\A").next());
+            }
+            Assert.assertEquals(hash, dataManager.getContentHash(binaryResource));
+        } finally {
+            FileIO.rmDir(vault.toFile());
+        }
+    }
+
+    private DataManagerBean createDataManagerWithQuota(long quota, long usage) {
+        EntityManager em = Mockito.mock(EntityManager.class);
+        Query sumQuery = Mockito.mock(Query.class);
+        Mockito.when(em.find(BinaryResource.class, binaryResource.getFullName())).thenReturn(binaryResource);
+        Mockito.when(em.createNamedQuery("StorageUsage.sumInWorkspace")).thenReturn(sumQuery);
+        Mockito.when(sumQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(sumQuery);
+        Mockito.when(sumQuery.getSingleResult()).thenReturn(usage);
+
+        DataManagerBean dataManager = new DataManagerBean();
+        Whitebox.setInternalState(dataManager, "em", em);
+        Whitebox.setInternalState(dataManager, "workspaceStorageQuota", quota);
+        return dataManager;
+    }
+
 }
\ No newline at end of file
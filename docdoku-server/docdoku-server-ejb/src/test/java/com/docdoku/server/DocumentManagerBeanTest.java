@@ -34,6 +34,7 @@ import com.docdoku.core.security.UserGroupMapping;
 import com.docdoku.core.services.*;
 import com.docdoku.server.esindexer.ESIndexer;
 import com.docdoku.server.esindexer.ESSearcher;
+import com.docdoku.server.security.WorkspaceAccessCache;
 import com.docdoku.server.util.DocumentUtil;
 import org.junit.Assert;
 import org.junit.Before;
@@ -45,6 +46,7 @@ import org.mockito.Mockito;
 
 import javax.ejb.SessionContext;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -80,9 +82,13 @@ public class DocumentManagerBeanTest {
     @Mock
     private IDataManagerLocal dataManager;
     @Mock
+    private WorkspaceAccessCache workspaceAccessCache;
+    @Mock
     private TypedQuery<DocumentIteration> documentIterationQuery;
     @Mock
     private TypedQuery<ACL> aclTypedQuery;
+    @Mock
+    private Query storageUsageQuery;
 
     private Account account;
     private Workspace workspace ;
@@ -111,6 +117,10 @@ public class DocumentManagerBeanTest {
         documentRevision.setLocation(folder);
         documentIteration.setDocumentRevision(documentRevision);
         documentRevision.setACL(acl);
+
+        Mockito.when(em.createNamedQuery("StorageUsage.add")).thenReturn(storageUsageQuery);
+        Mockito.when(storageUsageQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(storageUsageQuery);
+        Mockito.when(storageUsageQuery.executeUpdate()).thenReturn(1);
     }
 
     /**
@@ -132,6 +142,8 @@ public class DocumentManagerBeanTest {
         Assert.assertTrue(binaryResource.getContentLength() == DocumentUtil.DOCUMENT_SIZE);
         Assert.assertTrue(!binaryResource.getFullName().isEmpty());
         Assert.assertTrue(binaryResource.getFullName().equals(DocumentUtil.WORKSPACE_ID+"/document-templates/"+DocumentUtil.DOCUMENT_TEMPLATE_ID+"/"+ DocumentUtil.FILE1_NAME));
+        Mockito.verify(storageUsageQuery).setParameter("holderType", "document-templates");
+        Mockito.verify(storageUsageQuery).setParameter("delta", DocumentUtil.DOCUMENT_SIZE);
     }
 
     /**
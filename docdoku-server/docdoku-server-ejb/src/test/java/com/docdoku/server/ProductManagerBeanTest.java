@@ -34,6 +34,7 @@ import com.docdoku.server.dao.PartUsageLinkDAO;
 import com.docdoku.server.dao.PathToPathLinkDAO;
 import com.docdoku.server.esindexer.ESIndexer;
 import com.docdoku.server.products.ProductBaselineManagerBean;
+import com.docdoku.server.security.WorkspaceAccessCache;
 import com.docdoku.server.util.CyclicAssemblyRule;
 import com.docdoku.server.util.ProductUtil;
 import org.junit.Assert;
@@ -66,6 +67,8 @@ public class ProductManagerBeanTest {
     @Mock
     private ESIndexer esIndexer;
     @Mock
+    private WorkspaceAccessCache workspaceAccessCache;
+    @Mock
     TypedQuery<Tag> tagsQuery;
     @Mock
     ProductBaselineManagerBean productBaselineManager;
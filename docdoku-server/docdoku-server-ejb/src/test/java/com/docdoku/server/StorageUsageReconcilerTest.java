@@ -0,0 +1,108 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.docdoku.server;
+
+import com.docdoku.core.common.StorageUsage;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import javax.ejb.EJBException;
+import javax.ejb.SessionContext;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class StorageUsageReconcilerTest {
+
+    private static final String WORKSPACE_ID = "TestWorkspace";
+
+    @InjectMocks
+    private StorageUsageReconciler reconciler = new StorageUsageReconciler();
+
+    @Mock
+    private EntityManager em;
+    @Mock
+    private SessionContext ctx;
+    @Mock
+    private Query sumQuery;
+    @Mock
+    private TypedQuery<Object[]> contentLengthsQuery;
+    @Mock
+    private TypedQuery<StorageUsage> countersQuery;
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+        Mockito.when(em.createNamedQuery("StorageUsage.sumInWorkspace")).thenReturn(sumQuery);
+        Mockito.when(sumQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(sumQuery);
+        Mockito.when(em.createNamedQuery("BinaryResource.findContentLengthsInPath", Object[].class)).thenReturn(contentLengthsQuery);
+        Mockito.when(contentLengthsQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(contentLengthsQuery);
+        Mockito.when(em.createNamedQuery("StorageUsage.findInWorkspace", StorageUsage.class)).thenReturn(countersQuery);
+        Mockito.when(countersQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(countersQuery);
+    }
+
+    @Test
+    public void reconcileWorkspaceCorrectsTheCountersTest() {
+        List<Object[]> contentLengths = new ArrayList<>();
+        contentLengths.add(new Object[]{WORKSPACE_ID + "/documents/DOC-1/A/1/file.txt", 100L});
+        contentLengths.add(new Object[]{WORKSPACE_ID + "/part-templates/TEMPLATE-1/file.txt", 20L});
+        Mockito.when(contentLengthsQuery.getResultList()).thenReturn(contentLengths);
+        StorageUsage documents = new StorageUsage(WORKSPACE_ID, "documents", 500);
+        Mockito.when(countersQuery.getResultList()).thenReturn(Arrays.asList(documents));
+        Mockito.when(sumQuery.getSingleResult()).thenReturn(500L);
+
+        Assert.assertEquals(120, reconciler.reconcileWorkspace(WORKSPACE_ID));
+        Assert.assertEquals(100, documents.getBytes());
+    }
+
+    @Test
+    public void reconcileEmptyWorkspaceTest() {
+        Mockito.when(contentLengthsQuery.getResultList()).thenReturn(new ArrayList<Object[]>());
+        Mockito.when(countersQuery.getResultList()).thenReturn(new ArrayList<StorageUsage>());
+        Mockito.when(sumQuery.getSingleResult()).thenReturn(null);
+
+        Assert.assertEquals(0, reconciler.reconcileWorkspace(WORKSPACE_ID));
+        Mockito.verify(em, Mockito.times(StorageUsage.HOLDER_TYPES.length)).persist(Matchers.any(StorageUsage.class));
+    }
+
+    @Test
+    public void reconcileAllGoesOnAfterAFailureTest() {
+        StorageUsageReconciler self = Mockito.mock(StorageUsageReconciler.class);
+        Mockito.when(ctx.getBusinessObject(StorageUsageReconciler.class)).thenReturn(self);
+        Mockito.when(self.getWorkspaceIds()).thenReturn(Arrays.asList("workspace1", "workspace2"));
+        Mockito.when(self.reconcileWorkspace("workspace1")).thenThrow(new EJBException("Deadlock"));
+
+        reconciler.reconcileAll();
+        reconciler.reconcileAll();
+
+        Mockito.verify(self, Mockito.times(2)).reconcileWorkspace("workspace1");
+        Mockito.verify(self, Mockito.times(2)).reconcileWorkspace("workspace2");
+    }
+}
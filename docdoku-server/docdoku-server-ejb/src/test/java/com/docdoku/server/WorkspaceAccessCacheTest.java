@@ -0,0 +1,245 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server;
+
+import com.docdoku.core.common.Account;
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.UserGroup;
+import com.docdoku.core.common.Workspace;
+import com.docdoku.core.product.PartMaster;
+import com.docdoku.core.product.PartRevision;
+import com.docdoku.core.security.ACL;
+import com.docdoku.core.security.WorkspaceUserGroupMembership;
+import com.docdoku.core.services.IContextManagerLocal;
+import com.docdoku.server.events.WorkspaceAccessEvent;
+import com.docdoku.server.security.WorkspaceAccess;
+import com.docdoku.server.security.WorkspaceAccessCache;
+import com.docdoku.server.security.WorkspaceAccessContext;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.enterprise.event.Event;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Reads pages of part revisions, the caller being active in the workspace through a group and the
+ * parts having ACLs on this group, to check which lookups the workspace access cache saves.
+ *
+ * The entity manager is mocked, so the number of SQL statements saved is not measured here: only
+ * that the memberships and groups of the caller are not looked up again while the access is cached.
+ */
+public class WorkspaceAccessCacheTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final String MEMBERSHIPS_LOOKUP = "memberships";
+    private static final String GROUPS_LOOKUP = "UserGroup.findUserGroups";
+
+    private Workspace workspace;
+    private User user;
+    private UserGroup group;
+    private WorkspaceUserGroupMembership groupMembership;
+    private List<PartRevision> partRevisions = new ArrayList<>();
+    private Map<Object, Object> entities = new HashMap<>();
+
+    // Lookups of the access of the caller made by the last page
+    private Set<String> lookups = new HashSet<>();
+
+    private WorkspaceAccessCache cache;
+    private boolean uncachedContext;
+    private ProductManagerBean productManagerBean;
+    private UserManagerBean userManagerBean;
+
+    @Before
+    public void setup() throws Exception {
+        Account admin = new Account("admin", "admin", "admin@docdoku.com", "en", new Date(), null);
+        workspace = new Workspace("workspace", admin, "", false);
+        user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+        group = new UserGroup(workspace, "designers");
+        group.addUser(user);
+        groupMembership = new WorkspaceUserGroupMembership(workspace, group);
+        UserGroup otherGroup = new UserGroup(workspace, "reviewers");
+
+        entities.put(user.getKey(), user);
+        entities.put(workspace.getId(), workspace);
+
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            PartRevision partRevision = new PartRevision(new PartMaster(workspace, "P" + i, user), "A", user);
+            ACL acl = new ACL();
+            // One part out of five is only readable by another group
+            acl.addEntry(i % 5 == 0 ? otherGroup : group, ACL.Permission.READ_ONLY);
+            partRevision.setACL(acl);
+            partRevisions.add(partRevision);
+            entities.put(partRevision.getKey(), partRevision);
+        }
+
+        cache = new WorkspaceAccessCache();
+    }
+
+    @Test
+    public void testWarmCacheSkipsAccessLookups() throws Exception {
+        createBeans(cache, false);
+        getPage();
+        Assert.assertEquals(new HashSet<>(Arrays.asList(MEMBERSHIPS_LOOKUP, GROUPS_LOOKUP)), lookups);
+
+        getPage();
+        Assert.assertTrue(lookups.isEmpty());
+    }
+
+    @Test
+    public void testUncachedAccessIsLookedUpOnEachPage() throws Exception {
+        createBeans(new UncachedWorkspaceAccessCache(), true);
+        getPage();
+        getPage();
+        Assert.assertTrue(lookups.contains(GROUPS_LOOKUP));
+    }
+
+    @Test
+    public void testAccessChangeEvictsTheCache() throws Exception {
+        createBeans(cache, false);
+        getPage();
+        getPage();
+
+        cache.evict(workspace.getId());
+        getPage();
+        Assert.assertTrue(lookups.contains(GROUPS_LOOKUP));
+    }
+
+    @Test
+    public void testSameParts() throws Exception {
+        createBeans(new UncachedWorkspaceAccessCache(), true);
+        List<PartRevision> uncached = getPage();
+
+        createBeans(cache, false);
+        List<PartRevision> cold = getPage();
+        List<PartRevision> warm = getPage();
+
+        Assert.assertEquals(PAGE_SIZE * 4 / 5, uncached.size());
+        Assert.assertEquals(uncached, cold);
+        Assert.assertEquals(uncached, warm);
+    }
+
+    @Test
+    public void testResolvedAccess() throws Exception {
+        createBeans(cache, false);
+        getPage();
+
+        WorkspaceAccess access = cache.get(user.getLogin(), workspace.getId());
+        Assert.assertTrue(access.hasReadAccess());
+        Assert.assertTrue(access.hasWriteAccess());
+        Assert.assertEquals(Collections.singleton(group.getId()), access.getUserGroupIds());
+    }
+
+    // Each page is a new request
+    private List<PartRevision> getPage() throws Exception {
+        lookups.clear();
+        inject(userManagerBean, "workspaceAccessContext", uncachedContext ? new UncachedWorkspaceAccessContext() : new WorkspaceAccessContext());
+        return productManagerBean.getPartRevisions(workspace.getId(), 0, PAGE_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void createBeans(WorkspaceAccessCache workspaceAccessCache, boolean uncached) throws Exception {
+        uncachedContext = uncached;
+        EntityManager em = createEntityManager();
+
+        IContextManagerLocal contextManager = Mockito.mock(IContextManagerLocal.class);
+        Mockito.when(contextManager.getCallerPrincipalLogin()).thenReturn(user.getLogin());
+        Event<WorkspaceAccessEvent> workspaceAccessEvent = Mockito.mock(Event.class);
+        Mockito.when(workspaceAccessEvent.select(Mockito.<Annotation>anyVararg())).thenReturn(workspaceAccessEvent);
+
+        userManagerBean = new UserManagerBean();
+        inject(userManagerBean, "em", em);
+        inject(userManagerBean, "contextManager", contextManager);
+        inject(userManagerBean, "workspaceAccessEvent", workspaceAccessEvent);
+        inject(userManagerBean, "workspaceAccessCache", workspaceAccessCache);
+
+        productManagerBean = new ProductManagerBean();
+        inject(productManagerBean, "em", em);
+        inject(productManagerBean, "userManager", userManagerBean);
+        inject(productManagerBean, "workspaceAccessCache", workspaceAccessCache);
+    }
+
+    private EntityManager createEntityManager() {
+        EntityManager em = Mockito.mock(EntityManager.class);
+
+        // No membership of the caller itself, it is active through its group
+        Mockito.doAnswer(invocation -> entities.get(invocation.getArguments()[1]))
+                .when(em).find(Mockito.any(Class.class), Mockito.any());
+
+        Mockito.doAnswer(invocation -> createQuery(MEMBERSHIPS_LOOKUP, groupMembership))
+                .when(em).createQuery(Mockito.anyString(), Mockito.any(Class.class));
+        Mockito.doAnswer(invocation -> GROUPS_LOOKUP.equals(invocation.getArguments()[0]) ?
+                createQuery(GROUPS_LOOKUP, group) : createQuery(null, partRevisions.toArray()))
+                .when(em).createNamedQuery(Mockito.anyString(), Mockito.any(Class.class));
+
+        return em;
+    }
+
+    @SuppressWarnings("unchecked")
+    private TypedQuery<Object> createQuery(String lookup, Object... results) {
+        TypedQuery<Object> query = Mockito.mock(TypedQuery.class);
+        Mockito.when(query.setParameter(Mockito.anyString(), Mockito.any())).thenReturn(query);
+        Mockito.when(query.setFirstResult(Mockito.anyInt())).thenReturn(query);
+        Mockito.when(query.setMaxResults(Mockito.anyInt())).thenReturn(query);
+        Mockito.when(query.getResultList()).thenAnswer(invocation -> {
+            if (lookup != null) {
+                lookups.add(lookup);
+            }
+            return new ArrayList<>(Arrays.asList(results));
+        });
+        return query;
+    }
+
+    private static void inject(Object bean, String name, Object value) throws Exception {
+        Field field = bean.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(bean, value);
+    }
+
+    /**
+     * Resolves the access on each check, as it was before being cached.
+     */
+    private static class UncachedWorkspaceAccessCache extends WorkspaceAccessCache {
+
+        @Override
+        public WorkspaceAccess get(String login, String workspaceId) {
+            return null;
+        }
+
+        @Override
+        public void put(WorkspaceAccess access) {
+        }
+    }
+
+    private static class UncachedWorkspaceAccessContext extends WorkspaceAccessContext {
+
+        @Override
+        public WorkspaceAccess get(String login, String workspaceId, long generation) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.configuration;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class PersistentListTest {
+
+    @Test
+    public void testAppendSharesPrefix() {
+        PersistentList<String> root = PersistentList.<String>empty().append("a");
+        PersistentList<String> left = root.append("b");
+        PersistentList<String> right = root.append("c");
+
+        Assert.assertEquals(Arrays.asList("a"), root);
+        Assert.assertEquals(Arrays.asList("a", "b"), left);
+        Assert.assertEquals(Arrays.asList("a", "c"), right);
+        Assert.assertEquals("c", right.getLast());
+    }
+
+    @Test
+    public void testContains() {
+        PersistentList<String> list = PersistentList.of(Arrays.asList("a", "b", "c"));
+
+        Assert.assertTrue(list.contains("a"));
+        Assert.assertTrue(list.contains("c"));
+        Assert.assertFalse(list.contains("d"));
+        Assert.assertFalse(PersistentList.empty().contains("a"));
+    }
+
+    @Test
+    public void testIterationOrder() {
+        List<Integer> expected = Arrays.asList(1, 2, 3, 4);
+        PersistentList<Integer> list = PersistentList.of(expected);
+
+        int i = 0;
+        for (Integer value : list) {
+            Assert.assertEquals(expected.get(i++), value);
+        }
+        Assert.assertEquals(expected.size(), i);
+    }
+
+    @Test
+    public void testGetByIndex() {
+        List<String> expected = Arrays.asList("a", "b", "c");
+        PersistentList<String> list = PersistentList.of(expected);
+
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i), list.get(i));
+        }
+        Assert.assertEquals("b", list.append("d").get(1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorIsImmutable() {
+        PersistentList.of(Arrays.asList("a", "b")).listIterator().set("c");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        PersistentList.of(Arrays.asList("a", "b")).add("c");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        PersistentList.of(Arrays.asList("a")).get(1);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.configuration;
+
+import com.docdoku.core.common.Account;
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.Workspace;
+import com.docdoku.core.product.Component;
+import com.docdoku.core.product.ConfigurationItemKey;
+import com.docdoku.core.product.PartLink;
+import com.docdoku.core.product.PartMaster;
+import com.docdoku.core.product.PartSubstituteLink;
+import com.docdoku.core.product.PartUsageLink;
+import com.docdoku.server.configuration.filter.LatestPSFilter;
+import com.docdoku.server.configuration.filter.WIPPSFilter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+public class ProductStructureCacheTest {
+
+    private ProductStructureCache cache;
+    private User user;
+    private ConfigurationItemKey ciKey = new ConfigurationItemKey("workspace", "product");
+
+    private PartMaster root;
+    private PartMaster child;
+    private PartMaster other;
+    private PartUsageLink link;
+    private EntityManager em;
+    private List<PartLink> rootPath = Collections.emptyList();
+
+    @Before
+    public void setup() {
+        Workspace workspace = new Workspace("workspace");
+        user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+        cache = new ProductStructureCache();
+        root = new PartMaster(workspace, "root");
+        child = new PartMaster(workspace, "child");
+        other = new PartMaster(workspace, "other");
+        link = new PartUsageLink(child, 1, null, false);
+        link.setId(42);
+
+        em = Mockito.mock(EntityManager.class);
+        mockQuery("PartMaster.findByNumbersFetchRevisions", PartMaster.class, Arrays.asList(root, child));
+        mockQuery("PartUsageLink.findByIds", PartUsageLink.class, Collections.singletonList(link));
+        mockQuery("PartSubstituteLink.findByIds", PartSubstituteLink.class, Collections.<PartSubstituteLink>emptyList());
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        String key = cache.getKey(ciKey, new LatestPSFilter(user), null, -1);
+        Assert.assertNull(cache.get(key, em, rootPath));
+
+        Component component = createStructure();
+        cache.put(key, component, null, cache.getGeneration());
+
+        Component cached = cache.get(key, em, rootPath);
+        Assert.assertNotSame(component, cached);
+        Assert.assertSame(root, cached.getPartMaster());
+        Assert.assertEquals(1, cached.getComponents().size());
+        Assert.assertSame(child, cached.getComponents().get(0).getPartMaster());
+        Assert.assertSame(link, cached.getComponents().get(0).getPartLink());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testHitIsLoadedInBatch() {
+        String key = cache.getKey(ciKey, new LatestPSFilter(user), null, -1);
+        cache.put(key, createStructure(), null, cache.getGeneration());
+
+        Assert.assertNotNull(cache.get(key, em, rootPath));
+        Mockito.verify(em, Mockito.times(1)).createNamedQuery("PartMaster.findByNumbersFetchRevisions", PartMaster.class);
+        Mockito.verify(em, Mockito.times(1)).createNamedQuery("PartUsageLink.findByIds", PartUsageLink.class);
+        Mockito.verify(em, Mockito.never()).find(Matchers.any(Class.class), Matchers.any());
+    }
+
+    @Test
+    public void testRemovedEntityIsAMiss() {
+        String key = cache.getKey(ciKey, new LatestPSFilter(user), null, -1);
+        cache.put(key, createStructure(), null, cache.getGeneration());
+
+        mockQuery("PartUsageLink.findByIds", PartUsageLink.class, Collections.<PartUsageLink>emptyList());
+        Assert.assertNull(cache.get(key, em, rootPath));
+    }
+
+    @Test
+    public void testUncachableFilter() {
+        Assert.assertNull(cache.getKey(ciKey, new WIPPSFilter(user), null, -1));
+    }
+
+    @Test
+    public void testEvictOnlyAffectedStructures() {
+        String key = cache.getKey(ciKey, new LatestPSFilter(user), null, -1);
+        cache.put(key, createStructure(), null, cache.getGeneration());
+
+        cache.evict(other);
+        Assert.assertNotNull(cache.get(key, em, rootPath));
+        Assert.assertEquals(0, cache.getEvictions());
+
+        cache.evict(child);
+        Assert.assertNull(cache.get(key, em, rootPath));
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testStructureResolvedDuringChangeIsNotStored() {
+        String key = cache.getKey(ciKey, new LatestPSFilter(user), null, -1);
+        long generation = cache.getGeneration();
+
+        cache.evict(child);
+        cache.put(key, createStructure(), null, generation);
+
+        Assert.assertNull(cache.get(key, em, rootPath));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void mockQuery(String name, Class<T> resultClass, List<T> results) {
+        TypedQuery<T> query = Mockito.mock(TypedQuery.class);
+        Mockito.when(query.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(query);
+        Mockito.when(query.setFlushMode(Matchers.any(FlushModeType.class))).thenReturn(query);
+        Mockito.when(query.getResultList()).thenReturn(results);
+        Mockito.when(em.createNamedQuery(name, resultClass)).thenReturn(query);
+    }
+
+    private Component createStructure() {
+        Component childComponent = new Component(user, child, Collections.singletonList(link), new ArrayList<>());
+        return new Component(user, root, new ArrayList<>(), new ArrayList<>(Arrays.asList(childComponent)));
+    }
+}
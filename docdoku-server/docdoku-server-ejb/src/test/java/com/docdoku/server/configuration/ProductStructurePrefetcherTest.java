@@ -0,0 +1,223 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.configuration;
+
+import com.docdoku.core.common.Account;
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.Workspace;
+import com.docdoku.core.configuration.PSFilter;
+import com.docdoku.core.product.*;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
+import java.util.*;
+
+/**
+ * Checks which parts and links are prefetched during a structure walk.
+ *
+ * The entity manager is mocked, so the number of SQL statements saved is not measured here: only
+ * that each level is prefetched with set based queries covering its parts and links once.
+ */
+public class ProductStructurePrefetcherTest {
+
+    // 1 + 10 + 100 + 1000 nodes
+    private static final int BRANCHING = 10;
+    private static final int DEPTH = 3;
+
+    private Workspace workspace = new Workspace("workspace");
+    private User user;
+    private EntityManager em;
+    private PartMaster root;
+    private int nextLinkId = 1;
+
+    private Map<String, PartMaster> partMasters = new HashMap<>();
+    private List<Integer> linkIds = new ArrayList<>();
+
+    // Values given to each prefetch query, by query name
+    private Map<String, List<Object>> prefetchedValues = new HashMap<>();
+
+    @Before
+    public void setup() {
+        user = new User(workspace, new Account("user1", "user1", "user1@docdoku.com", "en", new Date(), null));
+        root = createPart("P", 0);
+        em = createEntityManager();
+    }
+
+    @Test
+    public void testPrefetchingKeepsTheSameStructure() throws Exception {
+        Assert.assertEquals(countComponents(visit(false).getComponent()), countComponents(visit(true).getComponent()));
+        Assert.assertEquals(partMasters.size(), countComponents(visit(true).getComponent()));
+    }
+
+    @Test
+    public void testEachPartAndLinkIsPrefetchedOnce() throws Exception {
+        visit(true);
+
+        Set<String> children = new HashSet<>(partMasters.keySet());
+        children.remove(root.getNumber());
+        assertPrefetchedOnce(children, "PartMaster.findByNumbersFetchRevisions");
+        assertPrefetchedOnce(children, "PartRevision.findByPartNumbersFetchIterations");
+        assertPrefetchedOnce(children, "PartIteration.findByPartNumbersFetchComponents");
+        assertPrefetchedOnce(new HashSet<>(linkIds), "PartUsageLink.findByIdsFetchSubstitutes");
+        assertPrefetchedOnce(new HashSet<>(linkIds), "PartUsageLink.findByIdsFetchCADInstances");
+    }
+
+    @Test
+    public void testNothingIsPrefetchedWhenDisabled() throws Exception {
+        visit(false);
+        Assert.assertTrue(prefetchedValues.isEmpty());
+    }
+
+    private void assertPrefetchedOnce(Set<?> expected, String queryName) {
+        List<Object> values = prefetchedValues.get(queryName);
+        Assert.assertNotNull(queryName + " not run", values);
+        Assert.assertEquals(queryName + " prefetched a value twice", new HashSet<>(values).size(), values.size());
+        Assert.assertEquals(expected, new HashSet<>(values));
+    }
+
+    private PSFilterVisitor visit(boolean prefetching) throws Exception {
+        PSFilterVisitor visitor = new PSFilterVisitor(em, user, new LatestPSFilter()) {
+            @Override
+            public void onIndeterminateVersion(PartMaster partMaster, List<PartIteration> partIterations) {
+            }
+
+            @Override
+            public void onUnresolvedVersion(PartMaster partMaster) {
+            }
+
+            @Override
+            public void onIndeterminatePath(List<PartLink> pCurrentPath, List<PartIteration> pCurrentPathPartIterations) {
+            }
+
+            @Override
+            public void onUnresolvedPath(List<PartLink> pCurrentPath, List<PartIteration> partIterations) {
+            }
+
+            @Override
+            public void onBranchDiscovered(List<PartLink> pCurrentPath, List<PartIteration> copyPartIteration) {
+            }
+
+            @Override
+            public void onOptionalPath(List<PartLink> path, List<PartIteration> partIterations) {
+            }
+
+            @Override
+            public boolean onPathWalk(List<PartLink> path, List<PartMaster> parts) {
+                return true;
+            }
+        };
+        visitor.setPrefetching(prefetching);
+        visitor.visit(root, -1);
+        return visitor;
+    }
+
+    private int countComponents(Component component) {
+        int count = 1;
+        for (Component child : component.getComponents()) {
+            count += countComponents(child);
+        }
+        return count;
+    }
+
+    private PartMaster createPart(String number, int depth) {
+        PartMaster partMaster = new PartMaster(workspace, number, user);
+        PartRevision partRevision = new PartRevision(partMaster, "A", user);
+        PartIteration partIteration = new PartIteration(partRevision, user);
+        partRevision.setPartIterations(new ArrayList<>(Collections.singletonList(partIteration)));
+        partMaster.setPartRevisions(new ArrayList<>(Collections.singletonList(partRevision)));
+        partMasters.put(number, partMaster);
+
+        List<PartUsageLink> links = new ArrayList<>();
+        if (depth < DEPTH) {
+            for (int i = 0; i < BRANCHING; i++) {
+                links.add(createLink(createPart(number + "-" + i, depth + 1)));
+            }
+        }
+        partIteration.setComponents(links);
+        return partMaster;
+    }
+
+    private PartUsageLink createLink(PartMaster component) {
+        PartUsageLink link = new PartUsageLink(component, 1, null, false);
+        link.setId(nextLinkId++);
+        link.setCadInstances(new ArrayList<>(Collections.singletonList(new CADInstance(0, 0, 0, 0, 0, 0))));
+        link.setSubstitutes(new ArrayList<>());
+        linkIds.add(link.getId());
+        return link;
+    }
+
+    private EntityManager createEntityManager() {
+        EntityManager entityManager = Mockito.mock(EntityManager.class);
+
+        Mockito.doAnswer(invocation -> partMasters.get(((PartMasterKey) invocation.getArguments()[1]).getNumber()))
+                .when(entityManager).find(Mockito.eq(PartMaster.class), Mockito.any());
+
+        Mockito.doAnswer(invocation -> createQuery((String) invocation.getArguments()[0]))
+                .when(entityManager).createNamedQuery(Mockito.anyString(), Mockito.any(Class.class));
+
+        return entityManager;
+    }
+
+    @SuppressWarnings("unchecked")
+    private TypedQuery<Object> createQuery(String name) {
+        TypedQuery<Object> query = Mockito.mock(TypedQuery.class);
+
+        Mockito.when(query.setParameter(Mockito.anyString(), Mockito.any())).thenAnswer(invocation -> {
+            if (invocation.getArguments()[1] instanceof Collection) {
+                List<Object> values = prefetchedValues.get(name);
+                if (values == null) {
+                    values = new ArrayList<>();
+                    prefetchedValues.put(name, values);
+                }
+                values.addAll((Collection<?>) invocation.getArguments()[1]);
+            }
+            return query;
+        });
+        Mockito.when(query.setFlushMode(Mockito.any(FlushModeType.class))).thenReturn(query);
+        Mockito.when(query.getResultList()).thenReturn(new ArrayList<>());
+        return query;
+    }
+
+    /**
+     * Retains the last iteration of each part, and substitutes as alternative paths.
+     */
+    private static class LatestPSFilter extends PSFilter {
+
+        @Override
+        public List<PartIteration> filter(PartMaster partMaster) {
+            return Collections.singletonList(partMaster.getLastRevision().getLastIteration());
+        }
+
+        @Override
+        public List<PartLink> filter(List<PartLink> path) {
+            PartLink link = path.get(path.size() - 1);
+            List<PartLink> links = new ArrayList<>();
+            links.add(link);
+            links.addAll(link.getSubstitutes());
+            return links;
+        }
+    }
+}
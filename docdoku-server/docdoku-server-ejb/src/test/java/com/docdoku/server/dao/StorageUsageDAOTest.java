@@ -0,0 +1,196 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.docdoku.server.dao;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.StorageUsage;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class StorageUsageDAOTest {
+
+    private static final String WORKSPACE_ID = "TestWorkspace";
+
+    @Mock
+    private EntityManager em;
+    @Mock
+    private Query addQuery;
+    @Mock
+    private TypedQuery<Object[]> contentLengthsQuery;
+    @Mock
+    private TypedQuery<StorageUsage> countersQuery;
+
+    private StorageUsageDAO storageUsageDAO;
+
+    @Before
+    public void setup() throws Exception {
+        initMocks(this);
+        Mockito.when(em.createNamedQuery("StorageUsage.add")).thenReturn(addQuery);
+        Mockito.when(addQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(addQuery);
+        Mockito.when(addQuery.executeUpdate()).thenReturn(1);
+        Mockito.when(em.createNamedQuery("BinaryResource.findContentLengthsInPath", Object[].class)).thenReturn(contentLengthsQuery);
+        Mockito.when(contentLengthsQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(contentLengthsQuery);
+        Mockito.when(em.createNamedQuery("StorageUsage.findInWorkspace", StorageUsage.class)).thenReturn(countersQuery);
+        Mockito.when(countersQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(countersQuery);
+        storageUsageDAO = new StorageUsageDAO(em);
+    }
+
+    @Test
+    public void addUsageIncrementsTheCounterInPlaceTest() {
+        storageUsageDAO.addUsage(WORKSPACE_ID, "parts", 100);
+
+        Mockito.verify(addQuery).setParameter("workspaceId", WORKSPACE_ID);
+        Mockito.verify(addQuery).setParameter("holderType", "parts");
+        Mockito.verify(addQuery).setParameter("delta", 100L);
+        Mockito.verify(addQuery).executeUpdate();
+        Mockito.verify(em, Mockito.never()).persist(Matchers.any());
+    }
+
+    @Test
+    public void addUsageDoesNotInsertAMissingCounterTest() {
+        Mockito.when(addQuery.executeUpdate()).thenReturn(0);
+
+        storageUsageDAO.addUsage(WORKSPACE_ID, "parts", 100);
+
+        Mockito.verify(em, Mockito.never()).persist(Matchers.any());
+        Mockito.verify(em, Mockito.never()).flush();
+    }
+
+    @Test
+    public void emptyDeltaIsNotWrittenTest() {
+        storageUsageDAO.addUsage(WORKSPACE_ID, "parts", 0);
+
+        Mockito.verify(em, Mockito.never()).createNamedQuery("StorageUsage.add");
+    }
+
+    @Test
+    public void createUsageCreatesEmptyCountersTest() {
+        storageUsageDAO.createUsage(WORKSPACE_ID);
+
+        ArgumentCaptor<StorageUsage> captor = ArgumentCaptor.forClass(StorageUsage.class);
+        Mockito.verify(em, Mockito.times(StorageUsage.HOLDER_TYPES.length)).persist(captor.capture());
+        Set<String> holderTypes = new HashSet<>();
+        for (StorageUsage counter : captor.getAllValues()) {
+            Assert.assertEquals(WORKSPACE_ID, counter.getWorkspaceId());
+            Assert.assertEquals(0, counter.getBytes());
+            holderTypes.add(counter.getHolderType());
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList(StorageUsage.HOLDER_TYPES)), holderTypes);
+        Mockito.verify(em).flush();
+    }
+
+    @Test
+    public void releaseUsageIsGroupedByHolderTypeTest() {
+        List<BinaryResource> binaryResources = new ArrayList<>();
+        binaryResources.add(new BinaryResource(WORKSPACE_ID + "/documents/DOC-1/A/1/file1.txt", 100, new Date()));
+        binaryResources.add(new BinaryResource(WORKSPACE_ID + "/documents/DOC-1/A/1/file2.txt", 200, new Date()));
+        binaryResources.add(new BinaryResource(WORKSPACE_ID + "/parts/PART-1/A/1/nativecad/part.stp", 50, new Date()));
+
+        storageUsageDAO.releaseUsage(binaryResources);
+
+        Mockito.verify(addQuery, Mockito.times(2)).executeUpdate();
+        Mockito.verify(addQuery).setParameter("delta", -300L);
+        Mockito.verify(addQuery).setParameter("delta", -50L);
+        Mockito.verify(addQuery).setParameter("holderType", "documents");
+        Mockito.verify(addQuery).setParameter("holderType", "parts");
+    }
+
+    @Test
+    public void removedBinaryResourceIsReleasedTest() {
+        BinaryResource binaryResource = new BinaryResource(WORKSPACE_ID + "/document-templates/TEMPLATE-1/file.txt", 100, new Date());
+
+        new BinaryResourceDAO(em).removeBinaryResource(binaryResource);
+
+        Mockito.verify(em).remove(binaryResource);
+        Mockito.verify(addQuery).setParameter("holderType", "document-templates");
+        Mockito.verify(addQuery).setParameter("delta", -100L);
+    }
+
+    @Test
+    public void replacedContentIsAccountedForTest() {
+        BinaryResource binaryResource = new BinaryResource(WORKSPACE_ID + "/parts/PART-1/A/1/attachedfiles/file.txt", 100, new Date());
+
+        new BinaryResourceDAO(em).updateContentLength(binaryResource, 40);
+
+        Assert.assertEquals(40, binaryResource.getContentLength());
+        Mockito.verify(addQuery).setParameter("holderType", "parts");
+        Mockito.verify(addQuery).setParameter("delta", -60L);
+    }
+
+    @Test
+    public void rebuildUsageSetsTheCountersTest() {
+        List<Object[]> contentLengths = new ArrayList<>();
+        contentLengths.add(new Object[]{WORKSPACE_ID + "/documents/DOC-1/A/1/file1.txt", 100L});
+        contentLengths.add(new Object[]{WORKSPACE_ID + "/documents/DOC-2/A/1/file2.txt", 200L});
+        contentLengths.add(new Object[]{WORKSPACE_ID + "/parts/PART-1/A/1/nativecad/part.stp", 50L});
+        Mockito.when(contentLengthsQuery.getResultList()).thenReturn(contentLengths);
+
+        StorageUsage documents = new StorageUsage(WORKSPACE_ID, "documents", 1000);
+        StorageUsage productInstances = new StorageUsage(WORKSPACE_ID, "product-instances", 10);
+        Mockito.when(countersQuery.getResultList()).thenReturn(Arrays.asList(documents, productInstances));
+
+        Map<String, Long> usage = storageUsageDAO.rebuildUsage(WORKSPACE_ID);
+
+        Mockito.verify(contentLengthsQuery).setParameter("path", WORKSPACE_ID + "/%");
+        Assert.assertEquals(300L, (long) usage.get("documents"));
+        Assert.assertEquals(50L, (long) usage.get("parts"));
+        Assert.assertEquals(0L, (long) usage.get("product-instances"));
+        Assert.assertEquals(300, documents.getBytes());
+        Assert.assertEquals(0, productInstances.getBytes());
+
+        // The counters missing are created, the existing ones are kept
+        ArgumentCaptor<StorageUsage> captor = ArgumentCaptor.forClass(StorageUsage.class);
+        Mockito.verify(em, Mockito.times(StorageUsage.HOLDER_TYPES.length - 2)).persist(captor.capture());
+        for (StorageUsage counter : captor.getAllValues()) {
+            Assert.assertEquals(usage.get(counter.getHolderType()).longValue(), counter.getBytes());
+            Assert.assertNotEquals("documents", counter.getHolderType());
+            Assert.assertNotEquals("product-instances", counter.getHolderType());
+        }
+        Mockito.verify(em, Mockito.never()).createNamedQuery("StorageUsage.removeInWorkspace");
+    }
+
+    @Test
+    public void rebuildUsageEscapesTheWorkspaceIdTest() {
+        Mockito.when(contentLengthsQuery.getResultList()).thenReturn(new ArrayList<Object[]>());
+        Mockito.when(countersQuery.getResultList()).thenReturn(new ArrayList<StorageUsage>());
+
+        new StorageUsageDAO(em).rebuildUsage("my_workspace%");
+
+        Mockito.verify(contentLengthsQuery).setParameter("path", "my\\_workspace\\%/%");
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.esindexer;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.services.IDataManagerLocal;
+import com.docdoku.core.util.FileIO;
+import com.docdoku.server.storage.ContentHash;
+import com.docdoku.server.storage.filesystem.FileStorageProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Scanner;
+
+public class ESFullTextCacheTest {
+
+    private Path vault;
+    private FileStorageProvider storageProvider;
+    private IDataManagerLocal dataManager;
+    private BinaryResource binaryResource;
+
+    @Before
+    public void setUp() throws Exception {
+        vault = Files.createTempDirectory("vault");
+        storageProvider = new FileStorageProvider(vault.toString());
+        binaryResource = new BinaryResource("workspace/documents/D1/A/1/notes.txt", 7, new Date());
+        write("content");
+
+        dataManager = Mockito.mock(IDataManagerLocal.class);
+        Mockito.when(dataManager.getBinaryResourceInputStream(binaryResource)).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                return storageProvider.getBinaryResourceInputStream(binaryResource);
+            }
+        });
+        Mockito.when(dataManager.getContentHash(binaryResource)).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) throws Throwable {
+                try (InputStream inputStream = storageProvider.getBinaryResourceInputStream(binaryResource)) {
+                    return ContentHash.hash(inputStream);
+                }
+            }
+        });
+        Mockito.when(dataManager.exists(binaryResource, ESFullTextCache.FULL_TEXT_SUB_RESOURCE)).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                return storageProvider.exists(binaryResource, ESFullTextCache.FULL_TEXT_SUB_RESOURCE);
+            }
+        });
+        Mockito.when(dataManager.getBinarySubResourceInputStream(binaryResource, ESFullTextCache.FULL_TEXT_SUB_RESOURCE)).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                return storageProvider.getBinarySubResourceInputStream(binaryResource, ESFullTextCache.FULL_TEXT_SUB_RESOURCE);
+            }
+        });
+        Mockito.when(dataManager.getBinarySubResourceOutputStream(binaryResource, ESFullTextCache.FULL_TEXT_SUB_RESOURCE)).thenAnswer(new Answer<OutputStream>() {
+            @Override
+            public OutputStream answer(InvocationOnMock invocation) throws Throwable {
+                return storageProvider.getBinarySubResourceOutputStream(binaryResource, ESFullTextCache.FULL_TEXT_SUB_RESOURCE);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        FileIO.rmDir(vault.toFile());
+    }
+
+    @Test
+    public void testTextIsCachedWithContentHash() throws Exception {
+        ESFullTextCache fullTextCache = new ESFullTextCache(dataManager, 1024);
+
+        Assert.assertEquals("content", fullTextCache.getText(binaryResource));
+        String cached = readCache();
+        Assert.assertEquals(hash("content") + "\ncontent", cached);
+
+        // Same content, the cached text is used without reading the file again
+        writeCache(hash("content") + "\ncached text");
+        Assert.assertEquals("cached text", fullTextCache.getText(binaryResource));
+        Mockito.verify(dataManager, Mockito.times(1)).getBinaryResourceInputStream(binaryResource);
+    }
+
+    @Test
+    public void testTextIsReusedWhenContentIsUnchanged() throws Exception {
+        ESFullTextCache fullTextCache = new ESFullTextCache(dataManager, 1024);
+        fullTextCache.getText(binaryResource);
+
+        // Uploaded again, or copied to a new iteration
+        write("content");
+        binaryResource.setLastModified(new Date(binaryResource.getLastModified().getTime() + 1000));
+
+        Assert.assertEquals("content", fullTextCache.getText(binaryResource));
+        Mockito.verify(dataManager, Mockito.times(1)).getBinaryResourceInputStream(binaryResource);
+    }
+
+    @Test
+    public void testTextIsExtractedAgainWhenFileChanges() throws Exception {
+        ESFullTextCache fullTextCache = new ESFullTextCache(dataManager, 1024);
+        fullTextCache.getText(binaryResource);
+
+        write("changed");
+        binaryResource.setLastModified(new Date(binaryResource.getLastModified().getTime() + 1000));
+
+        Assert.assertEquals("changed", fullTextCache.getText(binaryResource));
+        Assert.assertTrue(readCache().endsWith("\nchanged"));
+    }
+
+    @Test
+    public void testTextOfAnotherFileIsNotUsed() throws Exception {
+        ESFullTextCache fullTextCache = new ESFullTextCache(dataManager, 1024);
+        writeCache(hash("another") + "\ncopied text");
+
+        Assert.assertEquals("content", fullTextCache.getText(binaryResource));
+    }
+
+    @Test
+    public void testLargeFilesAreNotExtracted() throws Exception {
+        ESFullTextCache fullTextCache = new ESFullTextCache(dataManager, 4);
+
+        Assert.assertEquals(" ", fullTextCache.getText(binaryResource));
+        Mockito.verify(dataManager, Mockito.never()).getBinaryResourceInputStream(binaryResource);
+    }
+
+    private void write(String content) throws Exception {
+        try (OutputStream outputStream = storageProvider.getBinaryResourceOutputStream(binaryResource)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String hash(String content) throws Exception {
+        try (InputStream inputStream = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))) {
+            return ContentHash.hash(inputStream);
+        }
+    }
+
+    private void writeCache(String content) throws Exception {
+        try (OutputStream outputStream = storageProvider.getBinarySubResourceOutputStream(binaryResource, ESFullTextCache.FULL_TEXT_SUB_RESOURCE)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String readCache() throws Exception {
+        try (InputStream inputStream = storageProvider.getBinarySubResourceInputStream(binaryResource, ESFullTextCache.FULL_TEXT_SUB_RESOURCE);
+             Scanner scanner = new Scanner(inputStream, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+}
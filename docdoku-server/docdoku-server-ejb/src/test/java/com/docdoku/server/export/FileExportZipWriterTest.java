@@ -0,0 +1,165 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.docdoku.server.export;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.services.IDataManagerLocal;
+import com.docdoku.core.util.FileIO;
+import com.docdoku.server.storage.ContentHash;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class FileExportZipWriterTest {
+
+    private Path vault;
+    private Path archive;
+    private ExecutorService executor;
+    private IDataManagerLocal dataManager;
+
+    @Before
+    public void setUp() throws Exception {
+        vault = Files.createTempDirectory("vault");
+        archive = Files.createTempFile("export", ".zip");
+        executor = Executors.newFixedThreadPool(2);
+        dataManager = Mockito.mock(IDataManagerLocal.class);
+        Mockito.when(dataManager.getBinaryResourceInputStream(Mockito.any(BinaryResource.class))).thenAnswer(
+                invocation -> new FileInputStream(getFile((BinaryResource) invocation.getArguments()[0])));
+        Mockito.when(dataManager.getContentHash(Mockito.any(BinaryResource.class))).thenAnswer(invocation -> {
+            try (InputStream inputStream = new FileInputStream(getFile((BinaryResource) invocation.getArguments()[0]))) {
+                return ContentHash.hash(inputStream);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        FileIO.rmDir(vault.toFile());
+        Files.delete(archive);
+    }
+
+    @Test
+    public void testEntriesKeepTheirOrderAndContent() throws Exception {
+        byte[] large = new byte[3 * 1024 * 1024 + 17];
+        new Random(1).nextBytes(large);
+        List<BinaryResource> binaryResources = Arrays.asList(
+                createBinaryResource("workspace/parts/P1/A/1/nativecad/model.txt", "solid".getBytes(StandardCharsets.UTF_8)),
+                createBinaryResource("workspace/parts/P1/A/1/attachedfiles/large.bin", large),
+                createBinaryResource("workspace/parts/P2/A/1/attachedfiles/large.zip", large),
+                createBinaryResource("workspace/parts/P2/A/1/attachedfiles/empty.txt", new byte[0]));
+
+        // Large files are spooled
+        try (FileExportZipWriter zipWriter = new FileExportZipWriter(Files.newOutputStream(archive), dataManager, executor, 1, false, 1024 * 1024)) {
+            for (BinaryResource binaryResource : binaryResources) {
+                zipWriter.add("folder", binaryResource);
+            }
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            List<String> names = new ArrayList<>();
+            for (ZipEntry zipEntry : Collections.list(zipFile.entries())) {
+                names.add(zipEntry.getName());
+            }
+            Assert.assertEquals(Arrays.asList("folder/model.txt", "folder/large.bin", "folder/large.zip", "folder/empty.txt"), names);
+
+            // Not compressed again, but not stored either
+            Assert.assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("folder/large.zip").getMethod());
+            Assert.assertTrue(zipFile.getEntry("folder/large.zip").getCompressedSize() >= large.length);
+            Assert.assertArrayEquals(large, read(zipFile, "folder/large.bin"));
+            Assert.assertArrayEquals(large, read(zipFile, "folder/large.zip"));
+            Assert.assertEquals("solid", new String(read(zipFile, "folder/model.txt"), StandardCharsets.UTF_8));
+            Assert.assertEquals(0, read(zipFile, "folder/empty.txt").length);
+        }
+        // Each file is read once
+        Mockito.verify(dataManager, Mockito.times(binaryResources.size())).getBinaryResourceInputStream(Mockito.any(BinaryResource.class));
+    }
+
+    @Test
+    public void testSameContentIsWrittenOnce() throws Exception {
+        BinaryResource original = createBinaryResource("workspace/parts/P1/A/1/nativecad/wheel.obj", "v 0 0 0".getBytes(StandardCharsets.UTF_8));
+        BinaryResource linked = new BinaryResource("workspace/parts/P2/A/1/nativecad/wheel.obj", original.getContentLength(), new Date());
+        Files.createDirectories(getFile(linked).toPath().getParent());
+        Files.createLink(getFile(linked).toPath(), getFile(original).toPath());
+        // Not linked, same content
+        BinaryResource copied = createBinaryResource("workspace/parts/P3/A/1/nativecad/wheel.obj", "v 0 0 0".getBytes(StandardCharsets.UTF_8));
+        BinaryResource other = createBinaryResource("workspace/parts/P4/A/1/nativecad/wheel.obj", "v 1 0 0".getBytes(StandardCharsets.UTF_8));
+
+        FileExportZipWriter zipWriter = new FileExportZipWriter(Files.newOutputStream(archive), dataManager, executor, 4, true);
+        zipWriter.add("P1", original);
+        zipWriter.add("P1", original);
+        zipWriter.add("P2", linked);
+        zipWriter.add("P3", copied);
+        zipWriter.add("P4", other);
+        zipWriter.close();
+
+        Assert.assertEquals(2, zipWriter.getWrittenEntries());
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            Assert.assertNotNull(zipFile.getEntry("P1/wheel.obj"));
+            Assert.assertNull(zipFile.getEntry("P2/wheel.obj"));
+            Assert.assertNull(zipFile.getEntry("P3/wheel.obj"));
+            Assert.assertEquals("v 1 0 0", new String(read(zipFile, "P4/wheel.obj"), StandardCharsets.UTF_8));
+            Assert.assertEquals("P2/wheel.obj\tP1/wheel.obj\nP3/wheel.obj\tP1/wheel.obj\n",
+                    new String(read(zipFile, FileExportZipWriter.DUPLICATES_ENTRY), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testCompressedFormats() {
+        Assert.assertTrue(FileExportZipWriter.isCompressed("drawing.PDF"));
+        Assert.assertTrue(FileExportZipWriter.isCompressed("archive.tar.gz"));
+        Assert.assertFalse(FileExportZipWriter.isCompressed("model.obj"));
+        Assert.assertFalse(FileExportZipWriter.isCompressed("README"));
+    }
+
+    private BinaryResource createBinaryResource(String fullName, byte[] content) throws IOException {
+        BinaryResource binaryResource = new BinaryResource(fullName, content.length, new Date());
+        File file = getFile(binaryResource);
+        Files.createDirectories(file.toPath().getParent());
+        Files.write(file.toPath(), content);
+        return binaryResource;
+    }
+
+    private File getFile(BinaryResource binaryResource) {
+        return vault.resolve(binaryResource.getFullName()).toFile();
+    }
+
+    private static byte[] read(ZipFile zipFile, String name) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        FileIO.copyBufferedStream(zipFile.getInputStream(zipFile.getEntry(name)), outputStream);
+        return outputStream.toByteArray();
+    }
+}
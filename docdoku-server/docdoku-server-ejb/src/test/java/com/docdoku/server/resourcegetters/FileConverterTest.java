@@ -0,0 +1,188 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.docdoku.server.resourcegetters;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FileConverterTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConversionsRunOnAllWorkers() throws Exception {
+        StubConverter stubConverter = new StubConverter(new CountDownLatch(1));
+        FileConverter fileConverter = new FileConverter(stubConverter, 2, 10, 10000);
+
+        List<Future<String>> conversions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            conversions.add(executor.submit(() -> convert(fileConverter, "document.odt")));
+        }
+        Assert.assertTrue(stubConverter.waitForRunning(2));
+        Thread.sleep(100);
+        Assert.assertEquals(2, stubConverter.running.get());
+
+        stubConverter.release.countDown();
+        for (Future<String> conversion : conversions) {
+            Assert.assertEquals("PDF of document.odt", conversion.get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(2, stubConverter.maxRunning.get());
+        Assert.assertEquals(4, fileConverter.getMetrics().getConversions());
+        Assert.assertEquals(0, fileConverter.getMetrics().getFailures());
+    }
+
+    @Test
+    public void testConversionsBeyondTheQueueAreRefused() throws Exception {
+        StubConverter stubConverter = new StubConverter(new CountDownLatch(1));
+        FileConverter fileConverter = new FileConverter(stubConverter, 1, 1, 10000);
+
+        Future<String> first = executor.submit(() -> convert(fileConverter, "first.odt"));
+        Assert.assertTrue(stubConverter.waitForRunning(1));
+        Future<String> second = executor.submit(() -> convert(fileConverter, "second.odt"));
+        Thread.sleep(100);
+
+        try {
+            convert(fileConverter, "third.odt");
+            Assert.fail("The queue is full");
+        } catch (IOException e) {
+            Assert.assertEquals(1, fileConverter.getMetrics().getRejections());
+        }
+
+        stubConverter.release.countDown();
+        Assert.assertEquals("PDF of first.odt", first.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals("PDF of second.odt", second.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWaitingForAWorkerTimesOut() throws Exception {
+        StubConverter stubConverter = new StubConverter(new CountDownLatch(1));
+        FileConverter fileConverter = new FileConverter(stubConverter, 1, 5, 50);
+
+        Future<String> first = executor.submit(() -> convert(fileConverter, "first.odt"));
+        Assert.assertTrue(stubConverter.waitForRunning(1));
+
+        try {
+            convert(fileConverter, "second.odt");
+            Assert.fail("No worker is available");
+        } catch (IOException e) {
+            Assert.assertEquals(1, fileConverter.getMetrics().getRejections());
+        }
+
+        stubConverter.release.countDown();
+        Assert.assertEquals("PDF of first.odt", first.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTemporaryFilesAreRemovedOnClose() throws Exception {
+        StubConverter stubConverter = new StubConverter(new CountDownLatch(0));
+        FileConverter fileConverter = new FileConverter(stubConverter, 1, 1, 1000);
+
+        InputStream pdf = fileConverter.convertToPDF("document.odt", new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        File tmpDir = stubConverter.lastPdf.getParentFile();
+        Assert.assertTrue(tmpDir.exists());
+        pdf.close();
+        Assert.assertFalse(tmpDir.exists());
+    }
+
+    @Test
+    public void testTemporaryFilesAreRemovedOnFailure() throws Exception {
+        StubConverter stubConverter = new StubConverter(new CountDownLatch(0));
+        stubConverter.failure = new IOException("Corrupted document");
+        FileConverter fileConverter = new FileConverter(stubConverter, 1, 1, 1000);
+
+        try {
+            fileConverter.convertToPDF("document.odt", new ByteArrayInputStream(new byte[]{1, 2, 3}));
+            Assert.fail("The conversion fails");
+        } catch (IOException e) {
+            Assert.assertFalse(stubConverter.lastPdf.getParentFile().exists());
+            Assert.assertEquals(1, fileConverter.getMetrics().getFailures());
+        }
+    }
+
+    private static String convert(FileConverter fileConverter, String sourceName) throws IOException {
+        try (InputStream pdf = fileConverter.convertToPDF(sourceName, new ByteArrayInputStream(new byte[]{1, 2, 3}))) {
+            byte[] bytes = new byte[64];
+            int length = pdf.read(bytes);
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class StubConverter implements OfficeConverter {
+
+        private final CountDownLatch release;
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final Semaphore started = new Semaphore(0);
+        private volatile File lastPdf;
+        private volatile IOException failure;
+
+        StubConverter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        boolean waitForRunning(int count) throws InterruptedException {
+            return started.tryAcquire(count, 10, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void convertToPDF(File source, File pdf) throws IOException {
+            lastPdf = pdf;
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            started.release();
+            try {
+                release.await();
+                if (failure != null) {
+                    throw failure;
+                }
+                Files.write(pdf.toPath(), ("PDF of " + source.getName()).getBytes(StandardCharsets.UTF_8));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.docdoku.server.security;
+
+import com.docdoku.core.security.RevokedSessionToken;
+import com.docdoku.core.security.SessionToken;
+import com.docdoku.core.security.SessionTokenValidity;
+import com.docdoku.server.events.AccountChangeEvent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class SessionTokenRevocationsTest {
+
+    private static final long LIFETIME = 60 * 60 * 1000;
+
+    @Mock
+    private EntityManager em;
+    @Mock
+    private TypedQuery<RevokedSessionToken> revokedTokensQuery;
+    @Mock
+    private TypedQuery<SessionTokenValidity> validitiesQuery;
+
+    private List<RevokedSessionToken> storedTokens = new ArrayList<>();
+    private List<SessionTokenValidity> storedValidities = new ArrayList<>();
+
+    private SessionTokenRevocations revocations;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        Mockito.when(em.createNamedQuery("RevokedSessionToken.findRevokedSince", RevokedSessionToken.class)).thenReturn(revokedTokensQuery);
+        Mockito.when(revokedTokensQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(revokedTokensQuery);
+        Mockito.when(revokedTokensQuery.getResultList()).thenReturn(storedTokens);
+        Mockito.when(em.createNamedQuery("SessionTokenValidity.findChangedSince", SessionTokenValidity.class)).thenReturn(validitiesQuery);
+        Mockito.when(validitiesQuery.setParameter(Matchers.anyString(), Matchers.any())).thenReturn(validitiesQuery);
+        Mockito.when(validitiesQuery.getResultList()).thenReturn(storedValidities);
+        revocations = createRevocations();
+    }
+
+    private SessionTokenRevocations createRevocations() {
+        SessionTokenRevocations sessionTokenRevocations = new SessionTokenRevocations();
+        Whitebox.setInternalState(sessionTokenRevocations, "em", em);
+        return sessionTokenRevocations;
+    }
+
+    @Test
+    public void revokedTokenIsRejectedTest() {
+        SessionToken token = issueToken("token1", "user1", System.currentTimeMillis());
+        SessionToken otherToken = issueToken("token2", "user1", System.currentTimeMillis());
+
+        revocations.revoke(token);
+
+        Assert.assertTrue(revocations.isRevoked(token));
+        Assert.assertFalse(revocations.isRevoked(otherToken));
+    }
+
+    @Test
+    public void credentialChangeRevokesPreviousTokensTest() {
+        SessionToken token = issueToken("token1", "user1", System.currentTimeMillis() - 1000);
+        SessionToken otherUserToken = issueToken("token2", "user2", System.currentTimeMillis() - 1000);
+
+        revocations.onAccountChange(new AccountChangeEvent("user1", true));
+
+        Assert.assertTrue(revocations.isRevoked(token));
+        Assert.assertFalse(revocations.isRevoked(otherUserToken));
+        Assert.assertFalse(revocations.isRevoked(issueToken("token3", "user1", System.currentTimeMillis() + 1000)));
+    }
+
+    @Test
+    public void groupChangeRevokesPreviousTokensTest() {
+        SessionToken token = issueToken("token1", "user1", System.currentTimeMillis() - 1000);
+
+        revocations.onAccountChange(new AccountChangeEvent("user1", false, true));
+
+        Assert.assertTrue(revocations.isRevoked(token));
+        Assert.assertFalse(revocations.isRevoked(issueToken("token2", "user1", System.currentTimeMillis() + 1000)));
+    }
+
+    @Test
+    public void accountChangeKeepsTokensTest() {
+        SessionToken token = issueToken("token1", "user1", System.currentTimeMillis() - 1000);
+
+        revocations.onAccountChange(new AccountChangeEvent("user1", false));
+        revocations.onAccountChangeCompletion(new AccountChangeEvent("user1", false));
+
+        Assert.assertFalse(revocations.isRevoked(token));
+    }
+
+    @Test
+    public void credentialChangeCompletionRevokesTokensIssuedMeanwhileTest() {
+        revocations.onAccountChange(new AccountChangeEvent("user1", true));
+        SessionToken token = issueToken("token1", "user1", System.currentTimeMillis());
+
+        revocations.onAccountChangeCompletion(new AccountChangeEvent("user1", true));
+
+        Assert.assertTrue(revocations.isRevoked(token));
+    }
+
+    @Test
+    public void revocationIsStoredTest() {
+        SessionToken token = issueToken("token1", "user1", System.currentTimeMillis());
+
+        revocations.revoke(token);
+
+        ArgumentCaptor<RevokedSessionToken> captor = ArgumentCaptor.forClass(RevokedSessionToken.class);
+        Mockito.verify(em).merge(captor.capture());
+        Assert.assertEquals("token1", captor.getValue().getTokenId());
+        Assert.assertEquals(token.getExpiresAt(), captor.getValue().getExpiresAt());
+    }
+
+    @Test
+    public void credentialChangeIsStoredTest() {
+        revocations.onAccountChange(new AccountChangeEvent("user1", true));
+
+        ArgumentCaptor<SessionTokenValidity> captor = ArgumentCaptor.forClass(SessionTokenValidity.class);
+        Mockito.verify(em).persist(captor.capture());
+        Assert.assertEquals("user1", captor.getValue().getLogin());
+    }
+
+    @Test
+    public void accountChangeIsNotStoredTest() {
+        revocations.onAccountChange(new AccountChangeEvent("user1", false));
+
+        Mockito.verify(em, Mockito.never()).persist(Matchers.any());
+    }
+
+    @Test
+    public void storedRevocationsAreLoadedTest() {
+        long now = System.currentTimeMillis();
+        SessionToken revokedToken = issueToken("token1", "user1", now - 2000);
+        SessionToken oldToken = issueToken("token2", "user2", now - 2000);
+        SessionToken newToken = issueToken("token3", "user2", now);
+        storedTokens.add(new RevokedSessionToken(revokedToken, now - 1000));
+        storedValidities.add(new SessionTokenValidity("user2", now - 1000));
+
+        // As after a restart, or on another node
+        SessionTokenRevocations loadedRevocations = createRevocations();
+        loadedRevocations.load(now - LIFETIME);
+
+        Assert.assertTrue(loadedRevocations.isRevoked(revokedToken));
+        Assert.assertTrue(loadedRevocations.isRevoked(oldToken));
+        Assert.assertFalse(loadedRevocations.isRevoked(newToken));
+        Assert.assertNotEquals(0, loadedRevocations.getAccountRevision("user2"));
+    }
+
+    @Test
+    public void loadReadsFromThePreviousLoadTest() {
+        long since = System.currentTimeMillis() - LIFETIME;
+        revocations.load(since);
+        Mockito.verify(revokedTokensQuery).setParameter("since", since);
+
+        revocations.load(since);
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(revokedTokensQuery, Mockito.times(4)).setParameter(Matchers.anyString(), captor.capture());
+        Assert.assertTrue((Long) captor.getAllValues().get(2) > since);
+    }
+
+    @Test
+    public void loadKeepsTheRevisionOfUnchangedAccountsTest() {
+        storedValidities.add(new SessionTokenValidity("user1", System.currentTimeMillis() - 1000));
+
+        revocations.load(System.currentTimeMillis() - LIFETIME);
+        long revision = revocations.getAccountRevision("user1");
+        revocations.load(System.currentTimeMillis() - LIFETIME);
+
+        Assert.assertEquals(revision, revocations.getAccountRevision("user1"));
+    }
+
+    @Test
+    public void accountChangeChangesTheRevisionTest() {
+        Assert.assertEquals(0, revocations.getAccountRevision("user1"));
+
+        revocations.onAccountChange(new AccountChangeEvent("user1", false));
+        long revision = revocations.getAccountRevision("user1");
+        Assert.assertNotEquals(0, revision);
+
+        revocations.onAccountChangeCompletion(new AccountChangeEvent("user1", false));
+        Assert.assertNotEquals(revision, revocations.getAccountRevision("user1"));
+        Assert.assertEquals(0, revocations.getAccountRevision("user2"));
+    }
+
+    private static SessionToken issueToken(String id, String login, long issuedAt) {
+        return new SessionToken(id, login, "users", issuedAt, issuedAt + LIFETIME);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.security;
+
+import com.docdoku.core.security.SessionToken;
+import com.docdoku.core.util.FileIO;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class SessionTokenSignerTest {
+
+    private static final long LIFETIME = 60 * 1000;
+
+    private SessionTokenSigner signer;
+
+    @Before
+    public void setUp() {
+        byte[] key = new byte[32];
+        Arrays.fill(key, (byte) 7);
+        signer = new SessionTokenSigner(key);
+    }
+
+    @Test
+    public void testTokenIsVerified() {
+        SessionToken token = signer.createToken("user|1", "users", 1000, LIFETIME);
+
+        SessionToken verified = signer.verifyToken(token.getValue(), 2000);
+        Assert.assertNotNull(verified);
+        Assert.assertEquals(token.getId(), verified.getId());
+        Assert.assertEquals("user|1", verified.getLogin());
+        Assert.assertEquals("users", verified.getGroupName());
+        Assert.assertEquals(1000, verified.getIssuedAt());
+        Assert.assertEquals(1000 + LIFETIME, verified.getExpiresAt());
+    }
+
+    @Test
+    public void testExpiredTokenIsRejected() {
+        SessionToken token = signer.createToken("user1", "users", 1000, LIFETIME);
+        Assert.assertNull(signer.verifyToken(token.getValue(), 1000 + LIFETIME));
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() {
+        SessionToken token = signer.createToken("user1", "users", 1000, LIFETIME);
+        SessionToken admin = signer.createToken("user1", "admin", 1000, LIFETIME);
+
+        String payload = admin.getValue().substring(0, admin.getValue().indexOf('.'));
+        String signature = token.getValue().substring(token.getValue().indexOf('.'));
+        Assert.assertNull(signer.verifyToken(payload + signature, 2000));
+        Assert.assertNull(signer.verifyToken(token.getValue() + "A", 2000));
+        Assert.assertNull(signer.verifyToken("not a token", 2000));
+        Assert.assertNull(signer.verifyToken(null, 2000));
+    }
+
+    @Test
+    public void testTokenOfAnotherKeyIsRejected() {
+        byte[] otherKey = new byte[32];
+        Arrays.fill(otherKey, (byte) 8);
+        SessionToken token = new SessionTokenSigner(otherKey).createToken("user1", "users", 1000, LIFETIME);
+        Assert.assertNull(signer.verifyToken(token.getValue(), 2000));
+    }
+
+    @Test
+    public void testKeyIsCreatedOnceThenRead() throws Exception {
+        Path folder = Files.createTempDirectory("keys");
+        try {
+            Path keyFile = folder.resolve("session-token.key");
+            byte[] key = SessionTokenSigner.loadOrCreateKey(keyFile);
+            Assert.assertEquals(32, key.length);
+            Assert.assertArrayEquals(key, SessionTokenSigner.loadOrCreateKey(keyFile));
+        } finally {
+            FileIO.rmDir(folder.toFile());
+        }
+    }
+}
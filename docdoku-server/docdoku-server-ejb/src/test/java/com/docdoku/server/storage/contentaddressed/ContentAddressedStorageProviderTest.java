@@ -0,0 +1,196 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.storage.contentaddressed;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.util.FileIO;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ContentAddressedStorageProviderTest {
+
+    private Path vault;
+    private ContentAddressedStorageProvider storageProvider;
+
+    @Before
+    public void setUp() throws IOException {
+        vault = Files.createTempDirectory("vault");
+        storageProvider = new ContentAddressedStorageProvider(vault.toString());
+    }
+
+    @After
+    public void tearDown() {
+        FileIO.rmDir(vault.toFile());
+    }
+
+    @Test
+    public void testLinkCountIsSupported() throws Exception {
+        // As the other tests, run on a file system counting hard links
+        Assert.assertTrue(ContentAddressedStorageProvider.isSupported(vault.toString()));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(vault)) {
+            Assert.assertFalse("The check should leave nothing behind", files.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void testSameContentIsStoredOnce() throws Exception {
+        BinaryResource first = createBinaryResource("workspace/parts/P1/A/1/file.obj", "content");
+        BinaryResource second = createBinaryResource("workspace/parts/P2/A/1/file.obj", "content");
+
+        Assert.assertTrue(Files.isSameFile(path(first), path(second)));
+        Assert.assertEquals(1, countBlobs());
+        Assert.assertEquals("content", read(second));
+    }
+
+    @Test
+    public void testCopyDataLinksContent() throws Exception {
+        BinaryResource source = createBinaryResource("workspace/parts/P1/A/1/file.obj", "content");
+        BinaryResource target = new BinaryResource("workspace/parts/P1/A/2/file.obj", 7, new Date());
+
+        storageProvider.copyData(source, target);
+
+        Assert.assertTrue(Files.isSameFile(path(source), path(target)));
+        Assert.assertEquals(1, countBlobs());
+    }
+
+    @Test
+    public void testWriteDoesNotAlterSharedContent() throws Exception {
+        BinaryResource source = createBinaryResource("workspace/parts/P1/A/1/file.obj", "content");
+        BinaryResource target = new BinaryResource("workspace/parts/P1/A/2/file.obj", 7, new Date());
+        storageProvider.copyData(source, target);
+
+        write(target, "modified");
+
+        Assert.assertEquals("content", read(source));
+        Assert.assertEquals("modified", read(target));
+        Assert.assertEquals(2, countBlobs());
+    }
+
+    @Test
+    public void testBlobRemovedWithLastReference() throws Exception {
+        BinaryResource source = createBinaryResource("workspace/parts/P1/A/1/file.obj", "content");
+        BinaryResource target = new BinaryResource("workspace/parts/P1/A/2/file.obj", 7, new Date());
+        storageProvider.copyData(source, target);
+
+        storageProvider.delData(source);
+        Assert.assertEquals(1, countBlobs());
+
+        storageProvider.delData(target);
+        Assert.assertEquals(0, countBlobs());
+    }
+
+    @Test
+    public void testConcurrentWritesAndDeletesOfSameContent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final String fullName = "workspace/parts/P" + i + "/A/1/file.obj";
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        BinaryResource binaryResource = createBinaryResource(fullName, "content");
+                        Assert.assertEquals("content", read(binaryResource));
+                        storageProvider.delData(binaryResource);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(0, countBlobs());
+    }
+
+    @Test
+    public void testMigrationDeduplicatesExistingVault() throws Exception {
+        Path first = vault.resolve("workspace/documents/D1/A/1/file.txt");
+        Path second = vault.resolve("workspace/documents/D2/A/1/file.txt");
+        Files.createDirectories(first.getParent());
+        Files.createDirectories(second.getParent());
+        Files.write(first, "content".getBytes(StandardCharsets.UTF_8));
+        Files.write(second, "content".getBytes(StandardCharsets.UTF_8));
+
+        ContentAddressedVaultMigration migration = new ContentAddressedVaultMigration(vault.toString());
+        migration.run();
+
+        Assert.assertEquals(2, migration.getMigratedFiles());
+        Assert.assertEquals(7, migration.getSavedBytes());
+        Assert.assertTrue(Files.isSameFile(first, second));
+        Assert.assertEquals(1, countBlobs());
+
+        // Running it again changes nothing
+        migration = new ContentAddressedVaultMigration(vault.toString());
+        migration.run();
+        Assert.assertEquals(0, migration.getSavedBytes());
+    }
+
+    private BinaryResource createBinaryResource(String fullName, String content) throws Exception {
+        BinaryResource binaryResource = new BinaryResource(fullName, content.length(), new Date());
+        write(binaryResource, content);
+        return binaryResource;
+    }
+
+    private void write(BinaryResource binaryResource, String content) throws Exception {
+        try (OutputStream outputStream = storageProvider.getBinaryResourceOutputStream(binaryResource)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String read(BinaryResource binaryResource) throws Exception {
+        try (InputStream inputStream = storageProvider.getBinaryResourceInputStream(binaryResource);
+             Scanner scanner = new Scanner(inputStream, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    private Path path(BinaryResource binaryResource) {
+        return new File(vault.toFile(), binaryResource.getFullName()).toPath();
+    }
+
+    private long countBlobs() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.walk(storageProvider.getBlobsFolder())) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> !p.getParent().getFileName().toString().equals("tmp"))
+                    .count();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.storage.upload;
+
+import com.docdoku.core.common.UploadSession;
+import com.docdoku.core.util.FileIO;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+public class UploadSessionStoreTest {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij!".getBytes(StandardCharsets.UTF_8);
+    private static final int CHUNK_SIZE = 8;
+
+    private Path vault;
+    private UploadSessionStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        vault = Files.createTempDirectory("vault");
+        store = new UploadSessionStore(vault.toString());
+    }
+
+    @After
+    public void tearDown() {
+        FileIO.rmDir(vault.toFile());
+    }
+
+    @Test
+    public void testChunksInAnyOrderMakeTheContent() throws Exception {
+        UploadSession session = store.create("workspace/parts/P1/A/1/nativecad/file.obj", "user1", CONTENT.length, CHUNK_SIZE);
+        Assert.assertEquals(3, session.getChunkCount());
+
+        Assert.assertTrue(writeChunk(session, 2));
+        Assert.assertTrue(writeChunk(session, 0));
+        Assert.assertFalse(session.isComplete());
+        Assert.assertTrue(writeChunk(session, 1));
+        Assert.assertTrue(session.isComplete());
+
+        Assert.assertArrayEquals(CONTENT, Files.readAllBytes(store.getDataFile(session)));
+    }
+
+    @Test
+    public void testSessionCanBeResumed() throws Exception {
+        UploadSession session = store.create("workspace/parts/P1/A/1/nativecad/file.obj", "user1", CONTENT.length, CHUNK_SIZE);
+        writeChunk(session, 1);
+
+        UploadSession resumed = store.get(session.getId());
+        Assert.assertEquals("user1", resumed.getLogin());
+        Assert.assertEquals(CONTENT.length, resumed.getSize());
+        Assert.assertEquals(1, resumed.getReceivedChunks().size());
+        Assert.assertTrue(resumed.getReceivedChunks().contains(1));
+    }
+
+    @Test
+    public void testCorruptedChunkIsRejected() throws Exception {
+        UploadSession session = store.create("workspace/parts/P1/A/1/nativecad/file.obj", "user1", CONTENT.length, CHUNK_SIZE);
+        byte[] chunk = Arrays.copyOfRange(CONTENT, 0, CHUNK_SIZE);
+        String checksum = checksum(chunk);
+        chunk[3] = 'x';
+
+        Assert.assertFalse(store.writeChunk(session, 0, new ByteArrayInputStream(chunk), checksum));
+        Assert.assertFalse(store.writeChunk(session, 0, new ByteArrayInputStream(Arrays.copyOf(chunk, 4)), checksum(Arrays.copyOf(chunk, 4))));
+        Assert.assertFalse(store.writeChunk(session, 3, new ByteArrayInputStream(chunk), checksum(chunk)));
+        Assert.assertTrue(store.get(session.getId()).getReceivedChunks().isEmpty());
+    }
+
+    @Test
+    public void testCorruptedChunkIsWrittenAgain() throws Exception {
+        UploadSession session = store.create("workspace/parts/P1/A/1/nativecad/file.obj", "user1", CONTENT.length, CHUNK_SIZE);
+        byte[] chunk = Arrays.copyOfRange(CONTENT, CHUNK_SIZE, 2 * CHUNK_SIZE);
+        String checksum = checksum(chunk);
+        byte[] corrupted = chunk.clone();
+        corrupted[0] = 'x';
+
+        Assert.assertFalse(store.writeChunk(session, 1, new ByteArrayInputStream(corrupted), checksum));
+        Assert.assertFalse(store.get(session.getId()).getReceivedChunks().contains(1));
+
+        Assert.assertTrue(store.writeChunk(session, 1, new ByteArrayInputStream(chunk), checksum));
+        Assert.assertTrue(store.get(session.getId()).getReceivedChunks().contains(1));
+        byte[] data = Files.readAllBytes(store.getDataFile(session));
+        Assert.assertArrayEquals(chunk, Arrays.copyOfRange(data, CHUNK_SIZE, 2 * CHUNK_SIZE));
+    }
+
+    @Test
+    public void testCorruptedChunkDoesNotOverwriteReceivedOne() throws Exception {
+        UploadSession session = store.create("workspace/parts/P1/A/1/nativecad/file.obj", "user1", CONTENT.length, CHUNK_SIZE);
+        Assert.assertTrue(writeChunk(session, 0));
+
+        byte[] chunk = Arrays.copyOfRange(CONTENT, 0, CHUNK_SIZE);
+        String checksum = checksum(chunk);
+        Arrays.fill(chunk, (byte) 'x');
+        Assert.assertFalse(store.writeChunk(session, 0, new ByteArrayInputStream(chunk), checksum));
+
+        byte[] data = Files.readAllBytes(store.getDataFile(session));
+        Assert.assertArrayEquals(Arrays.copyOfRange(CONTENT, 0, CHUNK_SIZE), Arrays.copyOfRange(data, 0, CHUNK_SIZE));
+    }
+
+    @Test
+    public void testUnknownSession() throws Exception {
+        Assert.assertNull(store.get("../../etc"));
+        Assert.assertNull(store.get("7b2d4e1c-0000-4000-8000-000000000000"));
+    }
+
+    @Test
+    public void testDeleteSession() throws Exception {
+        UploadSession session = store.create("workspace/documents/D1/A/1/file.txt", "user1", CONTENT.length, CHUNK_SIZE);
+        store.delete(session.getId());
+        Assert.assertNull(store.get(session.getId()));
+    }
+
+    private boolean writeChunk(UploadSession session, int index) throws Exception {
+        int from = (int) session.getChunkOffset(index);
+        byte[] chunk = Arrays.copyOfRange(CONTENT, from, from + (int) session.getChunkLength(index));
+        return store.writeChunk(session, index, new ByteArrayInputStream(chunk), checksum(chunk));
+    }
+
+    private static String checksum(byte[] chunk) throws Exception {
+        return Base64.getEncoder().encodeToString(MessageDigest.getInstance("MD5").digest(chunk));
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.converters.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary layout of the converted geometries, read by the viewers instead of the OBJ files.
+ *
+ * Positions are quantized on 16 bits over the bounding box and triangles are listed as indices to
+ * the vertices, on 16 bits when there are no more than 65536 vertices. Triangles are sorted by
+ * material, each material being drawn from a single range. Normals and texture coordinates are
+ * not kept, normals are computed by the viewers. All values are little endian and the arrays are
+ * aligned on 4 bytes, so that they can be read as typed arrays without being parsed:
+ * <pre>
+ * "DDMB"                                          magic
+ * uint16 version, uint16 flags                    flags: 1 when indices are on 32 bits
+ * uint32 vertexCount, uint32 triangleCount
+ * float32 xMin, yMin, zMin, xMax, yMax, zMax      quantization box
+ * uint32 materialLibraryCount, uint32 groupCount
+ * materialLibraryCount x (uint16 length, UTF-8 name)
+ * groupCount x (uint32 firstTriangle, uint32 triangleCount, uint16 length, UTF-8 material name)
+ * padding to 4 bytes
+ * uint16[3 x vertexCount]                         x = xMin + q * (xMax - xMin) / 65535
+ * padding to 4 bytes
+ * uint16 or uint32[3 x triangleCount]
+ * </pre>
+ */
+public class BinaryMesh {
+
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'D', 'D', 'M', 'B'};
+    private static final int INDICES_32_BITS = 1;
+    private static final int MAX_QUANTIZED = 0xFFFF;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BinaryMesh() {
+    }
+
+    /**
+     * Writes the mesh of an OBJ file to the stream.
+     */
+    public static void write(File objFile, OutputStream outputStream) throws IOException {
+        write(ObjMesh.read(objFile), outputStream);
+    }
+
+    static void write(ObjMesh mesh, OutputStream outputStream) throws IOException {
+        float[] box = getBox(mesh);
+        int[] order = sortByMaterial(mesh);
+        boolean indices32Bits = mesh.vertexCount > MAX_QUANTIZED + 1;
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) (indices32Bits ? INDICES_32_BITS : 0));
+        buffer.putInt(mesh.vertexCount);
+        buffer.putInt(mesh.triangleCount);
+        for (float bound : box) {
+            buffer.putFloat(bound);
+        }
+
+        int groupCount = 0;
+        for (int i = 0; i < mesh.triangleCount; i++) {
+            if (i == 0 || mesh.materials[order[i]] != mesh.materials[order[i - 1]]) {
+                groupCount++;
+            }
+        }
+        buffer.putInt(mesh.materialLibraries.size());
+        buffer.putInt(groupCount);
+        int written = buffer.position();
+
+        for (String materialLibrary : mesh.materialLibraries) {
+            written += putString(buffer, outputStream, materialLibrary);
+        }
+        int first = 0;
+        for (int i = 1; i <= mesh.triangleCount; i++) {
+            if (i == mesh.triangleCount || mesh.materials[order[i]] != mesh.materials[order[first]]) {
+                ensureRemaining(buffer, outputStream, 8);
+                buffer.putInt(first);
+                buffer.putInt(i - first);
+                written += 8 + putString(buffer, outputStream, mesh.materialNames.get(mesh.materials[order[first]]));
+                first = i;
+            }
+        }
+        written += pad(buffer, outputStream, written);
+
+        for (int axis = 0; axis < 3; axis++) {
+            box[axis + 3] -= box[axis];
+        }
+        for (int i = 0; i < 3 * mesh.vertexCount; i++) {
+            int axis = i % 3;
+            double extent = box[axis + 3];
+            long quantized = extent > 0 ? Math.round((mesh.positions[i] - box[axis]) / extent * MAX_QUANTIZED) : 0;
+            ensureRemaining(buffer, outputStream, 2);
+            buffer.putShort((short) Math.max(0, Math.min(MAX_QUANTIZED, quantized)));
+        }
+        written += pad(buffer, outputStream, written + 6 * mesh.vertexCount);
+
+        for (int i = 0; i < mesh.triangleCount; i++) {
+            int triangle = order[i];
+            ensureRemaining(buffer, outputStream, 12);
+            for (int corner = 0; corner < 3; corner++) {
+                int index = mesh.triangles[3 * triangle + corner];
+                if (indices32Bits) {
+                    buffer.putInt(index);
+                } else {
+                    buffer.putShort((short) index);
+                }
+            }
+        }
+
+        outputStream.write(buffer.array(), 0, buffer.position());
+        outputStream.flush();
+    }
+
+    /**
+     * Reads a mesh written by {@link #write(ObjMesh, OutputStream)}, the positions being the
+     * quantized ones.
+     */
+    static ObjMesh read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] chunk = new byte[BUFFER_SIZE];
+        int length;
+        while ((length = inputStream.read(chunk)) != -1) {
+            bytes.write(chunk, 0, length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(MAGIC, magic) || buffer.getShort() != VERSION) {
+                throw new IOException("Not a binary mesh of version " + VERSION);
+            }
+            boolean indices32Bits = (buffer.getShort() & INDICES_32_BITS) != 0;
+            ObjMesh mesh = new ObjMesh();
+            mesh.vertexCount = buffer.getInt();
+            mesh.triangleCount = buffer.getInt();
+            float[] box = new float[6];
+            for (int i = 0; i < 6; i++) {
+                box[i] = buffer.getFloat();
+            }
+            int materialLibraryCount = buffer.getInt();
+            int groupCount = buffer.getInt();
+
+            for (int i = 0; i < materialLibraryCount; i++) {
+                mesh.materialLibraries.add(getString(buffer));
+            }
+            mesh.materials = new int[mesh.triangleCount];
+            for (int i = 0; i < groupCount; i++) {
+                int first = buffer.getInt();
+                int count = buffer.getInt();
+                String name = getString(buffer);
+                // Faces without material are written with an empty name
+                int material = name.isEmpty() ? 0 : mesh.materialNames.indexOf(name);
+                if (material == -1) {
+                    material = mesh.materialNames.size();
+                    mesh.materialNames.add(name);
+                }
+                Arrays.fill(mesh.materials, first, first + count, material);
+            }
+            buffer.position((buffer.position() + 3) & ~3);
+
+            mesh.positions = new double[3 * mesh.vertexCount];
+            for (int i = 0; i < mesh.positions.length; i++) {
+                int axis = i % 3;
+                mesh.positions[i] = box[axis] + (buffer.getShort() & MAX_QUANTIZED) * (double) (box[axis + 3] - box[axis]) / MAX_QUANTIZED;
+            }
+            buffer.position((buffer.position() + 3) & ~3);
+
+            mesh.triangles = new int[3 * mesh.triangleCount];
+            for (int i = 0; i < mesh.triangles.length; i++) {
+                mesh.triangles[i] = indices32Bits ? buffer.getInt() : buffer.getShort() & 0xFFFF;
+            }
+            return mesh;
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid binary mesh", e);
+        }
+    }
+
+    private static float[] getBox(ObjMesh mesh) {
+        float[] box = new float[6];
+        if (mesh.vertexCount == 0) {
+            return box;
+        }
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = 0; i < 3 * mesh.vertexCount; i++) {
+            min[i % 3] = Math.min(min[i % 3], mesh.positions[i]);
+            max[i % 3] = Math.max(max[i % 3], mesh.positions[i]);
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            box[axis] = (float) min[axis];
+            box[axis + 3] = (float) max[axis];
+        }
+        return box;
+    }
+
+    // Order of the triangles grouped by material, keeping their order within a material
+    private static int[] sortByMaterial(ObjMesh mesh) {
+        int[] starts = new int[mesh.materialNames.size() + 1];
+        for (int i = 0; i < mesh.triangleCount; i++) {
+            starts[mesh.materials[i] + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] order = new int[mesh.triangleCount];
+        for (int i = 0; i < mesh.triangleCount; i++) {
+            order[starts[mesh.materials[i]]++] = i;
+        }
+        return order;
+    }
+
+    private static int putString(ByteBuffer buffer, OutputStream outputStream, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        ensureRemaining(buffer, outputStream, 2);
+        buffer.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            ensureRemaining(buffer, outputStream, 1);
+            buffer.put(bytes[i]);
+        }
+        return 2 + length;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int pad(ByteBuffer buffer, OutputStream outputStream, int written) throws IOException {
+        int padding = (4 - written % 4) % 4;
+        ensureRemaining(buffer, outputStream, padding);
+        for (int i = 0; i < padding; i++) {
+            buffer.put((byte) 0);
+        }
+        return padding;
+    }
+
+    private static void ensureRemaining(ByteBuffer buffer, OutputStream outputStream, int length) throws IOException {
+        if (buffer.remaining() < length) {
+            outputStream.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+}
@@ -20,77 +20,32 @@
 
 package com.docdoku.server.converters.utils;
 
-import javax.json.Json;
-import javax.json.JsonException;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Properties;
+import java.io.File;
+import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class GeometryParser {
 
-    private static final String CONF_PROPERTIES="/com/docdoku/server/converters/utils/conf.properties";
-    private static final Properties CONF = new Properties();
     private static final Logger LOGGER = Logger.getLogger(GeometryParser.class.getName());
 
     private GeometryParser() {
     }
 
-    public static double[] calculateBox(File file) {
+    /**
+     * @return the bounding box of the OBJ file, as min x, y, z then max x, y, z
+     * @throws IOException if the file cannot be read or is not a valid OBJ file
+     */
+    public static double[] calculateBox(File file) throws IOException {
+        long start = System.currentTimeMillis();
+        ObjStatistics statistics = ObjStatistics.parse(file);
 
-        try (InputStream inputStream = GeometryParser.class.getResourceAsStream(CONF_PROPERTIES)){
-
-            CONF.load(inputStream);
-
-            String nodeServerUrl = CONF.getProperty("nodeServerUrl");
-
-            URL url = new URL(nodeServerUrl+"/box");
-
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("POST");
-            con.setRequestProperty("Content-Type", "application/json; charset=utf-8");
-
-            JsonObjectBuilder body = Json.createObjectBuilder().add("filename",file.getAbsolutePath());
-            con.setDoOutput(true);
-            OutputStreamWriter wr = new OutputStreamWriter(con.getOutputStream(), "UTF-8");
-            wr.write(body.build().toString());
-            wr.flush();
-            wr.close();
-
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream(),"UTF-8"));
-            String inputLine;
-            StringBuilder response = new StringBuilder();
-
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-
-            String result = response.toString();
-
-            JsonObject box = Json.createReader(new StringReader(result)).readObject();
-
-            JsonObject min = box.getJsonObject("min");
-            JsonObject max = box.getJsonObject("max");
-
-
-            return new double[]{
-                    min.getJsonNumber("x").doubleValue(),
-                    min.getJsonNumber("y").doubleValue(),
-                    min.getJsonNumber("z").doubleValue(),
-                    max.getJsonNumber("x").doubleValue(),
-                    max.getJsonNumber("y").doubleValue(),
-                    max.getJsonNumber("z").doubleValue()
-            };
-
-        } catch (IOException | JsonException e) {
-            LOGGER.log(Level.SEVERE, null, e);
+        if (statistics.getVertexCount() == 0) {
+            LOGGER.log(Level.WARNING, "No vertex in " + file.getName());
         }
+        LOGGER.log(Level.FINE, file.getName() + ": " + statistics.getVertexCount() + " vertices, "
+                + statistics.getFaceCount() + " faces, read in " + (System.currentTimeMillis() - start) + " ms");
 
-        return new double[6];
+        return statistics.getBox();
     }
 }
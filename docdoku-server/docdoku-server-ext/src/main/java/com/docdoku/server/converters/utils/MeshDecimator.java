@@ -0,0 +1,526 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.converters.utils;
+
+import com.docdoku.core.util.FileIO;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simplifies triangle meshes by collapsing edges, choosing the edges to collapse and the position
+ * of the remaining vertex with quadric error metrics (Garland and Heckbert).
+ *
+ * Rather than keeping the edges in a priority queue, the triangles are swept several times with a
+ * growing error threshold, every edge under the threshold being collapsed unless it flips a
+ * neighbouring triangle. This is much faster and gives results close to the exact ordering. The
+ * mesh stays in primitive arrays all along, vertices and triangles being referred to by index.
+ *
+ * An instance works on one mesh and is not thread safe; distinct meshes are simplified in
+ * parallel by distinct instances.
+ */
+public class MeshDecimator {
+
+    private static final int MAX_ITERATIONS = 100;
+    // Growth of the error threshold between the sweeps, higher is faster but coarser
+    private static final double AGGRESSIVENESS = 7;
+    // Quadrics and references are rebuilt every few sweeps
+    private static final int UPDATE_INTERVAL = 5;
+
+    private final ObjMesh mesh;
+
+    // By vertex: quadric (10 coefficients of the symmetric matrix), border flag, references
+    private double[] quadrics;
+    private boolean[] borders;
+    private int[] refStarts;
+    private int[] refCounts;
+
+    // By triangle: error of its three edges and the smallest one, normal, state
+    private double[] errors;
+    private double[] normals;
+    private boolean[] deleted;
+    private boolean[] dirty;
+
+    // References from vertices to the triangles using them, with the corner of the vertex
+    private int[] refTriangles = new int[0];
+    private int[] refCorners = new int[0];
+    private int refSize;
+
+    private boolean[] collapsed0 = new boolean[16];
+    private boolean[] collapsed1 = new boolean[16];
+    private final double[] point = new double[3];
+    private final double[] quadric = new double[10];
+
+    MeshDecimator(ObjMesh mesh) {
+        this.mesh = mesh;
+    }
+
+    /**
+     * Writes simplified versions of an OBJ file to the folder, named after the file followed by
+     * their percentage of the triangles of the original one (<code>part60.obj</code> for 0.6).
+     * Each version is simplified from the previous one, the ratios are taken in decreasing order.
+     *
+     * @return the files written, in the order of the ratios
+     */
+    public static List<File> decimate(File file, File targetDir, double... ratios) throws IOException {
+        ObjMesh mesh = ObjMesh.read(file);
+        int triangleCount = mesh.triangleCount;
+        String baseName = FileIO.getFileNameWithoutExtension(file.getName());
+        List<File> files = new ArrayList<>();
+
+        for (double ratio : ratios) {
+            new MeshDecimator(mesh).simplify((int) (triangleCount * ratio));
+            File lod = new File(targetDir, baseName + Math.round(ratio * 100) + ".obj");
+            mesh.write(lod);
+            files.add(lod);
+        }
+        return files;
+    }
+
+    /**
+     * Collapses edges until the mesh has no more than the target count of triangles, or until no
+     * edge can be collapsed without changing its shape too much.
+     */
+    void simplify(int targetCount) {
+        int vertexCount = mesh.vertexCount;
+        int triangleCount = mesh.triangleCount;
+        quadrics = new double[10 * vertexCount];
+        borders = new boolean[vertexCount];
+        refStarts = new int[vertexCount];
+        refCounts = new int[vertexCount];
+        errors = new double[4 * triangleCount];
+        normals = new double[3 * triangleCount];
+        deleted = new boolean[triangleCount];
+        dirty = new boolean[triangleCount];
+
+        int deletedCount = 0;
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            if (mesh.triangleCount - deletedCount <= targetCount) {
+                break;
+            }
+
+            if (iteration % UPDATE_INTERVAL == 0) {
+                deletedCount = update(iteration, deletedCount);
+            }
+
+            Arrays.fill(dirty, 0, mesh.triangleCount, false);
+            double threshold = 1e-9 * Math.pow(iteration + 3, AGGRESSIVENESS);
+
+            int[] triangles = mesh.triangles;
+            for (int t = 0; t < mesh.triangleCount && mesh.triangleCount - deletedCount > targetCount; t++) {
+                if (errors[4 * t + 3] > threshold || deleted[t] || dirty[t]) {
+                    continue;
+                }
+                for (int corner = 0; corner < 3; corner++) {
+                    if (errors[4 * t + corner] >= threshold) {
+                        continue;
+                    }
+                    int v0 = triangles[3 * t + corner];
+                    int v1 = triangles[3 * t + (corner + 1) % 3];
+                    if (borders[v0] != borders[v1]) {
+                        continue;
+                    }
+
+                    collapseError(v0, v1, point);
+
+                    if (refCounts[v0] > collapsed0.length) {
+                        collapsed0 = new boolean[2 * refCounts[v0]];
+                    }
+                    if (refCounts[v1] > collapsed1.length) {
+                        collapsed1 = new boolean[2 * refCounts[v1]];
+                    }
+                    if (flipped(v0, v1, collapsed0) || flipped(v1, v0, collapsed1)) {
+                        continue;
+                    }
+
+                    // v1 is merged into v0, at the position of least error
+                    System.arraycopy(point, 0, mesh.positions, 3 * v0, 3);
+                    for (int i = 0; i < 10; i++) {
+                        quadrics[10 * v0 + i] += quadrics[10 * v1 + i];
+                    }
+
+                    int refStart = refSize;
+                    deletedCount += updateTriangles(v0, v0, collapsed0);
+                    deletedCount += updateTriangles(v0, v1, collapsed1);
+                    int refCount = refSize - refStart;
+                    if (refCount <= refCounts[v0]) {
+                        // Fits in the previous references of v0, the new ones are dropped from the end
+                        System.arraycopy(refTriangles, refStart, refTriangles, refStarts[v0], refCount);
+                        System.arraycopy(refCorners, refStart, refCorners, refStarts[v0], refCount);
+                        refSize = refStart;
+                    } else {
+                        refStarts[v0] = refStart;
+                    }
+                    refCounts[v0] = refCount;
+                    break;
+                }
+            }
+        }
+
+        compact();
+    }
+
+    /*
+     * Removes the deleted triangles, and computes again the references from the vertices to the
+     * triangles. The first time, the quadrics, the errors and the borders are computed as well.
+     */
+    private int update(int iteration, int deletedCount) {
+        int[] triangles = mesh.triangles;
+        double[] positions = mesh.positions;
+
+        if (iteration > 0) {
+            int count = 0;
+            for (int t = 0; t < mesh.triangleCount; t++) {
+                if (!deleted[t]) {
+                    moveTriangle(t, count++);
+                }
+            }
+            mesh.triangleCount = count;
+            deletedCount = 0;
+        }
+
+        if (iteration == 0) {
+            for (int t = 0; t < mesh.triangleCount; t++) {
+                int p0 = 3 * triangles[3 * t];
+                int p1 = 3 * triangles[3 * t + 1];
+                int p2 = 3 * triangles[3 * t + 2];
+                double ax = positions[p1] - positions[p0];
+                double ay = positions[p1 + 1] - positions[p0 + 1];
+                double az = positions[p1 + 2] - positions[p0 + 2];
+                double bx = positions[p2] - positions[p0];
+                double by = positions[p2 + 1] - positions[p0 + 1];
+                double bz = positions[p2 + 2] - positions[p0 + 2];
+                double nx = ay * bz - az * by;
+                double ny = az * bx - ax * bz;
+                double nz = ax * by - ay * bx;
+                double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if (length > 0) {
+                    nx /= length;
+                    ny /= length;
+                    nz /= length;
+                }
+                normals[3 * t] = nx;
+                normals[3 * t + 1] = ny;
+                normals[3 * t + 2] = nz;
+
+                double d = -(nx * positions[p0] + ny * positions[p0 + 1] + nz * positions[p0 + 2]);
+                for (int corner = 0; corner < 3; corner++) {
+                    addPlane(triangles[3 * t + corner], nx, ny, nz, d);
+                }
+            }
+            for (int t = 0; t < mesh.triangleCount; t++) {
+                updateErrors(t);
+            }
+        }
+
+        buildReferences();
+
+        if (iteration == 0) {
+            findBorders();
+        }
+        return deletedCount;
+    }
+
+    private void buildReferences() {
+        int[] triangles = mesh.triangles;
+        Arrays.fill(refCounts, 0);
+        for (int i = 0; i < 3 * mesh.triangleCount; i++) {
+            refCounts[triangles[i]]++;
+        }
+        int start = 0;
+        for (int v = 0; v < mesh.vertexCount; v++) {
+            refStarts[v] = start;
+            start += refCounts[v];
+            refCounts[v] = 0;
+        }
+        if (refTriangles.length < start) {
+            refTriangles = new int[start + start / 2];
+            refCorners = new int[start + start / 2];
+        }
+        for (int t = 0; t < mesh.triangleCount; t++) {
+            for (int corner = 0; corner < 3; corner++) {
+                int v = triangles[3 * t + corner];
+                int ref = refStarts[v] + refCounts[v]++;
+                refTriangles[ref] = t;
+                refCorners[ref] = corner;
+            }
+        }
+        refSize = start;
+    }
+
+    // A vertex is on a border when one of its edges belongs to a single triangle
+    private void findBorders() {
+        int[] triangles = mesh.triangles;
+        int[] neighbours = new int[16];
+        int[] counts = new int[16];
+
+        for (int v = 0; v < mesh.vertexCount; v++) {
+            int neighbourCount = 0;
+            for (int r = refStarts[v]; r < refStarts[v] + refCounts[v]; r++) {
+                int t = refTriangles[r];
+                for (int corner = 0; corner < 3; corner++) {
+                    int neighbour = triangles[3 * t + corner];
+                    int n = 0;
+                    while (n < neighbourCount && neighbours[n] != neighbour) {
+                        n++;
+                    }
+                    if (n == neighbourCount) {
+                        if (neighbourCount == neighbours.length) {
+                            neighbours = Arrays.copyOf(neighbours, 2 * neighbourCount);
+                            counts = Arrays.copyOf(counts, 2 * neighbourCount);
+                        }
+                        neighbours[n] = neighbour;
+                        counts[n] = 0;
+                        neighbourCount++;
+                    }
+                    counts[n]++;
+                }
+            }
+            for (int n = 0; n < neighbourCount; n++) {
+                if (counts[n] == 1) {
+                    borders[neighbours[n]] = true;
+                }
+            }
+        }
+    }
+
+    /*
+     * Tells whether moving v0 to the collapse point flips one of its triangles, or makes it too
+     * thin. The triangles shared with v1, which disappear with the edge, are flagged.
+     */
+    private boolean flipped(int v0, int v1, boolean[] collapsed) {
+        int[] triangles = mesh.triangles;
+        double[] positions = mesh.positions;
+
+        for (int k = 0; k < refCounts[v0]; k++) {
+            int r = refStarts[v0] + k;
+            int t = refTriangles[r];
+            if (deleted[t]) {
+                continue;
+            }
+            int corner = refCorners[r];
+            int id1 = triangles[3 * t + (corner + 1) % 3];
+            int id2 = triangles[3 * t + (corner + 2) % 3];
+            if (id1 == v1 || id2 == v1) {
+                collapsed[k] = true;
+                continue;
+            }
+            collapsed[k] = false;
+
+            double d1x = positions[3 * id1] - point[0];
+            double d1y = positions[3 * id1 + 1] - point[1];
+            double d1z = positions[3 * id1 + 2] - point[2];
+            double length1 = Math.sqrt(d1x * d1x + d1y * d1y + d1z * d1z);
+            double d2x = positions[3 * id2] - point[0];
+            double d2y = positions[3 * id2 + 1] - point[1];
+            double d2z = positions[3 * id2 + 2] - point[2];
+            double length2 = Math.sqrt(d2x * d2x + d2y * d2y + d2z * d2z);
+            if (length1 == 0 || length2 == 0) {
+                return true;
+            }
+            d1x /= length1;
+            d1y /= length1;
+            d1z /= length1;
+            d2x /= length2;
+            d2y /= length2;
+            d2z /= length2;
+            if (Math.abs(d1x * d2x + d1y * d2y + d1z * d2z) > 0.999) {
+                return true;
+            }
+
+            double nx = d1y * d2z - d1z * d2y;
+            double ny = d1z * d2x - d1x * d2z;
+            double nz = d1x * d2y - d1y * d2x;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if ((nx * normals[3 * t] + ny * normals[3 * t + 1] + nz * normals[3 * t + 2]) / length < 0.2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Moves the triangles of the vertex v to v0, deleting the collapsed ones, and appends their
+     * references to the ones of v0.
+     * @return the count of deleted triangles
+     */
+    private int updateTriangles(int v0, int v, boolean[] collapsed) {
+        int deletedCount = 0;
+        for (int k = 0; k < refCounts[v]; k++) {
+            int r = refStarts[v] + k;
+            int t = refTriangles[r];
+            if (deleted[t]) {
+                continue;
+            }
+            if (collapsed[k]) {
+                deleted[t] = true;
+                deletedCount++;
+                continue;
+            }
+            mesh.triangles[3 * t + refCorners[r]] = v0;
+            dirty[t] = true;
+            updateErrors(t);
+            addReference(t, refCorners[r]);
+        }
+        return deletedCount;
+    }
+
+    private void addReference(int triangle, int corner) {
+        if (refSize == refTriangles.length) {
+            refTriangles = Arrays.copyOf(refTriangles, Math.max(16, 2 * refSize));
+            refCorners = Arrays.copyOf(refCorners, Math.max(16, 2 * refSize));
+        }
+        refTriangles[refSize] = triangle;
+        refCorners[refSize] = corner;
+        refSize++;
+    }
+
+    private void updateErrors(int t) {
+        int[] triangles = mesh.triangles;
+        double min = Double.MAX_VALUE;
+        for (int corner = 0; corner < 3; corner++) {
+            double error = collapseError(triangles[3 * t + corner], triangles[3 * t + (corner + 1) % 3], point);
+            errors[4 * t + corner] = error;
+            min = Math.min(min, error);
+        }
+        errors[4 * t + 3] = min;
+    }
+
+    /*
+     * Error of the collapse of the edge, its result being written in position. The vertex goes
+     * where the sum of the quadrics is the lowest, or to the best of the ends and the middle of the
+     * edge when there is no such single point, or when the edge is on a border.
+     */
+    private double collapseError(int v0, int v1, double[] position) {
+        double[] q = quadric;
+        for (int i = 0; i < 10; i++) {
+            q[i] = quadrics[10 * v0 + i] + quadrics[10 * v1 + i];
+        }
+        boolean border = borders[v0] && borders[v1];
+        double det = det(q, 0, 1, 2, 1, 4, 5, 2, 5, 7);
+
+        if (det != 0 && !border) {
+            position[0] = -1 / det * det(q, 1, 2, 3, 4, 5, 6, 5, 7, 8);
+            position[1] = 1 / det * det(q, 0, 2, 3, 1, 5, 6, 2, 7, 8);
+            position[2] = -1 / det * det(q, 0, 1, 3, 1, 4, 6, 2, 5, 8);
+            return vertexError(q, position[0], position[1], position[2]);
+        }
+
+        double[] positions = mesh.positions;
+        double x0 = positions[3 * v0], y0 = positions[3 * v0 + 1], z0 = positions[3 * v0 + 2];
+        double x1 = positions[3 * v1], y1 = positions[3 * v1 + 1], z1 = positions[3 * v1 + 2];
+        double xm = (x0 + x1) / 2, ym = (y0 + y1) / 2, zm = (z0 + z1) / 2;
+        double error0 = vertexError(q, x0, y0, z0);
+        double error1 = vertexError(q, x1, y1, z1);
+        double errorM = vertexError(q, xm, ym, zm);
+        double error = Math.min(error0, Math.min(error1, errorM));
+        if (error == error0) {
+            position[0] = x0;
+            position[1] = y0;
+            position[2] = z0;
+        } else if (error == error1) {
+            position[0] = x1;
+            position[1] = y1;
+            position[2] = z1;
+        } else {
+            position[0] = xm;
+            position[1] = ym;
+            position[2] = zm;
+        }
+        return error;
+    }
+
+    // Adds the quadric of the plane ax + by + cz + d = 0 to the vertex
+    private void addPlane(int v, double a, double b, double c, double d) {
+        int i = 10 * v;
+        quadrics[i] += a * a;
+        quadrics[i + 1] += a * b;
+        quadrics[i + 2] += a * c;
+        quadrics[i + 3] += a * d;
+        quadrics[i + 4] += b * b;
+        quadrics[i + 5] += b * c;
+        quadrics[i + 6] += b * d;
+        quadrics[i + 7] += c * c;
+        quadrics[i + 8] += c * d;
+        quadrics[i + 9] += d * d;
+    }
+
+    private static double vertexError(double[] q, double x, double y, double z) {
+        return q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z + 2 * q[3] * x + q[4] * y * y
+                + 2 * q[5] * y * z + 2 * q[6] * y + q[7] * z * z + 2 * q[8] * z + q[9];
+    }
+
+    private static double det(double[] q, int a11, int a12, int a13, int a21, int a22, int a23, int a31, int a32, int a33) {
+        return q[a11] * q[a22] * q[a33] + q[a13] * q[a21] * q[a32] + q[a12] * q[a23] * q[a31]
+                - q[a13] * q[a22] * q[a31] - q[a11] * q[a23] * q[a32] - q[a12] * q[a21] * q[a33];
+    }
+
+    private void moveTriangle(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        System.arraycopy(mesh.triangles, 3 * from, mesh.triangles, 3 * to, 3);
+        System.arraycopy(errors, 4 * from, errors, 4 * to, 4);
+        System.arraycopy(normals, 3 * from, normals, 3 * to, 3);
+        mesh.materials[to] = mesh.materials[from];
+        deleted[to] = false;
+        dirty[to] = dirty[from];
+    }
+
+    // Removes the deleted triangles and the vertices no more used
+    private void compact() {
+        int[] triangles = mesh.triangles;
+        int count = 0;
+        for (int t = 0; t < mesh.triangleCount; t++) {
+            if (!deleted[t]) {
+                System.arraycopy(triangles, 3 * t, triangles, 3 * count, 3);
+                mesh.materials[count] = mesh.materials[t];
+                count++;
+            }
+        }
+        mesh.triangleCount = count;
+
+        // The arrays by vertex are not needed anymore
+        int[] newIndices = refStarts;
+        boolean[] used = borders;
+        Arrays.fill(used, false);
+        for (int i = 0; i < 3 * count; i++) {
+            used[triangles[i]] = true;
+        }
+        int vertexCount = 0;
+        double[] positions = mesh.positions;
+        for (int v = 0; v < mesh.vertexCount; v++) {
+            if (used[v]) {
+                newIndices[v] = vertexCount;
+                System.arraycopy(positions, 3 * v, positions, 3 * vertexCount, 3);
+                vertexCount++;
+            }
+        }
+        for (int i = 0; i < 3 * count; i++) {
+            triangles[i] = newIndices[triangles[i]];
+        }
+        mesh.vertexCount = vertexCount;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.converters.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A triangle mesh read from an OBJ file, held in primitive arrays.
+ *
+ * Vertex positions are stored three by three in {@link #positions}, triangles as three vertex
+ * indices in {@link #triangles} with the index of their material in {@link #materials}. Polygons
+ * are split in triangles. Texture coordinates, normals and groups are not kept, only the material
+ * libraries and the materials assigned to the faces.
+ */
+class ObjMesh {
+
+    double[] positions = new double[3 * 1024];
+    int vertexCount;
+
+    int[] triangles = new int[3 * 1024];
+    int[] materials = new int[1024];
+    int triangleCount;
+
+    final List<String> materialLibraries = new ArrayList<>();
+    // Index 0 stands for the faces declared before any usemtl statement
+    final List<String> materialNames = new ArrayList<>(Arrays.asList((String) null));
+
+    static ObjMesh read(File file) throws IOException {
+        ObjMesh mesh = new ObjMesh();
+        int material = 0;
+        int[] polygon = new int[16];
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1024 * 1024)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                switch (tokens[0]) {
+                    case "v":
+                        if (tokens.length < 4) {
+                            throw new IOException("Invalid vertex: " + line);
+                        }
+                        try {
+                            mesh.addVertex(Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]), Double.parseDouble(tokens[3]));
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Invalid vertex: " + line, e);
+                        }
+                        break;
+                    case "f":
+                        if (tokens.length - 1 > polygon.length) {
+                            polygon = new int[tokens.length - 1];
+                        }
+                        for (int i = 1; i < tokens.length; i++) {
+                            polygon[i - 1] = mesh.parseIndex(tokens[i], line);
+                        }
+                        for (int i = 2; i < tokens.length - 1; i++) {
+                            mesh.addTriangle(polygon[0], polygon[i - 1], polygon[i], material);
+                        }
+                        break;
+                    case "usemtl":
+                        String name = line.trim().substring("usemtl".length()).trim();
+                        material = mesh.materialNames.indexOf(name);
+                        if (material == -1) {
+                            material = mesh.materialNames.size();
+                            mesh.materialNames.add(name);
+                        }
+                        break;
+                    case "mtllib":
+                        mesh.materialLibraries.add(line.trim().substring("mtllib".length()).trim());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return mesh;
+    }
+
+    void write(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1024 * 1024)) {
+            for (String materialLibrary : materialLibraries) {
+                writer.write("mtllib " + materialLibrary + "\n");
+            }
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < vertexCount; i++) {
+                line.setLength(0);
+                line.append("v ").append((float) positions[3 * i]).append(' ')
+                        .append((float) positions[3 * i + 1]).append(' ')
+                        .append((float) positions[3 * i + 2]).append('\n');
+                writer.append(line);
+            }
+            int material = 0;
+            for (int i = 0; i < triangleCount; i++) {
+                if (materials[i] != material) {
+                    material = materials[i];
+                    writer.write("usemtl " + materialNames.get(material) + "\n");
+                }
+                line.setLength(0);
+                line.append("f ").append(triangles[3 * i] + 1).append(' ')
+                        .append(triangles[3 * i + 1] + 1).append(' ')
+                        .append(triangles[3 * i + 2] + 1).append('\n');
+                writer.append(line);
+            }
+        }
+    }
+
+    private void addVertex(double x, double y, double z) {
+        if (3 * vertexCount == positions.length) {
+            positions = Arrays.copyOf(positions, 2 * positions.length);
+        }
+        positions[3 * vertexCount] = x;
+        positions[3 * vertexCount + 1] = y;
+        positions[3 * vertexCount + 2] = z;
+        vertexCount++;
+    }
+
+    private void addTriangle(int v0, int v1, int v2, int material) {
+        // Degenerated triangles would only get in the way of the simplification
+        if (v0 == v1 || v1 == v2 || v2 == v0) {
+            return;
+        }
+        if (triangleCount == materials.length) {
+            triangles = Arrays.copyOf(triangles, 6 * triangleCount);
+            materials = Arrays.copyOf(materials, 2 * triangleCount);
+        }
+        triangles[3 * triangleCount] = v0;
+        triangles[3 * triangleCount + 1] = v1;
+        triangles[3 * triangleCount + 2] = v2;
+        materials[triangleCount] = material;
+        triangleCount++;
+    }
+
+    // Vertex index of a face element (v, v/vt, v//vn or v/vt/vn), from zero; negative ones are relative to the last vertex
+    private int parseIndex(String token, String line) throws IOException {
+        int slash = token.indexOf('/');
+        int index;
+        try {
+            index = Integer.parseInt(slash == -1 ? token : token.substring(0, slash));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid face: " + line, e);
+        }
+        index = index < 0 ? vertexCount + index : index - 1;
+        if (index < 0 || index >= vertexCount) {
+            throw new IOException("Invalid face: " + line);
+        }
+        return index;
+    }
+}
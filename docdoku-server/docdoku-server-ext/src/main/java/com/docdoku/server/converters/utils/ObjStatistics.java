@@ -0,0 +1,281 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.converters.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The bounding box and the vertex and face counts of an OBJ file.
+ *
+ * The file is read in a single pass through memory mapped windows, the vertices being looked at
+ * one by one without building the mesh: files of several hundred megabytes are handled with a
+ * constant amount of memory. Only the <code>v</code> and <code>f</code> statements are read, the
+ * others being skipped.
+ */
+public class ObjStatistics {
+
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    // Exact powers of ten, a decimal with up to 15 digits divided by one of them is correctly rounded
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+    private final double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    private long vertexCount;
+    private long faceCount;
+    private long triangleCount;
+
+    // Position following the last number read
+    private int cursor;
+
+    private ObjStatistics() {
+    }
+
+    public static ObjStatistics parse(File file) throws IOException {
+        return parse(file, WINDOW_SIZE);
+    }
+
+    static ObjStatistics parse(File file, long windowSize) throws IOException {
+        ObjStatistics statistics = new ObjStatistics();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(windowSize, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                // The last line of the window is read with the next one, unless the file ends there
+                if (position + length < size) {
+                    end = lastLineEnd(buffer, end);
+                    if (end == 0) {
+                        throw new IOException("Line longer than " + windowSize + " bytes at offset " + position + " of " + file.getName());
+                    }
+                }
+                statistics.parseLines(buffer, end);
+                position += end;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * @return the box as min x, y, z then max x, y, z, only zeros if there is no vertex
+     */
+    public double[] getBox() {
+        if (vertexCount == 0) {
+            return new double[6];
+        }
+        return new double[]{min[0], min[1], min[2], max[0], max[1], max[2]};
+    }
+
+    public long getVertexCount() {
+        return vertexCount;
+    }
+
+    public long getFaceCount() {
+        return faceCount;
+    }
+
+    /**
+     * @return the number of triangles of the faces once triangulated
+     */
+    public long getTriangleCount() {
+        return triangleCount;
+    }
+
+    private void parseLines(ByteBuffer buffer, int end) throws IOException {
+        int position = 0;
+        while (position < end) {
+            position = skipBlanks(buffer, position, end);
+            if (position < end - 1 && isBlank(buffer.get(position + 1))) {
+                byte statement = buffer.get(position);
+                if (statement == 'v') {
+                    parseVertex(buffer, position + 2, end);
+                } else if (statement == 'f') {
+                    parseFace(buffer, position + 2, end);
+                }
+            }
+            position = nextLine(buffer, position, end);
+        }
+    }
+
+    private void parseVertex(ByteBuffer buffer, int position, int end) throws IOException {
+        cursor = position;
+        for (int i = 0; i < 3; i++) {
+            double coordinate = parseDouble(buffer, skipBlanks(buffer, cursor, end), end);
+            if (coordinate < min[i]) {
+                min[i] = coordinate;
+            }
+            if (coordinate > max[i]) {
+                max[i] = coordinate;
+            }
+        }
+        vertexCount++;
+    }
+
+    private void parseFace(ByteBuffer buffer, int position, int end) {
+        int vertices = 0;
+        int i = position;
+        while (i < end) {
+            i = skipBlanks(buffer, i, end);
+            if (i >= end || isLineEnd(buffer.get(i))) {
+                break;
+            }
+            vertices++;
+            while (i < end && !isBlank(buffer.get(i)) && !isLineEnd(buffer.get(i))) {
+                i++;
+            }
+        }
+        faceCount++;
+        if (vertices > 2) {
+            triangleCount += vertices - 2;
+        }
+    }
+
+    private double parseDouble(ByteBuffer buffer, int start, int end) throws IOException {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (digits > 0 || b != '0') {
+                    digits++;
+                }
+                if (digits <= MAX_EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (fraction) {
+                        scale--;
+                    }
+                } else if (!fraction) {
+                    scale++;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+
+        if (i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            int exponentStart = i + 1;
+            int j = exponentStart;
+            boolean negativeExponent = false;
+            if (j < end && (buffer.get(j) == '-' || buffer.get(j) == '+')) {
+                negativeExponent = buffer.get(j) == '-';
+                j++;
+            }
+            int exponent = 0;
+            int exponentDigits = 0;
+            while (j < end && buffer.get(j) >= '0' && buffer.get(j) <= '9' && exponentDigits < 9) {
+                exponent = exponent * 10 + (buffer.get(j) - '0');
+                exponentDigits++;
+                j++;
+            }
+            if (exponentDigits > 0) {
+                scale += negativeExponent ? -exponent : exponent;
+                i = j;
+            }
+        }
+
+        if (i == start || digits > MAX_EXACT_DIGITS || Math.abs(scale) >= POWERS_OF_TEN.length || !isNumberEnd(buffer, i, end)) {
+            return parseToken(buffer, start, end);
+        }
+
+        cursor = i;
+        double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    // Numbers which cannot be read exactly by the fast path, and malformed ones
+    private double parseToken(ByteBuffer buffer, int start, int end) throws IOException {
+        int i = start;
+        while (i < end && !isBlank(buffer.get(i)) && !isLineEnd(buffer.get(i))) {
+            i++;
+        }
+        byte[] token = new byte[i - start];
+        for (int j = 0; j < token.length; j++) {
+            token[j] = buffer.get(start + j);
+        }
+        cursor = i;
+        String number = new String(token, StandardCharsets.US_ASCII);
+        try {
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid vertex coordinate \"" + number + "\"", e);
+        }
+    }
+
+    private static boolean isNumberEnd(ByteBuffer buffer, int position, int end) {
+        return position >= end || isBlank(buffer.get(position)) || isLineEnd(buffer.get(position));
+    }
+
+    private static int skipBlanks(ByteBuffer buffer, int position, int end) {
+        int i = position;
+        while (i < end && isBlank(buffer.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int nextLine(ByteBuffer buffer, int position, int end) {
+        int i = position;
+        while (i < end && buffer.get(i) != '\n') {
+            i++;
+        }
+        return i + 1;
+    }
+
+    private static int lastLineEnd(ByteBuffer buffer, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+}
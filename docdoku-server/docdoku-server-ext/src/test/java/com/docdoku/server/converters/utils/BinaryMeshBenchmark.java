@@ -0,0 +1,134 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.converters.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reading the geometries in the binary mesh format, compared to reading their OBJ files. The
+ * sizes of both formats, raw and gzip compressed, are printed before the measures.
+ *
+ * Run from the test classpath of the module, the segments of the tessellated spheres being
+ * optional arguments (2 x segments x segments triangles):
+ * <code>java -cp ... com.docdoku.server.converters.utils.BinaryMeshBenchmark 500 1000</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BinaryMeshBenchmark {
+
+    @Param({"200", "700"})
+    private int segments;
+
+    private File objFile;
+    private byte[] binaryMesh;
+    private byte[] compressedBinaryMesh;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        objFile = File.createTempFile("benchmark", ".obj");
+
+        // Positions and normals of a sphere, as written by the converters
+        try (BufferedWriter writer = Files.newBufferedWriter(objFile.toPath(), StandardCharsets.US_ASCII)) {
+            writer.write("mtllib sphere.mtl\nusemtl grey\n");
+            for (int i = 0; i <= segments; i++) {
+                double theta = Math.PI * i / segments;
+                for (int j = 0; j < segments; j++) {
+                    double phi = 2 * Math.PI * j / segments;
+                    double x = Math.sin(theta) * Math.cos(phi);
+                    double y = Math.sin(theta) * Math.sin(phi);
+                    double z = Math.cos(theta);
+                    writer.write(String.format(Locale.ENGLISH, "v %.6f %.6f %.6f%nvn %.6f %.6f %.6f%n", 100 * x, 100 * y, 100 * z, x, y, z));
+                }
+            }
+            for (int i = 0; i < segments; i++) {
+                for (int j = 0; j < segments; j++) {
+                    int a = i * segments + j + 1;
+                    int b = i * segments + (j + 1) % segments + 1;
+                    writer.write("f " + a + "//" + a + " " + b + "//" + b + " " + (b + segments) + "//" + (b + segments) + "\n");
+                    writer.write("f " + a + "//" + a + " " + (b + segments) + "//" + (b + segments) + " " + (a + segments) + "//" + (a + segments) + "\n");
+                }
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryMesh.write(objFile, bytes);
+        binaryMesh = bytes.toByteArray();
+        compressedBinaryMesh = compress(binaryMesh);
+
+        System.out.printf(Locale.ENGLISH, "%n%d triangles: OBJ %d bytes (gzip %d), binary mesh %d bytes (gzip %d)%n",
+                2 * segments * segments, objFile.length(), compress(Files.readAllBytes(objFile.toPath())).length,
+                binaryMesh.length, compressedBinaryMesh.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(objFile.toPath());
+    }
+
+    @Benchmark
+    public int readObj() throws IOException {
+        return ObjMesh.read(objFile).triangleCount;
+    }
+
+    @Benchmark
+    public int readBinaryMesh() throws IOException {
+        return BinaryMesh.read(new ByteArrayInputStream(binaryMesh)).triangleCount;
+    }
+
+    @Benchmark
+    public int readCompressedBinaryMesh() throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressedBinaryMesh))) {
+            return BinaryMesh.read(inputStream).triangleCount;
+        }
+    }
+
+    private static byte[] compress(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new GZIPOutputStream(bytes)) {
+            outputStream.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().include(BinaryMeshBenchmark.class.getSimpleName());
+        if (args.length > 0) {
+            options = options.param("segments", args);
+        }
+        new Runner(options.build()).run();
+    }
+}
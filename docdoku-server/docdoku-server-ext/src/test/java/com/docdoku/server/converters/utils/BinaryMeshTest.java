@@ -0,0 +1,116 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.converters.utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class BinaryMeshTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("mesh", ".obj");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Test
+    public void writeReadTest() throws IOException {
+        Files.write(file.toPath(), ("mtllib box.mtl\n"
+                + "v -1 0 0\nv 1 0 0\nv 1 2 0\nv -1 2 0.5\n"
+                + "usemtl red\n"
+                + "f 1 2 3\n"
+                + "usemtl blue\n"
+                + "f 1 3 4\n"
+                + "usemtl red\n"
+                + "f 2 3 4\n").getBytes(StandardCharsets.US_ASCII));
+
+        ObjMesh mesh = read(write());
+
+        Assert.assertEquals(4, mesh.vertexCount);
+        Assert.assertEquals(3, mesh.triangleCount);
+        Assert.assertEquals("box.mtl", mesh.materialLibraries.get(0));
+        Assert.assertArrayEquals(new double[]{-1, 0, 0, 1, 0, 0, 1, 2, 0, -1, 2, 0.5}, mesh.positions, 1e-4);
+        // Grouped by material
+        Assert.assertArrayEquals(new int[]{0, 1, 2, 1, 2, 3, 0, 2, 3}, mesh.triangles);
+        Assert.assertEquals("red", mesh.materialNames.get(mesh.materials[0]));
+        Assert.assertEquals("red", mesh.materialNames.get(mesh.materials[1]));
+        Assert.assertEquals("blue", mesh.materialNames.get(mesh.materials[2]));
+    }
+
+    @Test
+    public void largeMeshTest() throws IOException {
+        StringBuilder obj = new StringBuilder();
+        int vertexCount = 70000;
+        for (int i = 0; i < vertexCount; i++) {
+            obj.append("v ").append(i * 0.001).append(" ").append(Math.sin(i)).append(" 1\n");
+        }
+        for (int i = 1; i < vertexCount - 1; i++) {
+            obj.append("f ").append(i).append(' ').append(i + 1).append(' ').append(i + 2).append('\n');
+        }
+        Files.write(file.toPath(), obj.toString().getBytes(StandardCharsets.US_ASCII));
+
+        byte[] bytes = write();
+        ObjMesh mesh = read(bytes);
+
+        Assert.assertEquals(vertexCount - 2, mesh.triangleCount);
+        Assert.assertEquals(vertexCount - 1, mesh.triangles[3 * mesh.triangleCount - 1]);
+        Assert.assertEquals(69.999, mesh.positions[3 * (vertexCount - 1)], 70.0 / 65535);
+        Assert.assertTrue(bytes.length * 2 < file.length());
+    }
+
+    @Test
+    public void emptyMeshTest() throws IOException {
+        ObjMesh mesh = read(write());
+
+        Assert.assertEquals(0, mesh.vertexCount);
+        Assert.assertEquals(0, mesh.triangleCount);
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidMeshTest() throws IOException {
+        read("v 1 2 3\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private byte[] write() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryMesh.write(file, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private ObjMesh read(byte[] bytes) throws IOException {
+        return BinaryMesh.read(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.converters.utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class MeshDecimatorTest {
+
+    private File folder;
+
+    @Before
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("decimator").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void readTest() throws IOException {
+        File file = new File(folder, "quad.obj");
+        Files.write(file.toPath(), ("mtllib quad.mtl\n"
+                + "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n"
+                + "vn 0 0 1\n"
+                + "usemtl blue\n"
+                + "f 1//1 2//1 3//1 4//1\n"
+                + "usemtl red\n"
+                + "f -4 -2 -1\n").getBytes(StandardCharsets.US_ASCII));
+
+        ObjMesh mesh = ObjMesh.read(file);
+
+        Assert.assertEquals(4, mesh.vertexCount);
+        Assert.assertEquals(3, mesh.triangleCount);
+        Assert.assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3, 0, 2, 3}, Arrays.copyOf(mesh.triangles, 9));
+        Assert.assertEquals("blue", mesh.materialNames.get(mesh.materials[0]));
+        Assert.assertEquals("red", mesh.materialNames.get(mesh.materials[2]));
+        Assert.assertEquals("quad.mtl", mesh.materialLibraries.get(0));
+    }
+
+    @Test
+    public void decimateTest() throws IOException {
+        File file = new File(folder, "sphere.obj");
+        writeSphere(file, 64);
+        ObjMesh original = ObjMesh.read(file);
+
+        List<File> lods = MeshDecimator.decimate(file, folder, 0.6, 0.2);
+
+        Assert.assertEquals("sphere60.obj", lods.get(0).getName());
+        Assert.assertEquals("sphere20.obj", lods.get(1).getName());
+        ObjMesh lod60 = ObjMesh.read(lods.get(0));
+        ObjMesh lod20 = ObjMesh.read(lods.get(1));
+        assertSimplified(original, lod60, 0.6);
+        assertSimplified(original, lod20, 0.2);
+        Assert.assertEquals("mtllib sphere.mtl", Files.readAllLines(lods.get(1).toPath()).get(0));
+    }
+
+    @Test
+    public void emptyMeshTest() throws IOException {
+        File file = new File(folder, "empty.obj");
+        Files.write(file.toPath(), new byte[0]);
+
+        List<File> lods = MeshDecimator.decimate(file, folder, 0.5);
+
+        Assert.assertEquals(0, ObjMesh.read(lods.get(0)).triangleCount);
+    }
+
+    private void assertSimplified(ObjMesh original, ObjMesh lod, double ratio) {
+        Assert.assertTrue(lod.triangleCount <= original.triangleCount * ratio);
+        Assert.assertTrue(lod.triangleCount >= original.triangleCount * ratio * 0.9);
+        for (int i = 0; i < 3 * lod.triangleCount; i++) {
+            Assert.assertTrue(lod.triangles[i] >= 0 && lod.triangles[i] < lod.vertexCount);
+        }
+        // The vertices stay close to the unit sphere
+        for (int v = 0; v < lod.vertexCount; v++) {
+            double x = lod.positions[3 * v], y = lod.positions[3 * v + 1], z = lod.positions[3 * v + 2];
+            Assert.assertEquals(1, Math.sqrt(x * x + y * y + z * z), 0.05);
+        }
+    }
+
+    private void writeSphere(File file, int segments) throws IOException {
+        StringBuilder obj = new StringBuilder("mtllib sphere.mtl\nusemtl grey\n");
+        for (int i = 0; i <= segments; i++) {
+            double theta = Math.PI * i / segments;
+            for (int j = 0; j < segments; j++) {
+                double phi = 2 * Math.PI * j / segments;
+                obj.append("v ").append(Math.sin(theta) * Math.cos(phi)).append(' ')
+                        .append(Math.sin(theta) * Math.sin(phi)).append(' ')
+                        .append(Math.cos(theta)).append('\n');
+            }
+        }
+        for (int i = 0; i < segments; i++) {
+            for (int j = 0; j < segments; j++) {
+                int a = i * segments + j + 1;
+                int b = i * segments + (j + 1) % segments + 1;
+                obj.append("f ").append(a).append(' ').append(b).append(' ').append(b + segments).append(' ').append(a + segments).append('\n');
+            }
+        }
+        Files.write(file.toPath(), obj.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+}
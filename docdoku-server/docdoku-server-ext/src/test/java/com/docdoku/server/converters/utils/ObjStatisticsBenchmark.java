@@ -0,0 +1,120 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.converters.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the bounding box of large OBJ files, compared to reading them line by line.
+ *
+ * Run from the test classpath of the module, the sizes of the files in megabytes being optional
+ * arguments: <code>java -cp ... com.docdoku.server.converters.utils.ObjStatisticsBenchmark 200 800</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObjStatisticsBenchmark {
+
+    @Param({"200", "500"})
+    private int sizeInMegabytes;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        file = File.createTempFile("benchmark", ".obj");
+        long size = sizeInMegabytes * 1024L * 1024L;
+        Random random = new Random(42);
+
+        // Half of the file made of vertices, the other half of the faces using them
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.US_ASCII)) {
+            long written = 0;
+            int vertices = 0;
+            while (written < size / 2) {
+                String line = String.format(Locale.ENGLISH, "v %.6f %.6f %.6f%n",
+                        random.nextGaussian() * 1000, random.nextGaussian() * 1000, random.nextGaussian() * 1000);
+                writer.write(line);
+                written += line.length();
+                vertices++;
+            }
+            while (written < size) {
+                int vertex = 1 + random.nextInt(vertices - 2);
+                String line = "f " + vertex + "//" + vertex + " " + (vertex + 1) + "//" + (vertex + 1) + " " + (vertex + 2) + "//" + (vertex + 2) + "\n";
+                writer.write(line);
+                written += line.length();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public double[] objStatistics() throws IOException {
+        return ObjStatistics.parse(file).getBox();
+    }
+
+    @Benchmark
+    public double[] lineByLine() throws IOException {
+        double[] box = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("v ")) {
+                    String[] tokens = line.trim().split("\\s+");
+                    for (int i = 0; i < 3; i++) {
+                        double coordinate = Double.parseDouble(tokens[i + 1]);
+                        box[i] = Math.min(box[i], coordinate);
+                        box[i + 3] = Math.max(box[i + 3], coordinate);
+                    }
+                }
+            }
+        }
+        return box;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().include(ObjStatisticsBenchmark.class.getSimpleName());
+        if (args.length > 0) {
+            options = options.param("sizeInMegabytes", args);
+        }
+        new Runner(options.build()).run();
+    }
+}
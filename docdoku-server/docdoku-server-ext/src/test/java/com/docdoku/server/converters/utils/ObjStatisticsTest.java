@@ -0,0 +1,105 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.converters.utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ObjStatisticsTest {
+
+    private static final String OBJ = "# cube\n"
+            + "mtllib cube.mtl\n"
+            + "o cube\n"
+            + "v -1.5 0.25 2\n"
+            + "v  1.5e1 -3.0E-1   +2.5\r\n"
+            + "\tv 0.000125 7 -4\n"
+            + "vn 0 0 1000\n"
+            + "vt 0.5 99\n"
+            + "usemtl red\n"
+            + "f 1/1/1 2/1/1 3/1/1\n"
+            + "f 1//1 2//1 3//1 1//1\r\n"
+            + "v 0.12345678901234567 -100 1\n";
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("statistics", ".obj");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Test
+    public void statisticsTest() throws IOException {
+        Files.write(file.toPath(), OBJ.getBytes(StandardCharsets.US_ASCII));
+        ObjStatistics statistics = ObjStatistics.parse(file);
+
+        Assert.assertEquals(4, statistics.getVertexCount());
+        Assert.assertEquals(2, statistics.getFaceCount());
+        Assert.assertEquals(3, statistics.getTriangleCount());
+        Assert.assertArrayEquals(new double[]{-1.5, -100, -4, 15, 7, 2.5}, statistics.getBox(), 0);
+    }
+
+    @Test
+    public void coordinatesAreReadExactlyTest() throws IOException {
+        String[] numbers = {"0.1", "-0.3", "123.456", "1e-5", "9.999999999999999", "0.12345678901234567", "-2.2250738585072014E-308"};
+        for (String number : numbers) {
+            Files.write(file.toPath(), ("v " + number + " " + number + " " + number + "\n").getBytes(StandardCharsets.US_ASCII));
+            double expected = Double.parseDouble(number);
+            Assert.assertArrayEquals(new double[]{expected, expected, expected, expected, expected, expected}, ObjStatistics.parse(file).getBox(), 0);
+        }
+    }
+
+    @Test
+    public void smallWindowsTest() throws IOException {
+        Files.write(file.toPath(), OBJ.getBytes(StandardCharsets.US_ASCII));
+        ObjStatistics whole = ObjStatistics.parse(file);
+        ObjStatistics windowed = ObjStatistics.parse(file, 40);
+
+        Assert.assertEquals(whole.getVertexCount(), windowed.getVertexCount());
+        Assert.assertEquals(whole.getFaceCount(), windowed.getFaceCount());
+        Assert.assertArrayEquals(whole.getBox(), windowed.getBox(), 0);
+    }
+
+    @Test
+    public void emptyFileTest() throws IOException {
+        ObjStatistics statistics = ObjStatistics.parse(file);
+
+        Assert.assertEquals(0, statistics.getVertexCount());
+        Assert.assertArrayEquals(new double[6], statistics.getBox(), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidCoordinateTest() throws IOException {
+        Files.write(file.toPath(), "v 1 2 abc\n".getBytes(StandardCharsets.US_ASCII));
+        ObjStatistics.parse(file);
+    }
+}
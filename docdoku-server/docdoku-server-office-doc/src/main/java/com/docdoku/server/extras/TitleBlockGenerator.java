@@ -32,7 +32,10 @@ import com.itextpdf.text.pdf.draw.LineSeparator;
 
 import javax.xml.bind.DatatypeConverter;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 import java.util.ResourceBundle;
@@ -380,6 +383,50 @@ public abstract class TitleBlockGenerator {
     }
 
 
+    /*
+    * Identify the title block of the iteration in the given locale: it changes with the iteration
+    * data and the progress of the workflow, a generated title block is reused while it is the same
+    * */
+    public static String getTitleBlockKey(DocumentIteration docI, Locale pLocale) {
+        return new DocumentTitleBlockGenerator(null, docI, pLocale).getKey();
+    }
+
+    public static String getTitleBlockKey(PartIteration partIteration, Locale pLocale) {
+        return new PartTitleBlockGenerator(null, partIteration, pLocale).getKey();
+    }
+
+    protected String getKey() {
+        StringBuilder content = new StringBuilder();
+        append(content, title, subject, authorName, version, creationDate, iterationDate, keywords, description,
+                currentIteration, revisionNote, lifeCycleState);
+        for (InstanceAttribute attr : instanceAttributes) {
+            append(content, attr.getName(), String.valueOf(attr.getValue()));
+        }
+        if (workflow != null) {
+            for (Activity activity : workflow.getActivities()) {
+                for (Task task : activity.getTasks()) {
+                    append(content, task.getTitle(), String.valueOf(task.getStatus()),
+                            task.getClosureDate() == null ? null : String.valueOf(task.getClosureDate().getTime()),
+                            task.getWorker() == null ? null : task.getWorker().getName(),
+                            task.getClosureComment(), task.getSignature());
+                }
+            }
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return pLocale.toLanguageTag() + "-" + DatatypeConverter.printHexBinary(digest).toLowerCase(Locale.ENGLISH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void append(StringBuilder content, String... values) {
+        for (String value : values) {
+            content.append(value).append('\u0000');
+        }
+    }
+
     protected static void addEmptyLine(Paragraph paragraph, int number) {
         for (int i = 0; i < number; i++) {
             paragraph.add(new Paragraph(" "));
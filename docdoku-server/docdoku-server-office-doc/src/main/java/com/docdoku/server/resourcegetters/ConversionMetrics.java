@@ -0,0 +1,93 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package com.docdoku.server.resourcegetters;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the office conversions: how long they waited for a worker, how long they took, and
+ * how many were turned away because too many were already waiting.
+ */
+public class ConversionMetrics {
+
+    private final AtomicLong conversions = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong conversionNanos = new AtomicLong();
+    private final AtomicLong maxConversionNanos = new AtomicLong();
+
+    void recordQueueWait(long nanos) {
+        queueWaitNanos.addAndGet(nanos);
+        maxQueueWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void recordConversion(long nanos, boolean success) {
+        conversions.incrementAndGet();
+        if (!success) {
+            failures.incrementAndGet();
+        }
+        conversionNanos.addAndGet(nanos);
+        maxConversionNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void recordRejection() {
+        rejections.incrementAndGet();
+    }
+
+    public long getConversions() {
+        return conversions.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public long getAverageQueueWaitMillis() {
+        long count = conversions.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.get() / count);
+    }
+
+    public long getMaxQueueWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos.get());
+    }
+
+    public long getAverageConversionMillis() {
+        long count = conversions.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(conversionNanos.get() / count);
+    }
+
+    public long getMaxConversionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxConversionNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "conversions=" + getConversions() + ", failures=" + getFailures() + ", rejections=" + getRejections()
+                + ", queue wait avg/max=" + getAverageQueueWaitMillis() + "/" + getMaxQueueWaitMillis() + " ms"
+                + ", conversion avg/max=" + getAverageConversionMillis() + "/" + getMaxConversionMillis() + " ms";
+    }
+}
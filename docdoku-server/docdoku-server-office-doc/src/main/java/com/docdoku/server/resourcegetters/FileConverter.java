@@ -17,34 +17,51 @@
  * You should have received a copy of the GNU Affero General Public License  
  * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
  */
-
 package com.docdoku.server.resourcegetters;
 
-import org.artofsolving.jodconverter.OfficeDocumentConverter;
-import org.artofsolving.jodconverter.office.DefaultOfficeManagerConfiguration;
-import org.artofsolving.jodconverter.office.OfficeManager;
+import com.docdoku.core.util.FileIO;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Singleton;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.nio.file.Files;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Converts office documents to PDF with a pool of office processes.
+ *
+ * As many conversions as there are workers run at a time, the next ones wait for a worker up to
+ * the queue timeout. Conversions beyond the queue size are refused at once rather than piling up.
+ */
 @Singleton
 public class FileConverter {
 
     private static final String PROPERTIES_FILE = "/com/docdoku/server/viewers/conf.properties";
     private static final String OO_HOME_KEY = "com.docdoku.server.viewers.ooHome";
     private static final String OO_PORT_KEY = "com.docdoku.server.viewers.ooPort";
+    private static final String OO_WORKERS_KEY = "com.docdoku.server.viewers.ooWorkers";
+    private static final String OO_QUEUE_SIZE_KEY = "com.docdoku.server.viewers.ooQueueSize";
+    private static final String OO_QUEUE_TIMEOUT_KEY = "com.docdoku.server.viewers.ooQueueTimeout";
+    private static final String OO_TASK_TIMEOUT_KEY = "com.docdoku.server.viewers.ooTaskTimeout";
     private static final Logger LOGGER = Logger.getLogger(FileConverter.class.getName());
 
-    private OfficeManager officeManager;
+    private OfficeConverter officeConverter;
+    private Semaphore workers;
+    private Semaphore pendingConversions;
+    private long queueTimeout;
+    private final ConversionMetrics metrics = new ConversionMetrics();
+
+    public FileConverter() {
+    }
+
+    FileConverter(OfficeConverter officeConverter, int workerCount, int queueSize, long queueTimeout) {
+        configure(officeConverter, workerCount, queueSize, queueTimeout);
+    }
 
     @PostConstruct
     private void init() {
@@ -56,40 +73,97 @@ public class FileConverter {
             properties.load(inputStream);
             String ooHome = properties.getProperty(OO_HOME_KEY);
             int ooPort = Integer.parseInt(properties.getProperty(OO_PORT_KEY));
-            officeManager = new DefaultOfficeManagerConfiguration()
-                    .setOfficeHome(new File(ooHome))
-                    .setPortNumber(ooPort)
-                    .buildOfficeManager();
-            officeManager.start();
+            int workerCount = Integer.parseInt(properties.getProperty(OO_WORKERS_KEY, "2"));
+            int queueSize = Integer.parseInt(properties.getProperty(OO_QUEUE_SIZE_KEY, "20"));
+            long ooQueueTimeout = Long.parseLong(properties.getProperty(OO_QUEUE_TIMEOUT_KEY, "60000"));
+            long taskTimeout = Long.parseLong(properties.getProperty(OO_TASK_TIMEOUT_KEY, "120000"));
+
+            configure(new JODOfficeConverter(ooHome, ooPort, workerCount, ooQueueTimeout, taskTimeout), workerCount, queueSize, ooQueueTimeout);
+            officeConverter.start();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, null, e);
             throw new RuntimeException(e);
         }
     }
 
+    private void configure(OfficeConverter pOfficeConverter, int workerCount, int queueSize, long pQueueTimeout) {
+        officeConverter = pOfficeConverter;
+        workers = new Semaphore(workerCount, true);
+        pendingConversions = new Semaphore(workerCount + queueSize);
+        queueTimeout = pQueueTimeout;
+    }
+
     @PreDestroy
     private void close(){
-        officeManager.stop();
+        LOGGER.log(Level.INFO, "Office conversions: " + metrics);
+        officeConverter.stop();
     }
 
-    public synchronized InputStream convertToPDF(String sourceName, final InputStream streamToConvert) throws IOException {
-        File tmpDir = Files.createTempDirectory("docdoku-").toFile();
-        File fileToConvert = new File(tmpDir, sourceName);
-
-        Files.copy(streamToConvert, fileToConvert.toPath());
-
-        File pdfFile = convertToPDF(fileToConvert);
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
 
-        //clean-up
-        tmpDir.deleteOnExit();
+    /**
+     * @return the PDF, its temporary files are removed when the stream is closed
+     * @throws IOException if the conversion fails, or if there are too many conversions waiting
+     */
+    public InputStream convertToPDF(String sourceName, final InputStream streamToConvert) throws IOException {
+        if (!pendingConversions.tryAcquire()) {
+            metrics.recordRejection();
+            throw new IOException("Too many documents waiting for their conversion to PDF, " + sourceName + " refused");
+        }
 
-        return new FileInputStream(pdfFile);
+        File tmpDir = Files.createTempDirectory("docdoku-").toFile();
+        try {
+            File fileToConvert = new File(tmpDir, sourceName);
+            Files.copy(streamToConvert, fileToConvert.toPath());
+
+            File pdfFile = convertToPDF(fileToConvert);
+            return new FilterInputStream(new FileInputStream(pdfFile)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        FileIO.rmDir(tmpDir);
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            FileIO.rmDir(tmpDir);
+            throw e;
+        } finally {
+            pendingConversions.release();
+        }
     }
 
-    private File convertToPDF(File fileToConvert) {
+    private File convertToPDF(File fileToConvert) throws IOException {
         File pdfFile = new File(fileToConvert.getParentFile(), "converted.pdf");
-        OfficeDocumentConverter converter = new OfficeDocumentConverter(officeManager);
-        converter.convert(fileToConvert, pdfFile);
+
+        long queued = System.nanoTime();
+        try {
+            if (!workers.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS)) {
+                metrics.recordRejection();
+                throw new IOException("No office converter available after " + queueTimeout + " ms for " + fileToConvert.getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an office converter");
+        }
+
+        long started = System.nanoTime();
+        metrics.recordQueueWait(started - queued);
+        boolean success = false;
+        try {
+            officeConverter.convertToPDF(fileToConvert, pdfFile);
+            success = true;
+        } finally {
+            workers.release();
+            long duration = System.nanoTime() - started;
+            metrics.recordConversion(duration, success);
+            LOGGER.log(Level.FINE, "Conversion of " + fileToConvert.getName() + " " + (success ? "done" : "failed") + " in " + TimeUnit.NANOSECONDS.toMillis(duration)
+                    + " ms after waiting " + TimeUnit.NANOSECONDS.toMillis(started - queued) + " ms");
+        }
         return pdfFile;
     }
 
@@ -0,0 +1,77 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package com.docdoku.server.resourcegetters;
+
+import org.artofsolving.jodconverter.OfficeDocumentConverter;
+import org.artofsolving.jodconverter.office.DefaultOfficeManagerConfiguration;
+import org.artofsolving.jodconverter.office.OfficeException;
+import org.artofsolving.jodconverter.office.OfficeManager;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts office documents with OpenOffice/LibreOffice processes, one process per port.
+ *
+ * JODConverter hands each conversion to an idle process and restarts the processes which exceed
+ * the task timeout.
+ */
+public class JODOfficeConverter implements OfficeConverter {
+
+    private final OfficeManager officeManager;
+    private final OfficeDocumentConverter converter;
+
+    public JODOfficeConverter(String officeHome, int firstPort, int processes, long queueTimeout, long taskTimeout) {
+        int[] ports = new int[processes];
+        for (int i = 0; i < processes; i++) {
+            ports[i] = firstPort + i;
+        }
+        officeManager = new DefaultOfficeManagerConfiguration()
+                .setOfficeHome(new File(officeHome))
+                .setPortNumbers(ports)
+                .setTaskQueueTimeout(queueTimeout)
+                .setTaskExecutionTimeout(taskTimeout)
+                .buildOfficeManager();
+        converter = new OfficeDocumentConverter(officeManager);
+    }
+
+    @Override
+    public void start() throws IOException {
+        try {
+            officeManager.start();
+        } catch (OfficeException e) {
+            throw new IOException("Cannot start the office processes", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        officeManager.stop();
+    }
+
+    @Override
+    public void convertToPDF(File source, File pdf) throws IOException {
+        try {
+            converter.convert(source, pdf);
+        } catch (OfficeException e) {
+            throw new IOException("Cannot convert " + source.getName() + " to PDF", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package com.docdoku.server.resourcegetters;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts office documents to PDF.
+ *
+ * {@link FileConverter} runs as many conversions at a time as it has workers, implementations
+ * must support it.
+ */
+public interface OfficeConverter {
+
+    void start() throws IOException;
+
+    void stop();
+
+    /**
+     * Writes the PDF conversion of the source file to the given file.
+     */
+    void convertToPDF(File source, File pdf) throws IOException;
+}
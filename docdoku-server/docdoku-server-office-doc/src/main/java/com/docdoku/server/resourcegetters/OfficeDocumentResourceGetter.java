@@ -30,6 +30,7 @@ import com.docdoku.core.util.Tools;
 import com.docdoku.server.InternalService;
 import com.docdoku.server.extras.TitleBlockGenerator;
 import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Striped;
 import com.itextpdf.text.DocumentException;
 
 import javax.inject.Inject;
@@ -37,12 +38,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 public class OfficeDocumentResourceGetter implements DocumentResourceGetter {
 
     private static final Logger LOGGER = Logger.getLogger(DocumentResourceGetter.class.getName());
 
+    private static final Striped<Lock> CONVERSION_LOCKS = Striped.lock(64);
+
+    // End of the name of a title block PDF, after its locale
+    private static final Pattern TITLE_BLOCK_DIGEST = Pattern.compile("[0-9a-f]{40}\\.pdf");
+
     @Inject
     private FileConverter fileConverter;
 
@@ -63,18 +72,17 @@ public class OfficeDocumentResourceGetter implements DocumentResourceGetter {
     @Override
     public InputStream getConvertedResource(String outputFormat, BinaryResource binaryResource, DocumentIteration docI, Locale locale) throws ConvertedResourceException {
         try {
-            // TODO check for resources to be closed
-            InputStream inputStream=null;
-
-            if ("pdf".equals(outputFormat)) {
-                inputStream = getPdfConvertedResource(binaryResource);
+            if (!"pdf".equals(outputFormat)) {
+                return null;
             }
 
             if ("documents".equals(binaryResource.getHolderType()) && docI != null){
-                return TitleBlockGenerator.addBlockTitleToPDF(inputStream, docI, locale);
+                String titleBlockKey = TitleBlockGenerator.getTitleBlockKey(docI, locale);
+                return getTitleBlockPdfResource(binaryResource, locale, titleBlockKey,
+                        pdf -> TitleBlockGenerator.addBlockTitleToPDF(pdf, docI, locale));
             }
 
-            return inputStream;
+            return getPdfConvertedResource(binaryResource);
         } catch (StorageException | DocumentException | IOException e) {
             throw new ConvertedResourceException(locale,e);
         }
@@ -83,49 +91,117 @@ public class OfficeDocumentResourceGetter implements DocumentResourceGetter {
     @Override
     public InputStream getConvertedResource(String outputFormat, BinaryResource binaryResource, PartIteration partIteration, Locale locale) throws ConvertedResourceException {
         try {
-            InputStream inputStream=null;
-
-            if("pdf".equals(outputFormat)) {
-                inputStream = getPdfConvertedResource(binaryResource);
+            if (!"pdf".equals(outputFormat)) {
+                return null;
             }
 
             if("parts".equals(binaryResource.getHolderType()) && partIteration != null) {
-                return TitleBlockGenerator.addBlockTitleToPDF(inputStream,partIteration,locale);
+                String titleBlockKey = TitleBlockGenerator.getTitleBlockKey(partIteration, locale);
+                return getTitleBlockPdfResource(binaryResource, locale, titleBlockKey,
+                        pdf -> TitleBlockGenerator.addBlockTitleToPDF(pdf, partIteration, locale));
             }
 
-            return inputStream;
+            return getPdfConvertedResource(binaryResource);
         } catch (StorageException | DocumentException | IOException e) {
             throw new ConvertedResourceException(locale,e);
         }
     }
 
+    /*
+     * The PDF with its title block is kept next to the converted one, for the iteration of the
+     * binary resource and the locale, as long as the title block stays the same. The one of a
+     * previous title block is removed once replaced.
+     */
+    private InputStream getTitleBlockPdfResource(BinaryResource binaryResource, Locale locale, String titleBlockKey, TitleBlockWriter titleBlockWriter) throws StorageException, IOException, DocumentException {
+        String baseName = FileIO.getFileNameWithoutExtension(binaryResource.getName());
+        String subResourceVirtualPath = baseName + "." + titleBlockKey + ".pdf";
+        if (isUpToDate(binaryResource, subResourceVirtualPath)) {
+            return dataManager.getBinarySubResourceInputStream(binaryResource, subResourceVirtualPath);
+        }
+
+        Lock lock = CONVERSION_LOCKS.get(binaryResource.getFullName());
+        lock.lock();
+        try {
+            if (!isUpToDate(binaryResource, subResourceVirtualPath)) {
+                try (InputStream pdf = getPdfConvertedResource(binaryResource);
+                     InputStream pdfWithTitleBlock = titleBlockWriter.addTitleBlock(pdf)) {
+                    if (pdfWithTitleBlock == null) {
+                        throw new IOException("Cannot add the title block to " + binaryResource.getFullName());
+                    }
+                    writeSubResource(binaryResource, subResourceVirtualPath, pdfWithTitleBlock);
+                }
+                deletePreviousTitleBlocks(binaryResource, Tools.unAccent(baseName + "." + locale.toLanguageTag() + "-"), Tools.unAccent(subResourceVirtualPath));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return dataManager.getBinarySubResourceInputStream(binaryResource, subResourceVirtualPath);
+    }
+
     private InputStream getPdfConvertedResource(BinaryResource binaryResource) throws StorageException, IOException {
         String extension = FileIO.getExtension(binaryResource.getName());
-        InputStream inputStream;
 
         if ("pdf".equals(extension)) {
-            inputStream = dataManager.getBinaryResourceInputStream(binaryResource);
-        } else {
-            String subResourceVirtualPath = FileIO.getFileNameWithoutExtension(binaryResource.getName()) + ".pdf";
-            if (dataManager.exists(binaryResource, subResourceVirtualPath) &&
-                    dataManager.getLastModified(binaryResource, subResourceVirtualPath).after(binaryResource.getLastModified())) {
-                //if the resource is already converted, return it
-                inputStream = dataManager.getBinarySubResourceInputStream(binaryResource, subResourceVirtualPath);
-            } else {
-                String normalizedName = Tools.unAccent(binaryResource.getName());
-                //copy the converted file for further reuse
+            return dataManager.getBinaryResourceInputStream(binaryResource);
+        }
+
+        String subResourceVirtualPath = FileIO.getFileNameWithoutExtension(binaryResource.getName()) + ".pdf";
+        if (isUpToDate(binaryResource, subResourceVirtualPath)) {
+            //if the resource is already converted, return it
+            return dataManager.getBinarySubResourceInputStream(binaryResource, subResourceVirtualPath);
+        }
 
-                // TODO check for resources to be closed
-                try (OutputStream outputStream = dataManager.getBinarySubResourceOutputStream(binaryResource, subResourceVirtualPath);
-                     InputStream binaryResourceInputStream = dataManager.getBinaryResourceInputStream(binaryResource);
-                     InputStream inputStreamConverted = fileConverter.convertToPDF(normalizedName,binaryResourceInputStream)) {
-                    ByteStreams.copy(inputStreamConverted, outputStream);
+        // Viewers of the same document wait for the same conversion instead of running their own
+        Lock lock = CONVERSION_LOCKS.get(binaryResource.getFullName());
+        lock.lock();
+        try {
+            if (!isUpToDate(binaryResource, subResourceVirtualPath)) {
+                String normalizedName = Tools.unAccent(binaryResource.getName());
+                //copy the converted file for further reuse, once the conversion has succeeded
+                try (InputStream binaryResourceInputStream = dataManager.getBinaryResourceInputStream(binaryResource);
+                     InputStream inputStreamConverted = fileConverter.convertToPDF(normalizedName, binaryResourceInputStream)) {
+                    writeSubResource(binaryResource, subResourceVirtualPath, inputStreamConverted);
                 }
-                inputStream = dataManager.getBinarySubResourceInputStream(binaryResource, subResourceVirtualPath);
             }
+        } finally {
+            lock.unlock();
         }
+        return dataManager.getBinarySubResourceInputStream(binaryResource, subResourceVirtualPath);
+    }
 
-        return inputStream;
+    /*
+     * Written aside then moved in place: the viewers which do not wait for the lock never read a
+     * partial file, and a failed write leaves the previous one.
+     */
+    private void writeSubResource(BinaryResource binaryResource, String subResourceVirtualPath, InputStream content) throws StorageException, IOException {
+        String tempVirtualPath = subResourceVirtualPath + "." + UUID.randomUUID() + ".tmp";
+        boolean written = false;
+        try {
+            try (OutputStream outputStream = dataManager.getBinarySubResourceOutputStream(binaryResource, tempVirtualPath)) {
+                ByteStreams.copy(content, outputStream);
+            }
+            dataManager.moveSubResource(binaryResource, tempVirtualPath, subResourceVirtualPath);
+            written = true;
+        } finally {
+            if (!written) {
+                dataManager.deleteSubResource(binaryResource, tempVirtualPath);
+            }
+        }
+    }
+
+    // Title blocks of the same locale with other keys, stored names have no accents
+    private void deletePreviousTitleBlocks(BinaryResource binaryResource, String localePrefix, String currentName) throws StorageException {
+        for (String name : dataManager.getSubResourceNames(binaryResource)) {
+            if (name.startsWith(localePrefix) && TITLE_BLOCK_DIGEST.matcher(name.substring(localePrefix.length())).matches()
+                    && !name.equals(currentName)) {
+                dataManager.deleteSubResource(binaryResource, name);
+            }
+        }
+    }
+
+    private boolean isUpToDate(BinaryResource binaryResource, String subResourceVirtualPath) throws StorageException {
+        return dataManager.exists(binaryResource, subResourceVirtualPath) &&
+                dataManager.getLastModified(binaryResource, subResourceVirtualPath).after(binaryResource.getLastModified());
     }
 
     @Override
@@ -138,4 +214,9 @@ public class OfficeDocumentResourceGetter implements DocumentResourceGetter {
         return null;
     }
 
+    @FunctionalInterface
+    private interface TitleBlockWriter {
+        InputStream addTitleBlock(InputStream pdf) throws IOException, DocumentException;
+    }
+
 }
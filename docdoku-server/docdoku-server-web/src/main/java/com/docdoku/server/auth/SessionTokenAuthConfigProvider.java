@@ -0,0 +1,130 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.auth;
+
+import com.docdoku.core.services.ISessionTokenManagerLocal;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.message.AuthException;
+import javax.security.auth.message.AuthStatus;
+import javax.security.auth.message.MessageInfo;
+import javax.security.auth.message.config.*;
+import java.util.Map;
+
+/**
+ * Provides the {@link SessionTokenAuthModule} to the container, for the servlet layer of the web
+ * application.
+ */
+public class SessionTokenAuthConfigProvider implements AuthConfigProvider {
+
+    private final ISessionTokenManagerLocal sessionTokenManager;
+    private final String realmName;
+
+    public SessionTokenAuthConfigProvider(ISessionTokenManagerLocal sessionTokenManager, String realmName) {
+        this.sessionTokenManager = sessionTokenManager;
+        this.realmName = realmName;
+    }
+
+    @Override
+    public ClientAuthConfig getClientAuthConfig(String layer, String appContext, CallbackHandler handler) {
+        return null;
+    }
+
+    @Override
+    public ServerAuthConfig getServerAuthConfig(String layer, String appContext, CallbackHandler handler) {
+        return new SessionTokenServerAuthConfig(layer, appContext, handler);
+    }
+
+    @Override
+    public void refresh() {
+        // Nothing to do
+    }
+
+    private class SessionTokenServerAuthConfig implements ServerAuthConfig {
+
+        private final String layer;
+        private final String appContext;
+        private final CallbackHandler handler;
+
+        SessionTokenServerAuthConfig(String layer, String appContext, CallbackHandler handler) {
+            this.layer = layer;
+            this.appContext = appContext;
+            this.handler = handler;
+        }
+
+        @Override
+        public ServerAuthContext getAuthContext(String authContextID, Subject serviceSubject, Map properties) throws AuthException {
+            SessionTokenAuthModule module = new SessionTokenAuthModule(sessionTokenManager, realmName);
+            module.initialize(null, null, handler, properties);
+            return new SessionTokenServerAuthContext(module);
+        }
+
+        @Override
+        public String getMessageLayer() {
+            return layer;
+        }
+
+        @Override
+        public String getAppContext() {
+            return appContext;
+        }
+
+        @Override
+        public String getAuthContextID(MessageInfo messageInfo) {
+            return appContext;
+        }
+
+        @Override
+        public void refresh() {
+            // Nothing to do
+        }
+
+        @Override
+        public boolean isProtected() {
+            return false;
+        }
+    }
+
+    private static class SessionTokenServerAuthContext implements ServerAuthContext {
+
+        private final SessionTokenAuthModule module;
+
+        SessionTokenServerAuthContext(SessionTokenAuthModule module) {
+            this.module = module;
+        }
+
+        @Override
+        public AuthStatus validateRequest(MessageInfo messageInfo, Subject clientSubject, Subject serviceSubject) throws AuthException {
+            return module.validateRequest(messageInfo, clientSubject, serviceSubject);
+        }
+
+        @Override
+        public AuthStatus secureResponse(MessageInfo messageInfo, Subject serviceSubject) throws AuthException {
+            return module.secureResponse(messageInfo, serviceSubject);
+        }
+
+        @Override
+        public void cleanSubject(MessageInfo messageInfo, Subject subject) throws AuthException {
+            module.cleanSubject(messageInfo, subject);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.auth;
+
+import com.docdoku.core.security.SessionToken;
+import com.docdoku.core.services.ISessionTokenManagerLocal;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.message.AuthException;
+import javax.security.auth.message.AuthStatus;
+import javax.security.auth.message.MessageInfo;
+import javax.security.auth.message.MessagePolicy;
+import javax.security.auth.message.callback.CallerPrincipalCallback;
+import javax.security.auth.message.callback.GroupPrincipalCallback;
+import javax.security.auth.message.callback.PasswordValidationCallback;
+import javax.security.auth.message.module.ServerAuthModule;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.xml.bind.DatatypeConverter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Authenticates the requests of the web application, in place of the BASIC authentication of the
+ * container.
+ *
+ * The caller is taken, in this order, from:
+ * <ul>
+ * <li>a session token sent in the <code>Authorization: Bearer</code> header, verified in memory;</li>
+ * <li>the session token kept in the HTTP session at login;</li>
+ * <li>credentials sent in the <code>Authorization: Basic</code> header, checked against the realm.</li>
+ * </ul>
+ *
+ * The groups of a token caller are those written in the token, so neither the password nor the
+ * account is read. The verified token is put in the {@link #REQUEST_ATTRIBUTE} request attribute.
+ *
+ * Requests without valid credentials go on anonymously, the filters deciding whether they need an
+ * authenticated caller, except for the resources protected by the container which are answered
+ * with a BASIC challenge.
+ */
+public class SessionTokenAuthModule implements ServerAuthModule {
+
+    public static final String REQUEST_ATTRIBUTE = "com.docdoku.server.auth.sessionToken";
+    public static final String SESSION_ATTRIBUTE = "sessionToken";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String BASIC_PREFIX = "Basic ";
+    private static final String IS_MANDATORY = "javax.security.auth.message.MessagePolicy.isMandatory";
+
+    private static final Class[] SUPPORTED_MESSAGE_TYPES = {HttpServletRequest.class, HttpServletResponse.class};
+
+    private static final Logger LOGGER = Logger.getLogger(SessionTokenAuthModule.class.getName());
+
+    private final ISessionTokenManagerLocal sessionTokenManager;
+    private final String realmName;
+
+    private CallbackHandler handler;
+
+    public SessionTokenAuthModule(ISessionTokenManagerLocal sessionTokenManager, String realmName) {
+        this.sessionTokenManager = sessionTokenManager;
+        this.realmName = realmName;
+    }
+
+    @Override
+    public void initialize(MessagePolicy requestPolicy, MessagePolicy responsePolicy, CallbackHandler handler, Map options) throws AuthException {
+        this.handler = handler;
+    }
+
+    @Override
+    public Class[] getSupportedMessageTypes() {
+        return SUPPORTED_MESSAGE_TYPES.clone();
+    }
+
+    @Override
+    public AuthStatus validateRequest(MessageInfo messageInfo, Subject clientSubject, Subject serviceSubject) throws AuthException {
+        HttpServletRequest request = (HttpServletRequest) messageInfo.getRequestMessage();
+        HttpServletResponse response = (HttpServletResponse) messageInfo.getResponseMessage();
+
+        try {
+            String authorization = request.getHeader("Authorization");
+            String bearerToken = getBearerToken(authorization);
+
+            if (bearerToken != null) {
+                if (authenticateWithToken(request, clientSubject, bearerToken)) {
+                    return AuthStatus.SUCCESS;
+                }
+            } else if (authorization != null && authorization.startsWith(BASIC_PREFIX)) {
+                if (authenticateWithCredentials(clientSubject, authorization.substring(BASIC_PREFIX.length()).trim())) {
+                    return AuthStatus.SUCCESS;
+                }
+            } else {
+                HttpSession session = request.getSession(false);
+                Object sessionToken = session == null ? null : session.getAttribute(SESSION_ATTRIBUTE);
+                if (sessionToken instanceof String && authenticateWithToken(request, clientSubject, (String) sessionToken)) {
+                    return AuthStatus.SUCCESS;
+                }
+            }
+
+            if (Boolean.parseBoolean((String) messageInfo.getMap().get(IS_MANDATORY))) {
+                response.setHeader("WWW-Authenticate", "Basic realm=\"" + realmName + "\"");
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+                return AuthStatus.SEND_FAILURE;
+            }
+
+            handler.handle(new Callback[]{new CallerPrincipalCallback(clientSubject, (Principal) null)});
+            return AuthStatus.SUCCESS;
+
+        } catch (IOException | UnsupportedCallbackException e) {
+            LOGGER.log(Level.SEVERE, null, e);
+            AuthException authException = new AuthException(e.getMessage());
+            authException.initCause(e);
+            throw authException;
+        }
+    }
+
+    @Override
+    public AuthStatus secureResponse(MessageInfo messageInfo, Subject serviceSubject) throws AuthException {
+        return AuthStatus.SEND_SUCCESS;
+    }
+
+    @Override
+    public void cleanSubject(MessageInfo messageInfo, Subject subject) throws AuthException {
+        if (subject != null) {
+            subject.getPrincipals().clear();
+        }
+    }
+
+    /**
+     * @return the token of a <code>Bearer</code> authorization header, null for other headers
+     */
+    public static String getBearerToken(String authorization) {
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+            return authorization.substring(BEARER_PREFIX.length()).trim();
+        }
+        return null;
+    }
+
+    private boolean authenticateWithToken(HttpServletRequest request, Subject clientSubject, String value) throws IOException, UnsupportedCallbackException {
+        SessionToken token = sessionTokenManager.verifyToken(value);
+        if (token == null) {
+            return false;
+        }
+        handler.handle(new Callback[]{
+                new CallerPrincipalCallback(clientSubject, token.getLogin()),
+                new GroupPrincipalCallback(clientSubject, new String[]{token.getGroupName()})
+        });
+        request.setAttribute(REQUEST_ATTRIBUTE, token);
+        return true;
+    }
+
+    private boolean authenticateWithCredentials(Subject clientSubject, String encodedCredentials) throws IOException, UnsupportedCallbackException {
+        String credentials;
+        try {
+            credentials = new String(DatatypeConverter.parseBase64Binary(encodedCredentials), StandardCharsets.US_ASCII);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.FINEST, null, e);
+            return false;
+        }
+        int colon = credentials.indexOf(':');
+        if (colon < 0) {
+            return false;
+        }
+        String login = credentials.substring(0, colon);
+        PasswordValidationCallback passwordValidation = new PasswordValidationCallback(clientSubject, login, credentials.substring(colon + 1).toCharArray());
+        handler.handle(new Callback[]{passwordValidation});
+        passwordValidation.clearPassword();
+        if (!passwordValidation.getResult()) {
+            return false;
+        }
+        handler.handle(new Callback[]{new CallerPrincipalCallback(clientSubject, login)});
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.auth;
+
+import com.docdoku.core.services.ISessionTokenManagerLocal;
+
+import javax.ejb.EJB;
+import javax.security.auth.message.config.AuthConfigFactory;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Registers the {@link SessionTokenAuthModule} for the web application when it starts.
+ *
+ * The realm checking the BASIC credentials is given by the <code>authRealm</code> context
+ * parameter.
+ */
+public class SessionTokenAuthRegistration implements ServletContextListener {
+
+    private static final String LAYER = "HttpServlet";
+    private static final String DEFAULT_REALM = "docdokuRealm";
+
+    @EJB
+    private ISessionTokenManagerLocal sessionTokenManager;
+
+    private String registrationId;
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        String realmName = context.getInitParameter("authRealm");
+        if (realmName == null) {
+            realmName = DEFAULT_REALM;
+        }
+        String appContext = context.getVirtualServerName() + " " + context.getContextPath();
+        registrationId = AuthConfigFactory.getFactory().registerConfigProvider(
+                new SessionTokenAuthConfigProvider(sessionTokenManager, realmName), LAYER, appContext, "DocDoku session tokens");
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        if (registrationId != null) {
+            AuthConfigFactory.getFactory().removeRegistration(registrationId);
+        }
+    }
+}
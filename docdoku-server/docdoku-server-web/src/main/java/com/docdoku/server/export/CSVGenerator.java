@@ -0,0 +1,80 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.export;
+
+import com.docdoku.core.exceptions.ApplicationException;
+import com.docdoku.server.rest.collections.QueryResult;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes query results as CSV (RFC 4180), with the columns of the Excel export.
+ *
+ * Rows are written to the stream as they are read, nothing is kept in memory.
+ */
+public class CSVGenerator {
+
+    public static final String CONTENT_TYPE = "text/csv; charset=UTF-8";
+    public static final String FILE_NAME = "export_parts.csv";
+
+    private static final char SEPARATOR = ',';
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    public void generateCSVResponse(QueryResult queryResult, Locale locale, String baseURL, OutputStream outputStream) throws ApplicationException, IOException {
+        // Not shared, its date formats are not thread safe
+        ExcelGenerator excelGenerator = new ExcelGenerator();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        List<String> selects = queryResult.getQuery().getSelects();
+        String header = String.join(";", selects);
+        writeLine(writer, excelGenerator.createXLSHeaderRow(header, header.split(";"), locale));
+
+        queryResult.writeRows(row -> writeLine(writer, excelGenerator.createXLSRow(selects, row, baseURL)));
+
+        writer.flush();
+    }
+
+    private void writeLine(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(SEPARATOR);
+            }
+            writeValue(writer, values[i]);
+        }
+        writer.write(LINE_SEPARATOR);
+    }
+
+    private void writeValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(SEPARATOR) == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1 && value.indexOf('\r') == -1) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -24,6 +24,7 @@ import com.docdoku.core.common.User;
 import com.docdoku.core.configuration.PathDataIteration;
 import com.docdoku.core.document.DocumentLink;
 import com.docdoku.core.document.DocumentRevision;
+import com.docdoku.core.exceptions.ApplicationException;
 import com.docdoku.core.meta.InstanceAttribute;
 import com.docdoku.core.meta.InstanceAttributeDescriptor;
 import com.docdoku.core.meta.InstanceListOfValuesAttribute;
@@ -37,135 +38,133 @@ import com.docdoku.core.util.Tools;
 import com.docdoku.server.helpers.LangHelper;
 import com.docdoku.server.rest.collections.QueryResult;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * @author Chadid Asmae
  */
 public class ExcelGenerator {
 
-    private static final Logger LOGGER = Logger.getLogger(ExcelGenerator.class.getName());
+    public static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    public static final String FILE_NAME = "export_parts.xlsx";
+
+    // Rows kept in memory while the workbook is written, the others are flushed to disk
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
 
     private SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
     private SimpleDateFormat attributeDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
-    public File generateXLSResponse(QueryResult queryResult, Locale locale, String baseURL) {
-        File excelFile = new File("export_parts.xls");
-        //Blank workbook
-        XSSFWorkbook workbook = new XSSFWorkbook();
+    /**
+     * Writes the rows of the query result to a workbook.
+     *
+     * Only the last rows are kept in memory, the previous ones are flushed to a temporary file
+     * while the rows are read. The caller writes the workbook and then disposes it, see
+     * {@link #writeXLSResponse(SXSSFWorkbook, OutputStream)}.
+     */
+    public SXSSFWorkbook generateXLSResponse(QueryResult queryResult, Locale locale, String baseURL) throws ApplicationException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW_SIZE);
 
-        //Create a blank sheet
-        XSSFSheet sheet = workbook.createSheet("Parts Data");
+        try {
+            Sheet sheet = workbook.createSheet("Parts Data");
+            CreationHelper factory = workbook.getCreationHelper();
+            Drawing drawing = sheet.createDrawingPatriarch();
 
-        String header = String.join(";", queryResult.getQuery().getSelects());
-        String[] columns = header.split(";");
+            // Define header style
+            Font headerFont = workbook.createFont();
+            headerFont.setBoldweight(Font.BOLDWEIGHT_BOLD);
+            headerFont.setFontHeightInPoints((short) 10);
+            headerFont.setFontName("Courier New");
+            headerFont.setItalic(true);
+            headerFont.setColor(IndexedColors.WHITE.getIndex());
+            CellStyle headerStyle = workbook.createCellStyle();
+            headerStyle.setFont(headerFont);
+            headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+            headerStyle.setFillPattern(CellStyle.SOLID_FOREGROUND);
+
+            String header = String.join(";", queryResult.getQuery().getSelects());
+            String[] columns = header.split(";");
+
+            // Key columns are styled like the header, on every row
+            CellStyle[] columnStyles = new CellStyle[columns.length];
+            for (int j = 0; j < columns.length; j++) {
+                String column = columns[j];
+                if (column.equals(QueryField.CTX_PRODUCT_ID) || column.equals(QueryField.CTX_SERIAL_NUMBER) || column.equals(QueryField.PART_MASTER_NUMBER)) {
+                    columnStyles[j] = headerStyle;
+                }
+            }
 
-        Map<Integer, String[]> data = new HashMap<>();
-        String[] headerFormatted = createXLSHeaderRow(header, columns, locale);
-        data.put(1, headerFormatted);
+            Row headerRow = writeXLSRow(sheet, drawing, factory, 0, createXLSHeaderRow(header, columns, locale), createXLSHeaderRowComments(header, columns), columnStyles);
+            for (int j = 0; j < columns.length; j++) {
+                Cell cell = headerRow.getCell(j) != null ? headerRow.getCell(j) : headerRow.createCell(j);
+                cell.setCellStyle(headerStyle);
+            }
 
-        Map<Integer, String[]> commentsData = new HashMap<>();
-        String[] headerComments = createXLSHeaderRowComments(header, columns);
-        commentsData.put(1, headerComments);
+            List<String> selects = queryResult.getQuery().getSelects();
+            int[] rownum = {1};
+            queryResult.forEachRow(row ->
+                    writeXLSRow(sheet, drawing, factory, rownum[0]++, createXLSRow(selects, row, baseURL), createXLSRowComments(selects, row), columnStyles));
 
-        List<String> selects = queryResult.getQuery().getSelects();
-        int i = 1;
-        for (QueryResultRow row : queryResult.getRows()) {
-            i++;
-            data.put(i, createXLSRow(selects, row, baseURL));
-            commentsData.put(i, createXLSRowComments(selects, row));
+        } catch (ApplicationException | RuntimeException e) {
+            workbook.dispose();
+            throw e;
         }
 
-        //Iterate over data and write to sheet
-        Set<Integer> keyset = data.keySet();
-        int rownum = 0;
-
-        for (Integer key : keyset) {
-
-            Row row = sheet.createRow(rownum++);
-            String[] objArr = data.get(key);
-            int cellnum = 0;
-            for (String obj : objArr) {
-                Cell cell = row.createCell(cellnum++);
-                cell.setCellValue(obj);
-            }
+        return workbook;
+    }
 
-            CreationHelper factory = workbook.getCreationHelper();
-            Drawing drawing = sheet.createDrawingPatriarch();
-            String[] commentsObjArr = commentsData.get(key);
-            cellnum = 0;
-            for (String commentsObj : commentsObjArr) {
-                if (commentsObj.length() > 0) {
-                    Cell cell = row.getCell(cellnum) != null ? row.getCell(cellnum) : row.createCell(cellnum);
-
-                    // When the comment box is visible, have it show in a 1x3 space
-                    ClientAnchor anchor = factory.createClientAnchor();
-                    anchor.setCol1(cell.getColumnIndex());
-                    anchor.setCol2(cell.getColumnIndex()+1);
-                    anchor.setRow1(row.getRowNum());
-                    anchor.setRow2(row.getRowNum()+1);
-
-                    Comment comment = drawing.createCellComment(anchor);
-                    RichTextString str = factory.createRichTextString(commentsObj);
-                    comment.setString(str);
-
-                    // Assign the comment to the cell
-                    cell.setCellComment(comment);
-                }
-                cellnum++;
-            }
+    /**
+     * Writes the workbook to the stream, and deletes its temporary file.
+     */
+    public void writeXLSResponse(SXSSFWorkbook workbook, OutputStream outputStream) throws IOException {
+        try {
+            workbook.write(outputStream);
+        } finally {
+            workbook.dispose();
         }
+    }
 
-        // Define header style
-        Font headerFont = workbook.createFont();
-        headerFont.setBoldweight(Font.BOLDWEIGHT_BOLD);
-        headerFont.setFontHeightInPoints((short) 10);
-        headerFont.setFontName("Courier New");
-        headerFont.setItalic(true);
-        headerFont.setColor(IndexedColors.WHITE.getIndex());
-        CellStyle headerStyle = workbook.createCellStyle();
-        headerStyle.setFont(headerFont);
-        headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-        headerStyle.setFillPattern(CellStyle.SOLID_FOREGROUND);
-
-        // Set header style
-        for (int j=0; j<columns.length; j++) {
-            Cell cell = sheet.getRow(0).getCell(j);
-            cell.setCellStyle(headerStyle);
-
-            if (cell.getCellComment() != null) {
-                String comment = cell.getCellComment().getString().toString();
-
-                if (comment.equals(QueryField.CTX_PRODUCT_ID) || comment.equals(QueryField.CTX_SERIAL_NUMBER) || comment.equals(QueryField.PART_MASTER_NUMBER)) {
-                    for (int k=0; k<queryResult.getRows().size(); k++) {
-                        Cell grayCell = sheet.getRow(k+1).getCell(j) != null ? sheet.getRow(k+1).getCell(j) : sheet.getRow(k+1).createCell(j);
-                        grayCell.setCellStyle(headerStyle);
-                    }
-                }
+    private Row writeXLSRow(Sheet sheet, Drawing drawing, CreationHelper factory, int rownum, String[] values, String[] comments, CellStyle[] columnStyles) {
+        Row row = sheet.createRow(rownum);
+        int cellnum = 0;
+        for (String value : values) {
+            Cell cell = row.createCell(cellnum);
+            cell.setCellValue(value);
+            if (cellnum < columnStyles.length && columnStyles[cellnum] != null) {
+                cell.setCellStyle(columnStyles[cellnum]);
             }
+            cellnum++;
         }
 
-        try {
-            //Write the workbook in file system
-            FileOutputStream out = new FileOutputStream(excelFile);
-            workbook.write(out);
-            out.close();
-        } catch (Exception e) {
-            LOGGER.log(Level.FINEST, null, e);
-        }
-        return excelFile;
+        cellnum = 0;
+        for (String commentsObj : comments) {
+            if (commentsObj.length() > 0) {
+                Cell cell = row.getCell(cellnum) != null ? row.getCell(cellnum) : row.createCell(cellnum);
+
+                // When the comment box is visible, have it show in a 1x3 space
+                ClientAnchor anchor = factory.createClientAnchor();
+                anchor.setCol1(cell.getColumnIndex());
+                anchor.setCol2(cell.getColumnIndex()+1);
+                anchor.setRow1(row.getRowNum());
+                anchor.setRow2(row.getRowNum()+1);
+
+                Comment comment = drawing.createCellComment(anchor);
+                RichTextString str = factory.createRichTextString(commentsObj);
+                comment.setString(str);
 
+                // Assign the comment to the cell
+                cell.setCellComment(comment);
+            }
+            cellnum++;
+        }
+        return row;
     }
 
-    private String[] createXLSHeaderRow(String header, String[] columns, Locale locale) {
+    String[] createXLSHeaderRow(String header, String[] columns, Locale locale) {
         LangHelper langHelper = new LangHelper(locale);
         String[] headerFormatted = new String[header.split(";").length];
         int headerIndex = 0;
@@ -208,7 +207,7 @@ public class ExcelGenerator {
         return headerComments;
     }
 
-    private String[] createXLSRow(List<String> selects, QueryResultRow row, String baseURL) {
+    String[] createXLSRow(List<String> selects, QueryResultRow row, String baseURL) {
         List<String> data = new ArrayList<>();
         PartRevision part = row.getPartRevision();
         PartIteration lastCheckedInIteration = part.getLastCheckedInIteration();
@@ -364,8 +363,7 @@ public class ExcelGenerator {
 
         }
 
-        String rowData = String.join(";", data);
-        return rowData.split(";");
+        return data.toArray(new String[data.size()]);
     }
 
     private String[] createXLSRowComments(List<String> selects, QueryResultRow row) {
@@ -377,9 +375,7 @@ public class ExcelGenerator {
 
             if (select.equals(QueryField.CTX_SERIAL_NUMBER)) {
                 String path = row.getPath();
-                if (path != null && !path.isEmpty()) {
-                    commentsData.add(path);
-                }
+                commentsData.add(path != null ? path : "");
 
             } else if (select.startsWith(QueryField.PART_REVISION_ATTRIBUTES_PREFIX)) {
                 String attributeSelectType = select.substring(0, select.indexOf(".")).substring(QueryField.PART_REVISION_ATTRIBUTES_PREFIX.length());
@@ -438,8 +434,7 @@ public class ExcelGenerator {
 
         }
 
-        String commentsRowData = String.join(";", commentsData);
-        return commentsRowData.split(";");
+        return commentsData.toArray(new String[commentsData.size()]);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.filters;
+
+import com.docdoku.core.common.Workspace;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The account data given to the {@link com.docdoku.server.jsf.actions.AccountBean} of a request.
+ *
+ * The account fields are valid as long as the account revision is unchanged, the organization and
+ * workspaces until <code>expiration</code>.
+ */
+public class AccountData {
+
+    private final String login;
+    private final String name;
+    private final String email;
+    private final String language;
+    private final String timeZone;
+    private final boolean superAdmin;
+    private final long accountRevision;
+
+    private String organizationName;
+    private String organizationAdmin;
+    private Map<String, Workspace> administeredWorkspaces;
+    private Set<Workspace> regularWorkspaces;
+    private long expiration;
+
+    public AccountData(String login, String name, String email, String language, String timeZone, boolean superAdmin, long accountRevision) {
+        this.login = login;
+        this.name = name;
+        this.email = email;
+        this.language = language;
+        this.timeZone = timeZone;
+        this.superAdmin = superAdmin;
+        this.accountRevision = accountRevision;
+    }
+
+    /**
+     * @return a copy of the account fields, without organization and workspaces
+     */
+    public AccountData withoutWorkspaces() {
+        return new AccountData(login, name, email, language, timeZone, superAdmin, accountRevision);
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public boolean isSuperAdmin() {
+        return superAdmin;
+    }
+
+    public long getAccountRevision() {
+        return accountRevision;
+    }
+
+    public String getOrganizationName() {
+        return organizationName;
+    }
+
+    public void setOrganizationName(String organizationName) {
+        this.organizationName = organizationName;
+    }
+
+    public String getOrganizationAdmin() {
+        return organizationAdmin;
+    }
+
+    public void setOrganizationAdmin(String organizationAdmin) {
+        this.organizationAdmin = organizationAdmin;
+    }
+
+    public Map<String, Workspace> getAdministeredWorkspaces() {
+        return administeredWorkspaces;
+    }
+
+    public void setAdministeredWorkspaces(Map<String, Workspace> administeredWorkspaces) {
+        this.administeredWorkspaces = administeredWorkspaces;
+    }
+
+    public Set<Workspace> getRegularWorkspaces() {
+        return regularWorkspaces;
+    }
+
+    public void setRegularWorkspaces(Set<Workspace> regularWorkspaces) {
+        this.regularWorkspaces = regularWorkspaces;
+    }
+
+    public long getExpiration() {
+        return expiration;
+    }
+
+    public void setExpiration(long expiration) {
+        this.expiration = expiration;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiration;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.filters;
+
+import com.docdoku.core.common.Account;
+import com.docdoku.core.common.Organization;
+import com.docdoku.core.common.Workspace;
+import com.docdoku.core.exceptions.AccountNotFoundException;
+import com.docdoku.core.security.SessionToken;
+import com.docdoku.core.security.UserGroupMapping;
+import com.docdoku.core.services.*;
+
+import javax.ejb.EJB;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the account data of the callers, keeping it per session token.
+ *
+ * The account and its locale are kept until the account is modified, which changes its revision.
+ * The organization and the workspaces of the account are loaded again after a short time. Callers
+ * without a session token get their data loaded on each request.
+ */
+@ApplicationScoped
+public class AccountDataCache {
+
+    public static final long TIME_TO_LIVE = 30 * 1000;
+
+    private static final int MAX_ENTRIES = 10000;
+
+    @Inject
+    private IUserManagerLocal userManager;
+
+    @Inject
+    private IContextManagerLocal contextManager;
+
+    @Inject
+    private IAccountManagerLocal accountManager;
+
+    @EJB
+    private IOrganizationManagerLocal organizationManager;
+
+    @EJB
+    private ISessionTokenManagerLocal sessionTokenManager;
+
+    // Token id -> account data
+    private final Map<String, AccountData> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AccountData getAccountData(String remoteUser, SessionToken sessionToken) throws AccountNotFoundException {
+        long now = System.currentTimeMillis();
+        if (sessionToken == null || !sessionToken.getLogin().equals(remoteUser)) {
+            AccountData data = loadAccount(remoteUser, 0);
+            loadWorkspaces(remoteUser, data, now);
+            return data;
+        }
+
+        long accountRevision = sessionTokenManager.getAccountRevision(remoteUser);
+        AccountData cached = entries.get(sessionToken.getId());
+        if (cached != null && cached.getAccountRevision() == accountRevision && !cached.isExpired(now)) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        AccountData data = cached != null && cached.getAccountRevision() == accountRevision
+                ? cached.withoutWorkspaces()
+                : loadAccount(remoteUser, accountRevision);
+        loadWorkspaces(remoteUser, data, now);
+
+        if (entries.size() >= MAX_ENTRIES) {
+            purgeExpiredEntries(now);
+        }
+        entries.put(sessionToken.getId(), data);
+        return data;
+    }
+
+    public void evict(SessionToken sessionToken) {
+        entries.remove(sessionToken.getId());
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private AccountData loadAccount(String remoteUser, long accountRevision) throws AccountNotFoundException {
+        Account account = accountManager.getAccount(remoteUser);
+        boolean isAdmin = contextManager.isCallerInRole(UserGroupMapping.ADMIN_ROLE_ID);
+        return new AccountData(account.getLogin(), account.getName(), account.getEmail(), account.getLanguage(), account.getTimeZone(), isAdmin, accountRevision);
+    }
+
+    private void loadWorkspaces(String remoteUser, AccountData data, long now) throws AccountNotFoundException {
+        Organization organization = organizationManager.getOrganizationOfAccount(remoteUser);
+        if (organization != null) {
+            data.setOrganizationName(organization.getName());
+            data.setOrganizationAdmin(organization.getOwner().getLogin());
+        }
+
+        Map<String, Workspace> administeredWorkspaces = new HashMap<>();
+        for (Workspace wks : userManager.getAdministratedWorkspaces()) {
+            administeredWorkspaces.put(wks.getId(), wks);
+        }
+        data.setAdministeredWorkspaces(Collections.unmodifiableMap(administeredWorkspaces));
+
+        Set<Workspace> regularWorkspaces = new HashSet<>();
+        if (!data.isSuperAdmin()) {
+            regularWorkspaces.addAll(Arrays.asList(userManager.getWorkspacesWhereCallerIsActive()));
+            regularWorkspaces.removeAll(administeredWorkspaces.values());
+        }
+        data.setRegularWorkspaces(Collections.unmodifiableSet(regularWorkspaces));
+        data.setExpiration(now + TIME_TO_LIVE);
+    }
+
+    private void purgeExpiredEntries(long now) {
+        Iterator<AccountData> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+    }
+}
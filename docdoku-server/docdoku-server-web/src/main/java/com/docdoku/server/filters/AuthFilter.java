@@ -20,29 +20,25 @@
 
 package com.docdoku.server.filters;
 
-import com.docdoku.core.common.Account;
 import com.docdoku.core.exceptions.AccountNotFoundException;
-import com.docdoku.core.services.IAccountManagerLocal;
-import com.docdoku.core.services.IContextManagerLocal;
-import com.docdoku.core.services.IOrganizationManagerLocal;
-import com.docdoku.core.services.IUserManagerLocal;
 import com.docdoku.server.jsf.actions.AccountBean;
 
-import javax.ejb.EJB;
 import javax.el.PropertyNotFoundException;
 import javax.inject.Inject;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
-import javax.xml.bind.DatatypeConverter;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
+/**
+ * Requires an authenticated caller, the authentication itself being done by the
+ * {@link com.docdoku.server.auth.SessionTokenAuthModule}.
+ */
 public class AuthFilter implements Filter {
     private static final Logger LOGGER = Logger.getLogger(AuthFilter.class.getName());
     private static final String ENCODING = "UTF-8";
@@ -55,16 +51,7 @@ public class AuthFilter implements Filter {
     private AccountBean accountBean;
 
     @Inject
-    private IUserManagerLocal userManager;
-
-    @Inject
-    private IContextManagerLocal contextManager;
-
-    @Inject
-    private IAccountManagerLocal accountManager;
-
-    @EJB
-    private IOrganizationManagerLocal organizationManager;
+    private AccountDataCache accountDataCache;
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response,
@@ -73,10 +60,6 @@ public class AuthFilter implements Filter {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
         String remoteUser=httpRequest.getRemoteUser();
 
-        if(remoteUser == null){
-            remoteUser = authenticateUserWithHeaders(request);
-        }
-
         if(isExcludedURL(httpRequest) && remoteUser==null) {
             chain.doFilter(request, response);
         }
@@ -87,7 +70,7 @@ public class AuthFilter implements Filter {
             redirectLogin(httpRequest,response);
         } else {
             try {
-                FilterUtils.hookAccountBeanData(remoteUser, contextManager, userManager, accountManager, organizationManager, accountBean);
+                FilterUtils.hookAccountBeanData(httpRequest, accountDataCache, accountBean);
                 chain.doFilter(request, response);
             } catch (AccountNotFoundException e) {
                 LOGGER.log(Level.FINEST,null,e);
@@ -108,33 +91,6 @@ public class AuthFilter implements Filter {
         return Pattern.matches(apiPath, path);
     }
 
-    private String authenticateUserWithHeaders(ServletRequest pRequest) {
-
-        HttpServletRequest httpRequest = (HttpServletRequest) pRequest;
-        String authorization = httpRequest.getHeader("Authorization");
-
-        if(authorization != null && !authorization.isEmpty()){
-            String[] splitAuthorization = authorization.split(" ");
-            if(splitAuthorization.length == 2){
-                byte[] decoded = DatatypeConverter.parseBase64Binary(splitAuthorization[1]);
-                try {
-                    String credentials = new String(decoded, "US-ASCII");
-                    String[] splitCredentials = credentials.split(":");
-                    String userLogin = splitCredentials[0];
-                    String userPassword = splitCredentials[1];
-                    httpRequest.login(userLogin, userPassword);
-                    Account account = accountManager.getAccount(userLogin);
-                    if(account!=null) {
-                        return account.getLogin();
-                    }
-                } catch (UnsupportedEncodingException | ServletException | AccountNotFoundException e) {
-                    LOGGER.log(Level.FINEST, null, e);
-                }
-            }
-        }
-        return null;
-    }
-
     private boolean isExcludedURL(HttpServletRequest httpRequest){
         String path = httpRequest.getRequestURI();
         String method=httpRequest.getMethod();
@@ -21,13 +21,8 @@
 package com.docdoku.server.filters;
 
 import com.docdoku.core.exceptions.AccountNotFoundException;
-import com.docdoku.core.services.IAccountManagerLocal;
-import com.docdoku.core.services.IContextManagerLocal;
-import com.docdoku.core.services.IOrganizationManagerLocal;
-import com.docdoku.core.services.IUserManagerLocal;
 import com.docdoku.server.jsf.actions.AccountBean;
 
-import javax.ejb.EJB;
 import javax.inject.Inject;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
@@ -43,16 +38,7 @@ public class AuthMayFilter implements Filter {
     private AccountBean accountBean;
 
     @Inject
-    private IUserManagerLocal userManager;
-
-    @Inject
-    private IContextManagerLocal contextManager;
-
-    @Inject
-    private IAccountManagerLocal accountManager;
-
-    @EJB
-    private IOrganizationManagerLocal organizationManager;
+    private AccountDataCache accountDataCache;
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response,
@@ -63,7 +49,7 @@ public class AuthMayFilter implements Filter {
 
         if(remoteUser != null){
             try{
-                FilterUtils.hookAccountBeanData(remoteUser, contextManager, userManager, accountManager, organizationManager, accountBean);
+                FilterUtils.hookAccountBeanData(httpRequest, accountDataCache, accountBean);
             }catch(AccountNotFoundException e){
                 LOGGER.log(Level.SEVERE, "Cannot find account for " + remoteUser);
                 LOGGER.log(Level.FINEST, null, e);
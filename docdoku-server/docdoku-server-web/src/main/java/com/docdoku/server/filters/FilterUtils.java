@@ -21,54 +21,40 @@
 package com.docdoku.server.filters;
 
 
-import com.docdoku.core.common.Account;
-import com.docdoku.core.common.Organization;
-import com.docdoku.core.common.Workspace;
 import com.docdoku.core.exceptions.AccountNotFoundException;
-import com.docdoku.core.security.UserGroupMapping;
-import com.docdoku.core.services.IAccountManagerLocal;
-import com.docdoku.core.services.IContextManagerLocal;
-import com.docdoku.core.services.IOrganizationManagerLocal;
-import com.docdoku.core.services.IUserManagerLocal;
+import com.docdoku.core.security.SessionToken;
+import com.docdoku.server.auth.SessionTokenAuthModule;
 import com.docdoku.server.jsf.actions.AccountBean;
 
-import java.util.*;
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.HashSet;
 
 public class FilterUtils {
 
     private FilterUtils() {
     }
 
-    public static void hookAccountBeanData(String remoteUser, IContextManagerLocal contextManager, IUserManagerLocal userManager, IAccountManagerLocal accountManager, IOrganizationManagerLocal organizationManager, AccountBean accountBean)
+    public static void hookAccountBeanData(HttpServletRequest request, AccountDataCache accountDataCache, AccountBean accountBean)
             throws AccountNotFoundException {
 
-        Account account = accountManager.getAccount(remoteUser);
-        boolean isAdmin = contextManager.isCallerInRole(UserGroupMapping.ADMIN_ROLE_ID);
+        SessionToken sessionToken = (SessionToken) request.getAttribute(SessionTokenAuthModule.REQUEST_ATTRIBUTE);
+        AccountData account = accountDataCache.getAccountData(request.getRemoteUser(), sessionToken);
         accountBean.setLogin(account.getLogin());
         accountBean.setEmail(account.getEmail());
         accountBean.setLanguage(account.getLanguage());
         accountBean.setName(account.getName());
         accountBean.setTimeZone(account.getTimeZone());
-        Organization organization = organizationManager.getOrganizationOfAccount(remoteUser);
-        if(organization!=null){
-            accountBean.setOrganizationName(organization.getName());
-            accountBean.setOrganizationAdmin(organization.getOwner().getLogin());
+        if(account.getOrganizationName()!=null){
+            accountBean.setOrganizationName(account.getOrganizationName());
+            accountBean.setOrganizationAdmin(account.getOrganizationAdmin());
         }
 
-        accountBean.setSuperAdmin(isAdmin);
+        accountBean.setSuperAdmin(account.isSuperAdmin());
+        accountBean.setAdministeredWorkspaces(new HashMap<>(account.getAdministeredWorkspaces()));
 
-        Map<String, Workspace> administeredWorkspaces = new HashMap<>();
-        for (Workspace wks : userManager.getAdministratedWorkspaces()) {
-            administeredWorkspaces.put(wks.getId(), wks);
-        }
-        accountBean.setAdministeredWorkspaces(administeredWorkspaces);
-
-        if(!isAdmin){
-            Set<Workspace> regularWorkspaces = new HashSet<>();
-            Workspace[] workspaces = userManager.getWorkspacesWhereCallerIsActive();
-            regularWorkspaces.addAll(Arrays.asList(workspaces));
-            regularWorkspaces.removeAll(administeredWorkspaces.values());
-            accountBean.setRegularWorkspaces(regularWorkspaces);
+        if(!account.isSuperAdmin()){
+            accountBean.setRegularWorkspaces(new HashSet<>(account.getRegularWorkspaces()));
         }
     }
 
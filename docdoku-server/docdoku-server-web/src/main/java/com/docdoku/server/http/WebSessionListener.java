@@ -20,8 +20,11 @@
 
 package com.docdoku.server.http;
 
+import com.docdoku.core.services.ISessionTokenManagerLocal;
+import com.docdoku.server.auth.SessionTokenAuthModule;
 import com.docdoku.server.mainchannel.MainChannelApplication;
 
+import javax.ejb.EJB;
 import javax.servlet.http.HttpSession;
 import javax.servlet.http.HttpSessionEvent;
 import javax.servlet.http.HttpSessionListener;
@@ -36,6 +39,9 @@ import java.util.logging.Logger;
 public class WebSessionListener implements HttpSessionListener {
     private static final Logger LOGGER = Logger.getLogger(WebSessionListener.class.getName());
 
+    @EJB
+    private ISessionTokenManagerLocal sessionTokenManager;
+
     //Notification that a session was created.
     @Override
     public void sessionCreated(HttpSessionEvent httpSessionCreatedEvent) {
@@ -52,6 +58,10 @@ public class WebSessionListener implements HttpSessionListener {
             LOGGER.log(Level.FINE, " [MainChannelApplication] Session destroy for a remote user.");
             MainChannelApplication.sessionDestroyed(remoteUser);
         }
+        String sessionToken = (String)httpSession.getAttribute(SessionTokenAuthModule.SESSION_ATTRIBUTE);
+        if(sessionToken!=null){
+            sessionTokenManager.revokeToken(sessionToken);
+        }
     }
 
 }
\ No newline at end of file
@@ -24,6 +24,8 @@ import com.docdoku.core.exceptions.AccountAlreadyExistsException;
 import com.docdoku.core.exceptions.AccountNotFoundException;
 import com.docdoku.core.exceptions.CreationException;
 import com.docdoku.core.services.IAccountManagerLocal;
+import com.docdoku.core.services.ISessionTokenManagerLocal;
+import com.docdoku.server.auth.SessionTokenAuthModule;
 
 import javax.enterprise.context.RequestScoped;
 import javax.faces.context.FacesContext;
@@ -41,6 +43,9 @@ public class AccountBean {
 
     @Inject
     private IAccountManagerLocal accountManager;
+
+    @Inject
+    private ISessionTokenManagerLocal sessionTokenManager;
     
     private String password;
 
@@ -77,6 +82,7 @@ public class AccountBean {
 
         HttpSession session = request.getSession();
         session.setAttribute("remoteUser",login);
+        session.setAttribute(SessionTokenAuthModule.SESSION_ATTRIBUTE, sessionTokenManager.createToken().getValue());
         return request.getContextPath()+"/register.xhtml";
     }
 
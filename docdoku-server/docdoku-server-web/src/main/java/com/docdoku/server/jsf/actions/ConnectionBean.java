@@ -24,6 +24,8 @@ import com.docdoku.core.exceptions.AccountNotFoundException;
 import com.docdoku.core.security.UserGroupMapping;
 import com.docdoku.core.services.IAccountManagerLocal;
 import com.docdoku.core.services.IContextManagerLocal;
+import com.docdoku.core.services.ISessionTokenManagerLocal;
+import com.docdoku.server.auth.SessionTokenAuthModule;
 
 import javax.enterprise.context.RequestScoped;
 import javax.faces.context.ExternalContext;
@@ -50,6 +52,9 @@ public class ConnectionBean {
     @Inject
     private IAccountManagerLocal accountManager;
 
+    @Inject
+    private ISessionTokenManagerLocal sessionTokenManager;
+
     private String login;
     private String password;
 
@@ -89,6 +94,7 @@ public class ConnectionBean {
         if(tryLogin(request)) {
             checkAccount(request);
             session.setAttribute("remoteUser",login);
+            session.setAttribute(SessionTokenAuthModule.SESSION_ATTRIBUTE, sessionTokenManager.createToken().getValue());
             boolean isAdmin = contextManager.isCallerInRole(UserGroupMapping.ADMIN_ROLE_ID);
 
             if(isAdmin){
@@ -25,11 +25,15 @@ import com.docdoku.core.exceptions.AccountNotFoundException;
 import com.docdoku.core.exceptions.CreationException;
 import com.docdoku.core.exceptions.EntityAlreadyExistsException;
 import com.docdoku.core.exceptions.EntityNotFoundException;
+import com.docdoku.core.security.SessionToken;
 import com.docdoku.core.security.UserGroupMapping;
 import com.docdoku.core.services.IAccountManagerLocal;
+import com.docdoku.core.services.ISessionTokenManagerLocal;
 import com.docdoku.core.services.IUserManagerLocal;
+import com.docdoku.server.auth.SessionTokenAuthModule;
 import com.docdoku.server.rest.dto.AccountDTO;
 import com.docdoku.server.rest.dto.GCMAccountDTO;
+import com.docdoku.server.rest.dto.SessionTokenDTO;
 import com.docdoku.server.rest.dto.WorkspaceDTO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -47,6 +51,7 @@ import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 @RequestScoped
@@ -62,6 +67,9 @@ public class AccountResource {
     @Inject
     private IUserManagerLocal userManager;
 
+    @Inject
+    private ISessionTokenManagerLocal sessionTokenManager;
+
     private Mapper mapper;
 
     public AccountResource() {
@@ -81,6 +89,25 @@ public class AccountResource {
         return mapper.map(account, AccountDTO.class);
     }
 
+    @POST
+    @Path("/me/token")
+    @ApiOperation(value = "Create a session token for authenticated user", response = SessionTokenDTO.class)
+    @Produces(MediaType.APPLICATION_JSON)
+    public SessionTokenDTO createSessionToken() {
+        SessionToken sessionToken = sessionTokenManager.createToken();
+        return new SessionTokenDTO(sessionToken.getValue(), new Date(sessionToken.getExpiresAt()));
+    }
+
+    @DELETE
+    @Path("/me/token")
+    @ApiOperation(value = "Revoke the session token sent in the Authorization header", response = Response.class, code = 200)
+    public Response revokeSessionToken(@HeaderParam("Authorization") String authorization) {
+        String token = SessionTokenAuthModule.getBearerToken(authorization);
+        if (token != null) {
+            sessionTokenManager.revokeToken(token);
+        }
+        return Response.ok().build();
+    }
 
     @GET
     @Path("/workspaces")
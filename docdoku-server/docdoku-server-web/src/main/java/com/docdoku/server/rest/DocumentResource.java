@@ -45,6 +45,8 @@ import com.docdoku.core.sharing.SharedDocument;
 import com.docdoku.core.workflow.Workflow;
 import com.docdoku.server.rest.dto.*;
 import com.docdoku.server.rest.dto.product.ProductInstanceMasterDTO;
+import com.docdoku.server.rest.mappers.DocumentMapper;
+import com.docdoku.server.rest.mappers.WorkflowMapper;
 import com.docdoku.server.rest.util.ConfigSpecHelper;
 import com.docdoku.server.rest.util.InstanceAttributeFactory;
 import io.swagger.annotations.Api;
@@ -109,7 +111,7 @@ public class DocumentResource {
             docR = documentConfigSpecService.getFilteredDocumentRevision(documentRevisionKey, configSpec);
         }
 
-        DocumentRevisionDTO docRsDTO = mapper.map(docR, DocumentRevisionDTO.class);
+        DocumentRevisionDTO docRsDTO = DocumentMapper.INSTANCE.toDTO(docR);
         docRsDTO.setPath(docR.getLocation().getCompletePath());
 
         if (configSpecType == null || ConfigSpecHelper.BASELINE_UNDEFINED.equals(configSpecType) || ConfigSpecHelper.BASELINE_LATEST.equals(configSpecType)) {
@@ -127,7 +129,7 @@ public class DocumentResource {
             throws EntityNotFoundException, UserNotActiveException, AccessRightException {
         Workflow currentWorkflow = documentWorkflowService.getCurrentWorkflow(documentRevision.getKey());
         if (currentWorkflow != null) {
-            documentRevisionDTO.setWorkflow(mapper.map(currentWorkflow, WorkflowDTO.class));
+            documentRevisionDTO.setWorkflow(WorkflowMapper.INSTANCE.toDTO(currentWorkflow));
             documentRevisionDTO.setLifeCycleState(currentWorkflow.getLifeCycleState());
         }
     }
@@ -142,7 +144,7 @@ public class DocumentResource {
                                                @PathParam("documentVersion") String documentVersion)
             throws NotAllowedException, EntityNotFoundException, ESServerException, AccessRightException, UserNotActiveException {
         DocumentRevision docR = documentService.checkInDocument(new DocumentRevisionKey(workspaceId, documentId, documentVersion));
-        DocumentRevisionDTO docRsDTO = mapper.map(docR, DocumentRevisionDTO.class);
+        DocumentRevisionDTO docRsDTO = DocumentMapper.INSTANCE.toDTO(docR);
         docRsDTO.setPath(docR.getLocation().getCompletePath());
         return docRsDTO;
     }
@@ -157,7 +159,7 @@ public class DocumentResource {
                                                 @PathParam("documentVersion") String documentVersion)
             throws EntityNotFoundException, NotAllowedException, CreationException, AccessRightException, UserNotActiveException, EntityAlreadyExistsException {
         DocumentRevision docR = documentService.checkOutDocument(new DocumentRevisionKey(workspaceId, documentId, documentVersion));
-        DocumentRevisionDTO docRsDTO = mapper.map(docR, DocumentRevisionDTO.class);
+        DocumentRevisionDTO docRsDTO = DocumentMapper.INSTANCE.toDTO(docR);
         docRsDTO.setPath(docR.getLocation().getCompletePath());
         docRsDTO.setLifeCycleState(docR.getLifeCycleState());
         return docRsDTO;
@@ -173,7 +175,7 @@ public class DocumentResource {
                                                     @PathParam("documentVersion") String documentVersion)
             throws EntityNotFoundException, NotAllowedException, UserNotActiveException, AccessRightException {
         DocumentRevision docR = documentService.undoCheckOutDocument(new DocumentRevisionKey(workspaceId, documentId, documentVersion));
-        DocumentRevisionDTO docRsDTO = mapper.map(docR, DocumentRevisionDTO.class);
+        DocumentRevisionDTO docRsDTO = DocumentMapper.INSTANCE.toDTO(docR);
         docRsDTO.setPath(docR.getLocation().getCompletePath());
         docRsDTO.setLifeCycleState(docR.getLifeCycleState());
         return docRsDTO;
@@ -193,7 +195,7 @@ public class DocumentResource {
         String newCompletePath = Tools.stripTrailingSlash(parentFolderPath);
         DocumentRevisionKey docRsKey = new DocumentRevisionKey(workspaceId, documentId, documentVersion);
         DocumentRevision movedDocumentRevision = documentService.moveDocumentRevision(newCompletePath, docRsKey);
-        DocumentRevisionDTO documentRevisionDTO = mapper.map(movedDocumentRevision, DocumentRevisionDTO.class);
+        DocumentRevisionDTO documentRevisionDTO = DocumentMapper.INSTANCE.toDTO(movedDocumentRevision);
         documentRevisionDTO.setPath(movedDocumentRevision.getLocation().getCompletePath());
         documentRevisionDTO.setLifeCycleState(movedDocumentRevision.getLifeCycleState());
         return documentRevisionDTO;
@@ -280,7 +282,7 @@ public class DocumentResource {
         }
 
         DocumentRevision docR = documentService.updateDocument(new DocumentIterationKey(workspaceId, documentId, documentVersion, pIteration), pRevisionNote, attributes, links, documentLinkComments);
-        return mapper.map(docR.getLastIteration(), DocumentIterationDTO.class);
+        return DocumentMapper.INSTANCE.toDTO(docR.getLastIteration());
     }
 
     @PUT
@@ -330,7 +332,7 @@ public class DocumentResource {
         DocumentRevisionDTO[] dtos = new DocumentRevisionDTO[docR.length];
 
         for (int i = 0; i < docR.length; i++) {
-            dtos[i] = mapper.map(docR[i], DocumentRevisionDTO.class);
+            dtos[i] = DocumentMapper.INSTANCE.toDTO(docR[i]);
             dtos[i].setPath(docR[i].getLocation().getCompletePath());
             dtos[i].setLifeCycleState(docR[i].getLifeCycleState());
             dtos[i] = Tools.createLightDocumentRevisionDTO(dtos[i]);
@@ -358,7 +360,7 @@ public class DocumentResource {
         }
 
         DocumentRevision documentRevision = documentService.saveTags(new DocumentRevisionKey(workspaceId, documentId, documentVersion), tagsLabel);
-        DocumentRevisionDTO documentRevisionDTO = mapper.map(documentRevision, DocumentRevisionDTO.class);
+        DocumentRevisionDTO documentRevisionDTO = DocumentMapper.INSTANCE.toDTO(documentRevision);
         documentRevisionDTO.setPath(documentRevision.getLocation().getCompletePath());
         documentRevisionDTO.setLifeCycleState(documentRevision.getLifeCycleState());
 
@@ -535,7 +537,7 @@ public class DocumentResource {
         List<WorkflowDTO> abortedWorkflowsDTO = new ArrayList<>();
 
         for (Workflow abortedWorkflow : abortedWorkflows) {
-            abortedWorkflowsDTO.add(mapper.map(abortedWorkflow, WorkflowDTO.class));
+            abortedWorkflowsDTO.add(WorkflowMapper.INSTANCE.toDTO(abortedWorkflow));
         }
 
         Collections.sort(abortedWorkflowsDTO);
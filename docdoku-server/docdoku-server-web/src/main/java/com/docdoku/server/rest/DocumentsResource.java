@@ -22,20 +22,19 @@ import com.docdoku.core.configuration.DocumentConfigSpec;
 import com.docdoku.core.document.DocumentRevision;
 import com.docdoku.core.exceptions.*;
 import com.docdoku.core.query.DocumentSearchQuery;
+import com.docdoku.core.query.SearchResultPage;
 import com.docdoku.core.security.UserGroupMapping;
 import com.docdoku.core.services.IDocumentConfigSpecManagerLocal;
 import com.docdoku.core.services.IDocumentManagerLocal;
 import com.docdoku.core.services.IDocumentWorkflowManagerLocal;
 import com.docdoku.server.rest.dto.CountDTO;
 import com.docdoku.server.rest.dto.DocumentRevisionDTO;
+import com.docdoku.server.rest.mappers.DocumentMapper;
 import com.docdoku.server.rest.util.ConfigSpecHelper;
 import com.docdoku.server.rest.util.SearchQueryParser;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
-import org.dozer.DozerBeanMapperSingletonWrapper;
-import org.dozer.Mapper;
 
-import javax.annotation.PostConstruct;
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.RolesAllowed;
 import javax.enterprise.context.RequestScoped;
@@ -44,6 +43,7 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.util.ArrayList;
 import java.util.List;
@@ -66,16 +66,10 @@ public class DocumentsResource {
     private DocumentBaselinesResource baselinesResource;
     @Inject
     private DocumentResource documentResource;
-    private Mapper mapper;
 
     public DocumentsResource() {
     }
 
-    @PostConstruct
-    public void init() {
-        mapper = DozerBeanMapperSingletonWrapper.getInstance();
-    }
-
     @ApiOperation(value = "SubResource : DocumentResource")
     @Path("{documentId: [^/].*}-{documentVersion:[A-Z]+}")
     public DocumentResource getDocumentResource() {
@@ -102,7 +96,7 @@ public class DocumentsResource {
         DocumentRevisionDTO[] docRsDTOs = new DocumentRevisionDTO[docRs.length];
 
         for (int i = 0; i < docRs.length; i++) {
-            docRsDTOs[i] = mapper.map(docRs[i], DocumentRevisionDTO.class);
+            docRsDTOs[i] = DocumentMapper.INSTANCE.toDTO(docRs[i]);
             docRsDTOs[i].setPath(docRs[i].getLocation().getCompletePath());
             docRsDTOs[i] = Tools.createLightDocumentRevisionDTO(docRsDTOs[i]);
             docRsDTOs[i].setIterationSubscription(documentService.isUserIterationChangeEventSubscribedForGivenDocument(workspaceId, docRs[i]));
@@ -117,16 +111,25 @@ public class DocumentsResource {
     @ApiOperation(value = "Search documents", response = DocumentRevisionDTO.class, responseContainer = "List")
     @Path("search")
     @Produces(MediaType.APPLICATION_JSON)
-    public DocumentRevisionDTO[] searchDocumentRevision(@Context UriInfo uri,
-                                                        @PathParam("workspaceId") String workspaceId) throws EntityNotFoundException, UserNotActiveException, ESServerException {
+    public Response searchDocumentRevision(@Context UriInfo uri,
+                                           @PathParam("workspaceId") String workspaceId,
+                                           @QueryParam("cursor") String cursor,
+                                           @QueryParam("size") Integer size) throws EntityNotFoundException, UserNotActiveException, ESServerException {
         MultivaluedMap<String, String> params = uri.getQueryParameters();
         String configSpecType = params.containsKey("configSpec") ? params.get("configSpec").get(0) : null;
 
         DocumentSearchQuery documentSearchQuery = SearchQueryParser.parseDocumentStringQuery(workspaceId, params);
 
         DocumentRevision[] docRs;
+        String nextCursor = null;
         if (configSpecType == null || ConfigSpecHelper.BASELINE_UNDEFINED.equals(configSpecType) || ConfigSpecHelper.BASELINE_LATEST.equals(configSpecType)) {
-            docRs = documentService.searchDocumentRevisions(documentSearchQuery);
+            if (cursor != null || size != null) {
+                SearchResultPage<DocumentRevision> page = documentService.searchDocumentRevisions(documentSearchQuery, cursor, size != null ? size : 0);
+                docRs = page.getResults().toArray(new DocumentRevision[page.getResults().size()]);
+                nextCursor = page.getNextCursor();
+            } else {
+                docRs = documentService.searchDocumentRevisions(documentSearchQuery);
+            }
         } else {
             DocumentConfigSpec configSpec = ConfigSpecHelper.getConfigSpec(workspaceId, configSpecType, documentConfigSpecService);
             docRs = documentConfigSpecService.searchFilteredDocuments(workspaceId, configSpec, documentSearchQuery);
@@ -134,14 +137,14 @@ public class DocumentsResource {
         DocumentRevisionDTO[] docRsDTOs = new DocumentRevisionDTO[docRs.length];
 
         for (int i = 0; i < docRs.length; i++) {
-            docRsDTOs[i] = mapper.map(docRs[i], DocumentRevisionDTO.class);
+            docRsDTOs[i] = DocumentMapper.INSTANCE.toDTO(docRs[i]);
             docRsDTOs[i].setPath(docRs[i].getLocation().getCompletePath());
             docRsDTOs[i] = Tools.createLightDocumentRevisionDTO(docRsDTOs[i]);
             docRsDTOs[i].setIterationSubscription(documentService.isUserIterationChangeEventSubscribedForGivenDocument(workspaceId, docRs[i]));
             docRsDTOs[i].setStateSubscription(documentService.isUserStateChangeEventSubscribedForGivenDocument(workspaceId, docRs[i]));
         }
 
-        return docRsDTOs;
+        return Response.ok(docRsDTOs).header("Next-Cursor", nextCursor).build();
     }
 
     @GET
@@ -165,7 +168,7 @@ public class DocumentsResource {
         DocumentRevisionDTO[] documentRevisionDTOs = new DocumentRevisionDTO[checkedOutDocumentRevisions.length];
 
         for (int i = 0; i < checkedOutDocumentRevisions.length; i++) {
-            documentRevisionDTOs[i] = mapper.map(checkedOutDocumentRevisions[i], DocumentRevisionDTO.class);
+            documentRevisionDTOs[i] = DocumentMapper.INSTANCE.toDTO(checkedOutDocumentRevisions[i]);
             documentRevisionDTOs[i].setPath(checkedOutDocumentRevisions[i].getLocation().getCompletePath());
             documentRevisionDTOs[i] = Tools.createLightDocumentRevisionDTO(documentRevisionDTOs[i]);
             documentRevisionDTOs[i].setIterationSubscription(documentService.isUserIterationChangeEventSubscribedForGivenDocument(workspaceId, checkedOutDocumentRevisions[i]));
@@ -36,14 +36,12 @@ import com.docdoku.core.security.UserGroupMapping;
 import com.docdoku.core.services.IDocumentConfigSpecManagerLocal;
 import com.docdoku.core.services.IDocumentManagerLocal;
 import com.docdoku.server.rest.dto.*;
+import com.docdoku.server.rest.mappers.DocumentMapper;
 import com.docdoku.server.rest.util.ConfigSpecHelper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
-import org.dozer.DozerBeanMapperSingletonWrapper;
-import org.dozer.Mapper;
 
-import javax.annotation.PostConstruct;
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.RolesAllowed;
 import javax.enterprise.context.RequestScoped;
@@ -70,16 +68,10 @@ public class FolderResource {
     private IDocumentManagerLocal documentService;
     @Inject
     private IDocumentConfigSpecManagerLocal documentConfigSpecService;
-    private Mapper mapper;
 
     public FolderResource() {
     }
 
-    @PostConstruct
-    public void init() {
-        mapper = DozerBeanMapperSingletonWrapper.getInstance();
-    }
-
     @GET
     @Path("{folderId}/documents/")
     @ApiOperation(value = "Get documents in folder", response = DocumentRevisionDTO.class, responseContainer = "List")
@@ -101,7 +93,7 @@ public class FolderResource {
         DocumentRevisionDTO[] docRsDTOs = new DocumentRevisionDTO[docRs.length];
 
         for (int i = 0; i < docRs.length; i++) {
-            docRsDTOs[i] = mapper.map(docRs[i], DocumentRevisionDTO.class);
+            docRsDTOs[i] = DocumentMapper.INSTANCE.toDTO(docRs[i]);
             docRsDTOs[i].setPath(docRs[i].getLocation().getCompletePath());
             docRsDTOs[i] = Tools.createLightDocumentRevisionDTO(docRsDTOs[i]);
             if (configSpecType == null || ConfigSpecHelper.BASELINE_UNDEFINED.equals(configSpecType) || ConfigSpecHelper.BASELINE_LATEST.equals(configSpecType)) {
@@ -169,7 +161,7 @@ public class FolderResource {
         }
         DocumentRevision createdDocRs = documentService.createDocumentMaster(decodedCompletePath, pDocMID, pTitle, pDescription, pDocMTemplateId, pWorkflowModelId, userEntries, userGroupEntries, roleMappings);
 
-        DocumentRevisionDTO docRsDTO = mapper.map(createdDocRs, DocumentRevisionDTO.class);
+        DocumentRevisionDTO docRsDTO = DocumentMapper.INSTANCE.toDTO(createdDocRs);
         docRsDTO.setPath(createdDocRs.getLocation().getCompletePath());
         docRsDTO.setLifeCycleState(createdDocRs.getLifeCycleState());
 
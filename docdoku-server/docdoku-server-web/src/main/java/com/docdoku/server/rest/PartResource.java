@@ -260,22 +260,32 @@ public class PartResource {
     @PUT
     @ApiOperation(value = "Retry conversion", response = Response.class)
     @Path("/iterations/{partIteration}/conversion")
-    public Response retryConversion(@PathParam("workspaceId") String pWorkspaceId, @PathParam("partNumber") String partNumber, @PathParam("partVersion") String partVersion, @PathParam("partIteration") int iteration) throws UserNotActiveException, PartRevisionNotFoundException, WorkspaceNotFoundException, UserNotFoundException, PartIterationNotFoundException, AccessRightException {
+    public Response retryConversion(@PathParam("workspaceId") String pWorkspaceId, @PathParam("partNumber") String partNumber, @PathParam("partVersion") String partVersion, @PathParam("partIteration") int iteration) throws UserNotActiveException, PartRevisionNotFoundException, WorkspaceNotFoundException, UserNotFoundException, PartIterationNotFoundException, AccessRightException, CreationException {
 
         PartIterationKey partIPK = new PartIterationKey(pWorkspaceId, partNumber, partVersion, iteration);
         PartIteration partIteration = productService.getPartIteration(partIPK);
         BinaryResource nativeCADFile = partIteration.getNativeCADFile();
         if (nativeCADFile != null) {
-            try {
-                converterService.convertCADFileToOBJ(partIPK, nativeCADFile);
-                return Response.ok().build();
-            } catch (Exception e) {
-                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
-            }
+            converterService.convertCADFileToOBJ(partIPK, nativeCADFile);
+            return Response.ok().build();
         }
         return Response.status(Response.Status.BAD_REQUEST).build();
     }
 
+    @DELETE
+    @ApiOperation(value = "Cancel conversion", response = ConversionDTO.class)
+    @Path("/iterations/{partIteration}/conversion")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cancelConversion(@PathParam("workspaceId") String pWorkspaceId, @PathParam("partNumber") String partNumber, @PathParam("partVersion") String partVersion, @PathParam("partIteration") int iteration) throws UserNotActiveException, PartRevisionNotFoundException, WorkspaceNotFoundException, UserNotFoundException, PartIterationNotFoundException, AccessRightException {
+
+        PartIterationKey partIPK = new PartIterationKey(pWorkspaceId, partNumber, partVersion, iteration);
+        Conversion conversion = converterService.cancelConversion(partIPK);
+        if (conversion == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(mapper.map(conversion, ConversionDTO.class)).build();
+    }
+
     @PUT
     @ApiOperation(value = "Checkin part", response = Response.class)
     @Path("/checkin")
@@ -30,14 +30,17 @@ import com.docdoku.core.product.*;
 import com.docdoku.core.query.PartSearchQuery;
 import com.docdoku.core.query.Query;
 import com.docdoku.core.query.QueryResultRow;
+import com.docdoku.core.query.SearchResultPage;
 import com.docdoku.core.security.ACL;
 import com.docdoku.core.security.ACLUserEntry;
 import com.docdoku.core.security.ACLUserGroupEntry;
 import com.docdoku.core.security.UserGroupMapping;
+import com.docdoku.core.services.IConverterManagerLocal;
 import com.docdoku.core.services.IImporterManagerLocal;
 import com.docdoku.core.services.IProductManagerLocal;
 import com.docdoku.core.services.IUserManagerLocal;
 import com.docdoku.core.util.FileIO;
+import com.docdoku.server.export.CSVGenerator;
 import com.docdoku.server.export.ExcelGenerator;
 import com.docdoku.server.rest.collections.QueryResult;
 import com.docdoku.server.rest.dto.*;
@@ -48,6 +51,7 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.dozer.DozerBeanMapperSingletonWrapper;
 import org.dozer.Mapper;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.security.DeclareRoles;
@@ -64,6 +68,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.function.Consumer;
 
 @RequestScoped
 @Api(hidden = true, value = "parts", description = "Operation about parts")
@@ -71,6 +76,8 @@ import java.util.*;
 @RolesAllowed(UserGroupMapping.REGULAR_USER_ROLE_ID)
 public class PartsResource {
 
+    private static final int QUERY_PAGE_SIZE = 500;
+
     @Inject
     private IProductManagerLocal productService;
 
@@ -80,6 +87,9 @@ public class PartsResource {
     @Inject
     private PartResource partResource;
 
+    @Inject
+    private IConverterManagerLocal converterService;
+
     @EJB
     private IImporterManagerLocal importerService;
     private Mapper mapper;
@@ -104,20 +114,13 @@ public class PartsResource {
     @Produces(MediaType.APPLICATION_JSON)
     public Response getPartRevisions(@PathParam("workspaceId") String workspaceId,
                                      @QueryParam("start") int start,
-                                     @QueryParam("length") int length)
+                                     @QueryParam("length") int length,
+                                     @QueryParam("allIterations") boolean allIterations)
             throws EntityNotFoundException, AccessRightException, UserNotActiveException {
 
-        List<PartRevision> partRevisions = productService.getPartRevisions(Tools.stripTrailingSlash(workspaceId), start, length);
-        List<PartRevisionDTO> partRevisionDTOs = new ArrayList<>();
-
-        for (PartRevision partRevision : partRevisions) {
-            PartRevisionDTO partRevisionDTO = Tools.mapPartRevisionToPartDTO(partRevision);
-
-            List<ModificationNotificationDTO> notificationDTOs = getModificationNotificationDTOs(partRevision);
-            partRevisionDTO.setNotifications(notificationDTOs);
-
-            partRevisionDTOs.add(partRevisionDTO);
-        }
+        String id = Tools.stripTrailingSlash(workspaceId);
+        List<PartRevision> partRevisions = productService.getPartRevisions(id, start, length);
+        List<PartRevisionDTO> partRevisionDTOs = mapPartRevisionsToPartDTOs(id, partRevisions, allIterations);
         return Response.ok(new GenericEntity<List<PartRevisionDTO>>((List<PartRevisionDTO>) partRevisionDTOs) {
         }).build();
     }
@@ -132,25 +135,42 @@ public class PartsResource {
         return new CountDTO(productService.getTotalNumberOfParts(Tools.stripTrailingSlash(workspaceId)));
     }
 
+    @GET
+    @ApiOperation(value = "Get the CAD conversions queue", response = ConversionQueueDTO.class)
+    @Path("conversions")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ConversionQueueDTO getConversionQueue(@PathParam("workspaceId") String workspaceId)
+            throws EntityNotFoundException, UserNotActiveException {
+
+        ConversionQueueStatus status = converterService.getConversionQueueStatus(workspaceId);
+        ConversionQueueDTO conversionQueueDTO = new ConversionQueueDTO();
+        conversionQueueDTO.setQueued(status.getQueued());
+        conversionQueueDTO.setRunning(status.getRunning());
+        conversionQueueDTO.setLimits(status.getLimits());
+
+        for (Conversion conversion : status.getConversions()) {
+            ConversionDTO conversionDTO = mapper.map(conversion, ConversionDTO.class);
+            PartIteration partIteration = conversion.getPartIteration();
+            conversionDTO.setPartNumber(partIteration.getPartNumber());
+            conversionDTO.setVersion(partIteration.getVersion());
+            conversionDTO.setIteration(partIteration.getIteration());
+            conversionQueueDTO.getConversions().add(conversionDTO);
+        }
+        return conversionQueueDTO;
+    }
+
     @GET
     @ApiOperation(value = "Get part revisions", response = PartRevisionDTO.class, responseContainer = "List")
     @Path("tags/{tagId}")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getPartRevisions(@PathParam("workspaceId") String workspaceId,
-                                     @PathParam("tagId") String tagId)
+                                     @PathParam("tagId") String tagId,
+                                     @QueryParam("allIterations") boolean allIterations)
             throws EntityNotFoundException, AccessRightException, UserNotActiveException {
 
-        PartRevision[] partRevisions = productService.findPartRevisionsByTag(Tools.stripTrailingSlash(workspaceId), tagId);
-        List<PartRevisionDTO> partRevisionDTOs = new ArrayList<>();
-
-        for (PartRevision partRevision : partRevisions) {
-            PartRevisionDTO partRevisionDTO = Tools.mapPartRevisionToPartDTO(partRevision);
-
-            List<ModificationNotificationDTO> notificationDTOs = getModificationNotificationDTOs(partRevision);
-            partRevisionDTO.setNotifications(notificationDTOs);
-
-            partRevisionDTOs.add(partRevisionDTO);
-        }
+        String id = Tools.stripTrailingSlash(workspaceId);
+        PartRevision[] partRevisions = productService.findPartRevisionsByTag(id, tagId);
+        List<PartRevisionDTO> partRevisionDTOs = mapPartRevisionsToPartDTOs(id, Arrays.asList(partRevisions), allIterations);
         return Response.ok(new GenericEntity<List<PartRevisionDTO>>((List<PartRevisionDTO>) partRevisionDTOs) {
         }).build();
     }
@@ -160,25 +180,27 @@ public class PartsResource {
     @Path("search")
     @Produces(MediaType.APPLICATION_JSON)
     public Response searchPartRevisions(@Context UriInfo uri,
-                                        @PathParam("workspaceId") String workspaceId)
+                                        @PathParam("workspaceId") String workspaceId,
+                                        @QueryParam("cursor") String cursor,
+                                        @QueryParam("size") Integer size,
+                                        @QueryParam("allIterations") boolean allIterations)
             throws EntityNotFoundException, ESServerException, UserNotActiveException, AccessRightException {
 
         PartSearchQuery partSearchQuery = SearchQueryParser.parsePartStringQuery(workspaceId, uri.getQueryParameters());
 
-        List<PartRevision> partRevisions = productService.searchPartRevisions(partSearchQuery);
-        List<PartRevisionDTO> partRevisionDTOs = new ArrayList<>();
-
-        for (PartRevision partRevision : partRevisions) {
-            PartRevisionDTO partRevisionDTO = Tools.mapPartRevisionToPartDTO(partRevision);
-
-            List<ModificationNotificationDTO> notificationDTOs = getModificationNotificationDTOs(partRevision);
-            partRevisionDTO.setNotifications(notificationDTOs);
-
-            partRevisionDTOs.add(partRevisionDTO);
+        List<PartRevision> partRevisions;
+        String nextCursor = null;
+        if (cursor != null || size != null) {
+            SearchResultPage<PartRevision> page = productService.searchPartRevisions(partSearchQuery, cursor, size != null ? size : 0);
+            partRevisions = page.getResults();
+            nextCursor = page.getNextCursor();
+        } else {
+            partRevisions = productService.searchPartRevisions(partSearchQuery);
         }
+        List<PartRevisionDTO> partRevisionDTOs = mapPartRevisionsToPartDTOs(partSearchQuery.getWorkspaceId(), partRevisions, allIterations);
 
         return Response.ok(new GenericEntity<List<PartRevisionDTO>>((List<PartRevisionDTO>) partRevisionDTOs) {
-        }).build();
+        }).header("Next-Cursor", nextCursor).build();
     }
 
     @GET
@@ -222,12 +244,12 @@ public class PartsResource {
     @ApiOperation(value = "Export custom query", response = Response.class)
     @Path("queries/{queryId}/format/{export}")
     @Consumes(MediaType.APPLICATION_JSON)
-    @Produces("application/vnd.ms-excel")
+    @Produces({ExcelGenerator.CONTENT_TYPE, "application/vnd.ms-excel", "text/csv"})
     public Response exportCustomQuery(@Context HttpServletRequest request,
                                       @PathParam("workspaceId") String workspaceId,
                                       @PathParam("queryId") String queryId,
                                       @PathParam("export") String exportType)
-            throws EntityNotFoundException, UserNotActiveException, AccessRightException, CreationException, QueryAlreadyExistsException, EntityConstraintException, NotAllowedException {
+            throws EntityNotFoundException, UserNotActiveException, AccessRightException, CreationException, QueryAlreadyExistsException, EntityConstraintException, NotAllowedException, ApplicationException {
         User user = userManager.checkWorkspaceReadAccess(workspaceId);
         Locale locale = new Locale(user != null ? user.getLanguage() : "en");
         Query query = productService.loadQuery(workspaceId, Integer.valueOf(queryId));
@@ -237,23 +259,70 @@ public class PartsResource {
         return makeQueryResponse(queryResult, locale, baseURL);
     }
 
-    private QueryResult getQueryResult(String workspaceId, Query query, String pExportType) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException, EntityConstraintException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, NotAllowedException, ConfigurationItemNotFoundException, PartMasterNotFoundException {
-        List<PartRevision> partRevisions = productService.searchPartRevisions(workspaceId, query);
-        QueryResult queryResult = new QueryResult(partRevisions, query);
-        if (query.hasContext()) {
-            List<QueryResultRow> rows = productService.filterProductBreakdownStructure(workspaceId, query);
-            queryResult.mergeRows(rows);
-        }
+    private QueryResult getQueryResult(String workspaceId, Query query, String pExportType) throws UserNotFoundException, UserNotActiveException, WorkspaceNotFoundException {
+        // Checked upfront, the rows are only read while the response is written
+        userManager.checkWorkspaceReadAccess(workspaceId);
+        QueryResult queryResult = new QueryResult(query, consumer -> forEachQueryRow(workspaceId, query, consumer));
         String exportType = pExportType != null ? pExportType : "JSON";
         queryResult.setExportType(QueryResult.ExportType.valueOf(exportType));
         return queryResult;
     }
 
-    public Response makeQueryResponse(QueryResult queryResult, Locale locale, String baseURL) {
-        ExcelGenerator excelGenerator = new ExcelGenerator();
-        String contentType = "application/vnd.ms-excel";
-        String contentDisposition = "attachment; filename=export_parts.xls";
-        Response.ResponseBuilder responseBuilder = Response.ok((Object) excelGenerator.generateXLSResponse(queryResult, locale, baseURL));
+    /**
+     * Passes the rows of a query to the consumer, page by page. Each page is read in a transaction
+     * of its own, none of them being left open while the rows are written.
+     */
+    private void forEachQueryRow(String workspaceId, Query query, Consumer<QueryResultRow> consumer) throws ApplicationException {
+        String cursor = null;
+        if (query.hasContext()) {
+            long contextRows = 0;
+            do {
+                SearchResultPage<QueryResultRow> page = productService.runQueryInContexts(workspaceId, query, cursor, QUERY_PAGE_SIZE);
+                page.getResults().forEach(consumer);
+                contextRows += page.getTotalHits();
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            // Contexts without any part do not restrict the result
+            if (contextRows > 0) {
+                return;
+            }
+        }
+
+        do {
+            SearchResultPage<QueryResultRow> page = productService.runQuery(workspaceId, query, cursor, QUERY_PAGE_SIZE);
+            page.getResults().forEach(consumer);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+
+    public Response makeQueryResponse(QueryResult queryResult, Locale locale, String baseURL) throws ApplicationException {
+        String contentType;
+        String contentDisposition;
+        StreamingOutput output;
+
+        if (queryResult.getExportType() == QueryResult.ExportType.CSV) {
+            // Rows are read while the response is written
+            CSVGenerator csvGenerator = new CSVGenerator();
+            contentType = CSVGenerator.CONTENT_TYPE;
+            contentDisposition = "attachment; filename=" + CSVGenerator.FILE_NAME;
+            output = outputStream -> {
+                try {
+                    csvGenerator.generateCSVResponse(queryResult, locale, baseURL, outputStream);
+                } catch (ApplicationException e) {
+                    throw new WebApplicationException(e);
+                }
+            };
+        } else {
+            // Rows are read now, spilled to a temporary file which is deleted once the workbook is written
+            ExcelGenerator excelGenerator = new ExcelGenerator();
+            SXSSFWorkbook workbook = excelGenerator.generateXLSResponse(queryResult, locale, baseURL);
+            contentType = ExcelGenerator.CONTENT_TYPE;
+            contentDisposition = "attachment; filename=" + ExcelGenerator.FILE_NAME;
+            output = outputStream -> excelGenerator.writeXLSResponse(workbook, outputStream);
+        }
+
+        Response.ResponseBuilder responseBuilder = Response.ok(output);
         responseBuilder
                 .header("Content-Type", contentType)
                 .header("Content-Disposition", contentDisposition);
@@ -276,19 +345,11 @@ public class PartsResource {
     @ApiOperation(value = "Get checked out part revisions", response = PartRevisionDTO.class, responseContainer = "List")
     @Path("checkedout")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getCheckedOutPartRevisions(@PathParam("workspaceId") String workspaceId)
+    public Response getCheckedOutPartRevisions(@PathParam("workspaceId") String workspaceId,
+                                               @QueryParam("allIterations") boolean allIterations)
             throws EntityNotFoundException, UserNotActiveException, AccessRightException {
         PartRevision[] checkedOutPartRevisions = productService.getCheckedOutPartRevisions(workspaceId);
-        List<PartRevisionDTO> partRevisionDTOs = new ArrayList<>();
-
-        for (PartRevision partRevision : checkedOutPartRevisions) {
-            PartRevisionDTO partRevisionDTO = Tools.mapPartRevisionToPartDTO(partRevision);
-
-            List<ModificationNotificationDTO> notificationDTOs = getModificationNotificationDTOs(partRevision);
-            partRevisionDTO.setNotifications(notificationDTOs);
-
-            partRevisionDTOs.add(partRevisionDTO);
-        }
+        List<PartRevisionDTO> partRevisionDTOs = mapPartRevisionsToPartDTOs(workspaceId, Arrays.asList(checkedOutPartRevisions), allIterations);
 
         return Response.ok(new GenericEntity<List<PartRevisionDTO>>((List<PartRevisionDTO>) partRevisionDTOs) {
         }).build();
@@ -455,20 +516,35 @@ public class PartsResource {
     }
 
     /**
-     * Return a list of ModificationNotificationDTO matching with a given PartRevision
+     * Map listed part revisions, with the modification notifications of their last iteration
      *
-     * @param partRevision The specified PartRevision
-     * @return A list of ModificationNotificationDTO
+     * @param workspaceId   The workspace of the part revisions
+     * @param partRevisions The listed part revisions
+     * @param allIterations False to map only the last iteration of each part revision
+     * @return A list of PartRevisionDTO
      * @throws EntityNotFoundException If an entity doesn't exist
-     * @throws AccessRightException    If the user can not get the modification notifications
      * @throws UserNotActiveException  If the user is disabled
      */
-    private List<ModificationNotificationDTO> getModificationNotificationDTOs(PartRevision partRevision)
-            throws EntityNotFoundException, AccessRightException, UserNotActiveException {
+    private List<PartRevisionDTO> mapPartRevisionsToPartDTOs(String workspaceId, List<PartRevision> partRevisions, boolean allIterations)
+            throws EntityNotFoundException, UserNotActiveException {
 
-        PartIterationKey iterationKey = new PartIterationKey(partRevision.getKey(), partRevision.getLastIterationNumber());
-        List<ModificationNotification> notifications = productService.getModificationNotifications(iterationKey);
-        return Tools.mapModificationNotificationsToModificationNotificationDTO(notifications);
+        List<PartIterationKey> iterationKeys = new ArrayList<>();
+        for (PartRevision partRevision : partRevisions) {
+            iterationKeys.add(new PartIterationKey(partRevision.getKey(), partRevision.getLastIterationNumber()));
+        }
+        Map<PartIterationKey, List<ModificationNotification>> notifications = productService.getModificationNotifications(workspaceId, iterationKeys);
+
+        List<PartRevisionDTO> partRevisionDTOs = new ArrayList<>();
+        for (int i = 0; i < partRevisions.size(); i++) {
+            PartRevisionDTO partRevisionDTO = Tools.mapPartRevisionToPartDTO(partRevisions.get(i), allIterations);
+
+            List<ModificationNotification> iterationNotifications = notifications.get(iterationKeys.get(i));
+            partRevisionDTO.setNotifications(Tools.mapModificationNotificationsToModificationNotificationDTO(
+                    iterationNotifications != null ? iterationNotifications : Collections.emptyList()));
+
+            partRevisionDTOs.add(partRevisionDTO);
+        }
+        return partRevisionDTOs;
     }
 
 }
\ No newline at end of file
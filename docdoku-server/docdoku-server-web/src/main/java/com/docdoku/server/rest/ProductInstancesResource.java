@@ -40,6 +40,7 @@ import com.docdoku.server.rest.dto.product.ProductInstanceCreationDTO;
 import com.docdoku.server.rest.dto.product.ProductInstanceIterationDTO;
 import com.docdoku.server.rest.dto.product.ProductInstanceMasterDTO;
 import com.docdoku.server.rest.file.util.BinaryResourceUpload;
+import com.docdoku.server.rest.mappers.CommonMapper;
 import com.docdoku.server.rest.util.InstanceAttributeFactory;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -386,11 +387,11 @@ public class ProductInstancesResource {
 
         if (partIteration != null) {
             for (InstanceAttribute instanceAttribute : partIteration.getInstanceAttributes()) {
-                attributesDTO.add(mapper.map(instanceAttribute, InstanceAttributeDTO.class));
+                attributesDTO.add(CommonMapper.INSTANCE.toDTO(instanceAttribute));
             }
             dto.setPartAttributes(attributesDTO);
             for (InstanceAttributeTemplate instanceAttributeTemplate : partIteration.getInstanceAttributeTemplates()) {
-                attributeTemplatesDTO.add(mapper.map(instanceAttributeTemplate, InstanceAttributeTemplateDTO.class));
+                attributeTemplatesDTO.add(CommonMapper.INSTANCE.toDTO(instanceAttributeTemplate));
             }
             dto.setPartAttributeTemplates(attributeTemplatesDTO);
         }
@@ -496,7 +497,7 @@ public class ProductInstancesResource {
 
         if (partIteration != null) {
             for (InstanceAttribute instanceAttribute : partIteration.getInstanceAttributes()) {
-                attributesDTO.add(mapper.map(instanceAttribute, InstanceAttributeDTO.class));
+                attributesDTO.add(CommonMapper.INSTANCE.toDTO(instanceAttribute));
             }
             dto.setPartAttributes(attributesDTO);
         }
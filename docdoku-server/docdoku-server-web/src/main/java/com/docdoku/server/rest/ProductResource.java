@@ -20,6 +20,8 @@
 package com.docdoku.server.rest;
 
 import com.docdoku.core.change.ModificationNotification;
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.ExportJob;
 import com.docdoku.core.common.User;
 import com.docdoku.core.configuration.CascadeResult;
 import com.docdoku.core.configuration.PSFilter;
@@ -34,6 +36,7 @@ import com.docdoku.core.meta.InstanceAttribute;
 import com.docdoku.core.product.*;
 import com.docdoku.core.security.UserGroupMapping;
 import com.docdoku.core.services.ICascadeActionManagerLocal;
+import com.docdoku.core.services.IFileExportManagerLocal;
 import com.docdoku.core.services.IPSFilterManagerLocal;
 import com.docdoku.core.services.IProductBaselineManagerLocal;
 import com.docdoku.core.services.IProductManagerLocal;
@@ -41,6 +44,9 @@ import com.docdoku.server.rest.collections.InstanceCollection;
 import com.docdoku.server.rest.dto.*;
 import com.docdoku.server.rest.dto.baseline.BaselinedPartDTO;
 import com.docdoku.server.rest.dto.baseline.PathChoiceDTO;
+import com.docdoku.server.rest.exceptions.RequestedRangeNotSatisfiableException;
+import com.docdoku.server.rest.file.util.BinaryResourceDownloadMeta;
+import com.docdoku.server.rest.file.util.BinaryResourceDownloadResponseBuilder;
 import com.docdoku.server.rest.util.FileDownloadTools;
 import com.docdoku.server.rest.util.FileExportEntity;
 import io.swagger.annotations.Api;
@@ -56,6 +62,7 @@ import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
+import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLEncoder;
@@ -82,6 +89,8 @@ public class ProductResource {
     @Inject
     private IPSFilterManagerLocal psFilterService;
     @Inject
+    private IFileExportManagerLocal fileExportService;
+    @Inject
     private LayerResource layerResource;
     @Inject
     private ProductConfigurationsResource productConfigurationsResource;
@@ -499,35 +508,24 @@ public class ProductResource {
                                 @PathParam("ciId") String ciId,
                                 @QueryParam("configSpecType") String configSpecType,
                                 @QueryParam("exportNativeCADFiles") boolean exportNativeCADFiles,
-                                @QueryParam("exportDocumentLinks") boolean exportDocumentLinks)
+                                @QueryParam("exportDocumentLinks") boolean exportDocumentLinks,
+                                @QueryParam("deduplicate") @DefaultValue("true") boolean deduplicate)
             throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, BaselineNotFoundException, ProductInstanceMasterNotFoundException {
 
         if (configSpecType == null) {
             configSpecType = "wip";
         }
 
-        FileExportEntity fileExportEntity = new FileExportEntity();
         ConfigurationItemKey ciKey = new ConfigurationItemKey(workspaceId, ciId);
-        PSFilter psFilter = psFilterService.getPSFilter(ciKey, configSpecType, false);
+        // Fails before the response is committed if the configuration does not exist
+        psFilterService.getPSFilter(ciKey, configSpecType, false);
 
-        fileExportEntity.setPsFilter(psFilter);
+        FileExportEntity fileExportEntity = new FileExportEntity();
         fileExportEntity.setConfigurationItemKey(ciKey);
-
+        fileExportEntity.setConfigSpecType(configSpecType);
         fileExportEntity.setExportNativeCADFile(exportNativeCADFiles);
         fileExportEntity.setExportDocumentLinks(exportDocumentLinks);
-
-        if (configSpecType.startsWith("pi-")) {
-            String serialNumber = configSpecType.substring(3);
-            fileExportEntity.setSerialNumber(serialNumber);
-            fileExportEntity.setBaselineId(productService.loadProductBaselineForProductInstanceMaster(ciKey, serialNumber).getId());
-
-        } else if (!"wip".equals(configSpecType) && !"latest".equals(configSpecType) && !"released".equals(configSpecType)) {
-            try {
-                fileExportEntity.setBaselineId(Integer.parseInt(configSpecType));
-            } catch (NumberFormatException e) {
-                LOGGER.log(Level.FINEST, null, e);
-            }
-        }
+        fileExportEntity.setDeduplicate(deduplicate);
 
         String fileName = FileDownloadTools.getFileName(ciId + "-" + configSpecType + "-export", "zip");
         String contentDisposition = FileDownloadTools.getContentDisposition("attachment", fileName);
@@ -538,6 +536,80 @@ public class ProductResource {
                 .entity(fileExportEntity).build();
     }
 
+    @POST
+    @ApiOperation(value = "Start building the export of the files in the background", response = ExportJobDTO.class)
+    @Path("{ciId}/export-files/jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response createExportJob(@Context UriInfo uriInfo,
+                                    @PathParam("workspaceId") String workspaceId,
+                                    @PathParam("ciId") String ciId,
+                                    @QueryParam("configSpecType") String configSpecType,
+                                    @QueryParam("exportNativeCADFiles") boolean exportNativeCADFiles,
+                                    @QueryParam("exportDocumentLinks") boolean exportDocumentLinks,
+                                    @QueryParam("deduplicate") @DefaultValue("true") boolean deduplicate)
+            throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, BaselineNotFoundException, ProductInstanceMasterNotFoundException, StorageException {
+
+        if (configSpecType == null) {
+            configSpecType = "wip";
+        }
+
+        ConfigurationItemKey ciKey = new ConfigurationItemKey(workspaceId, ciId);
+        psFilterService.getPSFilter(ciKey, configSpecType, false);
+
+        ExportJob exportJob = fileExportService.createExportJob(ciKey, configSpecType, exportNativeCADFiles, exportDocumentLinks, deduplicate);
+        return Response.created(uriInfo.getAbsolutePathBuilder().path(exportJob.getId()).build())
+                .entity(mapper.map(exportJob, ExportJobDTO.class))
+                .build();
+    }
+
+    @GET
+    @ApiOperation(value = "Get the progress of an export", response = ExportJobDTO.class)
+    @Path("{ciId}/export-files/jobs/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getExportJob(@PathParam("workspaceId") String workspaceId,
+                                 @PathParam("ciId") String ciId,
+                                 @PathParam("jobId") String jobId)
+            throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, StorageException {
+
+        ExportJob exportJob = fileExportService.getExportJob(workspaceId, jobId);
+        if (exportJob == null || !ciId.equals(exportJob.getConfigurationItemId())) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(mapper.map(exportJob, ExportJobDTO.class)).build();
+    }
+
+    @GET
+    @ApiOperation(value = "Download the archive of a completed export, resumable with ranges", response = Response.class)
+    @Path("{ciId}/export-files/jobs/{jobId}/archive")
+    public Response downloadExportJobArchive(@HeaderParam("Range") String range,
+                                             @PathParam("workspaceId") String workspaceId,
+                                             @PathParam("ciId") String ciId,
+                                             @PathParam("jobId") String jobId)
+            throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, StorageException, RequestedRangeNotSatisfiableException {
+
+        ExportJob exportJob = fileExportService.getExportJob(workspaceId, jobId);
+        File archive = fileExportService.getExportJobFile(workspaceId, jobId);
+        if (exportJob == null || archive == null || !ciId.equals(exportJob.getConfigurationItemId())) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        BinaryResource binaryResource = new BinaryResource(workspaceId + "/exports/" + jobId + "/" + exportJob.getFileName(),
+                archive.length(), new Date(archive.lastModified()));
+        return BinaryResourceDownloadResponseBuilder.prepareResponse(archive, new BinaryResourceDownloadMeta(binaryResource), range);
+    }
+
+    @DELETE
+    @ApiOperation(value = "Delete an export and its archive", response = Response.class)
+    @Path("{ciId}/export-files/jobs/{jobId}")
+    public Response deleteExportJob(@PathParam("workspaceId") String workspaceId,
+                                    @PathParam("ciId") String ciId,
+                                    @PathParam("jobId") String jobId)
+            throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, StorageException {
+
+        fileExportService.deleteExportJob(workspaceId, jobId);
+        return Response.noContent().build();
+    }
+
     @POST
     @ApiOperation(value = "Create path to path link", response = LightPathToPathLinkDTO.class)
     @Path("{ciId}/path-to-path-links")
@@ -31,13 +31,11 @@ import com.docdoku.core.workflow.ActivityKey;
 import com.docdoku.core.workflow.TaskKey;
 import com.docdoku.server.rest.dto.DocumentRevisionDTO;
 import com.docdoku.server.rest.dto.TaskProcessDTO;
+import com.docdoku.server.rest.mappers.DocumentMapper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
-import org.dozer.DozerBeanMapperSingletonWrapper;
-import org.dozer.Mapper;
 
-import javax.annotation.PostConstruct;
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.RolesAllowed;
 import javax.enterprise.context.RequestScoped;
@@ -67,16 +65,9 @@ public class TaskResource {
     @Inject
     private IPartWorkflowManagerLocal partWorkflowService;
 
-    private Mapper mapper;
-
     public TaskResource() {
     }
 
-    @PostConstruct
-    public void init() {
-        mapper = DozerBeanMapperSingletonWrapper.getInstance();
-    }
-
     @GET
     @ApiOperation(value = "Get documents where user has assigned tasks", response = DocumentRevisionDTO.class, responseContainer = "List")
     @Path("{assignedUserLogin}/documents/")
@@ -103,7 +94,7 @@ public class TaskResource {
 
         for (DocumentRevision docR : docRs) {
 
-            DocumentRevisionDTO docDTO = mapper.map(docR, DocumentRevisionDTO.class);
+            DocumentRevisionDTO docDTO = DocumentMapper.INSTANCE.toDTO(docR);
             docDTO.setPath(docR.getLocation().getCompletePath());
             docDTO = Tools.createLightDocumentRevisionDTO(docDTO);
             docDTO.setIterationSubscription(documentService.isUserIterationChangeEventSubscribedForGivenDocument(workspaceId, docR));
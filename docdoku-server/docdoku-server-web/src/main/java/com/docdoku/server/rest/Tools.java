@@ -34,8 +34,8 @@ import com.docdoku.core.security.ACLUserGroupEntry;
 import com.docdoku.server.rest.dto.*;
 import com.docdoku.server.rest.dto.baseline.BaselinedDocumentDTO;
 import com.docdoku.server.rest.dto.baseline.BaselinedPartDTO;
-import org.dozer.DozerBeanMapperSingletonWrapper;
-import org.dozer.Mapper;
+import com.docdoku.server.rest.mappers.CommonMapper;
+import com.docdoku.server.rest.mappers.PartMapper;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -111,9 +111,8 @@ public class Tools {
 
     public static ModificationNotificationDTO mapModificationNotificationToModificationNotificationDTO(ModificationNotification pNotification) {
         ModificationNotificationDTO dto = new ModificationNotificationDTO();
-        Mapper mapper = DozerBeanMapperSingletonWrapper.getInstance();
 
-        UserDTO userDTO = mapper.map(pNotification.getModifiedPart().getAuthor(), UserDTO.class);
+        UserDTO userDTO = CommonMapper.INSTANCE.toDTO(pNotification.getModifiedPart().getAuthor());
         dto.setAuthor(userDTO);
 
         dto.setId(pNotification.getId());
@@ -123,7 +122,7 @@ public class Tools {
 
         User ackAuthor = pNotification.getAcknowledgementAuthor();
         if (ackAuthor != null) {
-            UserDTO ackDTO = mapper.map(ackAuthor, UserDTO.class);
+            UserDTO ackDTO = CommonMapper.INSTANCE.toDTO(ackAuthor);
             dto.setAckAuthor(ackDTO);
         }
         dto.setAcknowledged(pNotification.isAcknowledged());
@@ -142,85 +141,18 @@ public class Tools {
     }
 
     public static PartRevisionDTO mapPartRevisionToPartDTO(PartRevision partRevision) {
+        return mapPartRevisionToPartDTO(partRevision, true);
+    }
 
-        Mapper mapper = DozerBeanMapperSingletonWrapper.getInstance();
-
-        PartRevisionDTO partRevisionDTO = mapper.map(partRevision, PartRevisionDTO.class);
-
-        partRevisionDTO.setNumber(partRevision.getPartNumber());
-        partRevisionDTO.setPartKey(partRevision.getPartNumber() + "-" + partRevision.getVersion());
-        partRevisionDTO.setName(partRevision.getPartMaster().getName());
-        partRevisionDTO.setStandardPart(partRevision.getPartMaster().isStandardPart());
-
-        if (partRevision.isObsolete()) {
-            partRevisionDTO.setObsoleteDate(partRevision.getObsoleteDate());
-            UserDTO obsoleteUserDTO = mapper.map(partRevision.getObsoleteAuthor(), UserDTO.class);
-            partRevisionDTO.setObsoleteAuthor(obsoleteUserDTO);
-        }
-
-        if (partRevision.getReleaseAuthor() != null) {
-            partRevisionDTO.setReleaseDate(partRevision.getReleaseDate());
-            UserDTO releaseUserDTO = mapper.map(partRevision.getReleaseAuthor(), UserDTO.class);
-            partRevisionDTO.setReleaseAuthor(releaseUserDTO);
-        }
-
-        List<PartIterationDTO> partIterationDTOs = new ArrayList<>();
-        for (PartIteration partIteration : partRevision.getPartIterations()) {
-            partIterationDTOs.add(mapPartIterationToPartIterationDTO(partIteration));
-        }
-        partRevisionDTO.setPartIterations(partIterationDTOs);
-
-        if (partRevision.isCheckedOut()) {
-            partRevisionDTO.setCheckOutDate(partRevision.getCheckOutDate());
-            UserDTO checkoutUserDTO = mapper.map(partRevision.getCheckOutUser(), UserDTO.class);
-            partRevisionDTO.setCheckOutUser(checkoutUserDTO);
-        }
-
-        if (partRevision.hasWorkflow()) {
-            partRevisionDTO.setLifeCycleState(partRevision.getWorkflow().getLifeCycleState());
-            partRevisionDTO.setWorkflow(mapper.map(partRevision.getWorkflow(), WorkflowDTO.class));
-        }
-
-        ACL acl = partRevision.getACL();
-        if (acl != null) {
-            partRevisionDTO.setAcl(Tools.mapACLtoACLDTO(acl));
-        } else {
-            partRevisionDTO.setAcl(null);
-        }
-
-
-        return partRevisionDTO;
+    /**
+     * @param allIterations false to map the last iteration only, which is what listings show
+     */
+    public static PartRevisionDTO mapPartRevisionToPartDTO(PartRevision partRevision, boolean allIterations) {
+        return PartMapper.INSTANCE.toDTO(partRevision, allIterations);
     }
 
     public static PartIterationDTO mapPartIterationToPartIterationDTO(PartIteration partIteration) {
-        Mapper mapper = DozerBeanMapperSingletonWrapper.getInstance();
-
-        List<PartUsageLinkDTO> usageLinksDTO = new ArrayList<>();
-        PartIterationDTO partIterationDTO = mapper.map(partIteration, PartIterationDTO.class);
-
-        for (PartUsageLink partUsageLink : partIteration.getComponents()) {
-            PartUsageLinkDTO partUsageLinkDTO = mapper.map(partUsageLink, PartUsageLinkDTO.class);
-            List<CADInstanceDTO> cadInstancesDTO = new ArrayList<>();
-            for (CADInstance cadInstance : partUsageLink.getCadInstances()) {
-                CADInstanceDTO cadInstanceDTO = mapper.map(cadInstance, CADInstanceDTO.class);
-                cadInstanceDTO.setMatrix(cadInstance.getRotationMatrix().getValues());
-                cadInstancesDTO.add(cadInstanceDTO);
-            }
-            List<PartSubstituteLinkDTO> substituteLinkDTOs = new ArrayList<>();
-            for (PartSubstituteLink partSubstituteLink : partUsageLink.getSubstitutes()) {
-                PartSubstituteLinkDTO substituteLinkDTO = mapper.map(partSubstituteLink, PartSubstituteLinkDTO.class);
-                substituteLinkDTOs.add(substituteLinkDTO);
-
-            }
-            partUsageLinkDTO.setCadInstances(cadInstancesDTO);
-            partUsageLinkDTO.setSubstitutes(substituteLinkDTOs);
-            usageLinksDTO.add(partUsageLinkDTO);
-        }
-        partIterationDTO.setComponents(usageLinksDTO);
-        partIterationDTO.setNumber(partIteration.getPartRevision().getPartNumber());
-        partIterationDTO.setVersion(partIteration.getPartRevision().getVersion());
-
-        return partIterationDTO;
+        return PartMapper.INSTANCE.toDTO(partIteration);
     }
 
     public static BaselinedPartDTO mapBaselinedPartToBaselinedPartDTO(BaselinedPart baselinedPart) {
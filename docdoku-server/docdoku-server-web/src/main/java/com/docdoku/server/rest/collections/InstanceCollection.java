@@ -25,6 +25,7 @@ import com.docdoku.core.product.ConfigurationItemKey;
 import com.docdoku.core.product.PartLink;
 import com.docdoku.core.util.Tools;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -42,10 +43,16 @@ public class InstanceCollection {
     // All instances under these paths
     private List<List<PartLink>> paths;
 
+    // String form of the paths, computed once
+    private List<String> pathsAsString = new ArrayList<>();
+
     public InstanceCollection(ConfigurationItemKey ciKey, PSFilter filter, List<List<PartLink>> paths) {
         this.ciKey = ciKey;
         this.filter = filter;
         this.paths = paths;
+        for (List<PartLink> path : paths) {
+            pathsAsString.add(Tools.getPathAsString(path));
+        }
     }
 
 
@@ -62,15 +69,28 @@ public class InstanceCollection {
     }
 
     public boolean isFiltered(List<PartLink> currentPath) {
-        for (List<PartLink> path : paths) {
-            if (filter(path, currentPath)) {
+        return isFiltered(Tools.getPathAsString(currentPath));
+    }
+
+    public boolean isFiltered(String currentPath) {
+        for (String path : pathsAsString) {
+            if (currentPath.startsWith(path)) {
                 return true;
             }
         }
         return false;
     }
 
-    private boolean filter(List<PartLink> path, List<PartLink> currentPath) {
-        return Tools.getPathAsString(currentPath).startsWith(Tools.getPathAsString(path));
+    /**
+     * Tells if instances under the given path can still be filtered, that is if the path is
+     * either inside or on the way to one of the requested paths.
+     */
+    public boolean isOnFilteredPath(String currentPath) {
+        for (String path : pathsAsString) {
+            if (currentPath.startsWith(path) || path.startsWith(currentPath)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -20,37 +20,54 @@
 
 package com.docdoku.server.rest.collections;
 
+import com.docdoku.core.exceptions.ApplicationException;
 import com.docdoku.core.product.PartRevision;
 import com.docdoku.core.query.Query;
 import com.docdoku.core.query.QueryResultRow;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
+ * The result of a custom query.
+ *
+ * Rows are not held by the result: they are read from its source while they are written, the
+ * source being run again on each iteration.
+ *
  * @author Morgan Guimard
  */
 
 public class QueryResult {
 
     private Query query;
-    private List<QueryResultRow> rows = new ArrayList<>();
+    private RowSource rowSource;
 
     private ExportType exportType = ExportType.JSON;
 
     public QueryResult() {
+        this(null, new ArrayList<>());
+    }
+
+    public QueryResult(Query query, RowSource rowSource) {
+        this.query = query;
+        this.rowSource = rowSource;
     }
 
     public QueryResult(Query query, List<QueryResultRow> rows) {
         this.query = query;
-        this.rows = rows;
+        setRows(rows);
     }
 
     public QueryResult(List<PartRevision> partRevisions, Query query) {
         this.query = query;
+        List<QueryResultRow> rows = new ArrayList<>();
         for (PartRevision partRevision : partRevisions) {
             rows.add(new QueryResultRow(partRevision));
         }
+        setRows(rows);
     }
 
     public ExportType getExportType() {
@@ -69,27 +86,37 @@ public class QueryResult {
         this.query = query;
     }
 
-    public List<QueryResultRow> getRows() {
-        return rows;
+    public void setRows(List<QueryResultRow> rows) {
+        this.rowSource = rows::forEach;
     }
 
-    public void setRows(List<QueryResultRow> rows) {
-        this.rows = rows;
+    /**
+     * Passes each row of the result to the consumer, as it is read.
+     */
+    public void forEachRow(Consumer<QueryResultRow> consumer) throws ApplicationException {
+        rowSource.forEach(consumer);
     }
 
-    public void mergeRows(List<QueryResultRow> rows) {
-        if (rows != null && !rows.isEmpty()) {
-            List<QueryResultRow> mergedRows = new ArrayList<>();
-            for (QueryResultRow row : rows) {
-                for (QueryResultRow filteredRow : this.rows) {
-                    if (filteredRow.getPartRevision().equals(row.getPartRevision())) {
-                        mergedRows.add(row);
-                        break;
-                    }
+    /**
+     * Passes each row of the result to the writer, as it is read. Write failures are rethrown as
+     * they were raised, whatever wrapped them on their way back.
+     */
+    public void writeRows(RowWriter writer) throws ApplicationException, IOException {
+        try {
+            forEachRow(row -> {
+                try {
+                    writer.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
                 }
             }
-
-            this.rows = mergedRows;
+            throw e;
         }
     }
 
@@ -97,5 +124,14 @@ public class QueryResult {
         JSON, CSV, XLS
     }
 
+    @FunctionalInterface
+    public interface RowSource {
+        void forEach(Consumer<QueryResultRow> consumer) throws ApplicationException;
+    }
+
+    @FunctionalInterface
+    public interface RowWriter {
+        void write(QueryResultRow row) throws IOException;
+    }
 
 }
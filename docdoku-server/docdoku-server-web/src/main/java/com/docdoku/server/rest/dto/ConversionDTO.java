@@ -27,10 +27,22 @@ import java.util.Date;
 @XmlRootElement
 public class ConversionDTO implements Serializable {
 
+    private String partNumber;
+    private String version;
+    private int iteration;
+    private Date queueDate;
     private Date endDate;
     private Date startDate;
     private boolean succeed;
     private boolean pending;
+    private boolean canceled;
+    private int priority;
+    private int attempts;
+    private Date nextAttemptDate;
+    private String converter;
+    private String errorMessage;
+    private long waitingTime;
+    private long runningTime;
 
     public ConversionDTO() {
     }
@@ -42,6 +54,38 @@ public class ConversionDTO implements Serializable {
         this.pending = pending;
     }
 
+    public String getPartNumber() {
+        return partNumber;
+    }
+
+    public void setPartNumber(String partNumber) {
+        this.partNumber = partNumber;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public void setIteration(int iteration) {
+        this.iteration = iteration;
+    }
+
+    public Date getQueueDate() {
+        return queueDate;
+    }
+
+    public void setQueueDate(Date queueDate) {
+        this.queueDate = queueDate;
+    }
+
     public Date getEndDate() {
         return endDate;
     }
@@ -73,4 +117,68 @@ public class ConversionDTO implements Serializable {
     public void setPending(boolean pending) {
         this.pending = pending;
     }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    public void setCanceled(boolean canceled) {
+        this.canceled = canceled;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public void setNextAttemptDate(Date nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    public String getConverter() {
+        return converter;
+    }
+
+    public void setConverter(String converter) {
+        this.converter = converter;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public long getWaitingTime() {
+        return waitingTime;
+    }
+
+    public void setWaitingTime(long waitingTime) {
+        this.waitingTime = waitingTime;
+    }
+
+    public long getRunningTime() {
+        return runningTime;
+    }
+
+    public void setRunningTime(long runningTime) {
+        this.runningTime = runningTime;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.rest.dto;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@XmlRootElement
+public class ConversionQueueDTO implements Serializable {
+
+    private long queued;
+    private Map<String, Integer> running = new TreeMap<>();
+    private Map<String, Integer> limits = new TreeMap<>();
+    private List<ConversionDTO> conversions = new ArrayList<>();
+
+    public ConversionQueueDTO() {
+    }
+
+    public long getQueued() {
+        return queued;
+    }
+
+    public void setQueued(long queued) {
+        this.queued = queued;
+    }
+
+    public Map<String, Integer> getRunning() {
+        return running;
+    }
+
+    public void setRunning(Map<String, Integer> running) {
+        this.running = running;
+    }
+
+    public Map<String, Integer> getLimits() {
+        return limits;
+    }
+
+    public void setLimits(Map<String, Integer> limits) {
+        this.limits = limits;
+    }
+
+    public List<ConversionDTO> getConversions() {
+        return conversions;
+    }
+
+    public void setConversions(List<ConversionDTO> conversions) {
+        this.conversions = conversions;
+    }
+}
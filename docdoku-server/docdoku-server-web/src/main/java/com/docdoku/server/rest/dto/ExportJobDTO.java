@@ -0,0 +1,134 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+
+package com.docdoku.server.rest.dto;
+
+import com.docdoku.core.common.ExportJob;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.Date;
+
+@XmlRootElement
+public class ExportJobDTO implements Serializable {
+
+    private String id;
+    private String configurationItemId;
+    private String configSpecType;
+    private boolean exportNativeCADFiles;
+    private boolean exportDocumentLinks;
+    private boolean deduplicate;
+    private ExportJob.Status status;
+    private int writtenEntries;
+    private long size;
+    private Date creationDate;
+    private Date completionDate;
+
+    public ExportJobDTO() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getConfigurationItemId() {
+        return configurationItemId;
+    }
+
+    public void setConfigurationItemId(String configurationItemId) {
+        this.configurationItemId = configurationItemId;
+    }
+
+    public String getConfigSpecType() {
+        return configSpecType;
+    }
+
+    public void setConfigSpecType(String configSpecType) {
+        this.configSpecType = configSpecType;
+    }
+
+    public boolean isExportNativeCADFiles() {
+        return exportNativeCADFiles;
+    }
+
+    public void setExportNativeCADFiles(boolean exportNativeCADFiles) {
+        this.exportNativeCADFiles = exportNativeCADFiles;
+    }
+
+    public boolean isExportDocumentLinks() {
+        return exportDocumentLinks;
+    }
+
+    public void setExportDocumentLinks(boolean exportDocumentLinks) {
+        this.exportDocumentLinks = exportDocumentLinks;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public ExportJob.Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(ExportJob.Status status) {
+        this.status = status;
+    }
+
+    public int getWrittenEntries() {
+        return writtenEntries;
+    }
+
+    public void setWrittenEntries(int writtenEntries) {
+        this.writtenEntries = writtenEntries;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public Date getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(Date creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public Date getCompletionDate() {
+        return completionDate;
+    }
+
+    public void setCompletionDate(Date completionDate) {
+        this.completionDate = completionDate;
+    }
+}
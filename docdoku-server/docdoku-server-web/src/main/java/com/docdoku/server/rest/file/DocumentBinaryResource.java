@@ -20,6 +20,7 @@
 package com.docdoku.server.rest.file;
 
 import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.UploadSession;
 import com.docdoku.core.document.DocumentIteration;
 import com.docdoku.core.document.DocumentIterationKey;
 import com.docdoku.core.document.DocumentRevision;
@@ -31,7 +32,9 @@ import com.docdoku.core.sharing.SharedDocument;
 import com.docdoku.core.sharing.SharedEntity;
 import com.docdoku.server.filters.GuestProxy;
 import com.docdoku.server.helpers.Streams;
+import com.docdoku.server.rest.dto.UploadSessionDTO;
 import com.docdoku.server.rest.exceptions.*;
+import com.docdoku.server.rest.file.util.BinaryResourceChunkedUpload;
 import com.docdoku.server.rest.file.util.BinaryResourceDownloadMeta;
 import com.docdoku.server.rest.file.util.BinaryResourceDownloadResponseBuilder;
 import com.docdoku.server.rest.file.util.BinaryResourceUpload;
@@ -51,9 +54,11 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.text.Normalizer;
 import java.util.Collection;
@@ -119,6 +124,7 @@ public class DocumentBinaryResource {
             throws EntityNotFoundException, EntityAlreadyExistsException, AccessRightException, NotAllowedException, CreationException, UserNotActiveException, StorageException, IOException {
 
         String fileName = Normalizer.normalize(formPart.getSubmittedFileName(), Normalizer.Form.NFC);
+        dataManager.checkStorageQuota(docPK.getWorkspaceId() + "/documents/" + docPK.getDocumentMasterId() + "/" + docPK.getDocumentRevisionVersion() + "/" + docPK.getIteration() + "/" + fileName, formPart.getSize());
         // Init the binary resource with a null length
         BinaryResource binaryResource = documentService.saveFileInDocument(docPK, fileName, 0);
         OutputStream outputStream = dataManager.getBinaryResourceOutputStream(binaryResource);
@@ -128,6 +134,138 @@ public class DocumentBinaryResource {
         return fileName;
     }
 
+    @POST
+    @ApiOperation(value = "Start a chunked upload", response = UploadSessionDTO.class)
+    @Path("/{iteration}/uploads")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response createUploadSession(@Context HttpServletRequest request,
+                                        @PathParam("workspaceId") final String workspaceId,
+                                        @PathParam("documentId") final String documentId,
+                                        @PathParam("version") final String version,
+                                        @PathParam("iteration") final int iteration,
+                                        @QueryParam("fileName") final String pFileName,
+                                        @QueryParam("size") final long size,
+                                        @QueryParam("chunkSize") @DefaultValue("" + BinaryResourceChunkedUpload.DEFAULT_CHUNK_SIZE) final int chunkSize)
+            throws EntityNotFoundException, EntityAlreadyExistsException, UserNotActiveException, AccessRightException, NotAllowedException, CreationException {
+        if (pFileName == null || pFileName.isEmpty() || size < 0 || !BinaryResourceChunkedUpload.isValidChunkSize(chunkSize)) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        try {
+            DocumentIterationKey docPK = new DocumentIterationKey(workspaceId, documentId, version, iteration);
+            if (!documentService.canAccess(docPK)) {
+                return Response.status(Response.Status.FORBIDDEN).build();
+            }
+            // The file is only registered in the iteration once the upload is complete
+            String fileName = Normalizer.normalize(pFileName, Normalizer.Form.NFC);
+            String fullName = workspaceId + "/documents/" + documentId + "/" + version + "/" + iteration + "/" + fileName;
+            UploadSession uploadSession = dataManager.createUploadSession(fullName, contextManager.getCallerPrincipalLogin(), size, chunkSize);
+            String location = request.getRequestURI().replaceFirst("/?$", "/") + uploadSession.getId();
+            return Response.created(URI.create(location))
+                    .entity(BinaryResourceChunkedUpload.toDTO(uploadSession))
+                    .build();
+        } catch (StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
+    @GET
+    @ApiOperation(value = "Get a chunked upload and its received chunks", response = UploadSessionDTO.class)
+    @Path("/{iteration}/uploads/{uploadId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response getUploadSession(@PathParam("workspaceId") final String workspaceId,
+                                     @PathParam("documentId") final String documentId,
+                                     @PathParam("version") final String version,
+                                     @PathParam("iteration") final int iteration,
+                                     @PathParam("uploadId") final String uploadId) {
+        try {
+            UploadSession uploadSession = getUploadSession(workspaceId, documentId, version, iteration, uploadId);
+            if (uploadSession == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.ok(BinaryResourceChunkedUpload.toDTO(uploadSession)).build();
+        } catch (StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
+    @PUT
+    @ApiOperation(value = "Upload a chunk", response = Response.class)
+    @Path("/{iteration}/uploads/{uploadId}/{chunk}")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response uploadChunk(@HeaderParam("Content-MD5") String checksum,
+                                @PathParam("workspaceId") final String workspaceId,
+                                @PathParam("documentId") final String documentId,
+                                @PathParam("version") final String version,
+                                @PathParam("iteration") final int iteration,
+                                @PathParam("uploadId") final String uploadId,
+                                @PathParam("chunk") final int chunk,
+                                InputStream content) {
+        try {
+            UploadSession uploadSession = getUploadSession(workspaceId, documentId, version, iteration, uploadId);
+            return BinaryResourceChunkedUpload.writeChunk(dataManager, uploadSession, chunk, content, checksum);
+        } catch (StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
+    @POST
+    @ApiOperation(value = "Complete a chunked upload", response = Response.class)
+    @Path("/{iteration}/uploads/{uploadId}")
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response completeUploadSession(@Context HttpServletRequest request,
+                                          @PathParam("workspaceId") final String workspaceId,
+                                          @PathParam("documentId") final String documentId,
+                                          @PathParam("version") final String version,
+                                          @PathParam("iteration") final int iteration,
+                                          @PathParam("uploadId") final String uploadId)
+            throws EntityNotFoundException, EntityAlreadyExistsException, UserNotActiveException, AccessRightException, NotAllowedException, CreationException {
+        try {
+            UploadSession uploadSession = getUploadSession(workspaceId, documentId, version, iteration, uploadId);
+            if (uploadSession == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            Response incomplete = BinaryResourceChunkedUpload.checkComplete(uploadSession);
+            if (incomplete != null) {
+                return incomplete;
+            }
+
+            DocumentIterationKey docPK = new DocumentIterationKey(workspaceId, documentId, version, iteration);
+            String fileName = uploadSession.getFileName();
+
+            dataManager.checkStorageQuota(uploadSession.getBinaryResourceFullName(), uploadSession.getSize());
+            BinaryResource binaryResource = documentService.saveFileInDocument(docPK, fileName, 0);
+            long length = dataManager.completeUploadSession(uploadSession, binaryResource);
+            documentService.saveFileInDocument(docPK, fileName, length);
+            documentPostUploaderService.process(binaryResource);
+
+            String uri = request.getRequestURI().replaceFirst("/uploads/[^/]+/?$", "/");
+            return BinaryResourceUpload.tryToRespondCreated(uri + URLEncoder.encode(fileName, "UTF-8"));
+
+        } catch (IOException | StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
+    @DELETE
+    @ApiOperation(value = "Cancel a chunked upload", response = Response.class)
+    @Path("/{iteration}/uploads/{uploadId}")
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response deleteUploadSession(@PathParam("workspaceId") final String workspaceId,
+                                        @PathParam("documentId") final String documentId,
+                                        @PathParam("version") final String version,
+                                        @PathParam("iteration") final int iteration,
+                                        @PathParam("uploadId") final String uploadId) {
+        try {
+            UploadSession uploadSession = getUploadSession(workspaceId, documentId, version, iteration, uploadId);
+            return BinaryResourceChunkedUpload.deleteUploadSession(dataManager, uploadSession);
+        } catch (StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
     @GET
     @ApiOperation(value = "Download document file", response = Response.class)
     @Path("/{iteration}/{fileName}{uuid:(/uuid/[^/]+?)?}{virtualSubResource : (/[^/]+?)?}")
@@ -194,7 +332,8 @@ public class DocumentBinaryResource {
             } else if (output != null && !output.isEmpty()) {
                 binaryContentInputStream = getConvertedBinaryResource(binaryResource, output);
             } else {
-                binaryContentInputStream = dataManager.getBinaryResourceInputStream(binaryResource);
+                File file = dataManager.getBinaryResourceFile(binaryResource);
+                return BinaryResourceDownloadResponseBuilder.prepareResponse(file, binaryResourceDownloadMeta, range);
             }
             return BinaryResourceDownloadResponseBuilder.prepareResponse(binaryContentInputStream, binaryResourceDownloadMeta, range);
         } catch (StorageException | FileConversionException e) {
@@ -223,6 +362,12 @@ public class DocumentBinaryResource {
         }
     }
 
+    private UploadSession getUploadSession(String workspaceId, String documentId, String version, int iteration, String uploadId)
+            throws StorageException {
+        String iterationFullName = workspaceId + "/documents/" + documentId + "/" + version + "/" + iteration + "/";
+        return BinaryResourceChunkedUpload.getUploadSession(dataManager, uploadId, contextManager.getCallerPrincipalLogin(), iterationFullName);
+    }
+
     private boolean canAccess(DocumentIterationKey docIKey) throws UserNotActiveException, EntityNotFoundException {
         if (contextManager.isCallerInRole(UserGroupMapping.REGULAR_USER_ROLE_ID)) {
             return documentService.canAccess(docIKey);
@@ -51,6 +51,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -94,6 +95,7 @@ public class DocumentTemplateBinaryResource {
 
             for (Part formPart : formParts) {
                 fileName = Normalizer.normalize(formPart.getSubmittedFileName(), Normalizer.Form.NFC);
+                dataManager.checkStorageQuota(templatePK.getWorkspaceId() + "/document-templates/" + templatePK.getId() + "/" + fileName, formPart.getSize());
                 // Init the binary resource with a null length
                 binaryResource = documentService.saveFileInTemplate(templatePK, fileName, 0);
                 OutputStream outputStream = dataManager.getBinaryResourceOutputStream(binaryResource);
@@ -142,7 +144,8 @@ public class DocumentTemplateBinaryResource {
             if (output != null && !output.isEmpty()) {
                 binaryContentInputStream = getConvertedBinaryResource(binaryResource, output);
             } else {
-                binaryContentInputStream = dataManager.getBinaryResourceInputStream(binaryResource);
+                File file = dataManager.getBinaryResourceFile(binaryResource);
+                return BinaryResourceDownloadResponseBuilder.prepareResponse(file, binaryResourceDownloadMeta, range);
             }
             return BinaryResourceDownloadResponseBuilder.prepareResponse(binaryContentInputStream, binaryResourceDownloadMeta, range);
         } catch (StorageException | FileConversionException e) {
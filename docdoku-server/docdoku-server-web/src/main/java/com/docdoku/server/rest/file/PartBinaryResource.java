@@ -20,8 +20,11 @@
 package com.docdoku.server.rest.file;
 
 import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.UploadSession;
 import com.docdoku.core.exceptions.*;
 import com.docdoku.core.exceptions.NotAllowedException;
+import com.docdoku.core.product.Conversion;
+import com.docdoku.core.product.Geometry;
 import com.docdoku.core.product.PartIteration;
 import com.docdoku.core.product.PartIterationKey;
 import com.docdoku.core.product.PartRevision;
@@ -31,7 +34,9 @@ import com.docdoku.core.sharing.SharedEntity;
 import com.docdoku.core.sharing.SharedPart;
 import com.docdoku.server.filters.GuestProxy;
 import com.docdoku.server.helpers.Streams;
+import com.docdoku.server.rest.dto.UploadSessionDTO;
 import com.docdoku.server.rest.exceptions.*;
+import com.docdoku.server.rest.file.util.BinaryResourceChunkedUpload;
 import com.docdoku.server.rest.file.util.BinaryResourceDownloadMeta;
 import com.docdoku.server.rest.file.util.BinaryResourceDownloadResponseBuilder;
 import com.docdoku.server.rest.file.util.BinaryResourceUpload;
@@ -50,10 +55,12 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.text.Normalizer;
@@ -62,6 +69,7 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 
 @RequestScoped
 @Api(hidden = true, value = "part-binary", description = "Operations about part files")
@@ -72,6 +80,8 @@ public class PartBinaryResource {
     private static final String NATIVE_CAD_SUBTYPE = "nativecad";
     private static final String ATTACHED_FILES_SUBTYPE = "attachedfiles";
     private static final String UTF8_ENCODING = "UTF-8";
+    private static final String CONVERSION_PRIORITY_HEADER = "X-Conversion-Priority";
+    private static final String BULK_CONVERSION_PRIORITY = "bulk";
     @Inject
     private IDataManagerLocal dataManager;
     @Inject
@@ -113,11 +123,12 @@ public class PartBinaryResource {
 
             Part part = parts.iterator().next();
             String fileName = part.getSubmittedFileName();
+            dataManager.checkStorageQuota(workspaceId + "/parts/" + partNumber + "/" + version + "/" + iteration + "/" + NATIVE_CAD_SUBTYPE + "/" + fileName, part.getSize());
             BinaryResource binaryResource = productService.saveNativeCADInPartIteration(partPK, fileName, 0);
             OutputStream outputStream = dataManager.getBinaryResourceOutputStream(binaryResource);
             long length = BinaryResourceUpload.uploadBinary(outputStream, part);
             productService.saveNativeCADInPartIteration(partPK, fileName, length);
-            tryToConvertCADFileToOBJ(partPK, binaryResource);
+            tryToConvertCADFileToOBJ(request, partPK, binaryResource);
 
             return BinaryResourceUpload.tryToRespondCreated(request.getRequestURI() + URLEncoder.encode(fileName, UTF8_ENCODING));
 
@@ -146,6 +157,7 @@ public class PartBinaryResource {
 
             for (Part formPart : formParts) {
                 fileName = Normalizer.normalize(formPart.getSubmittedFileName(), Normalizer.Form.NFC);
+                dataManager.checkStorageQuota(workspaceId + "/parts/" + partNumber + "/" + version + "/" + iteration + "/" + ATTACHED_FILES_SUBTYPE + "/" + fileName, formPart.getSize());
                 BinaryResource binaryResource = productService.saveFileInPartIteration(partPK, fileName, ATTACHED_FILES_SUBTYPE, 0);
                 OutputStream outputStream = dataManager.getBinaryResourceOutputStream(binaryResource);
                 long length = BinaryResourceUpload.uploadBinary(outputStream, formPart);
@@ -163,6 +175,147 @@ public class PartBinaryResource {
         }
     }
 
+    @POST
+    @ApiOperation(value = "Start a chunked upload", response = UploadSessionDTO.class)
+    @Path("/{iteration}/{subType}/uploads")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response createUploadSession(@Context HttpServletRequest request,
+                                        @PathParam("workspaceId") final String workspaceId,
+                                        @PathParam("partNumber") final String partNumber,
+                                        @PathParam("version") final String version,
+                                        @PathParam("iteration") final int iteration,
+                                        @PathParam("subType") final String subType,
+                                        @QueryParam("fileName") final String pFileName,
+                                        @QueryParam("size") final long size,
+                                        @QueryParam("chunkSize") @DefaultValue("" + BinaryResourceChunkedUpload.DEFAULT_CHUNK_SIZE) final int chunkSize)
+            throws EntityNotFoundException, EntityAlreadyExistsException, UserNotActiveException, AccessRightException, NotAllowedException, CreationException {
+        if (pFileName == null || pFileName.isEmpty() || size < 0 || !BinaryResourceChunkedUpload.isValidChunkSize(chunkSize)
+                || !(NATIVE_CAD_SUBTYPE.equals(subType) || ATTACHED_FILES_SUBTYPE.equals(subType))) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        try {
+            PartIterationKey partPK = new PartIterationKey(workspaceId, partNumber, version, iteration);
+            if (!productService.canWrite(partPK.getPartRevision())) {
+                return Response.status(Response.Status.FORBIDDEN).build();
+            }
+            // The file is only registered in the iteration once the upload is complete
+            String fileName = Normalizer.normalize(pFileName, Normalizer.Form.NFC);
+            String fullName = workspaceId + "/parts/" + partNumber + "/" + version + "/" + iteration + "/" + subType + "/" + fileName;
+            UploadSession uploadSession = dataManager.createUploadSession(fullName, contextManager.getCallerPrincipalLogin(), size, chunkSize);
+            String location = request.getRequestURI().replaceFirst("/" + subType + "/uploads/?$", "/uploads/") + uploadSession.getId();
+            return Response.created(URI.create(location))
+                    .entity(BinaryResourceChunkedUpload.toDTO(uploadSession))
+                    .build();
+        } catch (StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
+    @GET
+    @ApiOperation(value = "Get a chunked upload and its received chunks", response = UploadSessionDTO.class)
+    @Path("/{iteration}/uploads/{uploadId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response getUploadSession(@PathParam("workspaceId") final String workspaceId,
+                                     @PathParam("partNumber") final String partNumber,
+                                     @PathParam("version") final String version,
+                                     @PathParam("iteration") final int iteration,
+                                     @PathParam("uploadId") final String uploadId) {
+        try {
+            UploadSession uploadSession = getUploadSession(workspaceId, partNumber, version, iteration, uploadId);
+            if (uploadSession == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.ok(BinaryResourceChunkedUpload.toDTO(uploadSession)).build();
+        } catch (StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
+    @PUT
+    @ApiOperation(value = "Upload a chunk", response = Response.class)
+    @Path("/{iteration}/uploads/{uploadId}/{chunk}")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response uploadChunk(@HeaderParam("Content-MD5") String checksum,
+                                @PathParam("workspaceId") final String workspaceId,
+                                @PathParam("partNumber") final String partNumber,
+                                @PathParam("version") final String version,
+                                @PathParam("iteration") final int iteration,
+                                @PathParam("uploadId") final String uploadId,
+                                @PathParam("chunk") final int chunk,
+                                InputStream content) {
+        try {
+            UploadSession uploadSession = getUploadSession(workspaceId, partNumber, version, iteration, uploadId);
+            return BinaryResourceChunkedUpload.writeChunk(dataManager, uploadSession, chunk, content, checksum);
+        } catch (StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
+    @POST
+    @ApiOperation(value = "Complete a chunked upload", response = Response.class)
+    @Path("/{iteration}/uploads/{uploadId}")
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response completeUploadSession(@Context HttpServletRequest request,
+                                          @PathParam("workspaceId") final String workspaceId,
+                                          @PathParam("partNumber") final String partNumber,
+                                          @PathParam("version") final String version,
+                                          @PathParam("iteration") final int iteration,
+                                          @PathParam("uploadId") final String uploadId)
+            throws EntityNotFoundException, EntityAlreadyExistsException, UserNotActiveException, AccessRightException, NotAllowedException, CreationException {
+        try {
+            UploadSession uploadSession = getUploadSession(workspaceId, partNumber, version, iteration, uploadId);
+            if (uploadSession == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            Response incomplete = BinaryResourceChunkedUpload.checkComplete(uploadSession);
+            if (incomplete != null) {
+                return incomplete;
+            }
+
+            PartIterationKey partPK = new PartIterationKey(workspaceId, partNumber, version, iteration);
+            String fileName = uploadSession.getFileName();
+            String subType = uploadSession.getBinaryResourceFullName().endsWith("/" + NATIVE_CAD_SUBTYPE + "/" + fileName) ? NATIVE_CAD_SUBTYPE : ATTACHED_FILES_SUBTYPE;
+
+            dataManager.checkStorageQuota(uploadSession.getBinaryResourceFullName(), uploadSession.getSize());
+            if (NATIVE_CAD_SUBTYPE.equals(subType)) {
+                BinaryResource binaryResource = productService.saveNativeCADInPartIteration(partPK, fileName, 0);
+                long length = dataManager.completeUploadSession(uploadSession, binaryResource);
+                productService.saveNativeCADInPartIteration(partPK, fileName, length);
+                tryToConvertCADFileToOBJ(request, partPK, binaryResource);
+            } else {
+                BinaryResource binaryResource = productService.saveFileInPartIteration(partPK, fileName, ATTACHED_FILES_SUBTYPE, 0);
+                long length = dataManager.completeUploadSession(uploadSession, binaryResource);
+                productService.saveFileInPartIteration(partPK, fileName, ATTACHED_FILES_SUBTYPE, length);
+            }
+
+            String uri = request.getRequestURI().replaceFirst("/uploads/[^/]+/?$", "/" + subType + "/");
+            return BinaryResourceUpload.tryToRespondCreated(uri + URLEncoder.encode(fileName, UTF8_ENCODING));
+
+        } catch (IOException | StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
+    @DELETE
+    @ApiOperation(value = "Cancel a chunked upload", response = Response.class)
+    @Path("/{iteration}/uploads/{uploadId}")
+    @RolesAllowed({UserGroupMapping.REGULAR_USER_ROLE_ID})
+    public Response deleteUploadSession(@PathParam("workspaceId") final String workspaceId,
+                                        @PathParam("partNumber") final String partNumber,
+                                        @PathParam("version") final String version,
+                                        @PathParam("iteration") final int iteration,
+                                        @PathParam("uploadId") final String uploadId) {
+        try {
+            UploadSession uploadSession = getUploadSession(workspaceId, partNumber, version, iteration, uploadId);
+            return BinaryResourceChunkedUpload.deleteUploadSession(dataManager, uploadSession);
+        } catch (StorageException e) {
+            return BinaryResourceUpload.uploadError(e);
+        }
+    }
+
     // Split on several methods because of Path conflict when we use regex
     @GET
     @ApiOperation(value = "Download direct part file", response = Response.class)
@@ -170,6 +323,7 @@ public class PartBinaryResource {
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
     public Response downloadDirectPartFile(@Context Request request,
                                            @HeaderParam("Range") String range,
+                                           @HeaderParam("Accept-Encoding") String acceptEncoding,
                                            @PathParam("workspaceId") final String workspaceId,
                                            @PathParam("partNumber") final String partNumber,
                                            @PathParam("version") final String version,
@@ -178,6 +332,9 @@ public class PartBinaryResource {
                                            @QueryParam("type") String type,
                                            @QueryParam("output") String output)
             throws EntityNotFoundException, UserNotActiveException, AccessRightException, NotAllowedException, PreconditionFailedException, NotModifiedException, RequestedRangeNotSatisfiableException, UnmatchingUuidException, ExpiredLinkException {
+        if (Geometry.BINARY_MESH_OUTPUT.equals(output)) {
+            return downloadBinaryMesh(request, acceptEncoding, new PartIterationKey(workspaceId, partNumber, version, iteration), fileName);
+        }
         return downloadPartFile(request, range, null, workspaceId, partNumber, version, iteration, null, fileName, type, output, null);
     }
 
@@ -261,18 +418,70 @@ public class PartBinaryResource {
             fullName = workspaceId + "/parts/" + partNumber + "/" + version + "/" + iteration + "/";
         }
 
-        String decodedFileName = fileName;
+        String decodedFileName = decodeFileName(fileName);
+
+        fullName += (subType != null && !subType.isEmpty()) ? subType + "/" + decodedFileName : decodedFileName;
 
+        return downloadPartFile(request, range, fullName, subType, type, output);
+    }
+
+    private String decodeFileName(String fileName) {
         try {
-            decodedFileName = URLDecoder.decode(fileName, UTF8_ENCODING);
+            return URLDecoder.decode(fileName, UTF8_ENCODING);
         } catch (UnsupportedEncodingException e) {
             LOGGER.log(Level.SEVERE, "Cannot decode filename");
             LOGGER.log(Level.FINER, null, e);
+            return fileName;
         }
+    }
 
-        fullName += (subType != null && !subType.isEmpty()) ? subType + "/" + decodedFileName : decodedFileName;
+    /**
+     * Serves the binary mesh of a geometry, as stored (gzip compressed) to the clients accepting it,
+     * decompressed to the others. Each encoding has its own entity tag.
+     */
+    private Response downloadBinaryMesh(Request request, String acceptEncoding, PartIterationKey partIK, String fileName)
+            throws EntityNotFoundException, UserNotActiveException, AccessRightException, NotAllowedException, RequestedRangeNotSatisfiableException {
+        if (!canAccess(partIK)) {
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        }
 
-        return downloadPartFile(request, range, fullName, subType, type, output);
+        String fullName = partIK.getWorkspaceId() + "/parts/" + partIK.getPartMasterNumber() + "/" + partIK.getPartRevisionVersion() + "/" + partIK.getIteration() + "/" + decodeFileName(fileName);
+        BinaryResource binaryResource = getBinaryResource(fullName);
+        if (!(binaryResource instanceof Geometry) || !((Geometry) binaryResource).hasBinaryMesh()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        long binaryMeshLength = ((Geometry) binaryResource).getBinaryMeshLength();
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ENGLISH).contains("gzip");
+        BinaryResourceDownloadMeta binaryResourceDownloadMeta = new BinaryResourceDownloadMeta(binaryResource, Geometry.BINARY_MESH_OUTPUT, null);
+        binaryResourceDownloadMeta.setLength(binaryMeshLength);
+        binaryResourceDownloadMeta.setContentEncoding(gzip ? "gzip" : null);
+        Response.ResponseBuilder rb = request.evaluatePreconditions(binaryResourceDownloadMeta.getLastModified(), binaryResourceDownloadMeta.getETag());
+        if (rb != null) {
+            return rb.header("Vary", "Accept-Encoding").build();
+        }
+
+        InputStream binaryContentInputStream = null;
+        try {
+            binaryContentInputStream = dataManager.getBinarySubResourceInputStream(binaryResource, Geometry.BINARY_MESH_SUB_RESOURCE);
+            Response response;
+            if (gzip) {
+                response = BinaryResourceDownloadResponseBuilder.prepareResponse(binaryContentInputStream, binaryResourceDownloadMeta, null);
+            } else {
+                // The decompressed length is not stored, the mesh is sent up to its end
+                binaryContentInputStream = new GZIPInputStream(binaryContentInputStream);
+                response = BinaryResourceDownloadResponseBuilder.prepareResponse(binaryContentInputStream, binaryResourceDownloadMeta);
+            }
+            Response.ResponseBuilder responseBuilder = Response.fromResponse(response).header("Vary", "Accept-Encoding");
+            if (gzip) {
+                responseBuilder.header("Content-Encoding", "gzip")
+                        .header("Content-Length", binaryMeshLength);
+            }
+            return responseBuilder.build();
+        } catch (StorageException | IOException e) {
+            Streams.close(binaryContentInputStream);
+            return BinaryResourceDownloadResponseBuilder.downloadError(e, fullName);
+        }
     }
 
 
@@ -298,7 +507,8 @@ public class PartBinaryResource {
                 binaryResourceDownloadMeta.setSubResourceVirtualPath(null);
                 binaryContentInputStream = getConvertedBinaryResource(binaryResource, output);
             } else {
-                binaryContentInputStream = dataManager.getBinaryResourceInputStream(binaryResource);
+                File file = dataManager.getBinaryResourceFile(binaryResource);
+                return BinaryResourceDownloadResponseBuilder.prepareResponse(file, binaryResourceDownloadMeta, range);
             }
             return BinaryResourceDownloadResponseBuilder.prepareResponse(binaryContentInputStream, binaryResourceDownloadMeta, range);
         } catch (StorageException | FileConversionException e) {
@@ -327,15 +537,23 @@ public class PartBinaryResource {
         }
     }
 
-    private void tryToConvertCADFileToOBJ(PartIterationKey partPK, BinaryResource binaryResource) {
+    private void tryToConvertCADFileToOBJ(HttpServletRequest request, PartIterationKey partPK, BinaryResource binaryResource) {
         try {
             //TODO: Should be put in a DocumentPostUploader plugin
-            converterService.convertCADFileToOBJ(partPK, binaryResource);
+            // Files imported in bulk are converted after the ones checked in by users
+            int priority = BULK_CONVERSION_PRIORITY.equalsIgnoreCase(request.getHeader(CONVERSION_PRIORITY_HEADER)) ? Conversion.PRIORITY_BULK : Conversion.PRIORITY_INTERACTIVE;
+            converterService.convertCADFileToOBJ(partPK, binaryResource, priority);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "A CAD file conversion can not be done", e);
         }
     }
 
+    private UploadSession getUploadSession(String workspaceId, String partNumber, String version, int iteration, String uploadId)
+            throws StorageException {
+        String iterationFullName = workspaceId + "/parts/" + partNumber + "/" + version + "/" + iteration + "/";
+        return BinaryResourceChunkedUpload.getUploadSession(dataManager, uploadId, contextManager.getCallerPrincipalLogin(), iterationFullName);
+    }
+
     private boolean canAccess(PartIterationKey partIKey) throws UserNotActiveException, EntityNotFoundException {
         if (contextManager.isCallerInRole(UserGroupMapping.REGULAR_USER_ROLE_ID)) {
             return productService.canAccess(partIKey);
@@ -26,7 +26,6 @@ import com.docdoku.core.product.PartMasterTemplateKey;
 import com.docdoku.core.security.UserGroupMapping;
 import com.docdoku.core.services.IDataManagerLocal;
 import com.docdoku.core.services.IProductManagerLocal;
-import com.docdoku.server.helpers.Streams;
 import com.docdoku.server.rest.exceptions.NotModifiedException;
 import com.docdoku.server.rest.exceptions.PreconditionFailedException;
 import com.docdoku.server.rest.exceptions.RequestedRangeNotSatisfiableException;
@@ -49,8 +48,8 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLEncoder;
 import java.text.Normalizer;
@@ -88,6 +87,7 @@ public class PartTemplateBinaryResource {
 
             for (Part formPart : formParts) {
                 fileName = Normalizer.normalize(formPart.getSubmittedFileName(), Normalizer.Form.NFC);
+                dataManager.checkStorageQuota(templatePK.getWorkspaceId() + "/part-templates/" + templatePK.getId() + "/" + fileName, formPart.getSize());
                 // Init the binary resource with a null length
                 binaryResource = productService.saveFileInTemplate(templatePK, fileName, 0);
                 OutputStream outputStream = dataManager.getBinaryResourceOutputStream(binaryResource);
@@ -128,12 +128,10 @@ public class PartTemplateBinaryResource {
             return rb.build();
         }
 
-        InputStream binaryContentInputStream = null;
         try {
-            binaryContentInputStream = dataManager.getBinaryResourceInputStream(binaryResource);
-            return BinaryResourceDownloadResponseBuilder.prepareResponse(binaryContentInputStream, binaryResourceDownloadMeta, range);
+            File file = dataManager.getBinaryResourceFile(binaryResource);
+            return BinaryResourceDownloadResponseBuilder.prepareResponse(file, binaryResourceDownloadMeta, range);
         } catch (StorageException e) {
-            Streams.close(binaryContentInputStream);
             return BinaryResourceDownloadResponseBuilder.downloadError(e, fullName);
         }
 
@@ -29,7 +29,6 @@ import com.docdoku.core.services.IContextManagerLocal;
 import com.docdoku.core.services.IDataManagerLocal;
 import com.docdoku.core.services.IProductInstanceManagerLocal;
 import com.docdoku.server.filters.GuestProxy;
-import com.docdoku.server.helpers.Streams;
 import com.docdoku.server.rest.exceptions.*;
 import com.docdoku.server.rest.file.util.BinaryResourceDownloadMeta;
 import com.docdoku.server.rest.file.util.BinaryResourceDownloadResponseBuilder;
@@ -49,8 +48,8 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLEncoder;
 import java.text.Normalizer;
@@ -136,12 +135,10 @@ public class ProductInstanceBinaryResource {
         if (rb != null) {
             return rb.build();
         }
-        InputStream binaryContentInputStream = null;
         try {
-            binaryContentInputStream = dataManager.getBinaryResourceInputStream(binaryResource);
-            return BinaryResourceDownloadResponseBuilder.prepareResponse(binaryContentInputStream, binaryResourceDownloadMeta, range);
+            File file = dataManager.getBinaryResourceFile(binaryResource);
+            return BinaryResourceDownloadResponseBuilder.prepareResponse(file, binaryResourceDownloadMeta, range);
         } catch (StorageException e) {
-            Streams.close(binaryContentInputStream);
             return BinaryResourceDownloadResponseBuilder.downloadError(e, fullName);
         }
 
@@ -243,12 +240,10 @@ public class ProductInstanceBinaryResource {
             return rb.build();
         }
 
-        InputStream binaryContentInputStream = null;
         try {
-            binaryContentInputStream = dataManager.getBinaryResourceInputStream(binaryResource);
-            return BinaryResourceDownloadResponseBuilder.prepareResponse(binaryContentInputStream, binaryResourceDownloadMeta, range);
+            File file = dataManager.getBinaryResourceFile(binaryResource);
+            return BinaryResourceDownloadResponseBuilder.prepareResponse(file, binaryResourceDownloadMeta, range);
         } catch (StorageException e) {
-            Streams.close(binaryContentInputStream);
             return BinaryResourceDownloadResponseBuilder.downloadError(e, fullName);
         }
     }
@@ -279,13 +274,10 @@ public class ProductInstanceBinaryResource {
             return rb.build();
         }
 
-        InputStream binaryContentInputStream = null;
-
         try {
-            binaryContentInputStream = dataManager.getBinaryResourceInputStream(binaryResource);
-            return BinaryResourceDownloadResponseBuilder.prepareResponse(binaryContentInputStream, binaryResourceDownloadMeta, range);
+            File file = dataManager.getBinaryResourceFile(binaryResource);
+            return BinaryResourceDownloadResponseBuilder.prepareResponse(file, binaryResourceDownloadMeta, range);
         } catch (StorageException e) {
-            Streams.close(binaryContentInputStream);
             return BinaryResourceDownloadResponseBuilder.downloadError(e, fullName);
         }
     }
@@ -314,6 +306,7 @@ public class ProductInstanceBinaryResource {
             throws EntityNotFoundException, EntityAlreadyExistsException, AccessRightException, NotAllowedException, CreationException, UserNotActiveException, StorageException, IOException {
 
         String fileName = Normalizer.normalize(formPart.getSubmittedFileName(), Normalizer.Form.NFC);
+        dataManager.checkStorageQuota(workspaceId + "/product-instances/" + pdtIterationKey.getProductInstanceMaster().getSerialNumber() + "/iterations/" + pdtIterationKey.getIteration() + "/" + fileName, formPart.getSize());
         // Init the binary resource with a null length
         BinaryResource binaryResource = productInstanceManagerLocal.saveFileInProductInstance(workspaceId, pdtIterationKey, fileName, 0);
         OutputStream outputStream = dataManager.getBinaryResourceOutputStream(binaryResource);
@@ -326,6 +319,7 @@ public class ProductInstanceBinaryResource {
             throws EntityNotFoundException, EntityAlreadyExistsException, AccessRightException, NotAllowedException, CreationException, UserNotActiveException, StorageException, IOException {
 
         String fileName = Normalizer.normalize(formPart.getSubmittedFileName(), Normalizer.Form.NFC);
+        dataManager.checkStorageQuota(workspaceId + "/product-instances/" + serialNumber + "/pathdata/" + pathDataId + "/iterations/" + iteration + "/" + fileName, formPart.getSize());
         // Init the binary resource with a null length
         BinaryResource binaryResource = productInstanceManagerLocal.saveFileInPathData(workspaceId, configurationItemId, serialNumber, pathDataId, iteration, fileName, 0);
         OutputStream outputStream = dataManager.getBinaryResourceOutputStream(binaryResource);
@@ -338,6 +332,7 @@ public class ProductInstanceBinaryResource {
             throws EntityNotFoundException, EntityAlreadyExistsException, AccessRightException, NotAllowedException, CreationException, UserNotActiveException, StorageException, IOException {
 
         String fileName = Normalizer.normalize(formPart.getSubmittedFileName(), Normalizer.Form.NFC);
+        dataManager.checkStorageQuota(workspaceId + "/product-instances/" + serialNumber + "/pathdata/" + pathDataId + "/iterations/" + iteration + "/" + fileName, formPart.getSize());
         // Init the binary resource with a null length
         BinaryResource binaryResource = productInstanceManagerLocal.saveFileInPathDataIteration(workspaceId, configurationItemId, serialNumber, pathDataId, iteration, fileName, 0);
         OutputStream outputStream = dataManager.getBinaryResourceOutputStream(binaryResource);
@@ -20,34 +20,89 @@
 
 package com.docdoku.server.rest.file.util;
 
-import com.docdoku.core.util.FileIO;
-import com.docdoku.server.helpers.Streams;
 import com.docdoku.server.rest.exceptions.InterruptedStreamException;
 
 import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Streams one or several ranges of a binary content.
+ *
+ * Files are read with positional transfers from their channel, at any offset, without going through
+ * a heap buffer. Other contents are read from their input stream, skipping up to each range.
+ * Several ranges are written as a multipart/byteranges body. Without ranges, the input stream is
+ * written up to its end.
+ */
 public class BinaryResourceBinaryStreamingOutput implements StreamingOutput {
     private static final Logger LOGGER = Logger.getLogger(BinaryResourceBinaryStreamingOutput.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CRLF = "\r\n";
+
+    private final File file;
     private final InputStream binaryContentInputStream;
-    private final Range fullRange;
+    private final List<ByteRange> ranges;
+
+    // Multipart only
+    private final String boundary;
+    private final String contentType;
 
     public BinaryResourceBinaryStreamingOutput(InputStream binaryContentInputStream, long start, long end, long length) {
+        this(null, binaryContentInputStream, Collections.singletonList(new ByteRange(start, end, length)), null, null);
+    }
+
+    public BinaryResourceBinaryStreamingOutput(InputStream binaryContentInputStream) {
+        this(null, binaryContentInputStream, null, null, null);
+    }
+
+    public BinaryResourceBinaryStreamingOutput(File file, ByteRange range) {
+        this(file, null, Collections.singletonList(range), null, null);
+    }
+
+    /**
+     * Streams several ranges of a file or of an input stream as a multipart body.
+     */
+    public BinaryResourceBinaryStreamingOutput(File file, InputStream binaryContentInputStream, List<ByteRange> ranges, String boundary, String contentType) {
+        this.file = file;
         this.binaryContentInputStream = binaryContentInputStream;
-        this.fullRange = new Range(start, end, length);
+        this.ranges = ranges;
+        this.boundary = boundary;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Computes the exact length of the multipart body written for the given ranges.
+     */
+    public static long getMultipartLength(List<ByteRange> ranges, String boundary, String contentType) {
+        long length = 0;
+        for (ByteRange range : ranges) {
+            length += getPartHeader(range, boundary, contentType).length + range.getLength();
+        }
+        return length + getMultipartEnd(boundary).length;
     }
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
         try {
-            if (binaryContentInputStream == null) {
+            if (file != null) {
+                writeFromFile(outputStream);
+            } else if (binaryContentInputStream == null) {
                 LOGGER.log(Level.SEVERE, "The file input stream is null");
+            } else if (ranges == null) {
+                writeWholeStream(outputStream);
             } else {
-                copy(binaryContentInputStream, outputStream, fullRange.start, fullRange.length);
+                writeFromStream(outputStream);
             }
         } catch (InterruptedStreamException e) {
             LOGGER.log(Level.WARNING, "Downloading file interrupted");
@@ -55,21 +110,23 @@ public class BinaryResourceBinaryStreamingOutput implements StreamingOutput {
         }
     }
 
-    private void copy(final InputStream input, OutputStream output, long start, long length) throws InterruptedStreamException {
-        // Slice the input stream considering offset and length
-        try (InputStream in=input) {
-            in.skip(start);
-            byte[] data = new byte[1024*8];
-            long remaining = length;
-            int nr;
-            while (remaining > 0) {
-                nr = in.read(data);
-                if (nr < 0) {
-                    break;
+    private void writeFromFile(OutputStream outputStream) throws InterruptedStreamException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            for (ByteRange range : ranges) {
+                writePartHeader(outputStream, range);
+                long position = range.getStart();
+                long remaining = range.getLength();
+                while (remaining > 0) {
+                    long transferred = channel.transferTo(position, remaining, target);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                    remaining -= transferred;
                 }
-                remaining -= nr;
-                output.write(data, 0, nr);
             }
+            writeMultipartEnd(outputStream);
         } catch (IOException e) {
             // may be caused by a client side cancel
             LOGGER.log(Level.FINE, "A downloading stream was interrupted.", e);
@@ -77,15 +134,83 @@ public class BinaryResourceBinaryStreamingOutput implements StreamingOutput {
         }
     }
 
-    private static class Range {
-        long start;
-        long length;
-        long total;
+    private void writeFromStream(OutputStream outputStream) throws InterruptedStreamException {
+        // Ranges are sorted and disjoint, the stream is only read forward
+        try (InputStream in = binaryContentInputStream) {
+            byte[] data = new byte[BUFFER_SIZE];
+            long position = 0;
+            for (ByteRange range : ranges) {
+                skipFully(in, range.getStart() - position);
+                writePartHeader(outputStream, range);
+                long remaining = range.getLength();
+                while (remaining > 0) {
+                    int nr = in.read(data, 0, (int) Math.min(data.length, remaining));
+                    if (nr < 0) {
+                        break;
+                    }
+                    remaining -= nr;
+                    outputStream.write(data, 0, nr);
+                }
+                position = range.getEnd() + 1;
+            }
+            writeMultipartEnd(outputStream);
+        } catch (IOException e) {
+            // may be caused by a client side cancel
+            LOGGER.log(Level.FINE, "A downloading stream was interrupted.", e);
+            throw new InterruptedStreamException();
+        }
+    }
 
-        public Range(long start, long end, long total) {
-            this.start = start;
-            this.length = end - start + 1;
-            this.total = total;
+    private void writeWholeStream(OutputStream outputStream) throws InterruptedStreamException {
+        try (InputStream in = binaryContentInputStream) {
+            byte[] data = new byte[BUFFER_SIZE];
+            int nr;
+            while ((nr = in.read(data)) != -1) {
+                outputStream.write(data, 0, nr);
+            }
+        } catch (IOException e) {
+            // may be caused by a client side cancel
+            LOGGER.log(Level.FINE, "A downloading stream was interrupted.", e);
+            throw new InterruptedStreamException();
+        }
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                // skip may return 0 before the end of the stream
+                if (in.read() < 0) {
+                    return;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
         }
     }
+
+    private void writePartHeader(OutputStream outputStream, ByteRange range) throws IOException {
+        if (boundary != null) {
+            outputStream.write(getPartHeader(range, boundary, contentType));
+        }
+    }
+
+    private void writeMultipartEnd(OutputStream outputStream) throws IOException {
+        if (boundary != null) {
+            outputStream.write(getMultipartEnd(boundary));
+        }
+    }
+
+    private static byte[] getPartHeader(ByteRange range, String boundary, String contentType) {
+        String header = CRLF + "--" + boundary + CRLF
+                + "Content-Type: " + contentType + CRLF
+                + "Content-Range: " + range.getContentRange() + CRLF
+                + CRLF;
+        return header.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] getMultipartEnd(String boundary) {
+        return (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.ISO_8859_1);
+    }
 }
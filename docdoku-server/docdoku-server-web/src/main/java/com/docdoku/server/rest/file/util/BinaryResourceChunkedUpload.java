@@ -0,0 +1,128 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.file.util;
+
+import com.docdoku.core.common.UploadSession;
+import com.docdoku.core.exceptions.StorageException;
+import com.docdoku.core.services.IDataManagerLocal;
+import com.docdoku.server.rest.dto.UploadSessionDTO;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * Chunked upload protocol shared by the binary resources:
+ *
+ * <ul>
+ * <li>POST .../{subType}/uploads?fileName=&amp;size=&amp;chunkSize= creates a session</li>
+ * <li>GET .../uploads/{uploadId} returns it with its received chunks, to resume an upload</li>
+ * <li>PUT .../uploads/{uploadId}/{chunk} writes a chunk, with its base64 encoded MD5 in the Content-MD5 header.
+ * Chunks may be sent concurrently.</li>
+ * <li>POST .../uploads/{uploadId} completes the upload once all the chunks are received</li>
+ * <li>DELETE .../uploads/{uploadId} cancels it</li>
+ * </ul>
+ */
+public class BinaryResourceChunkedUpload {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private BinaryResourceChunkedUpload() {
+        super();
+    }
+
+    public static boolean isValidChunkSize(int chunkSize) {
+        return chunkSize > 0 && chunkSize <= MAX_CHUNK_SIZE;
+    }
+
+    /**
+     * Get an upload session of the caller
+     *
+     * @return The session, null if it does not exist or belongs to another user
+     */
+    public static UploadSession getUploadSession(IDataManagerLocal dataManager, String uploadId, String login, String iterationFullName)
+            throws StorageException {
+        UploadSession uploadSession = dataManager.getUploadSession(uploadId);
+        if (uploadSession == null
+                || !uploadSession.getLogin().equals(login)
+                || !uploadSession.getBinaryResourceFullName().startsWith(iterationFullName)) {
+            return null;
+        }
+        return uploadSession;
+    }
+
+    public static Response writeChunk(IDataManagerLocal dataManager, UploadSession uploadSession, int chunk, InputStream content, String checksum)
+            throws StorageException {
+        if (uploadSession == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (checksum == null || checksum.isEmpty()) {
+            return badRequest("Missing Content-MD5 header");
+        }
+        if (!dataManager.writeUploadChunk(uploadSession, chunk, content, checksum)) {
+            return badRequest("Chunk " + chunk + " rejected, its index, length or checksum does not match");
+        }
+        return Response.noContent().build();
+    }
+
+    /**
+     * @return A 409 error listing the received chunks if some are missing, null if the upload can be completed
+     */
+    public static Response checkComplete(UploadSession uploadSession) {
+        if (uploadSession.isComplete()) {
+            return null;
+        }
+        return Response.status(Response.Status.CONFLICT)
+                .entity(toDTO(uploadSession))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    public static Response deleteUploadSession(IDataManagerLocal dataManager, UploadSession uploadSession) {
+        if (uploadSession == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        dataManager.deleteUploadSession(uploadSession.getId());
+        return Response.noContent().build();
+    }
+
+    public static UploadSessionDTO toDTO(UploadSession uploadSession) {
+        UploadSessionDTO dto = new UploadSessionDTO();
+        dto.setId(uploadSession.getId());
+        dto.setFileName(uploadSession.getFileName());
+        dto.setSize(uploadSession.getSize());
+        dto.setChunkSize(uploadSession.getChunkSize());
+        dto.setChunkCount(uploadSession.getChunkCount());
+        dto.setReceivedChunks(new ArrayList<>(uploadSession.getReceivedChunks()));
+        dto.setComplete(uploadSession.isComplete());
+        return dto;
+    }
+
+    private static Response badRequest(String message) {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .header("Reason-Phrase", message)
+                .entity(message)
+                .type(MediaType.TEXT_PLAIN)
+                .build();
+    }
+}
@@ -41,6 +41,7 @@ public class BinaryResourceDownloadMeta {
     private String downloadType;
     private long length;
     private Date lastModified;
+    private String contentEncoding;
 
     private String subResourceVirtualPath;
 
@@ -116,6 +117,24 @@ public class BinaryResourceDownloadMeta {
         return length;
     }
 
+    /**
+     * Set the size of the content sent, when it is not the file itself
+     *
+     * @param length Size of the content
+     */
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    /**
+     * Set the encoding of the content sent, which gets its own entity tag
+     *
+     * @param contentEncoding Encoding of the content, null for identity
+     */
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
     /**
      * Get the last modification date of the file
      *
@@ -142,7 +161,8 @@ public class BinaryResourceDownloadMeta {
     public EntityTag getETag() {
         //Todo add iteration and version
         //Todo remove special char from full Name
-        return new EntityTag(fullName + "_" + length + "_" + lastModified.getTime());
+        String eTag = fullName + "_" + length + "_" + lastModified.getTime();
+        return new EntityTag(contentEncoding != null ? eTag + "_" + contentEncoding : eTag);
     }
 
     public void setSubResourceVirtualPath(String subResourceVirtualPath) {
@@ -25,9 +25,13 @@ import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.File;
 import java.io.InputStream;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,55 +60,101 @@ public class BinaryResourceDownloadResponseBuilder {
      */
     public static Response prepareResponse(InputStream binaryContentInputStream, BinaryResourceDownloadMeta binaryResourceDownloadMeta, String range)
             throws RequestedRangeNotSatisfiableException {
+        return prepareResponse(null, binaryContentInputStream, binaryResourceDownloadMeta, range);
+    }
+
+    /**
+     * Set the header of the downloading response, the content being read to its end, its length
+     * being unknown.
+     *
+     * @param binaryContentInputStream   The stream of the binary content to download.
+     * @param binaryResourceDownloadMeta The header parameters for the binary content download.
+     * @return A response builder with the header & the content.
+     */
+    public static Response prepareResponse(InputStream binaryContentInputStream, BinaryResourceDownloadMeta binaryResourceDownloadMeta) {
+        Response.ResponseBuilder responseBuilder = Response.ok()
+                .header("Content-Disposition", binaryResourceDownloadMeta.getContentDisposition())
+                .header("Content-Type", binaryResourceDownloadMeta.getContentType())
+                .header("Accept-Ranges", "none")
+                .entity(new BinaryResourceBinaryStreamingOutput(binaryContentInputStream));
+        responseBuilder = applyCachePolicyToResponse(responseBuilder, binaryResourceDownloadMeta.getETag(), binaryResourceDownloadMeta.getLastModified());
+        return responseBuilder.build();
+    }
+
+    /**
+     * Set the header of the downloading response, the content being read from the file itself.
+     *
+     * @param file                       The file to download.
+     * @param binaryResourceDownloadMeta The header parameters for the binary content download.
+     * @param range                      The string of the queried range. Null if no range are specified
+     * @return A response builder with the header & the content.
+     * @throws RequestedRangeNotSatisfiableException If the range is not satisfiable.
+     */
+    public static Response prepareResponse(File file, BinaryResourceDownloadMeta binaryResourceDownloadMeta, String range)
+            throws RequestedRangeNotSatisfiableException {
+        return prepareResponse(file, null, binaryResourceDownloadMeta, range);
+    }
+
+    private static Response prepareResponse(File file, InputStream binaryContentInputStream, BinaryResourceDownloadMeta binaryResourceDownloadMeta, String range)
+            throws RequestedRangeNotSatisfiableException {
 
         Response.ResponseBuilder responseBuilder;
 
-        if (range == null || range.isEmpty()) {
+        // Converted content length differs from the original one, ranges cannot be served
+        if (range == null || range.isEmpty() || binaryResourceDownloadMeta.isConverted()) {
             long length = binaryResourceDownloadMeta.getLength();
             responseBuilder = Response.ok()
                     .header("Content-Disposition", binaryResourceDownloadMeta.getContentDisposition())
                     .header("Content-Type", binaryResourceDownloadMeta.getContentType())
-                    .entity(new BinaryResourceBinaryStreamingOutput(binaryContentInputStream, 0, length - 1, length));
+                    .header("Accept-Ranges", binaryResourceDownloadMeta.isConverted() ? "none" : "bytes")
+                    .entity(new BinaryResourceBinaryStreamingOutput(file, binaryContentInputStream, Collections.singletonList(ByteRange.full(length)), null, null));
 
             // Converting files modify its length so we don't specify the length on converted content
             if (!binaryResourceDownloadMeta.isConverted()) {
                 responseBuilder.header("Content-Length", length);
             }
         } else {
-            responseBuilder = prepareStreamingDownloadResponse(binaryResourceDownloadMeta, binaryContentInputStream, range);
+            responseBuilder = prepareStreamingDownloadResponse(binaryResourceDownloadMeta, file, binaryContentInputStream, range);
         }
 
         responseBuilder = applyCachePolicyToResponse(responseBuilder, binaryResourceDownloadMeta.getETag(), binaryResourceDownloadMeta.getLastModified());
         return responseBuilder.build();
     }
 
-    private static Response.ResponseBuilder prepareStreamingDownloadResponse(BinaryResourceDownloadMeta binaryResourceDownloadMeta, InputStream binaryContentInputStream, String range) throws RequestedRangeNotSatisfiableException {
+    private static Response.ResponseBuilder prepareStreamingDownloadResponse(BinaryResourceDownloadMeta binaryResourceDownloadMeta, File file, InputStream binaryContentInputStream, String range) throws RequestedRangeNotSatisfiableException {
         long length = binaryResourceDownloadMeta.getLength();
 
         // Range header should match format "bytes=n-n,n-n,n-n...". If not, then return 416.
-        if (!range.matches("^bytes=\\d*-\\d*(,\\d*-\\d*)*$")) {
+        List<ByteRange> ranges;
+        try {
+            ranges = ByteRange.parse(range, length);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.FINE, null, e);
             throw new RequestedRangeNotSatisfiableException("", length);
         }
-
-        String[] ranges = range.split("=")[1].split("-");
-        final long from = Integer.parseInt(ranges[0]);
-        long to;
-        if (ranges.length > 1) {
-            to = Integer.parseInt(ranges[1]);
-            to = (to > length - 1) ? length - 1 : to;
-        } else {
-            to = length - 1;
+        if (ranges.isEmpty()) {
+            throw new RequestedRangeNotSatisfiableException("", length);
         }
 
-        final String responseRange = String.format("bytes %d-%d/%d", from, to, length);
-
-        return Response.status(Response.Status.PARTIAL_CONTENT)
+        Response.ResponseBuilder responseBuilder = Response.status(Response.Status.PARTIAL_CONTENT)
                 .header("Content-Disposition", binaryResourceDownloadMeta.getContentDisposition())
-                .header("Accept-Ranges", "bytes")
-                .header("Content-Length", length - from)
-                .header("Content-Range", responseRange)
-                .header("Content-Type", binaryResourceDownloadMeta.getContentType())
-                .entity(new BinaryResourceBinaryStreamingOutput(binaryContentInputStream, from, length - 1, length));
+                .header("Accept-Ranges", "bytes");
+
+        if (ranges.size() == 1) {
+            ByteRange byteRange = ranges.get(0);
+            return responseBuilder
+                    .header("Content-Length", byteRange.getLength())
+                    .header("Content-Range", byteRange.getContentRange())
+                    .header("Content-Type", binaryResourceDownloadMeta.getContentType())
+                    .entity(new BinaryResourceBinaryStreamingOutput(file, binaryContentInputStream, ranges, null, null));
+        }
+
+        String boundary = UUID.randomUUID().toString();
+        String contentType = binaryResourceDownloadMeta.getContentType();
+        return responseBuilder
+                .header("Content-Length", BinaryResourceBinaryStreamingOutput.getMultipartLength(ranges, boundary, contentType))
+                .header("Content-Type", "multipart/byteranges; boundary=" + boundary)
+                .entity(new BinaryResourceBinaryStreamingOutput(file, binaryContentInputStream, ranges, boundary, contentType));
     }
 
     /**
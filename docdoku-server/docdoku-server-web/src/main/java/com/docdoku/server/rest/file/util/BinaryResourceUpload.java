@@ -19,6 +19,7 @@
  */
 package com.docdoku.server.rest.file.util;
 
+import com.docdoku.core.exceptions.StorageQuotaExceededException;
 import com.google.common.io.ByteStreams;
 
 import javax.servlet.http.Part;
@@ -60,12 +61,20 @@ public class BinaryResourceUpload {
     }
 
     /**
-     * Log error & return a 500 error.
+     * Log error & return a 500 error, or a 413 error when the workspace storage quota is exceeded.
      *
      * @param e The exception which cause the error.
-     * @return A 500 error.
+     * @return A 500 or 413 error.
      */
     public static Response uploadError(Exception e) {
+        if (e instanceof StorageQuotaExceededException) {
+            LOGGER.log(Level.INFO, e.getMessage());
+            return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                    .header("Reason-Phrase", e.getMessage())
+                    .entity(e.getMessage())
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
         String message = "Error while uploading the file(s).";
         LOGGER.log(Level.SEVERE, message, e);
         return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
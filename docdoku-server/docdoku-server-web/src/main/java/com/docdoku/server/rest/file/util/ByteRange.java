@@ -0,0 +1,147 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.file.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A satisfiable byte range of a content, bounds included.
+ */
+public class ByteRange {
+
+    private final long start;
+    private final long end;
+    private final long total;
+
+    public ByteRange(long start, long end, long total) {
+        this.start = start;
+        this.end = end;
+        this.total = total;
+    }
+
+    public static ByteRange full(long total) {
+        return new ByteRange(0, total - 1, total);
+    }
+
+    /**
+     * Parses the value of a Range header, "bytes=0-499,1000-,-500" for instance.
+     *
+     * Unsatisfiable ranges are ignored, overlapping or adjacent ranges are coalesced and sorted.
+     *
+     * @return the satisfiable ranges, empty if there is none
+     * @throws IllegalArgumentException if the header is malformed
+     */
+    public static List<ByteRange> parse(String header, long total) {
+        if (header == null || !header.matches("^bytes=\\d*-\\d*(,\\d*-\\d*)*$")) {
+            throw new IllegalArgumentException("Malformed range " + header);
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+
+        for (String spec : header.substring("bytes=".length()).split(",")) {
+            int dash = spec.indexOf('-');
+            String first = spec.substring(0, dash);
+            String last = spec.substring(dash + 1);
+            long start;
+            long end;
+
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    throw new IllegalArgumentException("Malformed range " + header);
+                }
+                // Suffix range, the last n bytes
+                start = Math.max(0, total - parseBound(last));
+                end = total - 1;
+            } else {
+                start = parseBound(first);
+                end = last.isEmpty() ? total - 1 : Math.min(parseBound(last), total - 1);
+                if (!last.isEmpty() && parseBound(last) < start) {
+                    throw new IllegalArgumentException("Malformed range " + header);
+                }
+            }
+
+            if (start < total && start <= end) {
+                ranges.add(new ByteRange(start, end, total));
+            }
+        }
+
+        return coalesce(ranges);
+    }
+
+    private static long parseBound(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            // Larger than any content
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted, new Comparator<ByteRange>() {
+            @Override
+            public int compare(ByteRange r1, ByteRange r2) {
+                return Long.compare(r1.start, r2.start);
+            }
+        });
+
+        List<ByteRange> coalesced = new ArrayList<>();
+        ByteRange current = sorted.get(0);
+        for (ByteRange range : sorted.subList(1, sorted.size())) {
+            if (range.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, range.end), current.total);
+            } else {
+                coalesced.add(current);
+                current = range;
+            }
+        }
+        coalesced.add(current);
+        return coalesced;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public String getContentRange() {
+        return "bytes " + start + "-" + end + "/" + total;
+    }
+
+}
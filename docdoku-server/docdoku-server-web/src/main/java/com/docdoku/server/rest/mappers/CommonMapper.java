@@ -0,0 +1,153 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.mappers;
+
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.UserGroup;
+import com.docdoku.core.meta.*;
+import com.docdoku.core.security.ACL;
+import com.docdoku.core.security.ACLUserEntry;
+import com.docdoku.core.security.ACLUserGroupEntry;
+import com.docdoku.server.rest.dto.*;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Maps the types shared by the part and document DTOs: users, ACLs, files, tags and attributes.
+ *
+ * The implementation is generated at build time. Polymorphic types are mapped by hand, as the
+ * Dozer converters did.
+ */
+@Mapper(unmappedTargetPolicy = ReportingPolicy.ERROR)
+public abstract class CommonMapper {
+
+    public static final CommonMapper INSTANCE = Mappers.getMapper(CommonMapper.class);
+
+    @Mapping(target = "membership", ignore = true)
+    public abstract UserDTO toDTO(User user);
+
+    public abstract NameValuePairDTO toDTO(NameValuePair nameValuePair);
+
+    public abstract List<InstanceAttributeDTO> toInstanceAttributeDTOs(List<InstanceAttribute> instanceAttributes);
+
+    public abstract List<InstanceAttributeTemplateDTO> toInstanceAttributeTemplateDTOs(List<InstanceAttributeTemplate> instanceAttributeTemplates);
+
+    public abstract List<String> toFullNames(Set<BinaryResource> binaryResources);
+
+    public ACLDTO toDTO(ACL acl) {
+        if (acl == null) {
+            return null;
+        }
+        ACLDTO aclDTO = new ACLDTO();
+        for (Map.Entry<User, ACLUserEntry> entry : acl.getUserEntries().entrySet()) {
+            ACLUserEntry aclEntry = entry.getValue();
+            aclDTO.addUserEntry(aclEntry.getPrincipalLogin(), aclEntry.getPermission());
+        }
+        for (Map.Entry<UserGroup, ACLUserGroupEntry> entry : acl.getGroupEntries().entrySet()) {
+            ACLUserGroupEntry aclEntry = entry.getValue();
+            aclDTO.addGroupEntry(aclEntry.getPrincipalId(), aclEntry.getPermission());
+        }
+        return aclDTO;
+    }
+
+    public String toFullName(BinaryResource binaryResource) {
+        return binaryResource == null ? null : binaryResource.getFullName();
+    }
+
+    public String[] toLabels(Set<Tag> tags) {
+        if (tags == null) {
+            return null;
+        }
+        String[] labels = new String[tags.size()];
+        int i = 0;
+        for (Tag tag : tags) {
+            labels[i++] = tag.getLabel();
+        }
+        return labels;
+    }
+
+    public InstanceAttributeDTO toDTO(InstanceAttribute instanceAttribute) {
+        if (instanceAttribute == null) {
+            return null;
+        }
+
+        InstanceAttributeDTO.Type type;
+        String value = "";
+        List<NameValuePairDTO> itemsDTO = null;
+
+        if (instanceAttribute instanceof InstanceBooleanAttribute) {
+            type = InstanceAttributeDTO.Type.BOOLEAN;
+            value = instanceAttribute.getValue() + "";
+        } else if (instanceAttribute instanceof InstanceTextAttribute) {
+            type = InstanceAttributeDTO.Type.TEXT;
+            value = instanceAttribute.getValue() + "";
+        } else if (instanceAttribute instanceof InstanceNumberAttribute) {
+            type = InstanceAttributeDTO.Type.NUMBER;
+            value = instanceAttribute.getValue() + "";
+        } else if (instanceAttribute instanceof InstanceDateAttribute) {
+            type = InstanceAttributeDTO.Type.DATE;
+            Date date = ((InstanceDateAttribute) instanceAttribute).getDateValue();
+            if (date != null) {
+                DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+                df.setTimeZone(TimeZone.getTimeZone("UTC"));
+                value = df.format(date);
+            }
+        } else if (instanceAttribute instanceof InstanceURLAttribute) {
+            type = InstanceAttributeDTO.Type.URL;
+            value = instanceAttribute.getValue() + "";
+        } else if (instanceAttribute instanceof InstanceListOfValuesAttribute) {
+            type = InstanceAttributeDTO.Type.LOV;
+            value = ((InstanceListOfValuesAttribute) instanceAttribute).getIndexValue() + "";
+            itemsDTO = new ArrayList<>();
+            for (NameValuePair item : ((InstanceListOfValuesAttribute) instanceAttribute).getItems()) {
+                itemsDTO.add(toDTO(item));
+            }
+        } else {
+            throw new IllegalArgumentException("Instance attribute not supported");
+        }
+
+        InstanceAttributeDTO dto = new InstanceAttributeDTO(instanceAttribute.getName(), type, value, instanceAttribute.isMandatory(), instanceAttribute.isLocked());
+        if (itemsDTO != null) {
+            dto.setItems(itemsDTO);
+        }
+        return dto;
+    }
+
+    public InstanceAttributeTemplateDTO toDTO(InstanceAttributeTemplate template) {
+        if (template == null) {
+            return null;
+        }
+        InstanceAttributeTemplateDTO dto = new InstanceAttributeTemplateDTO(template.getName(),
+                InstanceAttributeTemplateDTO.AttributeType.valueOf(template.getAttributeType().name()),
+                template.isMandatory(), template.isLocked());
+        if (template instanceof ListOfValuesAttributeTemplate) {
+            dto.setLovName(((ListOfValuesAttributeTemplate) template).getLovName());
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.mappers;
+
+import com.docdoku.core.document.DocumentIteration;
+import com.docdoku.core.document.DocumentLink;
+import com.docdoku.core.document.DocumentRevision;
+import com.docdoku.server.rest.dto.DocumentIterationDTO;
+import com.docdoku.server.rest.dto.DocumentRevisionDTO;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.Mappings;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Maps the document revisions with their iterations. Linked documents are mapped from the links
+ * only, without loading the target revisions.
+ *
+ * The folder path and the subscriptions of the user are left to the resources.
+ */
+@Mapper(uses = {CommonMapper.class, WorkflowMapper.class}, unmappedTargetPolicy = ReportingPolicy.ERROR)
+public abstract class DocumentMapper {
+
+    public static final DocumentMapper INSTANCE = Mappers.getMapper(DocumentMapper.class);
+
+    @Mappings({
+            @Mapping(target = "acl", expression = "java(com.docdoku.server.rest.mappers.CommonMapper.INSTANCE.toDTO(documentRevision.getACL()))"),
+            @Mapping(target = "path", ignore = true),
+            @Mapping(target = "commentLink", ignore = true),
+            @Mapping(target = "iterationSubscription", ignore = true),
+            @Mapping(target = "stateSubscription", ignore = true)
+    })
+    public abstract DocumentRevisionDTO toDTO(DocumentRevision documentRevision);
+
+    public abstract DocumentIterationDTO toDTO(DocumentIteration documentIteration);
+
+    public abstract List<DocumentIterationDTO> toDocumentIterationDTOs(List<DocumentIteration> documentIterations);
+
+    // As configured for Dozer, the id of the link being kept as the id
+    @Mappings({
+            @Mapping(target = "documentMasterId", source = "targetDocumentMasterId"),
+            @Mapping(target = "version", source = "targetDocumentVersion"),
+            @Mapping(target = "workspaceId", source = "targetDocumentWorkspaceId"),
+            @Mapping(target = "commentLink", source = "comment"),
+            @Mapping(target = "title", source = "documentTitle"),
+            @Mapping(target = "type", ignore = true),
+            @Mapping(target = "author", ignore = true),
+            @Mapping(target = "creationDate", ignore = true),
+            @Mapping(target = "checkOutUser", ignore = true),
+            @Mapping(target = "checkOutDate", ignore = true),
+            @Mapping(target = "tags", ignore = true),
+            @Mapping(target = "description", ignore = true),
+            @Mapping(target = "iterationSubscription", ignore = true),
+            @Mapping(target = "stateSubscription", ignore = true),
+            @Mapping(target = "documentIterations", ignore = true),
+            @Mapping(target = "workflow", ignore = true),
+            @Mapping(target = "path", ignore = true),
+            @Mapping(target = "lifeCycleState", ignore = true),
+            @Mapping(target = "publicShared", ignore = true),
+            @Mapping(target = "attributesLocked", ignore = true),
+            @Mapping(target = "acl", ignore = true)
+    })
+    public abstract DocumentRevisionDTO toDTO(DocumentLink documentLink);
+
+    public abstract List<DocumentRevisionDTO> toDocumentLinkDTOs(Set<DocumentLink> documentLinks);
+}
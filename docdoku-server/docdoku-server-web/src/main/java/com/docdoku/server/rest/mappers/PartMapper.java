@@ -0,0 +1,128 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.mappers;
+
+import com.docdoku.core.product.*;
+import com.docdoku.server.rest.dto.*;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.Mappings;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the part revisions with their iterations, usage links and CAD instances.
+ *
+ * The depth is bounded: the components of a usage link are mapped from their part master only,
+ * their revisions and iterations are never loaded.
+ */
+@Mapper(uses = {CommonMapper.class, WorkflowMapper.class, DocumentMapper.class}, unmappedTargetPolicy = ReportingPolicy.ERROR)
+public abstract class PartMapper {
+
+    public static final PartMapper INSTANCE = Mappers.getMapper(PartMapper.class);
+
+    /**
+     * @param allIterations false to map the last iteration only, which is what listings show
+     */
+    public PartRevisionDTO toDTO(PartRevision partRevision, boolean allIterations) {
+        if (partRevision == null) {
+            return null;
+        }
+
+        PartRevisionDTO partRevisionDTO = mapPartRevision(partRevision);
+
+        List<PartIterationDTO> partIterationDTOs;
+        if (allIterations) {
+            partIterationDTOs = toPartIterationDTOs(partRevision.getPartIterations());
+        } else {
+            partIterationDTOs = new ArrayList<>();
+            if (partRevision.getLastIteration() != null) {
+                partIterationDTOs.add(toDTO(partRevision.getLastIteration()));
+            }
+        }
+        partRevisionDTO.setPartIterations(partIterationDTOs);
+
+        return partRevisionDTO;
+    }
+
+    @Mappings({
+            @Mapping(target = "number", source = "partNumber"),
+            @Mapping(target = "name", source = "partName"),
+            @Mapping(target = "standardPart", source = "partMaster.standardPart"),
+            @Mapping(target = "partKey", expression = "java(partRevision.getPartNumber() + \"-\" + partRevision.getVersion())"),
+            @Mapping(target = "acl", expression = "java(com.docdoku.server.rest.mappers.CommonMapper.INSTANCE.toDTO(partRevision.getACL()))"),
+            @Mapping(target = "partIterations", ignore = true),
+            @Mapping(target = "notifications", ignore = true),
+            @Mapping(target = "modificationDate", ignore = true),
+            @Mapping(target = "checkInDate", ignore = true)
+    })
+    protected abstract PartRevisionDTO mapPartRevision(PartRevision partRevision);
+
+    public abstract PartIterationDTO toDTO(PartIteration partIteration);
+
+    public abstract List<PartIterationDTO> toPartIterationDTOs(List<PartIteration> partIterations);
+
+    public abstract PartUsageLinkDTO toDTO(PartUsageLink partUsageLink);
+
+    public abstract List<PartUsageLinkDTO> toPartUsageLinkDTOs(List<PartUsageLink> partUsageLinks);
+
+    public abstract PartSubstituteLinkDTO toDTO(PartSubstituteLink partSubstituteLink);
+
+    public abstract List<PartSubstituteLinkDTO> toPartSubstituteLinkDTOs(List<PartSubstituteLink> partSubstituteLinks);
+
+    @Mapping(target = "matrix", source = "rotationMatrix.values")
+    public abstract CADInstanceDTO toDTO(CADInstance cadInstance);
+
+    public abstract List<CADInstanceDTO> toCADInstanceDTOs(List<CADInstance> cadInstances);
+
+    // Only what a usage link tells about its component
+    @Mappings({
+            @Mapping(target = "author", source = "author.login"),
+            @Mapping(target = "authorLogin", ignore = true),
+            @Mapping(target = "version", ignore = true),
+            @Mapping(target = "iteration", ignore = true),
+            @Mapping(target = "description", ignore = true),
+            @Mapping(target = "assembly", ignore = true),
+            @Mapping(target = "substitute", ignore = true),
+            @Mapping(target = "partUsageLinkId", ignore = true),
+            @Mapping(target = "partUsageLinkReferenceDescription", ignore = true),
+            @Mapping(target = "components", ignore = true),
+            @Mapping(target = "amount", ignore = true),
+            @Mapping(target = "unit", ignore = true),
+            @Mapping(target = "attributes", ignore = true),
+            @Mapping(target = "checkOutUser", ignore = true),
+            @Mapping(target = "checkOutDate", ignore = true),
+            @Mapping(target = "released", ignore = true),
+            @Mapping(target = "obsolete", ignore = true),
+            @Mapping(target = "optional", ignore = true),
+            @Mapping(target = "lastIterationNumber", ignore = true),
+            @Mapping(target = "accessDeny", ignore = true),
+            @Mapping(target = "substituteIds", ignore = true),
+            @Mapping(target = "notifications", ignore = true),
+            @Mapping(target = "hasPathData", ignore = true),
+            @Mapping(target = "virtual", ignore = true),
+            @Mapping(target = "path", ignore = true)
+    })
+    public abstract ComponentDTO toComponentDTO(PartMaster partMaster);
+}
@@ -0,0 +1,80 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.mappers;
+
+import com.docdoku.core.workflow.Activity;
+import com.docdoku.core.workflow.ParallelActivity;
+import com.docdoku.core.workflow.SerialActivity;
+import com.docdoku.core.workflow.Task;
+import com.docdoku.core.workflow.Workflow;
+import com.docdoku.server.rest.dto.ActivityDTO;
+import com.docdoku.server.rest.dto.TaskDTO;
+import com.docdoku.server.rest.dto.WorkflowDTO;
+import org.mapstruct.Mapper;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+import java.util.List;
+
+/**
+ * Maps the workflows of the part and document revisions, with their activities and tasks.
+ */
+@Mapper(uses = CommonMapper.class, unmappedTargetPolicy = ReportingPolicy.ERROR)
+public abstract class WorkflowMapper {
+
+    public static final WorkflowMapper INSTANCE = Mappers.getMapper(WorkflowMapper.class);
+
+    public abstract WorkflowDTO toDTO(Workflow workflow);
+
+    public abstract TaskDTO toDTO(Task task);
+
+    public abstract TaskDTO.Status toDTO(Task.Status status);
+
+    public abstract List<TaskDTO> toTaskDTOs(List<Task> tasks);
+
+    public abstract List<ActivityDTO> toActivityDTOs(List<Activity> activities);
+
+    public ActivityDTO toDTO(Activity activity) {
+        if (activity == null) {
+            return null;
+        }
+
+        ActivityDTO.Type type;
+        Integer tasksToComplete = null;
+        Integer relaunchStep = null;
+
+        if (activity.getRelaunchActivity() != null) {
+            relaunchStep = activity.getRelaunchActivity().getStep();
+        }
+
+        if (activity instanceof SerialActivity) {
+            type = ActivityDTO.Type.SERIAL;
+        } else if (activity instanceof ParallelActivity) {
+            type = ActivityDTO.Type.PARALLEL;
+            tasksToComplete = ((ParallelActivity) activity).getTasksToComplete();
+        } else {
+            throw new IllegalArgumentException("Activity type not supported");
+        }
+
+        return new ActivityDTO(activity.getStep(), toTaskDTOs(activity.getTasks()), activity.getLifeCycleState(), type,
+                tasksToComplete, activity.isComplete(), activity.isStopped(), activity.isInProgress(), activity.isToDo(), relaunchStep);
+    }
+}
@@ -20,7 +20,6 @@
 
 package com.docdoku.server.rest.util;
 
-import com.docdoku.core.configuration.PSFilter;
 import com.docdoku.core.product.ConfigurationItemKey;
 
 /**
@@ -29,26 +28,16 @@ import com.docdoku.core.product.ConfigurationItemKey;
 public class FileExportEntity {
 
     private ConfigurationItemKey configurationItemKey;
-    private PSFilter psFilter;
-
-    private String serialNumber;
-    private Integer baselineId;
+    private String configSpecType;
 
     private boolean exportNativeCADFile;
     private boolean exportDocumentLinks;
+    private boolean deduplicate;
 
 
     public FileExportEntity() {
     }
 
-    public PSFilter getPsFilter() {
-        return psFilter;
-    }
-
-    public void setPsFilter(PSFilter psFilter) {
-        this.psFilter = psFilter;
-    }
-
     public ConfigurationItemKey getConfigurationItemKey() {
         return configurationItemKey;
     }
@@ -57,20 +46,12 @@ public class FileExportEntity {
         this.configurationItemKey = configurationItemKey;
     }
 
-    public String getSerialNumber() {
-        return serialNumber;
-    }
-
-    public void setSerialNumber(String serialNumber) {
-        this.serialNumber = serialNumber;
+    public String getConfigSpecType() {
+        return configSpecType;
     }
 
-    public Integer getBaselineId() {
-        return baselineId;
-    }
-
-    public void setBaselineId(Integer baselineId) {
-        this.baselineId = baselineId;
+    public void setConfigSpecType(String configSpecType) {
+        this.configSpecType = configSpecType;
     }
 
     public boolean isExportNativeCADFile() {
@@ -88,4 +69,12 @@ public class FileExportEntity {
     public void setExportDocumentLinks(boolean exportDocumentLinks) {
         this.exportDocumentLinks = exportDocumentLinks;
     }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
 }
@@ -20,7 +20,6 @@
 
 package com.docdoku.server.rest.util;
 
-import com.docdoku.core.configuration.PSFilter;
 import com.docdoku.core.exceptions.*;
 import com.docdoku.core.meta.InstanceAttribute;
 import com.docdoku.core.product.*;
@@ -49,106 +48,34 @@ public class InstanceBodyWriterTools {
     private static final Logger LOGGER = Logger.getLogger(InstanceBodyWriterTools.class.getName());
     private static Mapper mapper = DozerBeanMapperSingletonWrapper.getInstance();
 
-    public static void generateInstanceStreamWithGlobalMatrix(IProductManagerLocal productService, List<PartLink> currentPath, Matrix4d matrix, InstanceCollection instanceCollection, List<Integer> instanceIds, JsonGenerator jg) {
-
+    public static void generateInstanceStream(IProductManagerLocal productService, Matrix4d matrix, InstanceCollection instanceCollection, JsonGenerator jg) {
         try {
-
-            if (currentPath == null) {
-                PartLink rootPartUsageLink = productService.getRootPartUsageLink(instanceCollection.getCiKey());
-                currentPath = new ArrayList<>();
-                currentPath.add(rootPartUsageLink);
-            }
-
-            Component component = productService.filterProductStructure(instanceCollection.getCiKey(),
-                    instanceCollection.getFilter(), currentPath, 1);
-
-            PartLink partLink = component.getPartLink();
-            PartIteration partI = component.getRetainedIteration();
-
-            // Filter ACL on part
-            if (!productService.canAccess(partI.getPartRevision().getKey())) {
-                return;
-            }
-
-            for (CADInstance instance : partLink.getCadInstances()) {
-
-                List<Integer> copyInstanceIds = new ArrayList<>(instanceIds);
-                copyInstanceIds.add(instance.getId());
-                Vector3d instanceTranslation = new Vector3d(instance.getTx(), instance.getTy(), instance.getTz());
-                Matrix4d combinedMatrix;
-                switch (instance.getRotationType()) {
-                    case ANGLE:
-                        Vector3d instanceRotation = new Vector3d(instance.getRx(), instance.getRy(), instance.getRz());
-                        combinedMatrix = combineTransformation(matrix, instanceTranslation, instanceRotation);
-                        break;
-                    case MATRIX:
-                        Matrix4d rotationMatrix = new Matrix4d(new Matrix3d(instance.getRotationMatrix().getValues()), instanceTranslation, 1);
-                        combinedMatrix = combineTransformation(matrix, rotationMatrix);
-                        break;
-                    default:
-                        LOGGER.log(Level.SEVERE, "Unknown rotation Type, matrix not calculated");
-                        combinedMatrix = matrix;
-                }
-
-
-                if (!partI.isAssembly() && !partI.getGeometries().isEmpty() && instanceCollection.isFiltered(currentPath)) {
-                    writeLeaf(currentPath, copyInstanceIds, partI, combinedMatrix, jg);
-                } else {
-                    for (Component subComponent : component.getComponents()) {
-                        generateInstanceStreamWithGlobalMatrix(productService, subComponent.getPath(), combinedMatrix, instanceCollection, copyInstanceIds, jg);
-                    }
-                }
-            }
-
-        } catch (PartMasterNotFoundException | PartRevisionNotFoundException | PartUsageLinkNotFoundException | UserNotFoundException | WorkspaceNotFoundException | ConfigurationItemNotFoundException e) {
+            PartLink rootPartUsageLink = productService.getRootPartUsageLink(instanceCollection.getCiKey());
+            new InstanceStreamWalker(productService, instanceCollection, jg).walk(rootPartUsageLink, matrix);
+        } catch (UserNotFoundException | WorkspaceNotFoundException | ConfigurationItemNotFoundException e) {
             LOGGER.log(Level.SEVERE, null, e);
-        } catch (AccessRightException | EntityConstraintException | NotAllowedException | UserNotActiveException e) {
+        } catch (UserNotActiveException e) {
             LOGGER.log(Level.FINEST, null, e);
         }
-
     }
 
-    public static void generateInstanceStreamWithGlobalMatrix(IProductManagerLocal productService, List<PartLink> currentPath, Matrix4d matrix, VirtualInstanceCollection virtualInstanceCollection, List<Integer> instanceIds, JsonGenerator jg) {
-        try {
-
-            PartLink partLink = currentPath.get(currentPath.size() - 1);
-            PSFilter filter = virtualInstanceCollection.getFilter();
-            List<PartIteration> filteredPartIterations = filter.filter(partLink.getComponent());
-
-            if (!filteredPartIterations.isEmpty()) {
-
-                PartIteration partI = filteredPartIterations.iterator().next();
-
-                // Filter ACL on part
-                if (!productService.canAccess(partI.getPartRevision().getKey())) {
-                    return;
-                }
-
-                for (CADInstance instance : partLink.getCadInstances()) {
-
-                    List<Integer> copyInstanceIds = new ArrayList<>(instanceIds);
-                    copyInstanceIds.add(instance.getId());
-
-                    Vector3d instanceTranslation = new Vector3d(instance.getTx(), instance.getTy(), instance.getTz());
-                    Vector3d instanceRotation = new Vector3d(instance.getRx(), instance.getRy(), instance.getRz());
-                    Matrix4d combinedMatrix = combineTransformation(matrix, instanceTranslation, instanceRotation);
-
-                    if (!partI.isAssembly() && !partI.getGeometries().isEmpty()) {
-                        writeLeaf(currentPath, copyInstanceIds, partI, combinedMatrix, jg);
-                    } else {
-                        for (PartLink subLink : partI.getComponents()) {
-                            List<PartLink> subPath = new ArrayList<>(currentPath);
-                            subPath.add(subLink);
-                            generateInstanceStreamWithGlobalMatrix(productService, subPath, combinedMatrix, virtualInstanceCollection, copyInstanceIds, jg);
-                        }
-                    }
-                }
-            }
+    public static void generateInstanceStream(IProductManagerLocal productService, PartLink rootLink, Matrix4d matrix, VirtualInstanceCollection virtualInstanceCollection, JsonGenerator jg) {
+        new InstanceStreamWalker(productService, virtualInstanceCollection.getFilter(), jg).walk(rootLink, matrix);
+    }
 
-        } catch (UserNotFoundException | UserNotActiveException | WorkspaceNotFoundException | PartRevisionNotFoundException e) {
-            LOGGER.log(Level.SEVERE, null, e);
+    static Matrix4d combineTransformation(Matrix4d matrix, CADInstance instance) {
+        Vector3d instanceTranslation = new Vector3d(instance.getTx(), instance.getTy(), instance.getTz());
+        switch (instance.getRotationType()) {
+            case ANGLE:
+                Vector3d instanceRotation = new Vector3d(instance.getRx(), instance.getRy(), instance.getRz());
+                return combineTransformation(matrix, instanceTranslation, instanceRotation);
+            case MATRIX:
+                Matrix4d rotationMatrix = new Matrix4d(new Matrix3d(instance.getRotationMatrix().getValues()), instanceTranslation, 1);
+                return combineTransformation(matrix, rotationMatrix);
+            default:
+                LOGGER.log(Level.SEVERE, "Unknown rotation Type, matrix not calculated");
+                return matrix;
         }
-
     }
 
     private static Matrix4d combineTransformation(Matrix4d matrix, Vector3d translation, Vector3d rotation) {
@@ -181,7 +108,7 @@ public class InstanceBodyWriterTools {
         return gM;
     }
 
-    private static void writeLeaf(List<PartLink> currentPath, List<Integer> copyInstanceIds, PartIteration partI, Matrix4d combinedMatrix, JsonGenerator jg) {
+    static void writeLeaf(List<PartLink> currentPath, List<Integer> copyInstanceIds, PartIteration partI, Matrix4d combinedMatrix, JsonGenerator jg) {
         String partIterationId = partI.toString();
         List<InstanceAttributeDTO> attributes = new ArrayList<>();
         for (InstanceAttribute attr : partI.getInstanceAttributes()) {
@@ -229,6 +156,11 @@ public class InstanceBodyWriterTools {
         for (Geometry g : files) {
             jg.writeStartObject();
             jg.write("fullName", "api/files/" + g.getFullName());
+            // Same geometry in the binary mesh format, smaller and faster to load
+            if (g.hasBinaryMesh()) {
+                jg.write("binaryMesh", "api/files/" + g.getFullName() + "?output=" + Geometry.BINARY_MESH_OUTPUT);
+                jg.write("binaryMeshLength", g.getBinaryMeshLength());
+            }
             jg.writeEnd();
         }
         jg.writeEnd();
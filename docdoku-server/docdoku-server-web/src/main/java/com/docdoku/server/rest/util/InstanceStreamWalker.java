@@ -0,0 +1,171 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.util;
+
+import com.docdoku.core.configuration.PSFilter;
+import com.docdoku.core.exceptions.PartRevisionNotFoundException;
+import com.docdoku.core.exceptions.UserNotActiveException;
+import com.docdoku.core.exceptions.UserNotFoundException;
+import com.docdoku.core.exceptions.WorkspaceNotFoundException;
+import com.docdoku.core.product.*;
+import com.docdoku.core.services.IProductManagerLocal;
+import com.docdoku.core.util.Tools;
+import com.docdoku.server.rest.collections.InstanceCollection;
+
+import javax.json.stream.JsonGenerator;
+import javax.vecmath.Matrix4d;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Walks a product structure once, depth first, and writes every leaf instance to the
+ * {@link JsonGenerator} as soon as it is reached.
+ *
+ * Each part master is resolved against the filter once and each part revision is access checked once
+ * for the whole walk. The current path, instance ids and matrices are kept on stacks, so memory
+ * depends on the depth of the structure, not on its number of instances.
+ */
+public class InstanceStreamWalker {
+
+    private static final Logger LOGGER = Logger.getLogger(InstanceStreamWalker.class.getName());
+
+    private IProductManagerLocal productService;
+    private PSFilter filter;
+    private JsonGenerator jg;
+
+    // Restricts written leaves to some paths, may be null
+    private InstanceCollection instanceCollection;
+
+    // Resolved once per walk
+    private Map<PartMaster, PartIteration> retainedIterations = new HashMap<>();
+    private Map<PartRevisionKey, Boolean> accessRights = new HashMap<>();
+
+    // Walk state
+    private List<PartLink> currentPath = new ArrayList<>();
+    private List<Integer> currentInstanceIds = new ArrayList<>();
+    private Set<PartMaster> currentPathParts = new HashSet<>();
+
+    public InstanceStreamWalker(IProductManagerLocal productService, PSFilter filter, JsonGenerator jg) {
+        this.productService = productService;
+        this.filter = filter;
+        this.jg = jg;
+    }
+
+    public InstanceStreamWalker(IProductManagerLocal productService, InstanceCollection instanceCollection, JsonGenerator jg) {
+        this(productService, instanceCollection.getFilter(), jg);
+        this.instanceCollection = instanceCollection;
+    }
+
+    /**
+     * Streams all the instances found under the given link, the link being the root of the structure.
+     */
+    public void walk(PartLink rootLink, Matrix4d matrix) {
+        visit(rootLink, matrix);
+    }
+
+    private void visit(PartLink partLink, Matrix4d matrix) {
+
+        PartMaster partMaster = partLink.getComponent();
+        PartIteration partI = getRetainedIteration(partMaster);
+
+        if (partI == null || !canAccess(partI.getPartRevision())) {
+            return;
+        }
+
+        if (!currentPathParts.add(partMaster)) {
+            LOGGER.log(Level.WARNING, "Cyclic assembly detected on part " + partMaster + ", branch skipped");
+            return;
+        }
+
+        currentPath.add(partLink);
+
+        try {
+            String pathAsString = Tools.getPathAsString(currentPath);
+
+            if (instanceCollection != null && !instanceCollection.isOnFilteredPath(pathAsString)) {
+                return;
+            }
+
+            boolean isLeaf = !partI.isAssembly() && !partI.getGeometries().isEmpty();
+
+            if (isLeaf && (instanceCollection == null || instanceCollection.isFiltered(pathAsString))) {
+                for (CADInstance instance : partLink.getCadInstances()) {
+                    currentInstanceIds.add(instance.getId());
+                    InstanceBodyWriterTools.writeLeaf(currentPath, currentInstanceIds, partI, InstanceBodyWriterTools.combineTransformation(matrix, instance), jg);
+                    currentInstanceIds.remove(currentInstanceIds.size() - 1);
+                }
+            } else {
+                // Children are the same for every instance, resolve them once
+                List<PartLink> children = getEligibleLinks(partI);
+                if (children.isEmpty()) {
+                    return;
+                }
+                for (CADInstance instance : partLink.getCadInstances()) {
+                    currentInstanceIds.add(instance.getId());
+                    Matrix4d combinedMatrix = InstanceBodyWriterTools.combineTransformation(matrix, instance);
+                    for (PartLink child : children) {
+                        visit(child, combinedMatrix);
+                    }
+                    currentInstanceIds.remove(currentInstanceIds.size() - 1);
+                }
+            }
+
+        } finally {
+            currentPath.remove(currentPath.size() - 1);
+            currentPathParts.remove(partMaster);
+        }
+    }
+
+    private List<PartLink> getEligibleLinks(PartIteration partI) {
+        List<PartLink> eligibleLinks = new ArrayList<>();
+        for (PartUsageLink usageLink : partI.getComponents()) {
+            currentPath.add(usageLink);
+            eligibleLinks.addAll(filter.filter(currentPath));
+            currentPath.remove(currentPath.size() - 1);
+        }
+        return eligibleLinks;
+    }
+
+    private PartIteration getRetainedIteration(PartMaster partMaster) {
+        if (!retainedIterations.containsKey(partMaster)) {
+            List<PartIteration> partIterations = filter.filter(partMaster);
+            retainedIterations.put(partMaster, partIterations.isEmpty() ? null : partIterations.get(0));
+        }
+        return retainedIterations.get(partMaster);
+    }
+
+    private boolean canAccess(PartRevision partRevision) {
+        PartRevisionKey key = partRevision.getKey();
+        Boolean canAccess = accessRights.get(key);
+        if (canAccess == null) {
+            try {
+                canAccess = productService.canAccess(key);
+            } catch (UserNotFoundException | UserNotActiveException | WorkspaceNotFoundException | PartRevisionNotFoundException e) {
+                LOGGER.log(Level.SEVERE, null, e);
+                canAccess = false;
+            }
+            accessRights.put(key, canAccess);
+        }
+        return canAccess;
+    }
+
+}
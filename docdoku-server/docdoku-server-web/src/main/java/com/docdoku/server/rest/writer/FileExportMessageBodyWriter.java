@@ -19,16 +19,8 @@
  */
 package com.docdoku.server.rest.writer;
 
-import com.docdoku.core.common.BinaryResource;
-import com.docdoku.core.configuration.ProductInstanceIteration;
-import com.docdoku.core.configuration.ProductInstanceMaster;
-import com.docdoku.core.configuration.ProductInstanceMasterKey;
-import com.docdoku.core.document.DocumentLink;
-import com.docdoku.core.exceptions.*;
-import com.docdoku.core.product.ConfigurationItemKey;
-import com.docdoku.core.services.IDataManagerLocal;
-import com.docdoku.core.services.IProductInstanceManagerLocal;
-import com.docdoku.core.services.IProductManagerLocal;
+import com.docdoku.core.exceptions.ApplicationException;
+import com.docdoku.core.services.IFileExportManagerLocal;
 import com.docdoku.server.rest.util.FileExportEntity;
 
 import javax.inject.Inject;
@@ -38,29 +30,18 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 @Provider
 public class FileExportMessageBodyWriter implements MessageBodyWriter<FileExportEntity> {
 
     private static final Logger LOGGER = Logger.getLogger(FileExportMessageBodyWriter.class.getName());
     @Inject
-    private IDataManagerLocal dataManager;
-    @Inject
-    private IProductManagerLocal productService;
-    @Inject
-    private IProductInstanceManagerLocal productInstanceService;
+    private IFileExportManagerLocal fileExportService;
 
     @Override
     public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
@@ -74,90 +55,13 @@ public class FileExportMessageBodyWriter implements MessageBodyWriter<FileExport
 
     @Override
     public void writeTo(FileExportEntity fileExportEntity, Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> multivaluedMap, OutputStream outputStream) throws IOException, WebApplicationException {
-
-        ZipOutputStream zs = new ZipOutputStream(outputStream);
-
         try {
-
-            Map<String, Set<BinaryResource>> binariesInTree = productService.getBinariesInTree(fileExportEntity.getBaselineId(), fileExportEntity.getConfigurationItemKey().getWorkspace(), fileExportEntity.getConfigurationItemKey(), fileExportEntity.getPsFilter(), fileExportEntity.isExportNativeCADFile(), fileExportEntity.isExportDocumentLinks());
-            Set<Map.Entry<String, Set<BinaryResource>>> entries = binariesInTree.entrySet();
-            List<String> baselinedSourcesName = new ArrayList<>();
-
-            if (fileExportEntity.isExportDocumentLinks() && fileExportEntity.getBaselineId() != null) {
-                List<BinaryResource> baselinedSources = productService.getBinaryResourceFromBaseline(fileExportEntity.getBaselineId());
-
-                for (BinaryResource binaryResource : baselinedSources) {
-                    String[] parts = binaryResource.getFullName().split("/");
-                    String folderName = parts[2] + "-" + parts[3] + "-" + parts[4];
-                    baselinedSourcesName.add(folderName);
-                    addToZipFile(binaryResource, "links/" + folderName, zs);
-                }
-            }
-
-            for (Map.Entry<String, Set<BinaryResource>> entry : entries) {
-                String partNumberFolderName = entry.getKey();
-                String folderName;
-                Set<BinaryResource> files = entry.getValue();
-
-                for (BinaryResource binaryResource : files) {
-                    try {
-                        String fileType = binaryResource.getFileType();
-                        folderName = partNumberFolderName + (fileType == null ? "" : "/" + fileType);
-                        addToZipFile(binaryResource, folderName, zs);
-
-                    } catch (StorageException e) {
-                        LOGGER.log(Level.FINEST, null, e);
-                    }
-                }
-            }
-
-            if (fileExportEntity.getSerialNumber() != null) {
-                addProductInstanceDataToZip(zs, fileExportEntity.getConfigurationItemKey(), fileExportEntity.getSerialNumber(), baselinedSourcesName);
-            }
-
-        } catch (UserNotFoundException | UserNotActiveException | WorkspaceNotFoundException | ConfigurationItemNotFoundException |
-                NotAllowedException | EntityConstraintException | PartMasterNotFoundException | ProductInstanceMasterNotFoundException |
-                StorageException e) {
+            fileExportService.exportFiles(fileExportEntity.getConfigurationItemKey(), fileExportEntity.getConfigSpecType(),
+                    fileExportEntity.isExportNativeCADFile(), fileExportEntity.isExportDocumentLinks(),
+                    fileExportEntity.isDeduplicate(), outputStream);
+        } catch (ApplicationException e) {
             LOGGER.log(Level.FINEST, null, e);
         }
-
-        zs.close();
-
-    }
-
-    private void addProductInstanceDataToZip(ZipOutputStream zs, ConfigurationItemKey configurationItemKey, String serialNumber, List<String> baselinedSourcesName) throws UserNotFoundException, WorkspaceNotFoundException, UserNotActiveException, ProductInstanceMasterNotFoundException, IOException, StorageException {
-        ProductInstanceMaster productInstanceMaster = productInstanceService.getProductInstanceMaster(new ProductInstanceMasterKey(serialNumber, configurationItemKey));
-        ProductInstanceIteration lastIteration = productInstanceMaster.getLastIteration();
-
-        for (BinaryResource attachedFile : lastIteration.getAttachedFiles()) {
-            addToZipFile(attachedFile, "attachedfiles", zs);
-        }
-
-        for (DocumentLink docLink : lastIteration.getLinkedDocuments()) {
-            for (BinaryResource linkedFile : docLink.getTargetDocument().getLastIteration().getAttachedFiles()) {
-                String folderName = docLink.getTargetDocument().getLastIteration().toString();
-
-                if (!baselinedSourcesName.contains(folderName)) {
-                    addToZipFile(linkedFile, "links/" + folderName, zs);
-                }
-            }
-        }
-    }
-
-    public void addToZipFile(BinaryResource binaryResource, String folderName, ZipOutputStream zos) throws IOException, StorageException {
-
-        try (InputStream binaryResourceInputStream = dataManager.getBinaryResourceInputStream(binaryResource)) {
-
-            ZipEntry zipEntry = new ZipEntry(folderName + "/" + binaryResource.getName());
-            zos.putNextEntry(zipEntry);
-
-            byte[] bytes = new byte[1024];
-            int length;
-            while ((length = binaryResourceInputStream.read(bytes)) >= 0) {
-                zos.write(bytes, 0, length);
-            }
-            zos.closeEntry();
-        }
     }
 
 }
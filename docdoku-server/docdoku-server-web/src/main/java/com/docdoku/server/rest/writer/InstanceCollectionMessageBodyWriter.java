@@ -37,7 +37,6 @@ import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
 
 /**
  * @author Florent Garin
@@ -67,7 +66,7 @@ public class InstanceCollectionMessageBodyWriter implements MessageBodyWriter<In
 
         Matrix4d gM = new Matrix4d();
         gM.setIdentity();
-        InstanceBodyWriterTools.generateInstanceStreamWithGlobalMatrix(productService, null, gM, instanceCollection, new ArrayList<>(), jg);
+        InstanceBodyWriterTools.generateInstanceStream(productService, gM, instanceCollection, jg);
         jg.writeEnd();
         jg.flush();
     }
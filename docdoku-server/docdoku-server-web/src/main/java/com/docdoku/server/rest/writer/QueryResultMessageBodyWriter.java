@@ -24,6 +24,7 @@ import com.docdoku.core.configuration.*;
 import com.docdoku.core.document.DocumentIteration;
 import com.docdoku.core.document.DocumentLink;
 import com.docdoku.core.document.DocumentRevision;
+import com.docdoku.core.exceptions.ApplicationException;
 import com.docdoku.core.exceptions.ProductInstanceMasterNotFoundException;
 import com.docdoku.core.exceptions.UserNotActiveException;
 import com.docdoku.core.exceptions.UserNotFoundException;
@@ -40,9 +41,12 @@ import com.docdoku.core.query.QueryField;
 import com.docdoku.core.query.QueryResultRow;
 import com.docdoku.core.services.IProductInstanceManagerLocal;
 import com.docdoku.core.util.Tools;
+import com.docdoku.server.export.CSVGenerator;
 import com.docdoku.server.export.ExcelGenerator;
 import com.docdoku.server.rest.collections.QueryResult;
 
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
 import javax.inject.Inject;
 import javax.json.Json;
 import javax.json.JsonValue;
@@ -56,7 +60,6 @@ import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
@@ -72,6 +75,7 @@ public class QueryResultMessageBodyWriter implements MessageBodyWriter<QueryResu
     private static final Logger LOGGER = Logger.getLogger(QueryResultMessageBodyWriter.class.getName());
     private static SimpleDateFormat FORMAT = QueryResultMessageBodyWriter.getFormat();
     private ExcelGenerator excelGenerator = new ExcelGenerator();
+    private CSVGenerator csvGenerator = new CSVGenerator();
     @Inject
     private IProductInstanceManagerLocal productInstanceService;
 
@@ -99,16 +103,34 @@ public class QueryResultMessageBodyWriter implements MessageBodyWriter<QueryResu
             httpHeaders.putSingle("Content-Disposition", "inline");
             generateJSONResponse(outputStream, queryResult);
         } else if (queryResult.getExportType().equals(QueryResult.ExportType.XLS)) {
-            httpHeaders.putSingle("Content-Type", "application/octet-stream");
-            httpHeaders.putSingle("Content-Disposition", "attachment; filename=\"TSR.csv\"");
-            excelGenerator.generateXLSResponse(queryResult, new Locale(queryResult.getQuery().getAuthor().getLanguage()), "");
+            httpHeaders.putSingle("Content-Type", ExcelGenerator.CONTENT_TYPE);
+            httpHeaders.putSingle("Content-Disposition", "attachment; filename=\"" + ExcelGenerator.FILE_NAME + "\"");
+            try {
+                SXSSFWorkbook workbook = excelGenerator.generateXLSResponse(queryResult, getLocale(queryResult), "");
+                excelGenerator.writeXLSResponse(workbook, outputStream);
+            } catch (ApplicationException e) {
+                throw new WebApplicationException(e);
+            }
+        } else if (queryResult.getExportType().equals(QueryResult.ExportType.CSV)) {
+            httpHeaders.putSingle("Content-Type", CSVGenerator.CONTENT_TYPE);
+            httpHeaders.putSingle("Content-Disposition", "attachment; filename=\"" + CSVGenerator.FILE_NAME + "\"");
+            try {
+                csvGenerator.generateCSVResponse(queryResult, getLocale(queryResult), "", outputStream);
+            } catch (ApplicationException e) {
+                throw new WebApplicationException(e);
+            }
         } else {
             throw new IllegalArgumentException();
         }
 
     }
 
-    private void generateJSONResponse(OutputStream outputStream, QueryResult queryResult) throws UnsupportedEncodingException {
+    private Locale getLocale(QueryResult queryResult) {
+        User author = queryResult.getQuery().getAuthor();
+        return new Locale(author != null ? author.getLanguage() : "en");
+    }
+
+    private void generateJSONResponse(OutputStream outputStream, QueryResult queryResult) throws IOException {
 
         String charSet = "UTF-8";
         JsonGenerator jg = Json.createGenerator(new OutputStreamWriter(outputStream, charSet));
@@ -118,250 +140,257 @@ public class QueryResultMessageBodyWriter implements MessageBodyWriter<QueryResu
         List<String> partIterationSelectedAttributes = getPartIterationSelectedAttributes(selects);
         List<String> pathDataSelectedAttributes = getPathDataSelectedAttributes(selects);
 
-        for (QueryResultRow row : queryResult.getRows()) {
+        // Rows are written as they are read, without being collected first
+        try {
+            queryResult.writeRows(row -> writeRow(jg, row, selects, partIterationSelectedAttributes, pathDataSelectedAttributes));
+        } catch (ApplicationException e) {
+            throw new WebApplicationException(e);
+        }
 
-            QueryContext queryContext = row.getContext();
+        jg.writeEnd();
+        jg.flush();
+    }
 
-            PartRevision part = row.getPartRevision();
-            PartIteration lastCheckedInIteration = part.getLastCheckedInIteration();
+    private void writeRow(JsonGenerator jg, QueryResultRow row, List<String> selects, List<String> partIterationSelectedAttributes, List<String> pathDataSelectedAttributes) {
 
-            jg.writeStartObject();
+        QueryContext queryContext = row.getContext();
 
-            jg.write(QueryField.PART_REVISION_PART_KEY, part.getPartNumber() + '-' + part.getVersion());
+        PartRevision part = row.getPartRevision();
+        PartIteration lastCheckedInIteration = part.getLastCheckedInIteration();
 
-            // PartMaster data
+        jg.writeStartObject();
 
-            if (selects.contains(QueryField.PART_MASTER_NUMBER)) {
-                jg.write(QueryField.PART_MASTER_NUMBER, part.getPartNumber());
-            }
+        jg.write(QueryField.PART_REVISION_PART_KEY, part.getPartNumber() + '-' + part.getVersion());
 
-            if (selects.contains(QueryField.PART_MASTER_NAME)) {
-                String sName = part.getPartName();
-                jg.write(QueryField.PART_MASTER_NAME, sName != null ? sName : "");
-            }
+        // PartMaster data
 
-            if (selects.contains(QueryField.PART_MASTER_TYPE)) {
-                String sType = part.getType();
-                jg.write(QueryField.PART_MASTER_TYPE, sType != null ? sType : "");
-            }
+        if (selects.contains(QueryField.PART_MASTER_NUMBER)) {
+            jg.write(QueryField.PART_MASTER_NUMBER, part.getPartNumber());
+        }
 
-            // PartRevision data
+        if (selects.contains(QueryField.PART_MASTER_NAME)) {
+            String sName = part.getPartName();
+            jg.write(QueryField.PART_MASTER_NAME, sName != null ? sName : "");
+        }
 
-            if (selects.contains(QueryField.PART_REVISION_MODIFICATION_DATE)) {
-                PartIteration pi = part.getLastIteration();
-                if (pi != null) {
-                    writeDate(jg, QueryField.PART_REVISION_MODIFICATION_DATE, pi.getModificationDate());
-                }
-            }
+        if (selects.contains(QueryField.PART_MASTER_TYPE)) {
+            String sType = part.getType();
+            jg.write(QueryField.PART_MASTER_TYPE, sType != null ? sType : "");
+        }
 
-            if (selects.contains(QueryField.PART_REVISION_CREATION_DATE)) {
-                writeDate(jg, QueryField.PART_REVISION_CREATION_DATE, part.getCreationDate());
-            }
+        // PartRevision data
 
-            if (selects.contains(QueryField.PART_REVISION_CHECKOUT_DATE)) {
-                writeDate(jg, QueryField.PART_REVISION_CHECKOUT_DATE, part.getCheckOutDate());
+        if (selects.contains(QueryField.PART_REVISION_MODIFICATION_DATE)) {
+            PartIteration pi = part.getLastIteration();
+            if (pi != null) {
+                writeDate(jg, QueryField.PART_REVISION_MODIFICATION_DATE, pi.getModificationDate());
             }
+        }
 
-            if (selects.contains(QueryField.PART_REVISION_CHECKIN_DATE)) {
-                writeDate(jg, QueryField.PART_REVISION_CHECKIN_DATE, lastCheckedInIteration != null ? lastCheckedInIteration.getCheckInDate() : null);
-            }
+        if (selects.contains(QueryField.PART_REVISION_CREATION_DATE)) {
+            writeDate(jg, QueryField.PART_REVISION_CREATION_DATE, part.getCreationDate());
+        }
 
-            if (selects.contains(QueryField.PART_REVISION_VERSION)) {
-                String version = part.getVersion();
-                jg.write(QueryField.PART_REVISION_VERSION, version);
-            }
+        if (selects.contains(QueryField.PART_REVISION_CHECKOUT_DATE)) {
+            writeDate(jg, QueryField.PART_REVISION_CHECKOUT_DATE, part.getCheckOutDate());
+        }
 
-            if (selects.contains(QueryField.PART_REVISION_LIFECYCLE_STATE)) {
-                String lifeCycleState = part.getLifeCycleState();
-                jg.write(QueryField.PART_REVISION_LIFECYCLE_STATE, lifeCycleState != null ? lifeCycleState : "");
-            }
+        if (selects.contains(QueryField.PART_REVISION_CHECKIN_DATE)) {
+            writeDate(jg, QueryField.PART_REVISION_CHECKIN_DATE, lastCheckedInIteration != null ? lastCheckedInIteration.getCheckInDate() : null);
+        }
 
-            if (selects.contains(QueryField.PART_REVISION_STATUS)) {
-                PartRevision.RevisionStatus status = part.getStatus();
-                jg.write(QueryField.PART_REVISION_STATUS, status.toString());
-            }
+        if (selects.contains(QueryField.PART_REVISION_VERSION)) {
+            String version = part.getVersion();
+            jg.write(QueryField.PART_REVISION_VERSION, version);
+        }
 
-            if (selects.contains(QueryField.AUTHOR_LOGIN)) {
-                User user = part.getAuthor();
-                jg.write(QueryField.AUTHOR_LOGIN, user.getLogin());
-            }
+        if (selects.contains(QueryField.PART_REVISION_LIFECYCLE_STATE)) {
+            String lifeCycleState = part.getLifeCycleState();
+            jg.write(QueryField.PART_REVISION_LIFECYCLE_STATE, lifeCycleState != null ? lifeCycleState : "");
+        }
 
-            if (selects.contains(QueryField.AUTHOR_NAME)) {
-                User user = part.getAuthor();
-                jg.write(QueryField.AUTHOR_NAME, user.getName());
-            }
+        if (selects.contains(QueryField.PART_REVISION_STATUS)) {
+            PartRevision.RevisionStatus status = part.getStatus();
+            jg.write(QueryField.PART_REVISION_STATUS, status.toString());
+        }
 
-            if (selects.contains(QueryField.CTX_DEPTH)) {
-                jg.write(QueryField.CTX_DEPTH, row.getDepth());
-            }
+        if (selects.contains(QueryField.AUTHOR_LOGIN)) {
+            User user = part.getAuthor();
+            jg.write(QueryField.AUTHOR_LOGIN, user.getLogin());
+        }
 
-            if (selects.contains(QueryField.PART_ITERATION_LINKED_DOCUMENTS)) {
-
-                StringBuilder sb = new StringBuilder();
-
-                if (null != queryContext && null != queryContext.getSerialNumber()) {
-                    try {
-                        ProductInstanceMaster productInstanceMaster = productInstanceService.getProductInstanceMaster(new ProductInstanceMasterKey(queryContext.getSerialNumber(), queryContext.getWorkspaceId(), queryContext.getConfigurationItemId()));
-                        ProductInstanceIteration lastIteration = productInstanceMaster.getLastIteration();
-                        PartCollection partCollection = lastIteration.getPartCollection();
-                        BaselinedPart baselinedPart = partCollection.getBaselinedPart(new BaselinedPartKey(partCollection.getId(), queryContext.getWorkspaceId(), part.getPartNumber()));
-                        PartIteration targetPart = baselinedPart.getTargetPart();
-                        Set<DocumentLink> linkedDocuments = targetPart.getLinkedDocuments();
-                        DocumentCollection documentCollection = lastIteration.getDocumentCollection();
-
-                        for (DocumentLink documentLink : linkedDocuments) {
-                            DocumentRevision targetDocument = documentLink.getTargetDocument();
-                            BaselinedDocument baselinedDocument = documentCollection.getBaselinedDocument(new BaselinedDocumentKey(documentCollection.getId(), queryContext.getWorkspaceId(), targetDocument.getDocumentMasterId(), targetDocument.getVersion()));
-                            if (null != baselinedDocument) {
-                                DocumentIteration targetDocumentIteration = baselinedDocument.getTargetDocument();
-                                sb.append(targetDocumentIteration.toString() + ",");
-                            }
-                        }
+        if (selects.contains(QueryField.AUTHOR_NAME)) {
+            User user = part.getAuthor();
+            jg.write(QueryField.AUTHOR_NAME, user.getName());
+        }
 
-                    } catch (UserNotFoundException | UserNotActiveException | WorkspaceNotFoundException | ProductInstanceMasterNotFoundException e) {
-                        LOGGER.log(Level.FINEST, null, e);
+        if (selects.contains(QueryField.CTX_DEPTH)) {
+            jg.write(QueryField.CTX_DEPTH, row.getDepth());
+        }
+
+        if (selects.contains(QueryField.PART_ITERATION_LINKED_DOCUMENTS)) {
+
+            StringBuilder sb = new StringBuilder();
+
+            if (null != queryContext && null != queryContext.getSerialNumber()) {
+                try {
+                    ProductInstanceMaster productInstanceMaster = productInstanceService.getProductInstanceMaster(new ProductInstanceMasterKey(queryContext.getSerialNumber(), queryContext.getWorkspaceId(), queryContext.getConfigurationItemId()));
+                    ProductInstanceIteration lastIteration = productInstanceMaster.getLastIteration();
+                    PartCollection partCollection = lastIteration.getPartCollection();
+                    BaselinedPart baselinedPart = partCollection.getBaselinedPart(new BaselinedPartKey(partCollection.getId(), queryContext.getWorkspaceId(), part.getPartNumber()));
+                    PartIteration targetPart = baselinedPart.getTargetPart();
+                    Set<DocumentLink> linkedDocuments = targetPart.getLinkedDocuments();
+                    DocumentCollection documentCollection = lastIteration.getDocumentCollection();
+
+                    for (DocumentLink documentLink : linkedDocuments) {
+                        DocumentRevision targetDocument = documentLink.getTargetDocument();
+                        BaselinedDocument baselinedDocument = documentCollection.getBaselinedDocument(new BaselinedDocumentKey(documentCollection.getId(), queryContext.getWorkspaceId(), targetDocument.getDocumentMasterId(), targetDocument.getVersion()));
+                        if (null != baselinedDocument) {
+                            DocumentIteration targetDocumentIteration = baselinedDocument.getTargetDocument();
+                            sb.append(targetDocumentIteration.toString() + ",");
+                        }
                     }
-                } else {
-                    if (lastCheckedInIteration != null) {
-                        Set<DocumentLink> linkedDocuments = lastCheckedInIteration.getLinkedDocuments();
-
-                        for (DocumentLink documentLink : linkedDocuments) {
-                            DocumentRevision targetDocument = documentLink.getTargetDocument();
-                            DocumentIteration targetDocumentLastCheckedInIteration = targetDocument.getLastCheckedInIteration();
-                            if (targetDocumentLastCheckedInIteration != null) {
-                                sb.append(targetDocumentLastCheckedInIteration.toString() + ",");
-                            }
+
+                } catch (UserNotFoundException | UserNotActiveException | WorkspaceNotFoundException | ProductInstanceMasterNotFoundException e) {
+                    LOGGER.log(Level.FINEST, null, e);
+                }
+            } else {
+                if (lastCheckedInIteration != null) {
+                    Set<DocumentLink> linkedDocuments = lastCheckedInIteration.getLinkedDocuments();
+
+                    for (DocumentLink documentLink : linkedDocuments) {
+                        DocumentRevision targetDocument = documentLink.getTargetDocument();
+                        DocumentIteration targetDocumentLastCheckedInIteration = targetDocument.getLastCheckedInIteration();
+                        if (targetDocumentLastCheckedInIteration != null) {
+                            sb.append(targetDocumentLastCheckedInIteration.toString() + ",");
                         }
                     }
                 }
-
-                jg.write(QueryField.PART_ITERATION_LINKED_DOCUMENTS, sb.toString());
-
             }
 
-            for (String attributeSelect : partIterationSelectedAttributes) {
+            jg.write(QueryField.PART_ITERATION_LINKED_DOCUMENTS, sb.toString());
+
+        }
 
-                String attributeSelectType = attributeSelect.substring(0, attributeSelect.indexOf(".")).substring(QueryField.PART_REVISION_ATTRIBUTES_PREFIX.length());
+        for (String attributeSelect : partIterationSelectedAttributes) {
 
-                String attributeSelectName = attributeSelect.substring(attributeSelect.indexOf(".") + 1);
+            String attributeSelectType = attributeSelect.substring(0, attributeSelect.indexOf(".")).substring(QueryField.PART_REVISION_ATTRIBUTES_PREFIX.length());
 
-                String attributeValue = "";
+            String attributeSelectName = attributeSelect.substring(attributeSelect.indexOf(".") + 1);
 
-                PartIteration pi = part.getLastIteration();
+            String attributeValue = "";
 
-                if (pi != null) {
-                    List<InstanceAttribute> attributes = pi.getInstanceAttributes();
+            PartIteration pi = part.getLastIteration();
 
-                    if (attributes != null) {
-                        jg.writeStartArray(attributeSelect);
+            if (pi != null) {
+                List<InstanceAttribute> attributes = pi.getInstanceAttributes();
 
-                        for (InstanceAttribute attribute : attributes) {
-                            InstanceAttributeDescriptor attributeDescriptor = new InstanceAttributeDescriptor(attribute);
+                if (attributes != null) {
+                    jg.writeStartArray(attributeSelect);
 
-                            if (attributeDescriptor.getName().equals(attributeSelectName)
-                                    && attributeDescriptor.getStringType().equals(attributeSelectType)) {
+                    for (InstanceAttribute attribute : attributes) {
+                        InstanceAttributeDescriptor attributeDescriptor = new InstanceAttributeDescriptor(attribute);
 
-                                attributeValue = attribute.getValue() + "";
+                        if (attributeDescriptor.getName().equals(attributeSelectName)
+                                && attributeDescriptor.getStringType().equals(attributeSelectType)) {
 
-                                if (attribute instanceof InstanceDateAttribute) {
-                                    attributeValue = getFormattedDate(((InstanceDateAttribute) attribute).getDateValue());
-                                } else if (attribute instanceof InstanceListOfValuesAttribute) {
-                                    attributeValue = ((InstanceListOfValuesAttribute) attribute).getSelectedName();
-                                }
+                            attributeValue = attribute.getValue() + "";
 
-                                jg.write(attributeValue);
+                            if (attribute instanceof InstanceDateAttribute) {
+                                attributeValue = getFormattedDate(((InstanceDateAttribute) attribute).getDateValue());
+                            } else if (attribute instanceof InstanceListOfValuesAttribute) {
+                                attributeValue = ((InstanceListOfValuesAttribute) attribute).getSelectedName();
                             }
-                        }
-
-                        jg.writeEnd();
 
-                    } else {
-                        jg.write(attributeSelect, attributeValue);
+                            jg.write(attributeValue);
+                        }
                     }
 
+                    jg.writeEnd();
+
                 } else {
-                    // TODO: maybe this line is useless and should be removed
                     jg.write(attributeSelect, attributeValue);
                 }
-            }
 
-            for (String attributeSelect : pathDataSelectedAttributes) {
+            } else {
+                // TODO: maybe this line is useless and should be removed
+                jg.write(attributeSelect, attributeValue);
+            }
+        }
 
-                String attributeSelectType = attributeSelect.substring(0, attributeSelect.indexOf(".")).substring(QueryField.PATH_DATA_ATTRIBUTES_PREFIX.length());
+        for (String attributeSelect : pathDataSelectedAttributes) {
 
-                String attributeSelectName = attributeSelect.substring(attributeSelect.indexOf(".") + 1);
+            String attributeSelectType = attributeSelect.substring(0, attributeSelect.indexOf(".")).substring(QueryField.PATH_DATA_ATTRIBUTES_PREFIX.length());
 
-                String attributeValue = "";
+            String attributeSelectName = attributeSelect.substring(attributeSelect.indexOf(".") + 1);
 
-                PathDataIteration pdi = row.getPathDataIteration();
+            String attributeValue = "";
 
-                if (pdi != null) {
-                    List<InstanceAttribute> attributes = pdi.getInstanceAttributes();
+            PathDataIteration pdi = row.getPathDataIteration();
 
-                    if (attributes != null) {
-                        jg.writeStartArray(attributeSelect);
+            if (pdi != null) {
+                List<InstanceAttribute> attributes = pdi.getInstanceAttributes();
 
-                        for (InstanceAttribute attribute : attributes) {
-                            InstanceAttributeDescriptor attributeDescriptor = new InstanceAttributeDescriptor(attribute);
+                if (attributes != null) {
+                    jg.writeStartArray(attributeSelect);
 
-                            if (attributeDescriptor.getName().equals(attributeSelectName)
-                                    && attributeDescriptor.getStringType().equals(attributeSelectType)) {
+                    for (InstanceAttribute attribute : attributes) {
+                        InstanceAttributeDescriptor attributeDescriptor = new InstanceAttributeDescriptor(attribute);
 
-                                attributeValue = attribute.getValue() + "";
+                        if (attributeDescriptor.getName().equals(attributeSelectName)
+                                && attributeDescriptor.getStringType().equals(attributeSelectType)) {
 
-                                if (attribute instanceof InstanceDateAttribute) {
-                                    attributeValue = getFormattedDate(((InstanceDateAttribute) attribute).getDateValue());
-                                } else if (attribute instanceof InstanceListOfValuesAttribute) {
-                                    attributeValue = ((InstanceListOfValuesAttribute) attribute).getSelectedName();
-                                }
+                            attributeValue = attribute.getValue() + "";
 
-                                jg.write(attributeValue);
+                            if (attribute instanceof InstanceDateAttribute) {
+                                attributeValue = getFormattedDate(((InstanceDateAttribute) attribute).getDateValue());
+                            } else if (attribute instanceof InstanceListOfValuesAttribute) {
+                                attributeValue = ((InstanceListOfValuesAttribute) attribute).getSelectedName();
                             }
+
+                            jg.write(attributeValue);
                         }
+                    }
 
-                        jg.writeEnd();
+                    jg.writeEnd();
 
-                    } else {
-                        jg.write(attributeSelect, attributeValue);
-                    }
+                } else {
+                    jg.write(attributeSelect, attributeValue);
                 }
             }
+        }
 
-            if (selects.contains(QueryField.CTX_PRODUCT_ID)) {
-                String configurationItemId = queryContext != null ? queryContext.getConfigurationItemId() : "";
-                jg.write(QueryField.CTX_PRODUCT_ID, configurationItemId);
-            }
-            if (selects.contains(QueryField.CTX_SERIAL_NUMBER)) {
-                String serialNumber = queryContext != null ? queryContext.getSerialNumber() : "";
-                jg.write(QueryField.CTX_SERIAL_NUMBER, serialNumber != null ? serialNumber : "");
-            }
-            if (selects.contains(QueryField.CTX_AMOUNT)) {
-                String amount = row.getAmount() + "";
-                jg.write(QueryField.CTX_AMOUNT, amount);
-            }
-
-            if (selects.contains(QueryField.CTX_P2P_SOURCE)) {
-                Map<String, List<PartLinkList>> sources = row.getSources();
-                String partLinksAsString = Tools.getPartLinksAsHumanString(sources);
-                jg.write(QueryField.CTX_P2P_SOURCE, partLinksAsString);
-            }
+        if (selects.contains(QueryField.CTX_PRODUCT_ID)) {
+            String configurationItemId = queryContext != null ? queryContext.getConfigurationItemId() : "";
+            jg.write(QueryField.CTX_PRODUCT_ID, configurationItemId);
+        }
+        if (selects.contains(QueryField.CTX_SERIAL_NUMBER)) {
+            String serialNumber = queryContext != null ? queryContext.getSerialNumber() : "";
+            jg.write(QueryField.CTX_SERIAL_NUMBER, serialNumber != null ? serialNumber : "");
+        }
+        if (selects.contains(QueryField.CTX_AMOUNT)) {
+            String amount = row.getAmount() + "";
+            jg.write(QueryField.CTX_AMOUNT, amount);
+        }
 
-            if (selects.contains(QueryField.CTX_P2P_TARGET)) {
-                Map<String, List<PartLinkList>> targets = row.getTargets();
-                String partLinksAsString = Tools.getPartLinksAsHumanString(targets);
-                jg.write(QueryField.CTX_P2P_TARGET, partLinksAsString);
-            }
+        if (selects.contains(QueryField.CTX_P2P_SOURCE)) {
+            Map<String, List<PartLinkList>> sources = row.getSources();
+            String partLinksAsString = Tools.getPartLinksAsHumanString(sources);
+            jg.write(QueryField.CTX_P2P_SOURCE, partLinksAsString);
+        }
 
-            if (selects.contains(QueryField.PART_MASTER_IS_STANDARD)) {
-                boolean isStandard = row.getPartRevision().getPartMaster().isStandardPart();
-                jg.write(QueryField.PART_MASTER_IS_STANDARD, isStandard);
-            }
+        if (selects.contains(QueryField.CTX_P2P_TARGET)) {
+            Map<String, List<PartLinkList>> targets = row.getTargets();
+            String partLinksAsString = Tools.getPartLinksAsHumanString(targets);
+            jg.write(QueryField.CTX_P2P_TARGET, partLinksAsString);
+        }
 
-            jg.writeEnd();
+        if (selects.contains(QueryField.PART_MASTER_IS_STANDARD)) {
+            boolean isStandard = row.getPartRevision().getPartMaster().isStandardPart();
+            jg.write(QueryField.PART_MASTER_IS_STANDARD, isStandard);
         }
 
         jg.writeEnd();
-        jg.flush();
     }
 
 
@@ -74,9 +74,7 @@ public class VirtualInstanceCollectionMessageBodyWriter implements MessageBodyWr
         gM.setIdentity();
 
         PartLink virtualRootPartLink = getVirtualRootPartLink(virtualInstanceCollection);
-        List<PartLink> path = new ArrayList<>();
-        path.add(virtualRootPartLink);
-        InstanceBodyWriterTools.generateInstanceStreamWithGlobalMatrix(productService, path, gM, virtualInstanceCollection, new ArrayList<>(), jg);
+        InstanceBodyWriterTools.generateInstanceStream(productService, virtualRootPartLink, gM, virtualInstanceCollection, jg);
         jg.writeEnd();
         jg.flush();
     }
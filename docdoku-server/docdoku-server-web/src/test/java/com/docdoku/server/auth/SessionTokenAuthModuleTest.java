@@ -0,0 +1,220 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.docdoku.server.auth;
+
+import com.docdoku.core.security.SessionToken;
+import com.docdoku.core.services.ISessionTokenManagerLocal;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.message.AuthStatus;
+import javax.security.auth.message.MessageInfo;
+import javax.security.auth.message.callback.CallerPrincipalCallback;
+import javax.security.auth.message.callback.GroupPrincipalCallback;
+import javax.security.auth.message.callback.PasswordValidationCallback;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.xml.bind.DatatypeConverter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SessionTokenAuthModuleTest {
+
+    private static final String IS_MANDATORY = "javax.security.auth.message.MessagePolicy.isMandatory";
+
+    private ISessionTokenManagerLocal sessionTokenManager;
+    private CallbackHandler handler;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private MessageInfo messageInfo;
+    private Map<String, Object> messageInfoMap;
+    private Subject subject;
+
+    private SessionTokenAuthModule authModule;
+
+    // Callbacks given to the handler, in order
+    private final List<Callback> callbacks = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        sessionTokenManager = Mockito.mock(ISessionTokenManagerLocal.class);
+        handler = Mockito.mock(CallbackHandler.class);
+        request = Mockito.mock(HttpServletRequest.class);
+        response = Mockito.mock(HttpServletResponse.class);
+        messageInfo = Mockito.mock(MessageInfo.class);
+        messageInfoMap = new HashMap<>();
+        subject = new Subject();
+
+        Mockito.when(messageInfo.getRequestMessage()).thenReturn(request);
+        Mockito.when(messageInfo.getResponseMessage()).thenReturn(response);
+        Mockito.when(messageInfo.getMap()).thenReturn(messageInfoMap);
+
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                for (Callback callback : (Callback[]) invocation.getArguments()[0]) {
+                    callbacks.add(callback);
+                    if (callback instanceof PasswordValidationCallback) {
+                        PasswordValidationCallback passwordValidation = (PasswordValidationCallback) callback;
+                        passwordValidation.setResult("secret".equals(new String(passwordValidation.getPassword())));
+                    }
+                }
+                return null;
+            }
+        }).when(handler).handle(Mockito.any(Callback[].class));
+
+        authModule = new SessionTokenAuthModule(sessionTokenManager, "docdokuRealm");
+        authModule.initialize(null, null, handler, null);
+    }
+
+    @Test
+    public void bearerTokenAuthenticatesTheCallerTest() throws Exception {
+        SessionToken token = new SessionToken("id", "user1", "users", 1000, 2000);
+        Mockito.when(request.getHeader("Authorization")).thenReturn("Bearer abc.def");
+        Mockito.when(sessionTokenManager.verifyToken("abc.def")).thenReturn(token);
+
+        Assert.assertEquals(AuthStatus.SUCCESS, authModule.validateRequest(messageInfo, subject, null));
+
+        Assert.assertEquals(2, callbacks.size());
+        Assert.assertEquals("user1", ((CallerPrincipalCallback) callbacks.get(0)).getName());
+        Assert.assertArrayEquals(new String[]{"users"}, ((GroupPrincipalCallback) callbacks.get(1)).getGroups());
+        Mockito.verify(request).setAttribute(SessionTokenAuthModule.REQUEST_ATTRIBUTE, token);
+        Mockito.verify(request, Mockito.never()).getSession(Mockito.anyBoolean());
+    }
+
+    @Test
+    public void invalidBearerTokenIsAnonymousTest() throws Exception {
+        Mockito.when(request.getHeader("Authorization")).thenReturn("Bearer revoked");
+
+        Assert.assertEquals(AuthStatus.SUCCESS, authModule.validateRequest(messageInfo, subject, null));
+
+        Mockito.verify(sessionTokenManager).verifyToken("revoked");
+        assertAnonymous();
+    }
+
+    @Test
+    public void sessionTokenAuthenticatesTheCallerTest() throws Exception {
+        SessionToken token = new SessionToken("id", "admin", "admin", 1000, 2000);
+        HttpSession session = Mockito.mock(HttpSession.class);
+        Mockito.when(request.getSession(false)).thenReturn(session);
+        Mockito.when(session.getAttribute(SessionTokenAuthModule.SESSION_ATTRIBUTE)).thenReturn("abc.def");
+        Mockito.when(sessionTokenManager.verifyToken("abc.def")).thenReturn(token);
+
+        Assert.assertEquals(AuthStatus.SUCCESS, authModule.validateRequest(messageInfo, subject, null));
+
+        Assert.assertEquals("admin", ((CallerPrincipalCallback) callbacks.get(0)).getName());
+        Assert.assertArrayEquals(new String[]{"admin"}, ((GroupPrincipalCallback) callbacks.get(1)).getGroups());
+        Mockito.verify(request).setAttribute(SessionTokenAuthModule.REQUEST_ATTRIBUTE, token);
+    }
+
+    @Test
+    public void basicCredentialsAuthenticateTheCallerTest() throws Exception {
+        Mockito.when(request.getHeader("Authorization")).thenReturn(basic("user1:secret"));
+
+        Assert.assertEquals(AuthStatus.SUCCESS, authModule.validateRequest(messageInfo, subject, null));
+
+        Assert.assertEquals(2, callbacks.size());
+        Assert.assertEquals("user1", ((PasswordValidationCallback) callbacks.get(0)).getUsername());
+        Assert.assertEquals("user1", ((CallerPrincipalCallback) callbacks.get(1)).getName());
+        Mockito.verify(sessionTokenManager, Mockito.never()).verifyToken(Mockito.anyString());
+        Mockito.verify(request, Mockito.never()).setAttribute(Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    public void wrongBasicCredentialsAreAnonymousTest() throws Exception {
+        Mockito.when(request.getHeader("Authorization")).thenReturn(basic("user1:wrong"));
+
+        Assert.assertEquals(AuthStatus.SUCCESS, authModule.validateRequest(messageInfo, subject, null));
+
+        Assert.assertEquals(2, callbacks.size());
+        Assert.assertNull(((CallerPrincipalCallback) callbacks.get(1)).getName());
+        Assert.assertNull(((CallerPrincipalCallback) callbacks.get(1)).getPrincipal());
+    }
+
+    @Test
+    public void malformedBasicCredentialsAreAnonymousTest() throws Exception {
+        Mockito.when(request.getHeader("Authorization")).thenReturn(basic("user1"));
+
+        Assert.assertEquals(AuthStatus.SUCCESS, authModule.validateRequest(messageInfo, subject, null));
+
+        assertAnonymous();
+    }
+
+    @Test
+    public void requestWithoutCredentialsIsAnonymousTest() throws Exception {
+        Assert.assertEquals(AuthStatus.SUCCESS, authModule.validateRequest(messageInfo, subject, null));
+
+        assertAnonymous();
+        Mockito.verify(response, Mockito.never()).sendError(Mockito.anyInt());
+    }
+
+    @Test
+    public void mandatoryRequestWithoutCredentialsIsChallengedTest() throws Exception {
+        messageInfoMap.put(IS_MANDATORY, "true");
+
+        Assert.assertEquals(AuthStatus.SEND_FAILURE, authModule.validateRequest(messageInfo, subject, null));
+
+        Mockito.verify(response).setHeader("WWW-Authenticate", "Basic realm=\"docdokuRealm\"");
+        Mockito.verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED);
+        Assert.assertTrue(callbacks.isEmpty());
+    }
+
+    @Test
+    public void mandatoryRequestWithValidCredentialsIsNotChallengedTest() throws Exception {
+        messageInfoMap.put(IS_MANDATORY, "true");
+        Mockito.when(request.getHeader("Authorization")).thenReturn(basic("user1:secret"));
+
+        Assert.assertEquals(AuthStatus.SUCCESS, authModule.validateRequest(messageInfo, subject, null));
+
+        Mockito.verify(response, Mockito.never()).sendError(Mockito.anyInt());
+    }
+
+    @Test
+    public void bearerTokenIsReadFromTheHeaderTest() {
+        Assert.assertEquals("abc.def", SessionTokenAuthModule.getBearerToken("Bearer abc.def "));
+        Assert.assertNull(SessionTokenAuthModule.getBearerToken(basic("user1:secret")));
+        Assert.assertNull(SessionTokenAuthModule.getBearerToken(null));
+    }
+
+    private void assertAnonymous() throws Exception {
+        ArgumentCaptor<Callback[]> captor = ArgumentCaptor.forClass(Callback[].class);
+        Mockito.verify(handler).handle(captor.capture());
+        Callback[] anonymous = captor.getValue();
+        Assert.assertEquals(1, anonymous.length);
+        Assert.assertNull(((CallerPrincipalCallback) anonymous[0]).getPrincipal());
+        Assert.assertNull(((CallerPrincipalCallback) anonymous[0]).getName());
+    }
+
+    private static String basic(String credentials) {
+        return "Basic " + DatatypeConverter.printBase64Binary(credentials.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.export;
+
+import com.docdoku.core.common.Account;
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.Workspace;
+import com.docdoku.core.product.PartMaster;
+import com.docdoku.core.product.PartRevision;
+import com.docdoku.core.query.Query;
+import com.docdoku.core.query.QueryField;
+import com.docdoku.core.query.QueryResultRow;
+import com.docdoku.server.rest.collections.QueryResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+public class CSVGeneratorTest {
+
+    @Test
+    public void testRowsAreWrittenWithEscapedValues() throws Exception {
+        Account account = new Account("user", "User", "user@docdoku.com", "en", new Date(), null);
+        Workspace workspace = new Workspace("workspace", account, "", false);
+        User user = new User(workspace, account);
+
+        Query query = new Query();
+        query.setSelects(Arrays.asList(QueryField.PART_MASTER_NUMBER, QueryField.PART_MASTER_NAME));
+
+        PartMaster wheel = new PartMaster(workspace, "P1", user);
+        wheel.setName("Wheel, \"big\"");
+        PartMaster axle = new PartMaster(workspace, "P2", user);
+        axle.setName("Axle");
+
+        QueryResult queryResult = new QueryResult(query, Arrays.asList(
+                new QueryResultRow(new PartRevision(wheel, "A", user)),
+                new QueryResultRow(new PartRevision(axle, "A", user))));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new CSVGenerator().generateCSVResponse(queryResult, Locale.ENGLISH, "", outputStream);
+
+        Assert.assertEquals("Part number,Part name\r\n"
+                + "P1,\"Wheel, \"\"big\"\"\"\r\n"
+                + "P2,Axle\r\n", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
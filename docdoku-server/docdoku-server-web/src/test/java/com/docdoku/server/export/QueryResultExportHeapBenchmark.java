@@ -0,0 +1,156 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.export;
+
+import com.docdoku.core.common.Account;
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.Workspace;
+import com.docdoku.core.product.PartMaster;
+import com.docdoku.core.product.PartRevision;
+import com.docdoku.core.query.Query;
+import com.docdoku.core.query.QueryField;
+import com.docdoku.core.query.QueryResultRow;
+import com.docdoku.server.rest.collections.QueryResult;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the heap used by the query exports, rows being generated as they are read.
+ *
+ * Not a unit test, run it with a bounded heap to see the in-memory workbook fail first:
+ * <pre>java -Xmx512m -cp ... com.docdoku.server.export.QueryResultExportHeapBenchmark [rows]</pre>
+ */
+public class QueryResultExportHeapBenchmark {
+
+    private static final int DEFAULT_ROWS = 100000;
+
+    private static final List<String> SELECTS = Arrays.asList(QueryField.PART_MASTER_NUMBER, QueryField.PART_MASTER_NAME,
+            QueryField.PART_MASTER_TYPE, QueryField.PART_REVISION_VERSION, QueryField.PART_REVISION_CREATION_DATE,
+            QueryField.PART_REVISION_STATUS, QueryField.AUTHOR_LOGIN, QueryField.AUTHOR_NAME);
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        QueryResult queryResult = createQueryResult(rows);
+        Locale locale = Locale.ENGLISH;
+
+        measure("CSV", rows, () -> new CSVGenerator().generateCSVResponse(queryResult, locale, "", nullOutputStream()));
+
+        measure("XLSX streamed", rows, () -> {
+            ExcelGenerator excelGenerator = new ExcelGenerator();
+            excelGenerator.writeXLSResponse(excelGenerator.generateXLSResponse(queryResult, locale, ""), nullOutputStream());
+        });
+
+        // The previous export, the whole workbook in memory
+        measure("XLSX in memory", rows, () -> {
+            ExcelGenerator excelGenerator = new ExcelGenerator();
+            XSSFWorkbook workbook = new XSSFWorkbook();
+            XSSFSheet sheet = workbook.createSheet("Parts Data");
+            int[] rownum = {0};
+            queryResult.forEachRow(queryResultRow -> {
+                Row row = sheet.createRow(rownum[0]++);
+                String[] values = excelGenerator.createXLSRow(SELECTS, queryResultRow, "");
+                for (int i = 0; i < values.length; i++) {
+                    row.createCell(i).setCellValue(values[i]);
+                }
+            });
+            workbook.write(nullOutputStream());
+        });
+    }
+
+    private static QueryResult createQueryResult(int rows) {
+        Account account = new Account("user", "User", "user@docdoku.com", "en", new Date(), null);
+        Workspace workspace = new Workspace("workspace", account, "", false);
+        User user = new User(workspace, account);
+
+        Query query = new Query();
+        query.setSelects(SELECTS);
+        query.setAuthor(user);
+
+        return new QueryResult(query, consumer -> {
+            for (int i = 0; i < rows; i++) {
+                PartMaster partMaster = new PartMaster(workspace, "PART-" + i, user);
+                partMaster.setName("Part " + i);
+                partMaster.setType("type");
+                PartRevision partRevision = new PartRevision(partMaster, "A", user);
+                partRevision.setCreationDate(new Date());
+                consumer.accept(new QueryResultRow(partRevision));
+            }
+        });
+    }
+
+    private static void measure(String name, int rows, Export export) throws Exception {
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans();
+        System.gc();
+        long baseline = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                baseline += pool.getUsage().getUsed();
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            export.run();
+        } catch (OutOfMemoryError e) {
+            System.out.println(String.format("%-16s %d rows: out of memory", name, rows));
+            return;
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.println(String.format("%-16s %d rows: %d ms, peak heap %d MB", name, rows, elapsed, (peak - baseline) / (1024 * 1024)));
+    }
+
+    private static OutputStream nullOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                // Discarded
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // Discarded
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Export {
+        void run() throws Exception;
+    }
+}
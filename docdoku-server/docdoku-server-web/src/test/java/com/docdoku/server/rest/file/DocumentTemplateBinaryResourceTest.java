@@ -37,7 +37,6 @@ import javax.servlet.http.Part;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -72,8 +71,7 @@ public class DocumentTemplateBinaryResourceTest {
         String fullName = ResourceUtil.WORKSPACE_ID + "/document-templates/" + ResourceUtil.DOC_TEMPLATE_ID + "/" + ResourceUtil.FILENAME1;
         Mockito.when(documentService.getTemplateBinaryResource(fullName)).thenReturn(binaryResource);
         File input = new File(getClass().getClassLoader().getResource(ResourceUtil.SOURCE_FILE_STORAGE+ResourceUtil.FILENAME1).getFile());
-        FileInputStream fileInputStream = new FileInputStream(input);
-        Mockito.when(dataManager.getBinaryResourceInputStream(binaryResource)).thenReturn(fileInputStream);
+        Mockito.when(dataManager.getBinaryResourceFile(binaryResource)).thenReturn(input);
         //When
         Response response =documentTemplateBinaryResource.downloadDocumentTemplateFile(request,ResourceUtil.RANGE, ResourceUtil.WORKSPACE_ID, ResourceUtil.DOC_TEMPLATE_ID,ResourceUtil.FILENAME1,ResourceUtil.FILE_TYPE,null);
 
@@ -0,0 +1,107 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.file.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class BinaryResourceBinaryStreamingOutputTest {
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+    private static final String BOUNDARY = "boundary";
+    private static final String CONTENT_TYPE = "text/plain";
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("content", ".txt");
+        Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testSingleRangeFromFile() throws Exception {
+        ByteRange range = ByteRange.parse("bytes=10-15", CONTENT.length()).get(0);
+        Assert.assertEquals("abcdef", write(new BinaryResourceBinaryStreamingOutput(file, range)));
+    }
+
+    @Test
+    public void testSingleRangeFromStream() throws Exception {
+        BinaryResourceBinaryStreamingOutput output = new BinaryResourceBinaryStreamingOutput(stream(), 30, 35, CONTENT.length());
+        Assert.assertEquals("uvwxyz", write(output));
+    }
+
+    @Test
+    public void testMultipartBodyFromFile() throws Exception {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-3,-3", CONTENT.length());
+        String body = write(new BinaryResourceBinaryStreamingOutput(file, null, ranges, BOUNDARY, CONTENT_TYPE));
+
+        Assert.assertEquals(getExpectedMultipartBody(), body);
+        Assert.assertEquals(BinaryResourceBinaryStreamingOutput.getMultipartLength(ranges, BOUNDARY, CONTENT_TYPE), body.length());
+    }
+
+    @Test
+    public void testMultipartBodyFromStream() throws Exception {
+        List<ByteRange> ranges = ByteRange.parse("bytes=-3,0-3", CONTENT.length());
+        String body = write(new BinaryResourceBinaryStreamingOutput(null, stream(), ranges, BOUNDARY, CONTENT_TYPE));
+
+        Assert.assertEquals(getExpectedMultipartBody(), body);
+        Assert.assertEquals(BinaryResourceBinaryStreamingOutput.getMultipartLength(ranges, BOUNDARY, CONTENT_TYPE), body.length());
+    }
+
+    private String getExpectedMultipartBody() {
+        return "\r\n--boundary\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 0-3/36\r\n"
+                + "\r\n"
+                + "0123"
+                + "\r\n--boundary\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 33-35/36\r\n"
+                + "\r\n"
+                + "xyz"
+                + "\r\n--boundary--\r\n";
+    }
+
+    private ByteArrayInputStream stream() {
+        return new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String write(BinaryResourceBinaryStreamingOutput output) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        output.write(outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+}
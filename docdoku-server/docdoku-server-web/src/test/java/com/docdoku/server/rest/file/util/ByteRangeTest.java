@@ -0,0 +1,121 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.file.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class ByteRangeTest {
+
+    private static final long TOTAL = 1000;
+
+    @Test
+    public void testClosedRange() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-499", TOTAL);
+        Assert.assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 0, 499);
+        Assert.assertEquals(500, ranges.get(0).getLength());
+        Assert.assertEquals("bytes 0-499/1000", ranges.get(0).getContentRange());
+    }
+
+    @Test
+    public void testEndIsTruncatedToContent() {
+        assertRange(ByteRange.parse("bytes=900-5000", TOTAL).get(0), 900, 999);
+    }
+
+    @Test
+    public void testOpenEndedRange() {
+        assertRange(ByteRange.parse("bytes=600-", TOTAL).get(0), 600, 999);
+    }
+
+    @Test
+    public void testSuffixRange() {
+        assertRange(ByteRange.parse("bytes=-200", TOTAL).get(0), 800, 999);
+    }
+
+    @Test
+    public void testSuffixLargerThanContent() {
+        assertRange(ByteRange.parse("bytes=-5000", TOTAL).get(0), 0, 999);
+    }
+
+    @Test
+    public void testBeyondIntegerRange() {
+        long total = 5L * Integer.MAX_VALUE;
+        assertRange(ByteRange.parse("bytes=4294967296-", total).get(0), 4294967296L, total - 1);
+    }
+
+    @Test
+    public void testUnsatisfiableRange() {
+        Assert.assertTrue(ByteRange.parse("bytes=1000-1200", TOTAL).isEmpty());
+        Assert.assertTrue(ByteRange.parse("bytes=-0", TOTAL).isEmpty());
+    }
+
+    @Test
+    public void testUnsatisfiableRangeIgnoredAmongOthers() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=2000-3000,0-9", TOTAL);
+        Assert.assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 0, 9);
+    }
+
+    @Test
+    public void testMultipleRangesAreSorted() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=500-599,0-99,-100", TOTAL);
+        Assert.assertEquals(3, ranges.size());
+        assertRange(ranges.get(0), 0, 99);
+        assertRange(ranges.get(1), 500, 599);
+        assertRange(ranges.get(2), 900, 999);
+    }
+
+    @Test
+    public void testOverlappingAndAdjacentRangesAreCoalesced() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99,50-149,150-199,300-399", TOTAL);
+        Assert.assertEquals(2, ranges.size());
+        assertRange(ranges.get(0), 0, 199);
+        assertRange(ranges.get(1), 300, 399);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingUnit() {
+        ByteRange.parse("0-99", TOTAL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyBounds() {
+        ByteRange.parse("bytes=-", TOTAL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEndBeforeStart() {
+        ByteRange.parse("bytes=500-100", TOTAL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullHeader() {
+        ByteRange.parse(null, TOTAL);
+    }
+
+    private static void assertRange(ByteRange range, long start, long end) {
+        Assert.assertEquals(start, range.getStart());
+        Assert.assertEquals(end, range.getEnd());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2015 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,  
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of  
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the  
+ * GNU Affero General Public License for more details.  
+ *  
+ * You should have received a copy of the GNU Affero General Public License  
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.server.rest.mappers;
+
+import com.docdoku.core.common.Account;
+import com.docdoku.core.common.BinaryResource;
+import com.docdoku.core.common.User;
+import com.docdoku.core.common.Workspace;
+import com.docdoku.core.document.DocumentIteration;
+import com.docdoku.core.document.DocumentLink;
+import com.docdoku.core.document.DocumentMaster;
+import com.docdoku.core.document.DocumentRevision;
+import com.docdoku.core.meta.InstanceAttribute;
+import com.docdoku.core.meta.InstanceNumberAttribute;
+import com.docdoku.core.meta.InstanceTextAttribute;
+import com.docdoku.core.meta.Tag;
+import com.docdoku.core.product.*;
+import com.docdoku.core.security.ACL;
+import com.docdoku.server.rest.dto.DocumentRevisionDTO;
+import com.docdoku.server.rest.dto.InstanceAttributeDTO;
+import com.docdoku.server.rest.dto.PartRevisionDTO;
+import org.dozer.DozerBeanMapperSingletonWrapper;
+import org.dozer.Mapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping the part, document and instance attribute DTOs with the generated mappers, compared to
+ * Dozer.
+ *
+ * Run from the test classpath of the module:
+ * <code>java -cp ... com.docdoku.server.rest.mappers.DTOMappingBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DTOMappingBenchmark {
+
+    private static final int ITERATIONS = 3;
+    private static final int COMPONENTS = 20;
+    private static final int ATTRIBUTES = 10;
+
+    private Mapper dozerMapper;
+
+    private PartRevision partRevision;
+    private DocumentRevision documentRevision;
+    private List<InstanceAttribute> instanceAttributes;
+
+    @Setup(Level.Trial)
+    public void createEntities() {
+        dozerMapper = DozerBeanMapperSingletonWrapper.getInstance();
+
+        Account account = new Account("user", "User", "user@docdoku.com", "en", new Date(), null);
+        Workspace workspace = new Workspace("workspace", account, "", false);
+        User user = new User(workspace, account);
+
+        ACL acl = new ACL();
+        acl.addEntry(user, ACL.Permission.READ_ONLY);
+
+        instanceAttributes = createInstanceAttributes();
+
+        DocumentMaster linkedDocumentMaster = new DocumentMaster(workspace, "DOC-LINKED", user);
+        DocumentRevision linkedDocument = linkedDocumentMaster.createNextRevision(user);
+        linkedDocument.setTitle("Linked document");
+        linkedDocument.createNextIteration(user);
+
+        DocumentMaster documentMaster = new DocumentMaster(workspace, "DOC", user);
+        documentRevision = documentMaster.createNextRevision(user);
+        documentRevision.setTitle("Document");
+        documentRevision.setACL(acl);
+        documentRevision.setTags(new HashSet<>(Arrays.asList(new Tag(workspace, "tag1"), new Tag(workspace, "tag2"))));
+        for (int i = 0; i < ITERATIONS; i++) {
+            DocumentIteration documentIteration = documentRevision.createNextIteration(user);
+            documentIteration.addFile(new BinaryResource("workspace/documents/DOC/A/" + (i + 1) + "/file.pdf", 1024, new Date()));
+            documentIteration.setInstanceAttributes(createInstanceAttributes());
+            documentIteration.setLinkedDocuments(new HashSet<>(Collections.singletonList(new DocumentLink(linkedDocument, "comment"))));
+        }
+
+        PartMaster partMaster = new PartMaster(workspace, "PART", user);
+        partMaster.setName("Assembly");
+        partRevision = partMaster.createNextRevision(user);
+        partRevision.setACL(acl);
+        partRevision.setTags(new HashSet<>(Collections.singletonList(new Tag(workspace, "tag1"))));
+        for (int i = 0; i < ITERATIONS; i++) {
+            PartIteration partIteration = partRevision.createNextIteration(user);
+            partIteration.setNativeCADFile(new BinaryResource("workspace/parts/PART/A/" + (i + 1) + "/nativecad/part.stp", 1024, new Date()));
+            partIteration.setInstanceAttributes(createInstanceAttributes());
+            partIteration.setLinkedDocuments(new HashSet<>(Collections.singletonList(new DocumentLink(linkedDocument, "comment"))));
+
+            List<PartUsageLink> components = new ArrayList<>();
+            for (int j = 0; j < COMPONENTS; j++) {
+                PartMaster component = new PartMaster(workspace, "COMPONENT-" + j, user);
+                component.setName("Component " + j);
+                PartUsageLink partUsageLink = new PartUsageLink(component, 1, null, false);
+                partUsageLink.setCadInstances(new ArrayList<>(Arrays.asList(new CADInstance(j, 0, 0, 0, 0, 0), new CADInstance(0, j, 0, 0, 0, 0))));
+                components.add(partUsageLink);
+            }
+            partIteration.setComponents(components);
+        }
+    }
+
+    private List<InstanceAttribute> createInstanceAttributes() {
+        List<InstanceAttribute> attributes = new ArrayList<>();
+        for (int i = 0; i < ATTRIBUTES; i++) {
+            attributes.add(i % 2 == 0 ? new InstanceTextAttribute("text" + i, "value" + i, false) : new InstanceNumberAttribute("number" + i, i, false));
+        }
+        return attributes;
+    }
+
+    @Benchmark
+    public PartRevisionDTO dozerPart() {
+        return dozerMapper.map(partRevision, PartRevisionDTO.class);
+    }
+
+    @Benchmark
+    public PartRevisionDTO generatedPart() {
+        return PartMapper.INSTANCE.toDTO(partRevision, true);
+    }
+
+    @Benchmark
+    public DocumentRevisionDTO dozerDocument() {
+        return dozerMapper.map(documentRevision, DocumentRevisionDTO.class);
+    }
+
+    @Benchmark
+    public DocumentRevisionDTO generatedDocument() {
+        return DocumentMapper.INSTANCE.toDTO(documentRevision);
+    }
+
+    @Benchmark
+    public List<InstanceAttributeDTO> dozerInstanceAttributes() {
+        List<InstanceAttributeDTO> attributeDTOs = new ArrayList<>();
+        for (InstanceAttribute instanceAttribute : instanceAttributes) {
+            attributeDTOs.add(dozerMapper.map(instanceAttribute, InstanceAttributeDTO.class));
+        }
+        return attributeDTOs;
+    }
+
+    @Benchmark
+    public List<InstanceAttributeDTO> generatedInstanceAttributes() {
+        return CommonMapper.INSTANCE.toInstanceAttributeDTOs(instanceAttributes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DTOMappingBenchmark.class.getSimpleName()).build()).run();
+    }
+}